@@ -1,8 +1,13 @@
 package com.mycompany.api.client;
 
+import com.mycompany.api.dto.ClientKeyDTO;
 import com.mycompany.api.dto.IDTypeEnum;
 import com.mycompany.api.dto.RiskTypeEnum;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Interface to handle communication with Credit Analysis Firm ABC.
  * Created by jcortes on 12/7/15.
@@ -16,4 +21,19 @@ public interface ICreditFirmABC {
      * @return a risk status.
      */
     RiskTypeEnum getRiskByClient(IDTypeEnum idType, String clientId);
+
+    /**
+     * Return the risk analysis results of several people. Implementations backed
+     * by a bulk service should override it, by default people are requested one
+     * by one.
+     * @param keys Keys of the people.
+     * @return a map with a risk status for each key, it may be null.
+     */
+    default Map<ClientKeyDTO, RiskTypeEnum> getRiskByClients(Collection<ClientKeyDTO> keys) {
+        Map<ClientKeyDTO, RiskTypeEnum> risks = new HashMap<>();
+        for (ClientKeyDTO key : keys) {
+            risks.put(key, getRiskByClient(key.getIdType(), key.getId()));
+        }
+        return risks;
+    }
 }
@@ -0,0 +1,40 @@
+package com.mycompany.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * DTO that identifies a person by its type of id and id value.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClientKeyDTO implements Serializable {
+
+    /**
+     * Serial version uid.
+     */
+    private static final long serialVersionUID = -6071552337811924160L;
+
+    /**
+     * Type of identifier.
+     */
+    private IDTypeEnum idType;
+
+    /**
+     * Client identifier (in a country).
+     */
+    private String id;
+
+    /**
+     * Build the key of a person.
+     * @param peopleDTO DTO with client data.
+     * @return the key.
+     */
+    public static ClientKeyDTO of(final PeopleDTO peopleDTO) {
+        return new ClientKeyDTO(peopleDTO.getIdType(), peopleDTO.getId());
+    }
+}
@@ -30,4 +30,19 @@ public class CreditRequestDTO implements Serializable {
      * Client current salary.
      */
     private BigDecimal currentSalary;
+
+    /**
+     * Key given by the caller to recognize retries of the same request, e.g. a
+     * UUID, of at most 64 characters. Requests without key are always evaluated.
+     */
+    private String idempotencyKey;
+
+    /**
+     * Build a request without idempotency key.
+     * @param peopleDTO DTO with client data.
+     * @param currentSalary Client current salary.
+     */
+    public CreditRequestDTO(final PeopleDTO peopleDTO, final BigDecimal currentSalary) {
+        this(peopleDTO, currentSalary, null);
+    }
 }
@@ -0,0 +1,52 @@
+package com.mycompany.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * DTO with the outcome of a credit request evaluation.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EvaluationResultDTO implements Serializable {
+
+    /**
+     * Serial version uid.
+     */
+    private static final long serialVersionUID = 4482210517160952387L;
+
+    /**
+     * Evaluated request.
+     */
+    private CreditRequestDTO requestDTO;
+
+    /**
+     * Evaluation outcome.
+     */
+    private EvaluationStatusEnum status;
+
+    /**
+     * Client database identifier, if the client could be resolved.
+     */
+    private Long clientId;
+
+    /**
+     * Client financial risk.
+     */
+    private RiskTypeEnum riskTypeEnum;
+
+    /**
+     * Granted quota, zero if no credit was assigned.
+     */
+    private BigDecimal quota;
+
+    /**
+     * Failure description when the status is FAILED.
+     */
+    private String message;
+}
@@ -0,0 +1,27 @@
+package com.mycompany.api.dto;
+
+/**
+ * Enum with the stages of a credit request evaluation.
+ */
+public enum EvaluationStageEnum {
+
+    /**
+     * The client of the person is looked up, or created.
+     */
+    RESOLVE_CLIENT,
+
+    /**
+     * The exposure of the client and its credit firm risk are recovered.
+     */
+    RISK_ANALYSIS,
+
+    /**
+     * The quota is evaluated.
+     */
+    DECIDE,
+
+    /**
+     * The approved credit is stored.
+     */
+    ASSIGN_CREDIT;
+}
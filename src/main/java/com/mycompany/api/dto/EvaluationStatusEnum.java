@@ -0,0 +1,22 @@
+package com.mycompany.api.dto;
+
+/**
+ * Enum with the possible outcomes of a credit request evaluation.
+ */
+public enum EvaluationStatusEnum {
+
+    /**
+     * A credit was assigned to the client.
+     */
+    APPROVED,
+
+    /**
+     * The evaluated quota was not positive, no credit was assigned.
+     */
+    DECLINED,
+
+    /**
+     * The request could not be evaluated, e.g. invalid salary.
+     */
+    FAILED;
+}
@@ -0,0 +1,32 @@
+package com.mycompany.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * DTO with the credit exposure of a client.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExposureDTO implements Serializable {
+
+    /**
+     * Serial version uid.
+     */
+    private static final long serialVersionUID = 5911394517393474011L;
+
+    /**
+     * Maximum credit given to the client in the past and already paid.
+     */
+    private BigDecimal maxPastCredit;
+
+    /**
+     * Total amount of loans given to the client that are not paid yet.
+     */
+    private BigDecimal totalCurrentLoans;
+}
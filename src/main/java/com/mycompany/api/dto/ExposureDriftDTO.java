@@ -0,0 +1,44 @@
+package com.mycompany.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO with the differences found between the client exposure summaries and the
+ * credits they are computed from.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExposureDriftDTO implements Serializable {
+
+    /**
+     * Serial version uid.
+     */
+    private static final long serialVersionUID = -8150434612893050735L;
+
+    /**
+     * Number of clients with credits or exposure summary that were checked.
+     */
+    private long checkedClients;
+
+    /**
+     * Number of clients whose summary does not match their credits.
+     */
+    private long driftedClients;
+
+    /**
+     * Number of drifted summaries that were recomputed.
+     */
+    private long repairedClients;
+
+    /**
+     * Some of the drifted clients internal identifiers, for troubleshooting.
+     */
+    private List<Long> driftedClientIds = new ArrayList<>();
+}
@@ -0,0 +1,46 @@
+package com.mycompany.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * DTO with the outcome of a portfolio re-evaluation run.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReevaluationReportDTO implements Serializable {
+
+    /**
+     * Serial version uid.
+     */
+    private static final long serialVersionUID = 3904825163748109416L;
+
+    /**
+     * True if the run resumed the checkpoints of an interrupted run.
+     */
+    private boolean resumed;
+
+    /**
+     * Number of client id ranges processed by the run.
+     */
+    private long ranges;
+
+    /**
+     * Number of clients whose quota was evaluated by the run.
+     */
+    private long evaluatedClients;
+
+    /**
+     * Version of the credit policy the quotas were evaluated with.
+     */
+    private long policyVersion;
+
+    /**
+     * Duration of the run, in milliseconds.
+     */
+    private long elapsedMillis;
+}
@@ -0,0 +1,34 @@
+package com.mycompany.api.services;
+
+import com.mycompany.api.dto.CreditRequestDTO;
+import com.mycompany.api.dto.EvaluationResultDTO;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Asynchronous counterpart of ICreditEvalService. The evaluations run on the
+ * executor of the implementation and complete their stage with the outcome, or
+ * exceptionally with the failure, so callers can pipeline many evaluations
+ * without blocking a thread per request.
+ */
+public interface IAsyncCreditEvalService {
+
+    /**
+     * Evaluate a credit loan request, creating the client if needed and
+     * assigning the credit when the quota is positive.
+     * @param requestDTO DTO with request data.
+     * @return a stage completed with the evaluation outcome.
+     */
+    CompletionStage<EvaluationResultDTO> evaluateCreditRequestAsync(
+            CreditRequestDTO requestDTO);
+
+    /**
+     * Evaluate several credit loan requests with set based statements.
+     * @param requestDTOs DTOs with requests data.
+     * @return a stage completed with the evaluation outcome of each request, in
+     * the same order.
+     */
+    CompletionStage<List<EvaluationResultDTO>> evaluateCreditRequestsAsync(
+            List<CreditRequestDTO> requestDTOs);
+}
@@ -0,0 +1,51 @@
+package com.mycompany.api.services;
+
+import com.mycompany.api.dto.ClientDTO;
+import com.mycompany.api.dto.ClientKeyDTO;
+import com.mycompany.api.dto.IDTypeEnum;
+import com.mycompany.api.dto.PeopleDTO;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Asynchronous counterpart of IPeopleService. The operations run on the
+ * executor of the implementation and complete their stage with the result, or
+ * exceptionally with the failure, so callers can compose them without blocking
+ * a thread per request.
+ */
+public interface IAsyncPeopleService {
+
+    /**
+     * Check if the given person is a client.
+     * @param idType Type of id.
+     * @param id Id value.
+     * @return a stage completed with true if the person is a client.
+     */
+    CompletionStage<Boolean> isClientAsync(IDTypeEnum idType, String id);
+
+    /**
+     * Return a client given its id.
+     * @param idType Type of id.
+     * @param id Id value.
+     * @return a stage completed with an optional DTO with the client data.
+     */
+    CompletionStage<Optional<ClientDTO>> getClientAsync(IDTypeEnum idType, String id);
+
+    /**
+     * Return the client of a person, creating it if it does not exist yet.
+     * @param peopleDTO DTO with client data.
+     * @return a stage completed with a DTO with the client data.
+     */
+    CompletionStage<ClientDTO> getOrCreateClientAsync(PeopleDTO peopleDTO);
+
+    /**
+     * Return the existing clients among the given keys.
+     * @param keys Keys of the people to look for.
+     * @return a stage completed with a map with the found clients.
+     */
+    CompletionStage<Map<ClientKeyDTO, ClientDTO>> getClientsAsync(
+            Collection<ClientKeyDTO> keys);
+}
@@ -1,11 +1,14 @@
 package com.mycompany.api.services;
 
+import com.mycompany.api.dto.CreditRequestDTO;
 import com.mycompany.api.dto.EvaluateQuotaInDTO;
+import com.mycompany.api.dto.EvaluationResultDTO;
 import com.mycompany.exception.AccountBlockedException;
 import com.mycompany.exception.AccountDoesNotExistsException;
 import com.mycompany.exception.NotEnoughMoneyException;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 /**
  * Interface that defines all operations for a credit evaluation service.
@@ -19,7 +22,34 @@ public interface ICreditEvalService {
      * @return the quota.
      */
     BigDecimal evaluateCreditAmount(EvaluateQuotaInDTO inDTO);
-    
+
+    /**
+     * Evaluate a credit loan request, creating the client if needed and
+     * assigning the credit when the quota is positive.
+     * @param requestDTO DTO with request data.
+     * @return the evaluation outcome.
+     */
+    EvaluationResultDTO evaluateCreditRequest(CreditRequestDTO requestDTO);
+
+    /**
+     * Evaluate several credit loan requests. Requests are processed in chunks
+     * where clients, exposures and new credits are handled with set based
+     * statements, so the number of queries depends on the number of chunks and
+     * not on the number of requests.
+     * @param requestDTOs DTOs with requests data.
+     * @return the evaluation outcome of each request, in the same order.
+     */
+    List<EvaluationResultDTO> evaluateCreditRequests(List<CreditRequestDTO> requestDTOs);
+
+    /**
+     * Mark an open credit as paid and move it from the open credits to the paid
+     * ones in the exposure summary of its client.
+     * @param creditId Credit identifier.
+     * @return true if the credit was open and it is paid now, false if it does
+     * not exist or it was already paid.
+     */
+    boolean markCreditPaid(Long creditId);
+
 //    /**
 //     * Pay a credit by making a debit to account origin and a credit
 //     * to account target.
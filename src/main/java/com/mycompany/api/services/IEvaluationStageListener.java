@@ -0,0 +1,18 @@
+package com.mycompany.api.services;
+
+import com.mycompany.api.dto.EvaluationStageEnum;
+
+/**
+ * Interface to receive the duration of each stage of a credit request
+ * evaluation. It is called from the evaluating threads, so implementations
+ * should be thread safe and cheap.
+ */
+public interface IEvaluationStageListener {
+
+    /**
+     * Record a completed stage.
+     * @param stage Evaluation stage.
+     * @param nanos Duration of the stage, in nanoseconds.
+     */
+    void stageCompleted(EvaluationStageEnum stage, long nanos);
+}
@@ -1,10 +1,13 @@
 package com.mycompany.api.services;
 
 import com.mycompany.api.dto.ClientDTO;
+import com.mycompany.api.dto.ClientKeyDTO;
 import com.mycompany.api.dto.IDTypeEnum;
 import com.mycompany.api.dto.PeopleDTO;
 import com.mycompany.exception.EntityExistsException;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -27,4 +30,25 @@ public interface IPeopleService {
     void createClient(PeopleDTO peopleDTO) throws EntityExistsException;
 
     Optional<ClientDTO> getClient(IDTypeEnum idType, String id);
+
+    /**
+     * Return the client of a person, creating it if it does not exist yet.
+     * @param peopleDTO DTO with client data.
+     * @return a DTO with the client data.
+     */
+    ClientDTO getOrCreateClient(PeopleDTO peopleDTO);
+
+    /**
+     * Return the existing clients among the given keys.
+     * @param keys Keys of the people to look for.
+     * @return a map with the found clients, people that are not clients are absent.
+     */
+    Map<ClientKeyDTO, ClientDTO> getClients(Collection<ClientKeyDTO> keys);
+
+    /**
+     * Create several clients in a single batch. The caller is responsible to
+     * only send people that are not clients yet.
+     * @param peopleDTOs DTOs with new clients data.
+     */
+    void createClients(Collection<PeopleDTO> peopleDTOs);
 }
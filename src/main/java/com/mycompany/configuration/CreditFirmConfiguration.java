@@ -0,0 +1,124 @@
+package com.mycompany.configuration;
+
+import com.mycompany.api.client.ICreditFirmABC;
+import com.mycompany.api.dto.ClientKeyDTO;
+import com.mycompany.api.dto.RiskTypeEnum;
+import com.mycompany.impl.cache.ExpiringLruCache;
+import com.mycompany.impl.client.CachingCreditFirmABC;
+import com.mycompany.impl.client.CreditFirmABCImpl;
+import com.mycompany.impl.client.LocalCreditFirmABC;
+import com.mycompany.impl.client.MicroBatchingCreditFirmABC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Client of the Credit Analysis Firm ABC.
+ */
+@Configuration
+public class CreditFirmConfiguration {
+
+    /**
+     * Prefix of the time to live properties, followed by the risk type name.
+     */
+    private static final String TTL_PROPERTY = "credit.firm.cache.ttl.millis.";
+
+    /**
+     * Default time to live of a risk rating, in milliseconds.
+     */
+    private static final long DEFAULT_TTL_MILLIS = 600000L;
+
+    /**
+     * Application properties.
+     */
+    @Autowired
+    private Environment environment;
+
+    /**
+     * Micro batcher of the credit firm calls, present when
+     * credit.firm.batch.enabled is true.
+     */
+    @Autowired(required = false)
+    private MicroBatchingCreditFirmABC microBatchingCreditFirmABC;
+
+    /**
+     * Credit firm client with a risk rating cache. The time to live of each
+     * risk type is read from credit.firm.cache.ttl.millis.[risk type]. Cache
+     * misses are grouped in bulk requests by the micro batcher when it is
+     * enabled.
+     * @return the credit firm client.
+     */
+    @Bean
+    @Primary
+    public ICreditFirmABC creditFirmABC() {
+        ICreditFirmABC creditFirmABC = microBatchingCreditFirmABC != null
+                ? microBatchingCreditFirmABC : firmClient();
+        Map<RiskTypeEnum, Long> ttlMillis = new EnumMap<>(RiskTypeEnum.class);
+        for (RiskTypeEnum risk : RiskTypeEnum.values()) {
+            ttlMillis.put(risk, environment.getProperty(TTL_PROPERTY + risk.name(),
+                    Long.class, DEFAULT_TTL_MILLIS));
+        }
+        long negativeTtlMillis = environment.getProperty(TTL_PROPERTY + "NULL",
+                Long.class, DEFAULT_TTL_MILLIS);
+        int maximumSize = environment.getProperty("credit.firm.cache.maximum.size",
+                Integer.class, 100000);
+        return new CachingCreditFirmABC(creditFirmABC,
+                new ExpiringLruCache<ClientKeyDTO, RiskTypeEnum>(maximumSize), ttlMillis,
+                negativeTtlMillis);
+    }
+
+    /**
+     * Micro batcher that groups single credit firm calls in bulk requests, when
+     * credit.firm.batch.enabled is true. It is stopped with the context, its
+     * queued requests fail.
+     * @return the micro batcher.
+     */
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty("credit.firm.batch.enabled")
+    public MicroBatchingCreditFirmABC microBatchingCreditFirmABC() {
+        return new MicroBatchingCreditFirmABC(firmClient(),
+                environment.getProperty("credit.firm.batch.max.size", Integer.class, 100),
+                environment.getProperty("credit.firm.batch.max.delay.millis",
+                        Long.class, 5L),
+                creditFirmSenderExecutor());
+    }
+
+    /**
+     * Executor that sends the bulk requests of the micro batcher, with
+     * credit.firm.batch.senders threads.
+     * @return the executor.
+     */
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty("credit.firm.batch.enabled")
+    public ExecutorService creditFirmSenderExecutor() {
+        CustomizableThreadFactory threadFactory =
+                new CustomizableThreadFactory("credit-firm-sender-");
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(environment.getProperty(
+                "credit.firm.batch.senders", Integer.class, 4), threadFactory);
+    }
+
+    /**
+     * @return the client of the credit firm, or a local stand-in when
+     * credit.firm.local.enabled is true.
+     */
+    private ICreditFirmABC firmClient() {
+        if (environment.getProperty("credit.firm.local.enabled", Boolean.class, false)) {
+            return new LocalCreditFirmABC(
+                    environment.getProperty("credit.firm.local.call.latency.micros",
+                            Long.class, 20000L),
+                    environment.getProperty("credit.firm.local.person.latency.micros",
+                            Long.class, 100L));
+        }
+        return new CreditFirmABCImpl();
+    }
+}
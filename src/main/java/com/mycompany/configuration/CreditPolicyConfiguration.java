@@ -0,0 +1,63 @@
+package com.mycompany.configuration;
+
+import com.mycompany.impl.quota.CreditPolicyLoader;
+import com.mycompany.impl.quota.QuotaEngine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+
+/**
+ * Credit policy of the quota evaluation, reloaded when its file changes.
+ */
+@Configuration
+public class CreditPolicyConfiguration {
+
+    /**
+     * Location of the credit policy properties file.
+     */
+    @Value("${credit.policy.location:classpath:config/credit-policy.properties}")
+    private String creditPolicyLocation;
+
+    /**
+     * Resource loader.
+     */
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    /**
+     * Quota engine shared by the services.
+     * @return the quota engine.
+     */
+    @Bean
+    public QuotaEngine quotaEngine() {
+        return new QuotaEngine();
+    }
+
+    /**
+     * Loader of the credit policy, the policy is loaded at startup and a startup
+     * with an invalid policy fails.
+     * @return the loader.
+     * @throws IOException if the policy file cannot be read.
+     */
+    @Bean
+    public CreditPolicyLoader creditPolicyLoader() throws IOException {
+        CreditPolicyLoader loader = new CreditPolicyLoader(
+                resourceLoader.getResource(creditPolicyLocation), quotaEngine());
+        loader.reload();
+        return loader;
+    }
+
+    /**
+     * Reload the credit policy if its file changed.
+     * @throws IOException if the policy file cannot be read.
+     */
+    @Scheduled(fixedDelayString = "${credit.policy.reload.interval.millis:30000}")
+    public void reloadCreditPolicy() throws IOException {
+        creditPolicyLoader().reloadIfModified();
+    }
+}
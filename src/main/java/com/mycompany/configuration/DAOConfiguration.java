@@ -1,13 +1,25 @@
 package com.mycompany.configuration;
 
+import com.mycompany.impl.datasource.MonitoredDataSource;
+import com.mycompany.impl.datasource.ReadWriteRoutingDataSource;
+import com.mycompany.impl.datasource.ReplicaSelectionEnum;
+import com.mycompany.impl.datasource.ShardRoutingDataSource;
+import com.mycompany.impl.metrics.PoolMetrics;
 import org.apache.commons.dbcp2.BasicDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
 import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
 
-import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by jcortes on 12/10/15.
@@ -16,23 +28,269 @@ import javax.sql.DataSource;
 @ComponentScan({"com.mycompany"})
 public class DAOConfiguration {
 
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(DAOConfiguration.class);
+
     @Value("${database.name}")
     private String databaseName;
 
     /**
-     * Gets data source.
+     * JDBC URL, it defaults to the database.name schema of a local MySQL server.
+     */
+    @Value("${database.url:}")
+    private String url;
+
+    /**
+     * Database user.
+     */
+    @Value("${database.username:test}")
+    private String username;
+
+    /**
+     * Database password.
+     */
+    @Value("${database.password:test}")
+    private String password;
+
+    /**
+     * Driver properties. rewriteBatchedStatements lets MySQL run a batch of
+     * inserts as multi-row statements instead of one round trip per row.
+     */
+    @Value("${database.connection.properties:rewriteBatchedStatements=true}")
+    private String connectionProperties;
+
+    /**
+     * Connections opened when the pool starts.
+     */
+    @Value("${database.pool.initial.size:8}")
+    private int initialSize;
+
+    /**
+     * Maximum number of connections, idle or in use.
+     */
+    @Value("${database.pool.max.total:32}")
+    private int maxTotal;
+
+    /**
+     * Maximum number of idle connections.
+     */
+    @Value("${database.pool.max.idle:32}")
+    private int maxIdle;
+
+    /**
+     * Idle connections kept open by the evictor.
+     */
+    @Value("${database.pool.min.idle:8}")
+    private int minIdle;
+
+    /**
+     * Time a thread waits for a connection before failing, -1 waits forever.
+     */
+    @Value("${database.pool.max.wait.millis:2000}")
+    private long maxWaitMillis;
+
+    /**
+     * Maximum lifetime of a connection, it should be shorter than the server
+     * wait_timeout.
+     */
+    @Value("${database.pool.max.lifetime.millis:1800000}")
+    private long maxLifetimeMillis;
+
+    /**
+     * Period of the evictor, which closes expired and abandoned connections and
+     * validates the idle ones.
+     */
+    @Value("${database.pool.eviction.interval.millis:30000}")
+    private long evictionIntervalMillis;
+
+    /**
+     * Query that validates a connection, when it is empty Connection.isValid is
+     * used, which MySQL answers with a protocol ping instead of a query.
+     */
+    @Value("${database.pool.validation.query:}")
+    private String validationQuery;
+
+    /**
+     * Time given to the validation query.
+     */
+    @Value("${database.pool.validation.timeout.seconds:1}")
+    private int validationTimeoutSeconds;
+
+    /**
+     * Prepared statements cached by each connection, 0 disables the cache.
+     */
+    @Value("${database.pool.prepared.statements:128}")
+    private int preparedStatements;
+
+    /**
+     * Time after which a borrowed connection is considered leaked, it is closed
+     * and the stack trace of its borrower is logged. It should be longer than
+     * the longest transaction.
+     */
+    @Value("${database.pool.leak.timeout.seconds:600}")
+    private int leakTimeoutSeconds;
+
+    /**
+     * Comma separated JDBC URLs of the replicas, each one gets a pool like the
+     * primary one.
+     */
+    @Value("${database.replica.urls:}")
+    private String replicaUrls;
+
+    /**
+     * How a replica is chosen for a read.
+     */
+    @Value("${database.replica.selection:LEAST_LOADED}")
+    private ReplicaSelectionEnum replicaSelection;
+
+    /**
+     * Time the reads of a client go to the primary after a write of the client,
+     * it should be longer than the replication lag.
+     */
+    @Value("${database.replica.sticky.millis:2000}")
+    private long replicaStickyMillis;
+
+    /**
+     * Comma separated JDBC URLs of the shards after the first one, which is the
+     * database.url database. Their order places the clients and should not
+     * change; new shards are added at the end and filled by ShardRebalancer.
+     */
+    @Value("${database.shard.urls:}")
+    private String shardUrls;
+
+    /**
+     * Gets data source, the embedded profile replaces it with an in-memory database.
      * @return the data source
      */
-    @Bean
-    public DataSource getDataSource() {
-        BasicDataSource dataSource = new BasicDataSource();
+    @Bean(destroyMethod = "close")
+    @Profile("!embedded")
+    public MonitoredDataSource getDataSource() {
+        return createDataSource(url.isEmpty() ? "jdbc:mysql://localhost:3306/"
+                + databaseName : url);
+    }
+
+    /**
+     * Gets the data source of the services when database.replica.urls is set, it
+     * sends client and exposure lookups to the replicas.
+     * @param primary the primary data source.
+     * @return the routing data source.
+     */
+    @Bean(destroyMethod = "close")
+    @Primary
+    @Profile("!embedded")
+    @ConditionalOnProperty("database.replica.urls")
+    public ReadWriteRoutingDataSource getRoutingDataSource(MonitoredDataSource primary) {
+        List<MonitoredDataSource> replicas = new ArrayList<>();
+        for (String replicaUrl : replicaUrls.split(",")) {
+            if (!replicaUrl.trim().isEmpty()) {
+                replicas.add(createDataSource(replicaUrl.trim()));
+            }
+        }
+        ReadWriteRoutingDataSource dataSource =
+                new ReadWriteRoutingDataSource(primary, replicas);
+        dataSource.setSelection(replicaSelection);
+        dataSource.setStickyMillis(replicaStickyMillis);
+        return dataSource;
+    }
+
+    /**
+     * Gets the data source of the services when database.shard.urls is set, it
+     * sends each client to its shard. Shards are not combined with replicas.
+     * @param first the data source of the first shard.
+     * @return the shard routing data source.
+     */
+    @Bean(destroyMethod = "close")
+    @Primary
+    @Profile("!embedded")
+    @ConditionalOnProperty("database.shard.urls")
+    public ShardRoutingDataSource getShardRoutingDataSource(MonitoredDataSource first) {
+        if (!replicaUrls.trim().isEmpty()) {
+            throw new IllegalStateException(
+                    "database.shard.urls and database.replica.urls cannot be both set.");
+        }
+        List<MonitoredDataSource> shards = new ArrayList<>();
+        shards.add(first);
+        for (String shardUrl : shardUrls.split(",")) {
+            if (!shardUrl.trim().isEmpty()) {
+                shards.add(createDataSource(shardUrl.trim()));
+            }
+        }
+        ShardRoutingDataSource dataSource = new ShardRoutingDataSource(shards);
+        dataSource.initializeIds();
+        return dataSource;
+    }
+
+    /**
+     * @param jdbcUrl JDBC URL of a MySQL database.
+     * @return a started pool to the database.
+     */
+    private MonitoredDataSource createDataSource(String jdbcUrl) {
+        MonitoredDataSource dataSource = new MonitoredDataSource();
         dataSource.setDriverClassName("com.mysql.jdbc.Driver");
-        dataSource.setUrl("jdbc:mysql://localhost:3306/" + databaseName);
-        dataSource.setUsername("test");
-        dataSource.setPassword("test");
+        dataSource.setUrl(jdbcUrl);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setConnectionProperties(connectionProperties);
+        configurePool(dataSource);
+        prewarm(dataSource);
         return dataSource;
     }
 
+    /**
+     * Gauges of the primary connection pool.
+     * @param dataSource the data source.
+     * @return the pool metrics.
+     */
+    @Bean
+    public PoolMetrics poolMetrics(MonitoredDataSource dataSource) {
+        return new PoolMetrics(dataSource);
+    }
+
+    /**
+     * Apply the sizing, timeouts, validation, statement cache and leak
+     * detection settings to a pool.
+     * @param dataSource the pool.
+     */
+    public void configurePool(BasicDataSource dataSource) {
+        dataSource.setInitialSize(initialSize);
+        dataSource.setMaxTotal(maxTotal);
+        dataSource.setMaxIdle(maxIdle);
+        dataSource.setMinIdle(minIdle);
+        dataSource.setMaxWaitMillis(maxWaitMillis);
+        dataSource.setMaxConnLifetimeMillis(maxLifetimeMillis);
+        dataSource.setTimeBetweenEvictionRunsMillis(evictionIntervalMillis);
+        dataSource.setValidationQuery(validationQuery.isEmpty() ? null : validationQuery);
+        dataSource.setValidationQueryTimeout(validationTimeoutSeconds);
+        dataSource.setTestOnBorrow(true);
+        dataSource.setTestWhileIdle(true);
+        if (preparedStatements > 0) {
+            dataSource.setPoolPreparedStatements(true);
+            dataSource.setMaxOpenPreparedStatements(preparedStatements);
+        }
+        dataSource.setRemoveAbandonedOnBorrow(true);
+        dataSource.setRemoveAbandonedOnMaintenance(true);
+        dataSource.setRemoveAbandonedTimeout(leakTimeoutSeconds);
+        dataSource.setLogAbandoned(true);
+    }
+
+    /**
+     * Open the initial connections, the application still starts when the
+     * database is down and the pool retries on the first request.
+     * @param dataSource the pool.
+     */
+    public static void prewarm(MonitoredDataSource dataSource) {
+        long start = System.currentTimeMillis();
+        try {
+            dataSource.prewarm();
+            LOGGER.info("Connection pool started with {} connections in {} ms",
+                    dataSource.getNumIdle(), System.currentTimeMillis() - start);
+        } catch (SQLException e) {
+            LOGGER.warn("Connection pool could not be prewarmed: {}", e.getMessage());
+        }
+    }
+
     @Bean
     public static PropertySourcesPlaceholderConfigurer propertyPlaceholderConfigurer() {
         return new PropertySourcesPlaceholderConfigurer();
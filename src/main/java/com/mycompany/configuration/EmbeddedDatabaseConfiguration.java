@@ -0,0 +1,130 @@
+package com.mycompany.configuration;
+
+import com.mycompany.impl.datasource.MonitoredDataSource;
+import com.mycompany.impl.services.SyntheticPopulationSeeder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+/**
+ * In-memory H2 database in MySQL mode, created with DBScript.sql and seeded with
+ * a synthetic population, for load and soak tests on machines without a
+ * database server. Enable it with spring.profiles.active=embedded.
+ */
+@Configuration
+@Profile("embedded")
+public class EmbeddedDatabaseConfiguration {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(EmbeddedDatabaseConfiguration.class);
+
+    /**
+     * Pool settings.
+     */
+    @Autowired
+    private DAOConfiguration daoConfiguration;
+
+    @Value("${database.name}")
+    private String databaseName;
+
+    /**
+     * Number of clients of the synthetic population.
+     */
+    @Value("${embedded.seed.clients:100000}")
+    private long seedClients;
+
+    /**
+     * Maximum number of credits of a client.
+     */
+    @Value("${embedded.seed.max.credits:40}")
+    private int seedMaxCredits;
+
+    /**
+     * Skew of the credit history lengths, 1 is uniform.
+     */
+    @Value("${embedded.seed.skew:3.0}")
+    private double seedSkew;
+
+    /**
+     * Number of clients inserted by each transaction.
+     */
+    @Value("${embedded.seed.batch.size:1000}")
+    private int seedBatchSize;
+
+    /**
+     * Seed of the synthetic population.
+     */
+    @Value("${embedded.seed.random.seed:42}")
+    private long seedRandomSeed;
+
+    /**
+     * Gets the embedded data source, with its schema and population, pooled
+     * like the MySQL one.
+     * @return the data source
+     */
+    @Bean(destroyMethod = "close")
+    public MonitoredDataSource getDataSource() {
+        MonitoredDataSource dataSource = newDataSource(databaseName);
+        daoConfiguration.configurePool(dataSource);
+        createSchema(dataSource);
+        SyntheticPopulationSeeder seeder = new SyntheticPopulationSeeder();
+        seeder.setDataSource(dataSource);
+        seeder.setClients(seedClients);
+        seeder.setMaxCredits(seedMaxCredits);
+        seeder.setSkew(seedSkew);
+        seeder.setBatchSize(seedBatchSize);
+        seeder.setRandomSeed(seedRandomSeed);
+        long start = System.currentTimeMillis();
+        long credits = seeder.seed();
+        LOGGER.info("Embedded database seeded: {} clients and {} credits in {} ms",
+                seedClients, credits, System.currentTimeMillis() - start);
+        DAOConfiguration.prewarm(dataSource);
+        return dataSource;
+    }
+
+    /**
+     * @param name Database name.
+     * @return Pooled data source to an in-memory H2 database in MySQL mode,
+     * created with DBScript.sql.
+     */
+    public static MonitoredDataSource createDataSource(String name) {
+        MonitoredDataSource dataSource = newDataSource(name);
+        createSchema(dataSource);
+        return dataSource;
+    }
+
+    /**
+     * @param name Database name.
+     * @return Pool to an in-memory H2 database in MySQL mode, not started yet so
+     * it can still be configured.
+     */
+    private static MonitoredDataSource newDataSource(String name) {
+        MonitoredDataSource dataSource = new MonitoredDataSource();
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setUrl("jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        return dataSource;
+    }
+
+    /**
+     * Apply DBScript.sql, it starts the pool.
+     * @param dataSource Pool to the database.
+     */
+    private static void createSchema(MonitoredDataSource dataSource) {
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                new ClassPathResource("scripts/DBScript.sql"));
+        populator.setIgnoreFailedDrops(true);
+        DatabasePopulatorUtils.execute(populator, dataSource);
+    }
+}
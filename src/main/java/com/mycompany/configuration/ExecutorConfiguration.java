@@ -0,0 +1,137 @@
+package com.mycompany.configuration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread pools used by the services.
+ */
+@Configuration
+public class ExecutorConfiguration {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(ExecutorConfiguration.class);
+
+    /**
+     * Number of threads to run risk analysis sub-queries.
+     */
+    @Value("${risk.analysis.pool.size:16}")
+    private int riskAnalysisPoolSize;
+
+    /**
+     * Number of risk analysis sub-queries that can wait for a thread.
+     */
+    @Value("${risk.analysis.queue.capacity:256}")
+    private int riskAnalysisQueueCapacity;
+
+    /**
+     * Number of threads to run the credit evaluations of the HTTP API.
+     */
+    @Value("${credit.evaluation.pool.size:32}")
+    private int creditEvaluationPoolSize;
+
+    /**
+     * Maximum number of credit evaluations of the HTTP API in flight, running or
+     * waiting for a thread.
+     */
+    @Value("${credit.evaluation.max.in.flight:256}")
+    private int creditEvaluationMaxInFlight;
+
+    /**
+     * Whether the asynchronous service calls run on virtual threads when the JDK
+     * supports them.
+     */
+    @Value("${service.async.virtual.threads:true}")
+    private boolean serviceAsyncVirtualThreads;
+
+    /**
+     * Number of threads to run the asynchronous service calls, when they do not
+     * run on virtual threads.
+     */
+    @Value("${service.async.pool.size:64}")
+    private int serviceAsyncPoolSize;
+
+    /**
+     * Number of asynchronous service calls that can wait for a thread.
+     */
+    @Value("${service.async.queue.capacity:1024}")
+    private int serviceAsyncQueueCapacity;
+
+    /**
+     * Executor that runs the exposure lookup and the credit firm call of a risk
+     * analysis concurrently. It is bounded, when the queue is full the sub-query
+     * is rejected and the risk analysis fails at once, as it does when its
+     * deadline expires.
+     * @return the executor.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService riskAnalysisExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(riskAnalysisPoolSize,
+                riskAnalysisPoolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(riskAnalysisQueueCapacity),
+                new CustomizableThreadFactory("risk-analysis-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Executor that runs the credit evaluations of the HTTP API, so the servlet
+     * threads are released while the evaluations wait for the database and the
+     * credit firm. Its queue holds the evaluations in flight that wait for a
+     * thread.
+     * @return the executor.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService creditEvaluationExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(creditEvaluationPoolSize,
+                creditEvaluationPoolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(creditEvaluationMaxInFlight),
+                new CustomizableThreadFactory("credit-evaluation-"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Executor that runs the stages of the asynchronous service calls. It starts
+     * a virtual thread per stage on a JDK that has them, otherwise it is a
+     * bounded pool that rejects a stage when the queue is full, so the service
+     * call completes exceptionally instead of blocking the caller. In both cases
+     * the connection pool still bounds the concurrent database work.
+     * @return the executor.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService serviceAsyncExecutor() {
+        if (serviceAsyncVirtualThreads) {
+            try {
+                ExecutorService executor = (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                LOGGER.info("Asynchronous service calls run on virtual threads");
+                return executor;
+            } catch (ReflectiveOperationException e) {
+                LOGGER.info("Virtual threads are not supported, asynchronous service "
+                        + "calls run on a pool of {} threads", serviceAsyncPoolSize);
+            }
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(serviceAsyncPoolSize,
+                serviceAsyncPoolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(serviceAsyncQueueCapacity),
+                new CustomizableThreadFactory("service-async-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
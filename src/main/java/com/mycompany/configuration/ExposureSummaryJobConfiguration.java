@@ -0,0 +1,72 @@
+package com.mycompany.configuration;
+
+import com.mycompany.api.dto.ExposureDriftDTO;
+import com.mycompany.impl.services.ExposureSummaryJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Nightly repair of the client exposure summaries that drifted from the credits.
+ */
+@Configuration
+public class ExposureSummaryJobConfiguration {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(ExposureSummaryJobConfiguration.class);
+
+    /**
+     * Whether the scheduled rebuild runs.
+     */
+    @Value("${exposure.summary.rebuild.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Number of ranges processed at the same time.
+     */
+    @Value("${exposure.summary.rebuild.parallelism:2}")
+    private int parallelism;
+
+    /**
+     * Number of client ids in a range.
+     */
+    @Value("${exposure.summary.rebuild.range.size:10000}")
+    private long rangeSize;
+
+    /**
+     * Exposure summary job, its data source is autowired.
+     * @return the job.
+     */
+    @Bean
+    public ExposureSummaryJob exposureSummaryJob() {
+        ExposureSummaryJob job = new ExposureSummaryJob();
+        job.setParallelism(parallelism);
+        job.setRangeSize(rangeSize);
+        return job;
+    }
+
+    /**
+     * Recompute the exposure summaries and repair the ones that drifted.
+     */
+    @Scheduled(cron = "${exposure.summary.rebuild.cron:0 0 4 * * *}")
+    public void rebuildExposureSummaries() {
+        if (!enabled) {
+            return;
+        }
+        ExposureDriftDTO report = exposureSummaryJob().rebuild();
+        if (report.getDriftedClients() > 0) {
+            LOGGER.warn("Exposure summaries rebuilt: {} clients checked, {} drifted, "
+                    + "{} repaired", report.getCheckedClients(),
+                    report.getDriftedClients(), report.getRepairedClients());
+        } else {
+            LOGGER.info("Exposure summaries checked: {} clients, no drift",
+                    report.getCheckedClients());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.mycompany.configuration;
+
+import com.mycompany.api.dto.ReevaluationReportDTO;
+import com.mycompany.impl.services.PortfolioReevaluationJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Nightly re-evaluation of the credit quota of every client.
+ */
+@Configuration
+public class PortfolioJobConfiguration {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(PortfolioJobConfiguration.class);
+
+    /**
+     * Whether the scheduled re-evaluation runs.
+     */
+    @Value("${portfolio.reevaluation.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Number of ranges processed at the same time.
+     */
+    @Value("${portfolio.reevaluation.parallelism:2}")
+    private int parallelism;
+
+    /**
+     * Number of client ids in a range.
+     */
+    @Value("${portfolio.reevaluation.range.size:100000}")
+    private long rangeSize;
+
+    /**
+     * Number of quotas written by each batch.
+     */
+    @Value("${portfolio.reevaluation.batch.size:1000}")
+    private int batchSize;
+
+    /**
+     * Fetch size of the cursors, Integer.MIN_VALUE streams rows with MySQL.
+     */
+    @Value("${portfolio.reevaluation.fetch.size:-2147483648}")
+    private int fetchSize;
+
+    /**
+     * Portfolio re-evaluation job, its data source, credit firm client and quota
+     * engine are autowired.
+     * @return the job.
+     */
+    @Bean
+    public PortfolioReevaluationJob portfolioReevaluationJob() {
+        PortfolioReevaluationJob job = new PortfolioReevaluationJob();
+        job.setParallelism(parallelism);
+        job.setRangeSize(rangeSize);
+        job.setBatchSize(batchSize);
+        job.setFetchSize(fetchSize);
+        return job;
+    }
+
+    /**
+     * Re-evaluate the portfolio, or resume the run that did not finish.
+     */
+    @Scheduled(cron = "${portfolio.reevaluation.cron:0 0 2 * * *}")
+    public void reevaluatePortfolio() {
+        if (!enabled) {
+            return;
+        }
+        ReevaluationReportDTO report = portfolioReevaluationJob().run();
+        LOGGER.info("Portfolio re-evaluated: {} clients in {} ranges in {} ms, "
+                + "resumed={}", report.getEvaluatedClients(), report.getRanges(),
+                report.getElapsedMillis(), report.isResumed());
+    }
+}
@@ -0,0 +1,43 @@
+package com.mycompany.configuration;
+
+import com.mycompany.impl.metrics.ServiceMetrics;
+import com.mycompany.impl.services.CreditEvalServiceImpl;
+import com.mycompany.impl.services.PeopleServiceImpl;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * People and credit evaluation services, with the metrics of their operations.
+ */
+@Configuration
+public class ServiceConfiguration {
+
+    /**
+     * Timers and counters of the services, published by the actuator metrics
+     * endpoint and listening to the evaluation stages.
+     * @return the service metrics.
+     */
+    @Bean
+    public ServiceMetrics serviceMetrics() {
+        return new ServiceMetrics();
+    }
+
+    /**
+     * People service, its data source and metrics are autowired.
+     * @return the people service.
+     */
+    @Bean
+    public PeopleServiceImpl peopleService() {
+        return new PeopleServiceImpl();
+    }
+
+    /**
+     * Credit evaluation service, its collaborators and metrics are autowired.
+     * Its group commit writers are stopped with the context.
+     * @return the credit evaluation service.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public CreditEvalServiceImpl creditEvalService() {
+        return new CreditEvalServiceImpl();
+    }
+}
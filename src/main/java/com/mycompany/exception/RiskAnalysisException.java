@@ -0,0 +1,22 @@
+package com.mycompany.exception;
+
+/**
+ * Thrown when a risk analysis could not be completed, e.g. a dependency did
+ * not answer before the deadline.
+ */
+public class RiskAnalysisException extends RuntimeException {
+
+    /**
+     * Serial version uid.
+     */
+    private static final long serialVersionUID = -3304954188371517297L;
+
+    /**
+     * Build the exception.
+     * @param message Exception message.
+     * @param cause Cause, e.g. the expired wait or the rejected sub-query.
+     */
+    public RiskAnalysisException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,340 @@
+package com.mycompany.impl.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * In-process cache bounded in size and with a time to live per entry. Keys are
+ * spread over segments, each one is a LRU map guarded by its own lock, so
+ * lookups of unrelated keys seldom contend. Null values can be cached, which
+ * allows negative caching.
+ * @param <K> Type of key.
+ * @param <V> Type of value.
+ */
+public class ExpiringLruCache<K, V> {
+
+    /**
+     * Default number of segments.
+     */
+    private static final int DEFAULT_SEGMENTS = 16;
+
+    /**
+     * Segments of the cache.
+     */
+    private final List<Segment<K, V>> segments;
+
+    /**
+     * Source of time in nanoseconds.
+     */
+    private final LongSupplier ticker;
+
+    /**
+     * Number of lookups answered by the cache.
+     */
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Number of lookups not answered by the cache.
+     */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Number of entries removed to respect the maximum size.
+     */
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Build a cache.
+     * @param maximumSize Maximum number of entries.
+     */
+    public ExpiringLruCache(final int maximumSize) {
+        this(maximumSize, DEFAULT_SEGMENTS, System::nanoTime);
+    }
+
+    /**
+     * Build a cache.
+     * @param maximumSize Maximum number of entries.
+     * @param segmentCount Number of segments, each one holds up to
+     * maximumSize / segmentCount entries.
+     * @param ticker Source of time in nanoseconds.
+     */
+    public ExpiringLruCache(final int maximumSize, final int segmentCount,
+            final LongSupplier ticker) {
+        if (maximumSize <= 0 || segmentCount <= 0) {
+            throw new IllegalArgumentException("Cache size and segments should be positive.");
+        }
+        int count = Math.min(segmentCount, maximumSize);
+        this.segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int capacity = maximumSize / count + (i < maximumSize % count ? 1 : 0);
+            segments.add(new Segment<>(capacity, evictions));
+        }
+        this.ticker = ticker;
+    }
+
+    /**
+     * Return the cached value of a key, loading it when it is absent or expired.
+     * The loader runs outside of any lock.
+     * @param key Key.
+     * @param loader Function to load the value of a key, it may return null.
+     * @param ttlMillis Function that gives the time to live of a loaded value, a
+     * value with no positive time to live is not cached.
+     * @return the value, it may be null.
+     */
+    public V get(final K key, final Function<? super K, ? extends V> loader,
+            final ToLongFunction<? super V> ttlMillis) {
+        Segment<K, V> segment = segmentFor(key);
+        long now = ticker.getAsLong();
+        Entry<V> entry = segment.get(key, now);
+        if (entry != null) {
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        V value = loader.apply(key);
+        put(key, value, ttlMillis.applyAsLong(value));
+        return value;
+    }
+
+    /**
+     * Return the cached values of several keys, loading the absent or expired
+     * ones with a single call.
+     * @param keys Keys.
+     * @param loader Function to load the values of several keys, a key missing in
+     * its result gets a null value.
+     * @param ttlMillis Function that gives the time to live of a loaded value, a
+     * value with no positive time to live is not cached.
+     * @return a map with the value of each key, it may be null.
+     */
+    public Map<K, V> getAll(final Collection<K> keys,
+            final Function<? super List<K>, ? extends Map<K, V>> loader,
+            final ToLongFunction<? super V> ttlMillis) {
+        Map<K, V> values = new HashMap<>();
+        List<K> missing = new ArrayList<>();
+        long now = ticker.getAsLong();
+        for (K key : keys) {
+            Entry<V> entry = segmentFor(key).get(key, now);
+            if (entry != null) {
+                hits.increment();
+                values.put(key, entry.value);
+            } else if (!values.containsKey(key)) {
+                misses.increment();
+                values.put(key, null);
+                missing.add(key);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<K, V> loaded = loader.apply(missing);
+            for (K key : missing) {
+                V value = loaded.get(key);
+                values.put(key, value);
+                put(key, value, ttlMillis.applyAsLong(value));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Return the cached value of a key.
+     * @param key Key.
+     * @return the value, or null if it is absent, expired or a cached null.
+     */
+    public V getIfPresent(final K key) {
+        Entry<V> entry = segmentFor(key).get(key, ticker.getAsLong());
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * Cache a value.
+     * @param key Key.
+     * @param value Value, it may be null.
+     * @param ttlMillis Time to live, the value is not cached if it is not positive.
+     */
+    public void put(final K key, final V value, final long ttlMillis) {
+        if (ttlMillis <= 0) {
+            return;
+        }
+        long expiresAt = ticker.getAsLong() + TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        segmentFor(key).put(key, new Entry<>(value, expiresAt));
+    }
+
+    /**
+     * Remove the value of a key.
+     * @param key Key.
+     */
+    public void invalidate(final K key) {
+        segmentFor(key).remove(key);
+    }
+
+    /**
+     * Remove all values.
+     */
+    public void invalidateAll() {
+        for (Segment<K, V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * @return the number of entries, including expired ones not removed yet.
+     */
+    public long size() {
+        long size = 0;
+        for (Segment<K, V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of lookups answered by the cache.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups not answered by the cache.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of entries removed to respect the maximum size.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @param key Key.
+     * @return the segment of a key.
+     */
+    private Segment<K, V> segmentFor(final K key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return segments.get((hash & Integer.MAX_VALUE) % segments.size());
+    }
+
+    /**
+     * Cached value and its expiration time.
+     * @param <V> Type of value.
+     */
+    private static final class Entry<V> {
+
+        /**
+         * Cached value.
+         */
+        private final V value;
+
+        /**
+         * Expiration time in nanoseconds.
+         */
+        private final long expiresAt;
+
+        /**
+         * Build an entry.
+         * @param value Cached value.
+         * @param expiresAt Expiration time in nanoseconds.
+         */
+        private Entry(final V value, final long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * LRU map guarded by a lock.
+     * @param <K> Type of key.
+     * @param <V> Type of value.
+     */
+    private static final class Segment<K, V> {
+
+        /**
+         * Entries in access order.
+         */
+        private final LinkedHashMap<K, Entry<V>> entries;
+
+        /**
+         * Build a segment.
+         * @param capacity Maximum number of entries.
+         * @param evictions Eviction counter of the cache.
+         */
+        private Segment(final int capacity, final LongAdder evictions) {
+            this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<K, Entry<V>> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        /**
+         * @param key Key.
+         * @param now Current time in nanoseconds.
+         * @return the entry of a key, or null if it is absent or expired.
+         */
+        private synchronized Entry<V> get(final K key, final long now) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt - now <= 0) {
+                entries.remove(key);
+                return null;
+            }
+            return entry;
+        }
+
+        /**
+         * @param key Key.
+         * @param entry Entry.
+         */
+        private synchronized void put(final K key, final Entry<V> entry) {
+            entries.put(key, entry);
+        }
+
+        /**
+         * @param key Key.
+         */
+        private synchronized void remove(final K key) {
+            entries.remove(key);
+        }
+
+        /**
+         * Remove all entries.
+         */
+        private synchronized void clear() {
+            entries.clear();
+        }
+
+        /**
+         * @return the number of entries.
+         */
+        private synchronized int size() {
+            return entries.size();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.mycompany.impl.client;
+
+import com.mycompany.api.client.ICreditFirmABC;
+import com.mycompany.api.dto.ClientKeyDTO;
+import com.mycompany.api.dto.IDTypeEnum;
+import com.mycompany.api.dto.RiskTypeEnum;
+import com.mycompany.impl.cache.ExpiringLruCache;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Decorator that caches the risk ratings returned by the Credit Analysis Firm
+ * ABC. Each risk type has its own time to live, and clients without rating
+ * (null result) are cached with the negative time to live.
+ */
+public class CachingCreditFirmABC implements ICreditFirmABC {
+
+    /**
+     * Decorated client.
+     */
+    private final ICreditFirmABC delegate;
+
+    /**
+     * Cached risk ratings.
+     */
+    private final ExpiringLruCache<ClientKeyDTO, RiskTypeEnum> cache;
+
+    /**
+     * Time to live of each risk type, in milliseconds.
+     */
+    private final Map<RiskTypeEnum, Long> ttlMillis;
+
+    /**
+     * Time to live of a null rating, in milliseconds.
+     */
+    private final long negativeTtlMillis;
+
+    /**
+     * Build the decorator.
+     * @param delegate Decorated client.
+     * @param cache Cache of risk ratings.
+     * @param ttlMillis Time to live of each risk type, a missing risk type is
+     * not cached.
+     * @param negativeTtlMillis Time to live of a null rating.
+     */
+    public CachingCreditFirmABC(final ICreditFirmABC delegate,
+            final ExpiringLruCache<ClientKeyDTO, RiskTypeEnum> cache,
+            final Map<RiskTypeEnum, Long> ttlMillis, final long negativeTtlMillis) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.ttlMillis = new EnumMap<>(ttlMillis);
+        this.negativeTtlMillis = negativeTtlMillis;
+    }
+
+    /**
+     * Return a risk analysis result given a person, from the cache when possible.
+     * @param idType Type of id, e.g passport or national id.
+     * @param clientId Client identifier.
+     * @return a risk status.
+     */
+    @Override
+    public RiskTypeEnum getRiskByClient(IDTypeEnum idType, String clientId) {
+        return cache.get(new ClientKeyDTO(idType, clientId),
+                key -> delegate.getRiskByClient(key.getIdType(), key.getId()),
+                this::ttlOf);
+    }
+
+    /**
+     * Return the risk analysis results of several people, the ones that are not
+     * cached are requested with a single bulk call.
+     * @param keys Keys of the people.
+     * @return a map with a risk status for each key, it may be null.
+     */
+    @Override
+    public Map<ClientKeyDTO, RiskTypeEnum> getRiskByClients(Collection<ClientKeyDTO> keys) {
+        return cache.getAll(keys, delegate::getRiskByClients, this::ttlOf);
+    }
+
+    /**
+     * Forget the rating of a client, e.g. after a known change in its history.
+     * @param idType Type of id.
+     * @param clientId Client identifier.
+     */
+    public void invalidate(IDTypeEnum idType, String clientId) {
+        cache.invalidate(new ClientKeyDTO(idType, clientId));
+    }
+
+    /**
+     * @return the number of ratings answered by the cache.
+     */
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    /**
+     * @return the number of ratings requested to the firm.
+     */
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    /**
+     * @return the number of ratings evicted to respect the cache size.
+     */
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    /**
+     * @return the number of cached ratings.
+     */
+    public long getSize() {
+        return cache.size();
+    }
+
+    /**
+     * @param risk Risk rating, it may be null.
+     * @return the time to live of a risk rating.
+     */
+    private long ttlOf(RiskTypeEnum risk) {
+        if (risk == null) {
+            return negativeTtlMillis;
+        }
+        return ttlMillis.getOrDefault(risk, 0L);
+    }
+}
@@ -0,0 +1,122 @@
+package com.mycompany.impl.client;
+
+import com.mycompany.api.client.ICreditFirmABC;
+import com.mycompany.api.dto.ClientKeyDTO;
+import com.mycompany.api.dto.IDTypeEnum;
+import com.mycompany.api.dto.RiskTypeEnum;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local stand-in for the Credit Analysis Firm ABC, to measure the client side
+ * offline. Every call waits a fixed round trip latency plus a latency per
+ * person, and the risk of a person is derived from its identifier so it is
+ * stable between calls.
+ */
+public class LocalCreditFirmABC implements ICreditFirmABC {
+
+    /**
+     * Round trip latency of a call, in microseconds.
+     */
+    private final long callLatencyMicros;
+
+    /**
+     * Latency added by each person of a call, in microseconds.
+     */
+    private final long personLatencyMicros;
+
+    /**
+     * Number of calls received.
+     */
+    private final LongAdder calls = new LongAdder();
+
+    /**
+     * Number of people rated.
+     */
+    private final LongAdder people = new LongAdder();
+
+    /**
+     * Build the stand-in.
+     * @param callLatencyMicros Round trip latency of a call, in microseconds.
+     * @param personLatencyMicros Latency added by each person, in microseconds.
+     */
+    public LocalCreditFirmABC(final long callLatencyMicros, final long personLatencyMicros) {
+        this.callLatencyMicros = callLatencyMicros;
+        this.personLatencyMicros = personLatencyMicros;
+    }
+
+    /**
+     * Return a risk analysis result given a person.
+     * @param idType Type of id, e.g passport or national id.
+     * @param clientId Client identifier.
+     * @return a risk status.
+     */
+    @Override
+    public RiskTypeEnum getRiskByClient(IDTypeEnum idType, String clientId) {
+        simulateCall(1);
+        return riskOf(clientId);
+    }
+
+    /**
+     * Return the risk analysis results of several people in a single call.
+     * @param keys Keys of the people.
+     * @return a map with a risk status for each key.
+     */
+    @Override
+    public Map<ClientKeyDTO, RiskTypeEnum> getRiskByClients(Collection<ClientKeyDTO> keys) {
+        simulateCall(keys.size());
+        Map<ClientKeyDTO, RiskTypeEnum> risks = new HashMap<>();
+        for (ClientKeyDTO key : keys) {
+            risks.put(key, riskOf(key.getId()));
+        }
+        return risks;
+    }
+
+    /**
+     * @return the number of calls received.
+     */
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    /**
+     * @return the number of people rated.
+     */
+    public long getPeopleCount() {
+        return people.sum();
+    }
+
+    /**
+     * Count a call and wait its latency.
+     * @param size Number of people in the call.
+     */
+    private void simulateCall(int size) {
+        calls.increment();
+        people.add(size);
+        long latencyMicros = callLatencyMicros + personLatencyMicros * size;
+        if (latencyMicros <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MICROSECONDS.sleep(latencyMicros);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Most people have no risk, the rest are spread over the other risk types.
+     * @param clientId Client identifier.
+     * @return the risk of a person.
+     */
+    private static RiskTypeEnum riskOf(String clientId) {
+        int bucket = (clientId.hashCode() & Integer.MAX_VALUE) % 10;
+        RiskTypeEnum[] risks = RiskTypeEnum.values();
+        return bucket < 10 - (risks.length - 1) ? RiskTypeEnum.NONE
+                : risks[bucket - (10 - risks.length)];
+    }
+}
@@ -0,0 +1,146 @@
+package com.mycompany.impl.client;
+
+import com.mycompany.api.client.ICreditFirmABC;
+import com.mycompany.api.dto.ClientKeyDTO;
+import com.mycompany.api.dto.IDTypeEnum;
+import com.mycompany.api.dto.RiskTypeEnum;
+import com.mycompany.impl.concurrent.BatchCollector;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decorator that groups the single risk requests arriving within a short window
+ * into bulk requests to the Credit Analysis Firm ABC. A batch is sent when it
+ * reaches the maximum size or when the window of its first request expires,
+ * and each caller gets the risk of its own person.
+ */
+public class MicroBatchingCreditFirmABC implements ICreditFirmABC {
+
+    /**
+     * Decorated client.
+     */
+    private final ICreditFirmABC delegate;
+
+    /**
+     * Collects the requests into batches sent on the bulk executor, so the next
+     * batch can be collected while the previous one is in flight.
+     */
+    private final BatchCollector<ClientKeyDTO, RiskTypeEnum> collector;
+
+    /**
+     * Number of bulk calls sent.
+     */
+    private final LongAdder batches = new LongAdder();
+
+    /**
+     * Number of single requests received.
+     */
+    private final LongAdder requests = new LongAdder();
+
+    /**
+     * Build the decorator and start collecting requests.
+     * @param delegate Decorated client, it should implement a bulk getRiskByClients.
+     * @param maxBatchSize Maximum number of requests in a batch.
+     * @param maxDelayMillis Maximum time a request waits for other requests.
+     * @param bulkExecutor Executor that sends the batches.
+     */
+    public MicroBatchingCreditFirmABC(final ICreditFirmABC delegate, final int maxBatchSize,
+            final long maxDelayMillis, final Executor bulkExecutor) {
+        this.delegate = delegate;
+        this.collector = new BatchCollector<>("credit-firm-batcher",
+                batch -> bulkExecutor.execute(() -> send(batch)), maxBatchSize,
+                maxDelayMillis);
+    }
+
+    /**
+     * Return a risk analysis result given a person, waiting for the batch it is
+     * sent in.
+     * @param idType Type of id, e.g passport or national id.
+     * @param clientId Client identifier.
+     * @return a risk status.
+     */
+    @Override
+    public RiskTypeEnum getRiskByClient(IDTypeEnum idType, String clientId) {
+        try {
+            return getRiskByClientAsync(idType, clientId).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Queue a risk request.
+     * @param idType Type of id, e.g passport or national id.
+     * @param clientId Client identifier.
+     * @return a future completed when the batch of the request is answered.
+     */
+    public CompletableFuture<RiskTypeEnum> getRiskByClientAsync(IDTypeEnum idType,
+            String clientId) {
+        requests.increment();
+        return collector.submit(new ClientKeyDTO(idType, clientId));
+    }
+
+    /**
+     * Bulk requests are already batched by the caller, they are sent as they are.
+     * @param keys Keys of the people.
+     * @return a map with a risk status for each key.
+     */
+    @Override
+    public Map<ClientKeyDTO, RiskTypeEnum> getRiskByClients(Collection<ClientKeyDTO> keys) {
+        batches.increment();
+        return delegate.getRiskByClients(keys);
+    }
+
+    /**
+     * @return the number of bulk calls sent.
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * @return the number of single requests received.
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * Stop collecting requests, the queued ones fail.
+     */
+    public void shutdown() {
+        collector.shutdown();
+    }
+
+    /**
+     * Send a batch and complete its requests, they all fail when the call throws.
+     * @param batch Requests of the batch.
+     */
+    private void send(List<BatchCollector.Pending<ClientKeyDTO, RiskTypeEnum>> batch) {
+        Set<ClientKeyDTO> keys = new LinkedHashSet<>();
+        for (BatchCollector.Pending<ClientKeyDTO, RiskTypeEnum> request : batch) {
+            keys.add(request.getItem());
+        }
+        try {
+            Map<ClientKeyDTO, RiskTypeEnum> risks = getRiskByClients(keys);
+            for (BatchCollector.Pending<ClientKeyDTO, RiskTypeEnum> request : batch) {
+                request.complete(risks.get(request.getItem()));
+            }
+        } catch (Throwable e) {
+            for (BatchCollector.Pending<ClientKeyDTO, RiskTypeEnum> request : batch) {
+                request.fail(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.mycompany.impl.concurrent;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Run blocking calls as completion stages.
+ */
+public final class AsyncExecution {
+
+    /**
+     * Utility class.
+     */
+    private AsyncExecution() {
+    }
+
+    /**
+     * Run a call on an executor.
+     * @param call Call to run.
+     * @param executor Executor, null to run the call in the caller thread.
+     * @param <T> Type of result.
+     * @return a stage completed with the result of the call, or exceptionally with
+     * its failure, also when it runs in the caller thread or when the executor
+     * rejects it.
+     */
+    public static <T> CompletableFuture<T> supply(Supplier<T> call, Executor executor) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        if (executor != null) {
+            try {
+                return CompletableFuture.supplyAsync(call, executor);
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(e);
+                return result;
+            }
+        }
+        try {
+            result.complete(call.get());
+        } catch (RuntimeException | Error e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+}
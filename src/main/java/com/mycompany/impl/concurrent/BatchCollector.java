@@ -0,0 +1,200 @@
+package com.mycompany.impl.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Collect the items submitted by concurrent callers into batches handed to a
+ * dispatcher on a dedicated thread. A batch is dispatched when it reaches the
+ * maximum size or when the window of its first item expires; the items
+ * submitted while a batch is being dispatched go to the next one. The
+ * dispatcher completes the future of each item; when it throws, the futures
+ * of its batch that are not complete yet fail with the thrown error.
+ * @param <T> Type of item.
+ * @param <R> Type of result of an item.
+ */
+public class BatchCollector<T, R> {
+
+    /**
+     * Handles each batch, it is given a new list every time.
+     */
+    private final Consumer<List<Pending<T, R>>> dispatcher;
+
+    /**
+     * Maximum number of items in a batch.
+     */
+    private final int maxBatchSize;
+
+    /**
+     * Maximum time an item waits for other items, in nanoseconds.
+     */
+    private final long maxDelayNanos;
+
+    /**
+     * Message of the failure of the items submitted after shutdown.
+     */
+    private final String shutdownMessage;
+
+    /**
+     * Items waiting for their batch.
+     */
+    private final BlockingQueue<Pending<T, R>> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * Thread that collects and dispatches the batches.
+     */
+    private final Thread collector;
+
+    /**
+     * Whether the collector is running.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Build the collector and start collecting items.
+     * @param name Name of the collector thread, also used in the shutdown failure.
+     * @param dispatcher Handles each batch and completes the future of its items.
+     * @param maxBatchSize Maximum number of items in a batch.
+     * @param maxDelayMillis Maximum time an item waits for other items, with 0
+     * only the items submitted during the previous dispatch are grouped.
+     */
+    public BatchCollector(final String name,
+            final Consumer<List<Pending<T, R>>> dispatcher, final int maxBatchSize,
+            final long maxDelayMillis) {
+        if (maxBatchSize <= 0 || maxDelayMillis < 0) {
+            throw new IllegalArgumentException("Batch size should be positive and delay "
+                    + "should not be negative.");
+        }
+        this.dispatcher = dispatcher;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.shutdownMessage = "Batch collector " + name + " is shut down.";
+        this.collector = new Thread(this::collect, name);
+        this.collector.setDaemon(true);
+        this.collector.start();
+    }
+
+    /**
+     * Queue an item.
+     * @param item Item.
+     * @return a future completed by the dispatcher of the batch of the item.
+     */
+    public CompletableFuture<R> submit(T item) {
+        Pending<T, R> pending = new Pending<>(item);
+        if (!running) {
+            pending.fail(new IllegalStateException(shutdownMessage));
+            return pending.future;
+        }
+        queue.add(pending);
+        if (!running && queue.remove(pending)) {
+            pending.fail(new IllegalStateException(shutdownMessage));
+        }
+        return pending.future;
+    }
+
+    /**
+     * Stop collecting items, the batch being dispatched completes and the
+     * queued items fail.
+     */
+    public void shutdown() {
+        running = false;
+        collector.interrupt();
+    }
+
+    /**
+     * Collect and dispatch batches until shut down.
+     */
+    private void collect() {
+        List<Pending<T, R>> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (running) {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    Pending<T, R> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                List<Pending<T, R>> toDispatch = batch;
+                batch = new ArrayList<>(maxBatchSize);
+                try {
+                    dispatcher.accept(toDispatch);
+                } catch (Throwable e) {
+                    for (Pending<T, R> pending : toDispatch) {
+                        pending.fail(e);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running = false;
+            batch.addAll(queue);
+            queue.clear();
+            for (Pending<T, R> pending : batch) {
+                pending.fail(new IllegalStateException(shutdownMessage));
+            }
+        }
+    }
+
+    /**
+     * Item waiting for its batch.
+     * @param <T> Type of item.
+     * @param <R> Type of result of the item.
+     */
+    public static final class Pending<T, R> {
+
+        /**
+         * Item.
+         */
+        private final T item;
+
+        /**
+         * Future completed with the result of the item.
+         */
+        private final CompletableFuture<R> future = new CompletableFuture<>();
+
+        /**
+         * Build a pending item.
+         * @param item Item.
+         */
+        private Pending(final T item) {
+            this.item = item;
+        }
+
+        /**
+         * @return the item.
+         */
+        public T getItem() {
+            return item;
+        }
+
+        /**
+         * Complete the item, unless it is already complete.
+         * @param result Result of the item.
+         */
+        public void complete(R result) {
+            future.complete(result);
+        }
+
+        /**
+         * Fail the item, unless it is already complete.
+         * @param failure Failure of the item.
+         */
+        public void fail(Throwable failure) {
+            future.completeExceptionally(failure);
+        }
+    }
+}
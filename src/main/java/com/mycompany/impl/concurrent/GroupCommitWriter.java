@@ -0,0 +1,132 @@
+package com.mycompany.impl.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Group the writes of concurrent callers into batches committed together, so
+ * they share one transaction and one flush of the database log. A batch is
+ * committed when it reaches the maximum size or when the window of its first
+ * write expires; the writes queued while a batch is being committed go to the
+ * next one. Each caller waits until the batch of its write is committed. When
+ * a batch fails its writes are committed again one by one, so only the callers
+ * of the failing writes get a failure.
+ * @param <T> Type of write.
+ */
+public class GroupCommitWriter<T> {
+
+    /**
+     * Commits a batch of writes in one transaction.
+     */
+    private final Consumer<List<T>> committer;
+
+    /**
+     * Collects the writes into batches and commits them on its thread.
+     */
+    private final BatchCollector<T, Void> collector;
+
+    /**
+     * Number of committed batches.
+     */
+    private final LongAdder batches = new LongAdder();
+
+    /**
+     * Number of committed writes.
+     */
+    private final LongAdder writes = new LongAdder();
+
+    /**
+     * Build the writer and start collecting writes.
+     * @param name Name of the collector thread.
+     * @param committer Commits a batch of writes in one transaction.
+     * @param maxBatchSize Maximum number of writes in a batch.
+     * @param maxDelayMillis Maximum time a write waits for other writes, with 0
+     * only the writes queued during the previous commit are grouped.
+     */
+    public GroupCommitWriter(final String name, final Consumer<List<T>> committer,
+            final int maxBatchSize, final long maxDelayMillis) {
+        this.committer = committer;
+        this.collector = new BatchCollector<>(name, this::commit, maxBatchSize,
+                maxDelayMillis);
+    }
+
+    /**
+     * Write and wait until the batch of the write is committed.
+     * @param write Write.
+     */
+    public void write(T write) {
+        try {
+            writeAsync(write).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Queue a write.
+     * @param write Write.
+     * @return a future completed when the batch of the write is committed.
+     */
+    public CompletableFuture<Void> writeAsync(T write) {
+        return collector.submit(write);
+    }
+
+    /**
+     * @return the number of committed batches.
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * @return the number of committed writes.
+     */
+    public long getWriteCount() {
+        return writes.sum();
+    }
+
+    /**
+     * Stop collecting writes, the batch being committed completes and the
+     * queued writes fail.
+     */
+    public void shutdown() {
+        collector.shutdown();
+    }
+
+    /**
+     * Commit a batch and complete its writes, or commit them one by one when
+     * the batch fails.
+     * @param batch Writes of the batch.
+     */
+    private void commit(List<BatchCollector.Pending<T, Void>> batch) {
+        List<T> toCommit = new ArrayList<>(batch.size());
+        for (BatchCollector.Pending<T, Void> pending : batch) {
+            toCommit.add(pending.getItem());
+        }
+        try {
+            committer.accept(toCommit);
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).fail(e);
+                return;
+            }
+            for (BatchCollector.Pending<T, Void> pending : batch) {
+                commit(Collections.singletonList(pending));
+            }
+            return;
+        }
+        batches.increment();
+        writes.add(batch.size());
+        for (BatchCollector.Pending<T, Void> pending : batch) {
+            pending.complete(null);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.mycompany.impl.concurrent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesce concurrent calls with the same key: the first caller runs the call
+ * and the others wait for its result instead of repeating it. In-flight calls
+ * are tracked in stripes selected by the key hash, each one guarded by its own
+ * lock, which is only held to register or remove a call.
+ * @param <K> Type of key.
+ * @param <V> Type of result.
+ */
+public class SingleFlight<K, V> {
+
+    /**
+     * Default number of stripes.
+     */
+    private static final int DEFAULT_STRIPES = 64;
+
+    /**
+     * In-flight calls by key, one map per stripe.
+     */
+    private final List<Map<K, CompletableFuture<V>>> stripes;
+
+    /**
+     * Build a single flight group with the default number of stripes.
+     */
+    public SingleFlight() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Build a single flight group.
+     * @param stripeCount Number of stripes.
+     */
+    public SingleFlight(final int stripeCount) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("Stripes should be positive.");
+        }
+        stripes = new ArrayList<>(stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            stripes.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Run a call, or wait for the in-flight call with the same key.
+     * @param key Key of the call.
+     * @param call Call to run.
+     * @return the call result, shared by all the coalesced callers.
+     */
+    public V execute(final K key, final Supplier<V> call) {
+        Map<K, CompletableFuture<V>> stripe = stripeFor(key);
+        CompletableFuture<V> inFlight;
+        CompletableFuture<V> own = new CompletableFuture<>();
+        synchronized (stripe) {
+            inFlight = stripe.putIfAbsent(key, own);
+        }
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+        try {
+            V result = call.get();
+            own.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            synchronized (stripe) {
+                stripe.remove(key, own);
+            }
+        }
+    }
+
+    /**
+     * @return the number of in-flight calls.
+     */
+    public int inFlight() {
+        int count = 0;
+        for (Map<K, CompletableFuture<V>> stripe : stripes) {
+            synchronized (stripe) {
+                count += stripe.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param key Key of the call.
+     * @return the stripe of a key.
+     */
+    private Map<K, CompletableFuture<V>> stripeFor(final K key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return stripes.get((hash & Integer.MAX_VALUE) % stripes.size());
+    }
+
+    /**
+     * Wait for the call of another caller, rethrowing its failure.
+     * @param inFlight In-flight call.
+     * @return the call result.
+     */
+    private V await(final CompletableFuture<V> inFlight) {
+        try {
+            return inFlight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.mycompany.impl.datasource;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Close the pools behind a routing data source.
+ */
+final class DataSourceCloser {
+
+    /**
+     * Utility class.
+     */
+    private DataSourceCloser() {
+    }
+
+    /**
+     * Close the closeable data sources. They are all closed even when one
+     * fails, the other failures are suppressed by the first one.
+     * @param dataSources Data sources.
+     * @throws SQLException if a data source cannot be closed.
+     */
+    static void closeAll(DataSource[] dataSources) throws SQLException {
+        SQLException failure = null;
+        for (DataSource dataSource : dataSources) {
+            if (!(dataSource instanceof AutoCloseable)) {
+                continue;
+            }
+            try {
+                ((AutoCloseable) dataSource).close();
+            } catch (Exception e) {
+                SQLException closeFailure = e instanceof SQLException ? (SQLException) e
+                        : new SQLException("Data source cannot be closed.", e);
+                if (failure == null) {
+                    failure = closeFailure;
+                } else {
+                    failure.addSuppressed(closeFailure);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.mycompany.impl.datasource;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+/**
+ * Detect the database behind a data source, to pick between MySQL statements and
+ * their portable equivalents.
+ */
+public final class DatabaseProducts {
+
+    /**
+     * Product name reported by MySQL.
+     */
+    private static final String MYSQL = "MySQL";
+
+    /**
+     * Whether each data source already reached is MySQL. Keys are weak so that
+     * closed data sources can be collected.
+     */
+    private static final Map<DataSource, Boolean> MYSQL_DATA_SOURCES =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Utility class.
+     */
+    private DatabaseProducts() {
+    }
+
+    /**
+     * Tell whether a data source is MySQL. The product name is read once per data
+     * source, it opens a connection.
+     * @param dataSource Data source.
+     * @return true if the database is MySQL, it is assumed, and not remembered,
+     * when the database cannot be reached.
+     */
+    public static boolean isMySQL(final DataSource dataSource) {
+        Boolean mysql = MYSQL_DATA_SOURCES.get(dataSource);
+        if (mysql == null) {
+            try {
+                mysql = MYSQL.equals(JdbcUtils.extractDatabaseMetaData(dataSource,
+                        "getDatabaseProductName"));
+            } catch (MetaDataAccessException e) {
+                return true;
+            }
+            MYSQL_DATA_SOURCES.put(dataSource, mysql);
+        }
+        return mysql;
+    }
+}
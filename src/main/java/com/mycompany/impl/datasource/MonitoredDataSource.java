@@ -0,0 +1,76 @@
+package com.mycompany.impl.datasource;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.apache.commons.dbcp2.PoolableConnection;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+
+import java.sql.SQLException;
+
+/**
+ * Connection pool that exposes the state of its underlying object pool: the
+ * threads waiting for a connection, the time they waited and the number of
+ * connections borrowed, created and destroyed. BasicDataSource only publishes
+ * the active and idle counts.
+ */
+public class MonitoredDataSource extends BasicDataSource {
+
+    /**
+     * Open the initial connections of the pool, so the first requests do not
+     * pay for the connection handshakes.
+     * @throws SQLException if a connection cannot be opened.
+     */
+    public void prewarm() throws SQLException {
+        getConnection().close();
+    }
+
+    /**
+     * @return the number of threads waiting for a connection, 0 if the pool
+     * has not been started.
+     */
+    public int getNumWaiters() {
+        GenericObjectPool<PoolableConnection> pool = getConnectionPool();
+        return pool == null ? 0 : pool.getNumWaiters();
+    }
+
+    /**
+     * @return the mean time waited for a connection by the last borrows, in
+     * milliseconds.
+     */
+    public long getMeanBorrowWaitTimeMillis() {
+        GenericObjectPool<PoolableConnection> pool = getConnectionPool();
+        return pool == null ? 0 : pool.getMeanBorrowWaitTimeMillis();
+    }
+
+    /**
+     * @return the greatest time waited for a connection, in milliseconds.
+     */
+    public long getMaxBorrowWaitTimeMillis() {
+        GenericObjectPool<PoolableConnection> pool = getConnectionPool();
+        return pool == null ? 0 : pool.getMaxBorrowWaitTimeMillis();
+    }
+
+    /**
+     * @return the number of connections borrowed from the pool.
+     */
+    public long getBorrowedCount() {
+        GenericObjectPool<PoolableConnection> pool = getConnectionPool();
+        return pool == null ? 0 : pool.getBorrowedCount();
+    }
+
+    /**
+     * @return the number of connections opened by the pool.
+     */
+    public long getCreatedCount() {
+        GenericObjectPool<PoolableConnection> pool = getConnectionPool();
+        return pool == null ? 0 : pool.getCreatedCount();
+    }
+
+    /**
+     * @return the number of connections closed by the pool, after a failed
+     * validation, an eviction or the removal of an abandoned connection.
+     */
+    public long getDestroyedCount() {
+        GenericObjectPool<PoolableConnection> pool = getConnectionPool();
+        return pool == null ? 0 : pool.getDestroyedCount();
+    }
+}
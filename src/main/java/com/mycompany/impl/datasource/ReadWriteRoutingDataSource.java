@@ -0,0 +1,296 @@
+package com.mycompany.impl.datasource;
+
+import com.mycompany.impl.cache.ExpiringLruCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Data source that sends the connections of read-only operations to replicas
+ * and every other connection to the primary. An operation is read-only when it
+ * runs inside read(); a read of a key written within the stickiness window
+ * runs on the primary, so a client reads its own writes while the replicas
+ * catch up. Transactions bind their connection, so the reads inside a
+ * transaction run on the primary. When a replica cannot give a connection the
+ * read falls back to the primary.
+ */
+public class ReadWriteRoutingDataSource extends AbstractDataSource
+        implements AutoCloseable {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+
+    /**
+     * Default time a written key is read from the primary, in milliseconds.
+     */
+    private static final long DEFAULT_STICKY_MILLIS = 2000L;
+
+    /**
+     * Default maximum number of written keys remembered.
+     */
+    private static final int DEFAULT_WRITTEN_KEYS = 100000;
+
+    /**
+     * Whether the connections of the current thread go to a replica.
+     */
+    private static final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<>();
+
+    /**
+     * Primary database.
+     */
+    private final DataSource primary;
+
+    /**
+     * Replicas of the primary.
+     */
+    private final DataSource[] replicas;
+
+    /**
+     * Connections in use of each replica.
+     */
+    private final AtomicInteger[] inUse;
+
+    /**
+     * Turn of the next read.
+     */
+    private final AtomicInteger turn = new AtomicInteger();
+
+    /**
+     * How a replica is chosen.
+     */
+    private ReplicaSelectionEnum selection = ReplicaSelectionEnum.LEAST_LOADED;
+
+    /**
+     * Keys written within the stickiness window.
+     */
+    private ExpiringLruCache<Object, Boolean> writtenKeys =
+            new ExpiringLruCache<>(DEFAULT_WRITTEN_KEYS);
+
+    /**
+     * Time a written key is read from the primary, in milliseconds.
+     */
+    private long stickyMillis = DEFAULT_STICKY_MILLIS;
+
+    /**
+     * Build the data source.
+     * @param primary Primary database.
+     * @param replicas Replicas of the primary, they are closed with this data
+     * source. Without replicas every connection goes to the primary.
+     */
+    public ReadWriteRoutingDataSource(DataSource primary,
+            List<? extends DataSource> replicas) {
+        this.primary = primary;
+        this.replicas = replicas.toArray(new DataSource[replicas.size()]);
+        inUse = new AtomicInteger[this.replicas.length];
+        for (int i = 0; i < inUse.length; i++) {
+            inUse[i] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * Sets how a replica is chosen.
+     * @param selection Replica selection.
+     */
+    public void setSelection(final ReplicaSelectionEnum selection) {
+        if (selection == null) {
+            throw new IllegalArgumentException("Selection should not be null.");
+        }
+        this.selection = selection;
+    }
+
+    /**
+     * Sets the time a written key is read from the primary, it should be longer
+     * than the replication lag. Zero disables the stickiness.
+     * @param stickyMillis Time in milliseconds.
+     */
+    public void setStickyMillis(final long stickyMillis) {
+        if (stickyMillis < 0) {
+            throw new IllegalArgumentException("Sticky millis should not be negative.");
+        }
+        this.stickyMillis = stickyMillis;
+    }
+
+    /**
+     * Sets the maximum number of written keys remembered, the written keys are
+     * forgotten.
+     * @param maximumSize Maximum number of keys.
+     */
+    public void setMaximumWrittenKeys(final int maximumSize) {
+        writtenKeys = new ExpiringLruCache<>(maximumSize);
+    }
+
+    /**
+     * @return the primary database.
+     */
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    /**
+     * Run a read-only operation on a replica, or on the primary if the key was
+     * written within the stickiness window.
+     * @param key Key of the data read, e.g. a client id.
+     * @param operation Read-only operation.
+     * @param <T> Type of result.
+     * @return the result of the operation.
+     */
+    public <T> T read(Object key, Supplier<T> operation) {
+        return route(writtenKeys.getIfPresent(key) == null, operation);
+    }
+
+    /**
+     * Run a read-only operation on a replica, or on the primary if any of the
+     * keys was written within the stickiness window.
+     * @param keys Keys of the data read.
+     * @param operation Read-only operation.
+     * @param <T> Type of result.
+     * @return the result of the operation.
+     */
+    public <T> T readAll(Collection<?> keys, Supplier<T> operation) {
+        for (Object key : keys) {
+            if (writtenKeys.getIfPresent(key) != null) {
+                return route(false, operation);
+            }
+        }
+        return route(true, operation);
+    }
+
+    /**
+     * Record that a key was written, its reads go to the primary during the
+     * stickiness window.
+     * @param key Key of the data written.
+     */
+    public void written(Object key) {
+        writtenKeys.put(key, Boolean.TRUE, stickyMillis);
+    }
+
+    /**
+     * Run an operation with the connections of the current thread sent to a
+     * replica or to the primary.
+     * @param replica Whether the connections go to a replica.
+     * @param operation Operation.
+     * @param <T> Type of result.
+     * @return the result of the operation.
+     */
+    private <T> T route(boolean replica, Supplier<T> operation) {
+        Boolean previous = READ_ONLY.get();
+        READ_ONLY.set(replica);
+        try {
+            return operation.get();
+        } finally {
+            if (previous == null) {
+                READ_ONLY.remove();
+            } else {
+                READ_ONLY.set(previous);
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (Boolean.TRUE.equals(READ_ONLY.get()) && replicas.length > 0) {
+            return getReplicaConnection();
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password)
+            throws SQLException {
+        if (Boolean.TRUE.equals(READ_ONLY.get()) && replicas.length > 0) {
+            return getReplicaConnection();
+        }
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * @return a connection to the selected replica, or to the primary if the
+     * replica cannot give one.
+     * @throws SQLException if the primary cannot give a connection either.
+     */
+    private Connection getReplicaConnection() throws SQLException {
+        int replica = selectReplica();
+        AtomicInteger replicaInUse = inUse[replica];
+        replicaInUse.incrementAndGet();
+        try {
+            return tracked(replicas[replica].getConnection(), replicaInUse);
+        } catch (SQLException | RuntimeException e) {
+            replicaInUse.decrementAndGet();
+            LOGGER.warn("Replica {} is not available, reading from the primary: {}",
+                    replica, e.getMessage());
+            return primary.getConnection();
+        }
+    }
+
+    /**
+     * @return the index of the replica of the next read.
+     */
+    private int selectReplica() {
+        int first = Math.floorMod(turn.getAndIncrement(), replicas.length);
+        if (selection == ReplicaSelectionEnum.ROUND_ROBIN) {
+            return first;
+        }
+        int selected = first;
+        for (int i = 1; i < replicas.length; i++) {
+            int candidate = (first + i) % replicas.length;
+            if (inUse[candidate].get() < inUse[selected].get()) {
+                selected = candidate;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * @param connection Replica connection.
+     * @param replicaInUse Connections in use of the replica.
+     * @return the connection, the replica count is decreased when it is closed.
+     */
+    private static Connection tracked(Connection connection,
+            AtomicInteger replicaInUse) {
+        AtomicBoolean closed = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(
+                ReadWriteRoutingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && closed.compareAndSet(false,
+                            true)) {
+                        replicaInUse.decrementAndGet();
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    /**
+     * @param replica Index of the replica.
+     * @return the number of connections in use of the replica.
+     */
+    public int getInUse(int replica) {
+        return inUse[replica].get();
+    }
+
+    /**
+     * Close the replicas, the primary is left open.
+     * @throws SQLException if a replica cannot be closed.
+     */
+    @Override
+    public void close() throws SQLException {
+        DataSourceCloser.closeAll(replicas);
+    }
+}
@@ -0,0 +1,17 @@
+package com.mycompany.impl.datasource;
+
+/**
+ * Enum with the ways a read is assigned to a replica.
+ */
+public enum ReplicaSelectionEnum {
+
+    /**
+     * Replicas take turns.
+     */
+    ROUND_ROBIN,
+
+    /**
+     * The replica with the fewest connections in use, replicas take turns on a tie.
+     */
+    LEAST_LOADED
+}
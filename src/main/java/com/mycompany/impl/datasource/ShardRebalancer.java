@@ -0,0 +1,248 @@
+package com.mycompany.impl.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Move the clients that are not in their shard, e.g. after a shard was added,
+ * together with their credits, accounts, exposure summary and quota. A moved
+ * client gets new CLIENT.id and CREDIT.id values from its new shard, since the
+ * shard is part of the id: its rows are inserted again and no mapping from the
+ * old ids is kept. Ids held outside the database, e.g. a credit id kept by a
+ * caller to mark it paid later, no longer match. The idempotencyKey of a
+ * credit is copied, so a retried request is still recognized.
+ *
+ * <p>It should run while the services are stopped: a client is copied to its
+ * new shard and then removed from the old one, in two transactions. If a run
+ * fails in between, the next run replaces the copy and removes the client from
+ * the old shard, so the tool can be run again until it moves nothing.</p>
+ */
+public class ShardRebalancer {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    /**
+     * SQL query to recover a page of clients, after a client id.
+     */
+    private static final String RECOVER_CLIENTS =
+            "SELECT id, typeId, clientId, firstName, lastName, email FROM CLIENT "
+                    + "WHERE id > ? ORDER BY id LIMIT ?";
+
+    /**
+     * SQL query to recover the id of a client given its key.
+     */
+    private static final String RECOVER_CLIENT_ID =
+            "SELECT id FROM CLIENT WHERE typeId = ? AND clientId = ?";
+
+    /**
+     * SQL query to create a client.
+     */
+    private static final String CREATE_CLIENT =
+            "INSERT INTO CLIENT (typeId, clientId, firstName, lastName, email) "
+                    + "VALUES (?, ?, ?, ?, ?)";
+
+    /**
+     * SQL query to remove a client.
+     */
+    private static final String DELETE_CLIENT = "DELETE FROM CLIENT WHERE id = ?";
+
+    /**
+     * Tables with rows of a client, in their clientId column, and their other
+     * copied columns. They are copied in this order and removed in the reverse
+     * order.
+     */
+    private static final String[][] CLIENT_TABLES = {
+            {"CREDIT", "creditValue, approvalDate, paidDate, idempotencyKey"},
+            {"ACCOUNT", "number, total, blocked"},
+            {"CLIENT_EXPOSURE", "maxPaidCredit, openCreditTotal, openCreditCount, "
+                    + "version, lastSalary"},
+            {"CLIENT_QUOTA", "riskType, availableQuota, policyVersion, evaluationDate"}};
+
+    /**
+     * Shards, in their new layout.
+     */
+    private final ShardRoutingDataSource dataSource;
+
+    /**
+     * Number of clients read at a time from a shard.
+     */
+    private int batchSize = 1000;
+
+    /**
+     * Build the tool.
+     * @param dataSource Shards, in their new layout.
+     */
+    public ShardRebalancer(ShardRoutingDataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Sets the number of clients read at a time from a shard.
+     * @param batchSize Batch size, it should be positive.
+     */
+    public void setBatchSize(final int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size should be positive.");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Move every client to its shard, the shards are read in parallel.
+     * @return the number of moved clients.
+     */
+    public long rebalance() {
+        dataSource.initializeIds();
+        long moved = 0L;
+        for (Long shardMoved : dataSource.onAllShards(this::rebalanceShard).values()) {
+            moved += shardMoved;
+        }
+        LOGGER.info("{} clients moved among {} shards", moved,
+                dataSource.getShardCount());
+        return moved;
+    }
+
+    /**
+     * Move the clients of a shard that belong to other shards.
+     * @param shard Shard number.
+     * @return the number of moved clients.
+     */
+    private long rebalanceShard(int shard) {
+        JdbcTemplate source = new JdbcTemplate(dataSource.getShard(shard));
+        long moved = 0L;
+        long lastId = 0L;
+        List<Object[]> clients;
+        do {
+            clients = source.query(RECOVER_CLIENTS, (rs, rowNum) -> new Object[]{
+                    rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                    rs.getString(5), rs.getString(6)}, lastId, batchSize);
+            for (Object[] client : clients) {
+                lastId = (Long) client[0];
+                int target = dataSource.shardOf((String) client[1], (String) client[2]);
+                if (target != shard) {
+                    move(source, new JdbcTemplate(dataSource.getShard(target)), client);
+                    moved++;
+                }
+            }
+        } while (clients.size() == batchSize);
+        return moved;
+    }
+
+    /**
+     * Copy a client to its shard and then remove it from the old one.
+     * @param source JDBC client of the old shard.
+     * @param target JDBC client of the new shard.
+     * @param client Id, typeId, clientId, firstName, lastName and email of the
+     * client.
+     */
+    private static void move(JdbcTemplate source, JdbcTemplate target, Object[] client) {
+        long oldId = (Long) client[0];
+        inTransaction(target, () -> {
+            List<Long> previousCopy = target.queryForList(RECOVER_CLIENT_ID, Long.class,
+                    client[1], client[2]);
+            for (Long copyId : previousCopy) {
+                delete(target, copyId);
+            }
+            target.update(CREATE_CLIENT, client[1], client[2], client[3], client[4],
+                    client[5]);
+            long newId = target.queryForObject(RECOVER_CLIENT_ID, Long.class, client[1],
+                    client[2]);
+            for (String[] table : CLIENT_TABLES) {
+                copyRows(source, target, table[0], table[1], oldId, newId);
+            }
+        });
+        inTransaction(source, () -> delete(source, oldId));
+    }
+
+    /**
+     * Copy the rows of a client in a table.
+     * @param source JDBC client of the old shard.
+     * @param target JDBC client of the new shard.
+     * @param table Table name.
+     * @param columns Copied columns.
+     * @param oldId Client id in the old shard.
+     * @param newId Client id in the new shard.
+     */
+    private static void copyRows(JdbcTemplate source, JdbcTemplate target, String table,
+            String columns, long oldId, long newId) {
+        int columnCount = columns.split(",").length;
+        List<Object[]> rows = source.query("SELECT " + columns + " FROM " + table
+                + " WHERE clientId = ?", (rs, rowNum) -> {
+                    Object[] row = new Object[columnCount + 1];
+                    row[0] = newId;
+                    for (int i = 1; i <= columnCount; i++) {
+                        row[i] = rs.getObject(i);
+                    }
+                    return row;
+                }, oldId);
+        if (!rows.isEmpty()) {
+            StringBuilder values = new StringBuilder("?");
+            for (int i = 0; i < columnCount; i++) {
+                values.append(", ?");
+            }
+            target.batchUpdate("INSERT INTO " + table + " (clientId, " + columns
+                    + ") VALUES (" + values + ")", rows);
+        }
+    }
+
+    /**
+     * Remove a client and its rows.
+     * @param jdbcTemplate JDBC client of the shard.
+     * @param clientId Client id.
+     */
+    private static void delete(JdbcTemplate jdbcTemplate, long clientId) {
+        for (int i = CLIENT_TABLES.length - 1; i >= 0; i--) {
+            jdbcTemplate.update("DELETE FROM " + CLIENT_TABLES[i][0]
+                    + " WHERE clientId = ?", clientId);
+        }
+        jdbcTemplate.update(DELETE_CLIENT, clientId);
+    }
+
+    /**
+     * Run statements in a transaction of a shard.
+     * @param jdbcTemplate JDBC client of the shard.
+     * @param statements Statements.
+     */
+    private static void inTransaction(JdbcTemplate jdbcTemplate, Runnable statements) {
+        new TransactionTemplate(new DataSourceTransactionManager(
+                jdbcTemplate.getDataSource())).execute(status -> {
+                    statements.run();
+                    return null;
+                });
+    }
+
+    /**
+     * Rebalance MySQL shards given their JDBC URLs in order, shard 0 first. The
+     * user and password are read from the database.username and
+     * database.password system properties.
+     * @param args JDBC URLs of the shards.
+     * @throws SQLException if a shard cannot be closed.
+     */
+    public static void main(final String[] args) throws SQLException {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("Shard URLs should not be empty.");
+        }
+        List<MonitoredDataSource> shards = new ArrayList<>(args.length);
+        for (String url : args) {
+            MonitoredDataSource shard = new MonitoredDataSource();
+            shard.setDriverClassName("com.mysql.jdbc.Driver");
+            shard.setUrl(url);
+            shard.setUsername(System.getProperty("database.username", "test"));
+            shard.setPassword(System.getProperty("database.password", "test"));
+            shards.add(shard);
+        }
+        try (ShardRoutingDataSource dataSource = new ShardRoutingDataSource(shards)) {
+            new ShardRebalancer(dataSource).rebalance();
+        }
+    }
+}
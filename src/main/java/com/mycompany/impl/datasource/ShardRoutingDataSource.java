@@ -0,0 +1,293 @@
+package com.mycompany.impl.datasource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Data source that spreads clients over several databases, the shards. A client
+ * lives in the shard given by a consistent hash of its (typeId, clientId), and
+ * its CLIENT.id and CREDIT.id values carry the shard number in their high bits,
+ * so they are unique across shards and an id tells its shard. Shard 0 ids are
+ * the ids of an unsharded database.
+ *
+ * <p>Operations run on a shard inside onShard(), operations on several shards run
+ * in parallel with onShards(). Transactions bind their connection, so a
+ * transaction started inside onShard() stays on that shard. Connections asked
+ * outside of any shard go to shard 0.</p>
+ */
+public class ShardRoutingDataSource extends AbstractDataSource
+        implements AutoCloseable {
+
+    /**
+     * Position of the shard number in the ids, each shard has 2^40 ids.
+     */
+    public static final int SHARD_ID_SHIFT = 40;
+
+    /**
+     * Tables whose ids carry the shard number.
+     */
+    private static final String[] SHARDED_ID_TABLES = {"CLIENT", "CREDIT"};
+
+    /**
+     * Shard of the connections of the current thread.
+     */
+    private static final ThreadLocal<Integer> SHARD = new ThreadLocal<>();
+
+    /**
+     * Shards.
+     */
+    private final DataSource[] shards;
+
+    /**
+     * Runs the operations on several shards. It grows as needed, so an operation
+     * on several shards can run inside another one.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Build the data source.
+     * @param shards Shards, they are closed with this data source. Their order
+     * is part of the placement of the clients and should not change.
+     */
+    public ShardRoutingDataSource(List<? extends DataSource> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("Shards should not be empty.");
+        }
+        this.shards = shards.toArray(new DataSource[shards.size()]);
+        CustomizableThreadFactory threadFactory =
+                new CustomizableThreadFactory("shard-");
+        threadFactory.setDaemon(true);
+        executor = Executors.newCachedThreadPool(threadFactory);
+    }
+
+    /**
+     * @return the number of shards.
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * @param shard Shard number.
+     * @return the data source of the shard.
+     */
+    public DataSource getShard(int shard) {
+        return shards[shard];
+    }
+
+    /**
+     * @param typeId Type of id, as stored in CLIENT.typeId.
+     * @param clientId Client national identifier.
+     * @return the shard of the client.
+     */
+    public int shardOf(String typeId, String clientId) {
+        return shardOf(typeId, clientId, shards.length);
+    }
+
+    /**
+     * @param typeId Type of id, as stored in CLIENT.typeId.
+     * @param clientId Client national identifier.
+     * @param shardCount Number of shards.
+     * @return the shard of the client among shardCount shards. When a shard is
+     * added only the clients that move to it change of shard. Both ids are hashed
+     * in lower case, as MySQL compares them without case, so every spelling of a
+     * client goes to the shard of its row.
+     */
+    public static int shardOf(String typeId, String clientId, int shardCount) {
+        long hash = 0xcbf29ce484222325L;
+        byte[] key = (typeId + ':' + clientId).toLowerCase(Locale.ROOT)
+                .getBytes(StandardCharsets.UTF_8);
+        for (byte b : key) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return jumpConsistentHash(hash, shardCount);
+    }
+
+    /**
+     * Jump consistent hash of Lamping and Veach.
+     * @param key Hashed key.
+     * @param buckets Number of buckets.
+     * @return the bucket of the key.
+     */
+    private static int jumpConsistentHash(long key, int buckets) {
+        long bucket = -1;
+        long next = 0;
+        while (next < buckets) {
+            bucket = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31)
+                    / (double) ((key >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+
+    /**
+     * @param id CLIENT.id or CREDIT.id value.
+     * @return the shard of the row.
+     */
+    public static int shardOfId(long id) {
+        return (int) (id >>> SHARD_ID_SHIFT);
+    }
+
+    /**
+     * @param shard Shard number.
+     * @return the first CLIENT.id and CREDIT.id of the shard.
+     */
+    public static long firstId(int shard) {
+        return ((long) shard << SHARD_ID_SHIFT) + 1;
+    }
+
+    /**
+     * Move the auto increment counters of CLIENT and CREDIT of each shard to the
+     * ids of the shard. It should run on startup, since MySQL 5 recomputes the
+     * counter of an empty table on restart.
+     */
+    public void initializeIds() {
+        for (int shard = 1; shard < shards.length; shard++) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(shards[shard]);
+            boolean mysql = DatabaseProducts.isMySQL(shards[shard]);
+            for (String table : SHARDED_ID_TABLES) {
+                long maxId = jdbcTemplate.queryForObject(
+                        "SELECT COALESCE (MAX(id), 0) FROM " + table, Long.class);
+                if (maxId < firstId(shard)) {
+                    jdbcTemplate.execute("ALTER TABLE " + table + (mysql
+                            ? " AUTO_INCREMENT = " : " ALTER COLUMN id RESTART WITH ")
+                            + firstId(shard));
+                }
+            }
+        }
+    }
+
+    /**
+     * Run an operation with the connections of the current thread sent to a
+     * shard.
+     * @param shard Shard number.
+     * @param operation Operation.
+     * @param <T> Type of result.
+     * @return the result of the operation.
+     */
+    public <T> T onShard(int shard, Supplier<T> operation) {
+        Integer previous = SHARD.get();
+        SHARD.set(shard);
+        try {
+            return operation.get();
+        } finally {
+            if (previous == null) {
+                SHARD.remove();
+            } else {
+                SHARD.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Run an operation on several shards in parallel and gather the results.
+     * @param shardNumbers Shard numbers.
+     * @param operation Operation, given the shard number.
+     * @param <T> Type of result.
+     * @return the result of each shard, in the order of the shard numbers.
+     */
+    public <T> Map<Integer, T> onShards(Collection<Integer> shardNumbers,
+            IntFunction<T> operation) {
+        Map<Integer, T> results = new LinkedHashMap<>();
+        if (shardNumbers.size() == 1) {
+            int shard = shardNumbers.iterator().next();
+            results.put(shard, onShard(shard, () -> operation.apply(shard)));
+            return results;
+        }
+        List<Future<T>> futures = new ArrayList<>(shardNumbers.size());
+        for (Integer shard : shardNumbers) {
+            futures.add(executor.submit(() -> onShard(shard,
+                    () -> operation.apply(shard))));
+        }
+        int i = 0;
+        for (Integer shard : shardNumbers) {
+            results.put(shard, await(futures.get(i++)));
+        }
+        return results;
+    }
+
+    /**
+     * Run an operation on every shard in parallel and gather the results.
+     * @param operation Operation, given the shard number.
+     * @param <T> Type of result.
+     * @return the result of each shard, by shard number.
+     */
+    public <T> Map<Integer, T> onAllShards(IntFunction<T> operation) {
+        List<Integer> shardNumbers = new ArrayList<>(shards.length);
+        for (int shard = 0; shard < shards.length; shard++) {
+            shardNumbers.add(shard);
+        }
+        return onShards(shardNumbers, operation);
+    }
+
+    /**
+     * Wait for the operation of a shard.
+     * @param future Result of the operation.
+     * @param <T> Type of result.
+     * @return the result.
+     */
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Shard operation was interrupted.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException("Shard operation failed.", e.getCause());
+        }
+    }
+
+    /**
+     * @return the shard of the current thread, shard 0 outside of any shard.
+     */
+    private DataSource currentShard() {
+        Integer shard = SHARD.get();
+        return shards[shard == null ? 0 : shard];
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return currentShard().getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password)
+            throws SQLException {
+        return currentShard().getConnection(username, password);
+    }
+
+    /**
+     * Stop the shard threads and close the shards.
+     * @throws SQLException if a shard cannot be closed.
+     */
+    @Override
+    public void close() throws SQLException {
+        executor.shutdownNow();
+        DataSourceCloser.closeAll(shards);
+    }
+}
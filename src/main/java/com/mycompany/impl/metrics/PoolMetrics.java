@@ -0,0 +1,59 @@
+package com.mycompany.impl.metrics;
+
+import com.mycompany.impl.datasource.MonitoredDataSource;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Gauges of the connection pool, published through the actuator metrics
+ * endpoint. When waiters stays above 0 and the borrow wait grows while the
+ * throughput of the services is flat, the pool is the bottleneck; when active
+ * stays well under maxTotal, connections can be given back to the database.
+ */
+public class PoolMetrics implements PublicMetrics {
+
+    /**
+     * Prefix of the metric names.
+     */
+    private static final String PREFIX = "datasource.pool.";
+
+    /**
+     * Monitored pool.
+     */
+    private final MonitoredDataSource dataSource;
+
+    /**
+     * Build the metrics of a pool.
+     * @param dataSource Monitored pool.
+     */
+    public PoolMetrics(MonitoredDataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * The metrics are datasource.pool.[active|idle|waiters|maxTotal], the
+     * borrow waits datasource.pool.[mean|max]BorrowWaitMillis and the counters
+     * datasource.pool.[borrowed|created|destroyed].
+     * @return the metrics.
+     */
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(PREFIX + "active", dataSource.getNumActive()));
+        metrics.add(new Metric<>(PREFIX + "idle", dataSource.getNumIdle()));
+        metrics.add(new Metric<>(PREFIX + "waiters", dataSource.getNumWaiters()));
+        metrics.add(new Metric<>(PREFIX + "maxTotal", dataSource.getMaxTotal()));
+        metrics.add(new Metric<>(PREFIX + "meanBorrowWaitMillis",
+                dataSource.getMeanBorrowWaitTimeMillis()));
+        metrics.add(new Metric<>(PREFIX + "maxBorrowWaitMillis",
+                dataSource.getMaxBorrowWaitTimeMillis()));
+        metrics.add(new Metric<>(PREFIX + "borrowed", dataSource.getBorrowedCount()));
+        metrics.add(new Metric<>(PREFIX + "created", dataSource.getCreatedCount()));
+        metrics.add(new Metric<>(PREFIX + "destroyed", dataSource.getDestroyedCount()));
+        return metrics;
+    }
+}
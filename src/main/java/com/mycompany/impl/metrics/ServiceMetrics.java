@@ -0,0 +1,219 @@
+package com.mycompany.impl.metrics;
+
+import com.mycompany.api.dto.EvaluationStageEnum;
+import com.mycompany.api.dto.EvaluationStatusEnum;
+import com.mycompany.api.dto.RiskTypeEnum;
+import com.mycompany.api.services.IEvaluationStageListener;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timers of the service operations and evaluation stages, and evaluation
+ * outcomes by risk type, published through the actuator metrics endpoint.
+ * Recording only adds to striped LongAdder cells, so the hot path takes no lock
+ * and threads do not contend on a counter. Throughput and mean latency are
+ * derived from the rates of the count and total time metrics between two reads.
+ */
+public class ServiceMetrics implements PublicMetrics, IEvaluationStageListener {
+
+    /**
+     * Prefix of the metric names.
+     */
+    private static final String PREFIX = "credit.";
+
+    /**
+     * Name of the outcomes whose risk type is not known.
+     */
+    private static final String UNKNOWN_RISK = "UNKNOWN";
+
+    /**
+     * Nanoseconds per millisecond, the unit of the latencies.
+     */
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Risk types.
+     */
+    private static final RiskTypeEnum[] RISKS = RiskTypeEnum.values();
+
+    /**
+     * Timers of the operations, by ordinal.
+     */
+    private final Timer[] operations = new Timer[TimedOperationEnum.values().length];
+
+    /**
+     * Timers of the evaluation stages, by ordinal.
+     */
+    private final Timer[] stages = new Timer[EvaluationStageEnum.values().length];
+
+    /**
+     * Evaluation outcomes by status and risk type ordinal, the last column
+     * counts the outcomes without a risk type.
+     */
+    private final LongAdder[][] outcomes =
+            new LongAdder[EvaluationStatusEnum.values().length][RISKS.length + 1];
+
+    /**
+     * Number of credits committed in groups.
+     */
+    private final LongAdder groupCommittedCredits = new LongAdder();
+
+    /**
+     * Build the metrics.
+     */
+    public ServiceMetrics() {
+        for (TimedOperationEnum operation : TimedOperationEnum.values()) {
+            operations[operation.ordinal()] = new Timer();
+        }
+        for (EvaluationStageEnum stage : EvaluationStageEnum.values()) {
+            stages[stage.ordinal()] = new Timer();
+        }
+        for (LongAdder[] statusOutcomes : outcomes) {
+            for (int i = 0; i < statusOutcomes.length; i++) {
+                statusOutcomes[i] = new LongAdder();
+            }
+        }
+    }
+
+    /**
+     * Record a completed operation.
+     * @param operation Timed operation.
+     * @param start Start of the operation, as given by System.nanoTime().
+     */
+    public void record(TimedOperationEnum operation, long start) {
+        operations[operation.ordinal()].record(System.nanoTime() - start);
+    }
+
+    /**
+     * Record a committed group of credits.
+     * @param start Start of the commit, as given by System.nanoTime().
+     * @param credits Number of credits in the group.
+     */
+    public void recordGroupCommit(long start, int credits) {
+        record(TimedOperationEnum.GROUP_COMMIT, start);
+        groupCommittedCredits.add(credits);
+    }
+
+    /**
+     * Count an evaluation outcome.
+     * @param status Evaluation status.
+     * @param risk Risk type of the client, null if it is not known.
+     */
+    public void recordOutcome(EvaluationStatusEnum status, RiskTypeEnum risk) {
+        outcomes[status.ordinal()][risk == null ? RISKS.length : risk.ordinal()]
+                .increment();
+    }
+
+    @Override
+    public void stageCompleted(EvaluationStageEnum stage, long nanos) {
+        stages[stage.ordinal()].record(nanos);
+    }
+
+    /**
+     * @param operation Timed operation.
+     * @return the number of completed operations.
+     */
+    public long getCount(TimedOperationEnum operation) {
+        return operations[operation.ordinal()].count.sum();
+    }
+
+    /**
+     * @return the number of credits committed in groups.
+     */
+    public long getGroupCommittedCredits() {
+        return groupCommittedCredits.sum();
+    }
+
+    /**
+     * @param status Evaluation status.
+     * @param risk Risk type, null for the outcomes without a risk type.
+     * @return the number of outcomes.
+     */
+    public long getOutcomeCount(EvaluationStatusEnum status, RiskTypeEnum risk) {
+        return outcomes[status.ordinal()][risk == null ? RISKS.length : risk.ordinal()]
+                .sum();
+    }
+
+    /**
+     * The metrics are, for each operation and stage, credit.[name].count,
+     * credit.[name].totalMillis and credit.[name].maxMillis, the greatest
+     * latency since the previous read, credit.evaluation.[status].[risk] for
+     * each outcome, and credit.groupCommit.credits, so the mean group size is
+     * its ratio to credit.groupCommit.count.
+     * @return the metrics.
+     */
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        for (TimedOperationEnum operation : TimedOperationEnum.values()) {
+            operations[operation.ordinal()].addMetrics(
+                    PREFIX + operation.getMetricName(), metrics);
+        }
+        for (EvaluationStageEnum stage : EvaluationStageEnum.values()) {
+            stages[stage.ordinal()].addMetrics(
+                    PREFIX + "stage." + stage.name().toLowerCase(), metrics);
+        }
+        for (EvaluationStatusEnum status : EvaluationStatusEnum.values()) {
+            String prefix = PREFIX + "evaluation." + status.name().toLowerCase() + ".";
+            LongAdder[] statusOutcomes = outcomes[status.ordinal()];
+            for (int i = 0; i < statusOutcomes.length; i++) {
+                metrics.add(new Metric<>(prefix + (i < RISKS.length ? RISKS[i].name()
+                        : UNKNOWN_RISK), statusOutcomes[i].sum()));
+            }
+        }
+        metrics.add(new Metric<>(PREFIX + TimedOperationEnum.GROUP_COMMIT.getMetricName()
+                + ".credits", groupCommittedCredits.sum()));
+        return metrics;
+    }
+
+    /**
+     * Count, total and maximum latency of an operation.
+     */
+    private static class Timer {
+
+        /**
+         * Number of completed operations.
+         */
+        private final LongAdder count = new LongAdder();
+
+        /**
+         * Total latency, in nanoseconds.
+         */
+        private final LongAdder totalNanos = new LongAdder();
+
+        /**
+         * Greatest latency since the previous read, in nanoseconds.
+         */
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+        /**
+         * Record a latency.
+         * @param nanos Latency, in nanoseconds.
+         */
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        /**
+         * Add the metrics of the timer and reset its maximum.
+         * @param name Metric name prefix.
+         * @param metrics Metrics.
+         */
+        void addMetrics(String name, List<Metric<?>> metrics) {
+            metrics.add(new Metric<>(name + ".count", count.sum()));
+            metrics.add(new Metric<>(name + ".totalMillis",
+                    totalNanos.sum() / NANOS_PER_MILLI));
+            metrics.add(new Metric<>(name + ".maxMillis",
+                    maxNanos.getThenReset() / NANOS_PER_MILLI));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.mycompany.impl.metrics;
+
+/**
+ * Enum with the timed operations of the people and credit evaluation services.
+ */
+public enum TimedOperationEnum {
+
+    /**
+     * People service isClient.
+     */
+    IS_CLIENT("isClient"),
+
+    /**
+     * People service createClient.
+     */
+    CREATE_CLIENT("createClient"),
+
+    /**
+     * People service getClient.
+     */
+    GET_CLIENT("getClient"),
+
+    /**
+     * People service getOrCreateClient.
+     */
+    GET_OR_CREATE_CLIENT("getOrCreateClient"),
+
+    /**
+     * People service getClients.
+     */
+    GET_CLIENTS("getClients"),
+
+    /**
+     * People service createClients.
+     */
+    CREATE_CLIENTS("createClients"),
+
+    /**
+     * Lookup of the exposure summary of a client, which gives both its maximum
+     * past credit and its total current loans.
+     */
+    GET_EXPOSURE("getExposure"),
+
+    /**
+     * Lookup of the exposure summaries of several clients.
+     */
+    GET_EXPOSURES("getExposures"),
+
+    /**
+     * Credit firm getRiskByClient.
+     */
+    GET_RISK_BY_CLIENT("getRiskByClient"),
+
+    /**
+     * Credit firm getRiskByClients.
+     */
+    GET_RISK_BY_CLIENTS("getRiskByClients"),
+
+    /**
+     * Credit evaluation service evaluateCreditAmount.
+     */
+    EVALUATE_CREDIT_AMOUNT("evaluateCreditAmount"),
+
+    /**
+     * Insert of an approved credit and its exposure summary update.
+     */
+    ASSIGN_CREDIT("assignCredit"),
+
+    /**
+     * Commit of a batch of approved credits grouped from concurrent evaluations.
+     */
+    GROUP_COMMIT("groupCommit");
+
+    /**
+     * Name of the operation in the metrics.
+     */
+    private final String metricName;
+
+    /**
+     * @param metricName Name of the operation in the metrics.
+     */
+    TimedOperationEnum(String metricName) {
+        this.metricName = metricName;
+    }
+
+    /**
+     * @return the name of the operation in the metrics.
+     */
+    public String getMetricName() {
+        return metricName;
+    }
+}
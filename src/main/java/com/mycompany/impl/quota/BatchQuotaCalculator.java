@@ -0,0 +1,366 @@
+package com.mycompany.impl.quota;
+
+import java.math.RoundingMode;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Credit quota calculator for whole portfolios, with the accounts given as
+ * columns of minor units instead of one DTO per account. The whole batch is
+ * evaluated with the policy that is current when it starts, and large batches
+ * are split across a fork/join pool.
+ *
+ * <p>The results are the ones of {@link QuotaEngine#evaluate(CreditPolicy, long,
+ * long, long, com.mycompany.api.dto.RiskTypeEnum)}. Chunks whose amounts are all
+ * between zero and the largest salary that cannot overflow go through a loop
+ * with no data dependent branches; the other chunks, and every chunk when the
+ * rounding mode is UNNECESSARY, go through the scalar engine.</p>
+ */
+public class BatchQuotaCalculator {
+
+    /**
+     * Default number of accounts under which a batch is not split.
+     */
+    public static final int DEFAULT_THRESHOLD = 8192;
+
+    /**
+     * Quota engine.
+     */
+    private final QuotaEngine quotaEngine;
+
+    /**
+     * Pool that evaluates the parts of a large batch.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Number of accounts under which a batch is not split.
+     */
+    private final int threshold;
+
+    /**
+     * Build a calculator that uses the common fork/join pool.
+     * @param quotaEngine Quota engine.
+     */
+    public BatchQuotaCalculator(final QuotaEngine quotaEngine) {
+        this(quotaEngine, ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Build a calculator.
+     * @param quotaEngine Quota engine.
+     * @param pool Pool that evaluates the parts of a large batch.
+     * @param threshold Number of accounts under which a batch is not split.
+     */
+    public BatchQuotaCalculator(final QuotaEngine quotaEngine, final ForkJoinPool pool,
+            final int threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Threshold should be positive.");
+        }
+        this.quotaEngine = quotaEngine;
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Evaluate the credit quota of several accounts.
+     * @param salary Current salaries, in minor units.
+     * @param maxPast Maximum past credits, in minor units.
+     * @param openTotal Total current loans, in minor units.
+     * @param riskOrdinal Risk type ordinals.
+     * @param quota Output quotas, in minor units.
+     * @throws ArithmeticException if a quota does not fit in a long.
+     */
+    public void evaluate(long[] salary, long[] maxPast, long[] openTotal,
+            byte[] riskOrdinal, long[] quota) {
+        evaluate(quotaEngine.getPolicy(), salary, maxPast, openTotal, riskOrdinal, quota);
+    }
+
+    /**
+     * Evaluate the credit quota of several accounts with a given policy, so the
+     * batches of a long job can share the policy it started with.
+     * @param policy Credit policy of the quota engine.
+     * @param salary Current salaries, in minor units.
+     * @param maxPast Maximum past credits, in minor units.
+     * @param openTotal Total current loans, in minor units.
+     * @param riskOrdinal Risk type ordinals.
+     * @param quota Output quotas, in minor units.
+     * @throws ArithmeticException if a quota does not fit in a long.
+     */
+    public void evaluate(CreditPolicy policy, long[] salary, long[] maxPast,
+            long[] openTotal, byte[] riskOrdinal, long[] quota) {
+        int length = salary.length;
+        if (maxPast.length != length || openTotal.length != length
+                || riskOrdinal.length != length || quota.length != length) {
+            throw new IllegalArgumentException("Columns should have the same length.");
+        }
+        Batch batch = new Batch(quotaEngine, policy, salary, maxPast, openTotal,
+                riskOrdinal, quota);
+        if (length <= threshold) {
+            batch.evaluate(0, length);
+        } else {
+            pool.invoke(new BatchTask(batch, 0, length, threshold));
+        }
+    }
+
+    /**
+     * Columns of a batch and the policy they are evaluated with.
+     */
+    private static final class Batch {
+
+        /**
+         * Quota engine, for the chunks that need exact arithmetic.
+         */
+        private final QuotaEngine quotaEngine;
+
+        /**
+         * Policy of the batch.
+         */
+        private final CreditPolicy policy;
+
+        /**
+         * Salary multipliers by risk type ordinal, zero for no credit.
+         */
+        private final long[] multipliers;
+
+        /**
+         * Whether each risk type gets credit.
+         */
+        private final boolean[] eligible;
+
+        /**
+         * Largest amount of the branch-free loop.
+         */
+        private final long bound;
+
+        /**
+         * Threshold of twice the division remainder to round up.
+         */
+        private final long roundThreshold;
+
+        /**
+         * Mask of the quotient bit added to twice the remainder, 1 for HALF_EVEN.
+         */
+        private final long evenBias;
+
+        /**
+         * Whether the branch-free loop can reproduce the rounding mode.
+         */
+        private final boolean fastRounding;
+
+        /**
+         * Current salaries.
+         */
+        private final long[] salary;
+
+        /**
+         * Maximum past credits.
+         */
+        private final long[] maxPast;
+
+        /**
+         * Total current loans.
+         */
+        private final long[] openTotal;
+
+        /**
+         * Risk type ordinals.
+         */
+        private final byte[] riskOrdinal;
+
+        /**
+         * Output quotas.
+         */
+        private final long[] quota;
+
+        /**
+         * Build a batch.
+         * @param quotaEngine Quota engine.
+         * @param policy Policy of the batch.
+         * @param salary Current salaries.
+         * @param maxPast Maximum past credits.
+         * @param openTotal Total current loans.
+         * @param riskOrdinal Risk type ordinals.
+         * @param quota Output quotas.
+         */
+        private Batch(final QuotaEngine quotaEngine, final CreditPolicy policy,
+                final long[] salary, final long[] maxPast, final long[] openTotal,
+                final byte[] riskOrdinal, final long[] quota) {
+            this.quotaEngine = quotaEngine;
+            this.policy = policy;
+            this.salary = salary;
+            this.maxPast = maxPast;
+            this.openTotal = openTotal;
+            this.riskOrdinal = riskOrdinal;
+            this.quota = quota;
+            int size = policy.multipliers.length;
+            this.multipliers = new long[size];
+            this.eligible = new boolean[size];
+            long maxMultiplier = 1L;
+            for (int r = 0; r < size; r++) {
+                eligible[r] = policy.multipliers[r] != QuotaEngine.NO_CREDIT;
+                multipliers[r] = eligible[r] ? policy.multipliers[r] : 0L;
+                maxMultiplier = Math.max(maxMultiplier, multipliers[r]);
+            }
+            this.bound = Long.MAX_VALUE / maxMultiplier;
+            long divisor = QuotaEngine.MULTIPLIER_SCALE;
+            RoundingMode mode = quotaEngine.getRoundingMode();
+            boolean fast = true;
+            long bias = 0L;
+            long roundAt;
+            switch (mode) {
+                case UP:
+                case CEILING:
+                    roundAt = 0L;
+                    break;
+                case DOWN:
+                case FLOOR:
+                    roundAt = Long.MAX_VALUE;
+                    break;
+                case HALF_UP:
+                    roundAt = divisor - 1;
+                    break;
+                case HALF_DOWN:
+                    roundAt = divisor;
+                    break;
+                case HALF_EVEN:
+                    roundAt = divisor;
+                    bias = 1L;
+                    break;
+                default:
+                    roundAt = Long.MAX_VALUE;
+                    fast = false;
+            }
+            this.roundThreshold = roundAt;
+            this.evenBias = bias;
+            this.fastRounding = fast;
+        }
+
+        /**
+         * Evaluate a range of accounts.
+         * @param from First account, inclusive.
+         * @param to Last account, exclusive.
+         */
+        private void evaluate(int from, int to) {
+            if (fastRounding && inRange(from, to)) {
+                evaluateInRange(from, to);
+            } else {
+                evaluateExact(from, to);
+            }
+        }
+
+        /**
+         * @param from First account, inclusive.
+         * @param to Last account, exclusive.
+         * @return true if all amounts are between zero and the bound.
+         */
+        private boolean inRange(int from, int to) {
+            long max = 0L;
+            long signs = 0L;
+            for (int i = from; i < to; i++) {
+                max = Math.max(max,
+                        Math.max(salary[i], Math.max(maxPast[i], openTotal[i])));
+                signs |= salary[i] | maxPast[i] | openTotal[i];
+            }
+            return signs >= 0 && max <= bound;
+        }
+
+        /**
+         * Evaluate accounts whose amounts cannot overflow, with no data dependent
+         * branches.
+         * @param from First account, inclusive.
+         * @param to Last account, exclusive.
+         */
+        private void evaluateInRange(int from, int to) {
+            long divisor = QuotaEngine.MULTIPLIER_SCALE;
+            long[] floors = policy.floors;
+            long[] caps = policy.caps;
+            long[] minimumSalaries = policy.minimumSalaries;
+            for (int i = from; i < to; i++) {
+                int r = riskOrdinal[i];
+                long s = salary[i];
+                long product = s * multipliers[r];
+                long quotient = product / divisor;
+                long remainder = product - quotient * divisor;
+                long roundUp = 2 * remainder + (quotient & evenBias) > roundThreshold ? 1L : 0L;
+                long salaryQuota = quotient + roundUp;
+                long limit = Math.min(
+                        Math.max(Math.max(salaryQuota, maxPast[i]), floors[r]), caps[r]);
+                boolean gets = eligible[r] & s >= minimumSalaries[r];
+                quota[i] = gets ? limit - openTotal[i] : 0L;
+            }
+        }
+
+        /**
+         * Evaluate accounts with the exact arithmetic of the scalar engine.
+         * @param from First account, inclusive.
+         * @param to Last account, exclusive.
+         */
+        private void evaluateExact(int from, int to) {
+            for (int i = from; i < to; i++) {
+                quota[i] = quotaEngine.evaluate(policy, maxPast[i], openTotal[i],
+                        salary[i], QuotaEngine.riskOf(riskOrdinal[i]));
+            }
+        }
+    }
+
+    /**
+     * Fork/join task that evaluates a range of a batch.
+     */
+    private static final class BatchTask extends RecursiveAction {
+
+        /**
+         * Serial version uid.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Batch.
+         */
+        private final transient Batch batch;
+
+        /**
+         * First account, inclusive.
+         */
+        private final int from;
+
+        /**
+         * Last account, exclusive.
+         */
+        private final int to;
+
+        /**
+         * Number of accounts under which a range is not split.
+         */
+        private final int threshold;
+
+        /**
+         * Build a task.
+         * @param batch Batch.
+         * @param from First account, inclusive.
+         * @param to Last account, exclusive.
+         * @param threshold Number of accounts under which a range is not split.
+         */
+        private BatchTask(final Batch batch, final int from, final int to,
+                final int threshold) {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        /**
+         * Evaluate the range, or split it in two halves.
+         */
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                batch.evaluate(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchTask(batch, from, middle, threshold),
+                    new BatchTask(batch, middle, to, threshold));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.mycompany.impl.quota;
+
+import com.mycompany.api.dto.RiskTypeEnum;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Immutable credit policy compiled for a quota engine: the rules of each risk
+ * type are stored in minor units, in arrays indexed by risk type ordinal. A
+ * policy is never modified, a new policy replaces it as a whole.
+ */
+public final class CreditPolicy {
+
+    /**
+     * Version of the policy, increased by each reload.
+     */
+    private final long version;
+
+    /**
+     * Number of decimals of the minor units.
+     */
+    private final int scale;
+
+    /**
+     * Rules the policy was compiled from.
+     */
+    private final Map<RiskTypeEnum, CreditPolicyRule> rules;
+
+    /**
+     * Salary multipliers by risk type ordinal, in units of
+     * 1 / QuotaEngine.MULTIPLIER_SCALE, or QuotaEngine.NO_CREDIT.
+     */
+    final long[] multipliers;
+
+    /**
+     * Minimum credit limits by risk type ordinal, in minor units.
+     */
+    final long[] floors;
+
+    /**
+     * Maximum credit limits by risk type ordinal, in minor units.
+     */
+    final long[] caps;
+
+    /**
+     * Minimum salaries by risk type ordinal, in minor units.
+     */
+    final long[] minimumSalaries;
+
+    /**
+     * Compile a policy.
+     * @param version Version of the policy.
+     * @param rules Rules by risk type, a missing risk type gets no credit.
+     * @param scale Number of decimals of the minor units.
+     * @param roundingMode Rounding mode of the values that do not fit in minor units.
+     */
+    CreditPolicy(final long version, final Map<RiskTypeEnum, CreditPolicyRule> rules,
+            final int scale, final RoundingMode roundingMode) {
+        int size = RiskTypeEnum.values().length;
+        this.version = version;
+        this.scale = scale;
+        Map<RiskTypeEnum, CreditPolicyRule> copy = new EnumMap<>(RiskTypeEnum.class);
+        copy.putAll(rules);
+        this.rules = Collections.unmodifiableMap(copy);
+        this.multipliers = new long[size];
+        this.floors = new long[size];
+        this.caps = new long[size];
+        this.minimumSalaries = new long[size];
+        for (RiskTypeEnum risk : RiskTypeEnum.values()) {
+            int i = risk.ordinal();
+            CreditPolicyRule rule = rules.get(risk);
+            if (rule == null || rule.getMultiplier() == null) {
+                multipliers[i] = QuotaEngine.NO_CREDIT;
+                caps[i] = Long.MAX_VALUE;
+                continue;
+            }
+            multipliers[i] = rule.getMultiplier()
+                    .multiply(BigDecimal.valueOf(QuotaEngine.MULTIPLIER_SCALE))
+                    .setScale(0, roundingMode).longValueExact();
+            floors[i] = toMinorUnits(rule.getFloor(), scale, roundingMode);
+            caps[i] = rule.getCap() == null ? Long.MAX_VALUE
+                    : toMinorUnits(rule.getCap(), scale, roundingMode);
+            minimumSalaries[i] = toMinorUnits(rule.getMinimumSalary(), scale,
+                    roundingMode);
+        }
+    }
+
+    /**
+     * @return the rules of the former hardcoded policy: salary times 3, 3.5, 4
+     * and 1 for no risk, 3 and 6 months in arrears and pledge, and no credit for
+     * seized goods.
+     */
+    public static Map<RiskTypeEnum, CreditPolicyRule> defaultRules() {
+        Map<RiskTypeEnum, CreditPolicyRule> rules = new EnumMap<>(RiskTypeEnum.class);
+        rules.put(RiskTypeEnum.NONE, CreditPolicyRule.of(new BigDecimal("3")));
+        rules.put(RiskTypeEnum.IN_ARREARS_3_MONTHS,
+                CreditPolicyRule.of(new BigDecimal("3.5")));
+        rules.put(RiskTypeEnum.IN_ARREARS_6_MONTHS,
+                CreditPolicyRule.of(new BigDecimal("4")));
+        rules.put(RiskTypeEnum.PLEDGE, CreditPolicyRule.of(BigDecimal.ONE));
+        rules.put(RiskTypeEnum.SEIZED, CreditPolicyRule.of(null));
+        return rules;
+    }
+
+    /**
+     * @return the version of the policy.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the number of decimals of the minor units.
+     */
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * @return the rules the policy was compiled from.
+     */
+    public Map<RiskTypeEnum, CreditPolicyRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * @param amount Money amount.
+     * @param scale Number of decimals of the minor units.
+     * @param roundingMode Rounding mode.
+     * @return the amount in minor units.
+     */
+    private static long toMinorUnits(final BigDecimal amount, final int scale,
+            final RoundingMode roundingMode) {
+        return amount.setScale(scale, roundingMode).unscaledValue().longValueExact();
+    }
+}
@@ -0,0 +1,152 @@
+package com.mycompany.impl.quota;
+
+import com.mycompany.api.dto.RiskTypeEnum;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Load the credit policy of a quota engine from a properties file, with a
+ * credit.policy.[risk type].[multiplier|floor|cap|minimum.salary] entry per rule
+ * value. A risk type without multiplier gets no credit, a missing floor or
+ * minimum salary is zero and a missing cap means no maximum. A file with an
+ * invalid rule is rejected as a whole and the current policy is kept.
+ */
+public class CreditPolicyLoader {
+
+    /**
+     * Prefix of the rule properties.
+     */
+    private static final String PREFIX = "credit.policy.";
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(CreditPolicyLoader.class);
+
+    /**
+     * Properties file with the rules.
+     */
+    private final Resource resource;
+
+    /**
+     * Engine that gets the policy.
+     */
+    private final QuotaEngine quotaEngine;
+
+    /**
+     * Modification time of the loaded file, in milliseconds.
+     */
+    private long lastModified = -1L;
+
+    /**
+     * Build a loader.
+     * @param resource Properties file with the rules.
+     * @param quotaEngine Engine that gets the policy.
+     */
+    public CreditPolicyLoader(final Resource resource, final QuotaEngine quotaEngine) {
+        this.resource = resource;
+        this.quotaEngine = quotaEngine;
+    }
+
+    /**
+     * Load the rules and make them the current policy of the engine.
+     * @return the new policy.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if a rule is invalid.
+     */
+    public synchronized CreditPolicy reload() throws IOException {
+        long modified = modificationTime();
+        Map<RiskTypeEnum, CreditPolicyRule> rules =
+                parse(PropertiesLoaderUtils.loadProperties(resource));
+        CreditPolicy policy;
+        try {
+            policy = quotaEngine.setRules(rules);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Credit policy values are out of range.",
+                    e);
+        }
+        lastModified = modified;
+        LOGGER.info("Credit policy version {} loaded from {}", policy.getVersion(),
+                resource.getDescription());
+        return policy;
+    }
+
+    /**
+     * Reload the rules if the file changed since the last load. Errors are
+     * logged and the current policy is kept.
+     * @return true if the policy was replaced.
+     */
+    public synchronized boolean reloadIfModified() {
+        try {
+            if (lastModified >= 0 && modificationTime() == lastModified) {
+                return false;
+            }
+            reload();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Credit policy not reloaded from " + resource.getDescription(),
+                    e);
+            return false;
+        }
+    }
+
+    /**
+     * Parse the rules of a properties file.
+     * @param properties Properties with the rules.
+     * @return the rules by risk type.
+     * @throws IllegalArgumentException if a rule is invalid.
+     */
+    public static Map<RiskTypeEnum, CreditPolicyRule> parse(final Properties properties) {
+        Map<RiskTypeEnum, CreditPolicyRule> rules = new EnumMap<>(RiskTypeEnum.class);
+        for (RiskTypeEnum risk : RiskTypeEnum.values()) {
+            String prefix = PREFIX + risk.name() + ".";
+            BigDecimal multiplier = decimal(properties, prefix + "multiplier");
+            BigDecimal floor = decimal(properties, prefix + "floor");
+            BigDecimal minimumSalary = decimal(properties, prefix + "minimum.salary");
+            rules.put(risk, new CreditPolicyRule(multiplier,
+                    floor == null ? BigDecimal.ZERO : floor,
+                    decimal(properties, prefix + "cap"),
+                    minimumSalary == null ? BigDecimal.ZERO : minimumSalary));
+        }
+        return rules;
+    }
+
+    /**
+     * @param properties Properties.
+     * @param key Property key.
+     * @return the decimal value of a property, or null if it is missing or blank.
+     */
+    private static BigDecimal decimal(final Properties properties, final String key) {
+        String value = properties.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return new BigDecimal(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid credit policy value " + key + "="
+                    + value, e);
+        }
+    }
+
+    /**
+     * @return the modification time of the file, or 0 if it is unknown, e.g.
+     * inside a jar.
+     */
+    private long modificationTime() {
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.mycompany.impl.quota;
+
+import java.math.BigDecimal;
+
+/**
+ * Credit policy rule of a risk type. The credit limit of a client is its salary
+ * times the multiplier or its maximum past credit, whichever is greater, kept
+ * between the floor and the cap. Clients with a salary under the minimum salary,
+ * or whose risk type has no multiplier, get no credit.
+ */
+public final class CreditPolicyRule {
+
+    /**
+     * Salary multiplier, null if the risk type gets no credit.
+     */
+    private final BigDecimal multiplier;
+
+    /**
+     * Minimum credit limit.
+     */
+    private final BigDecimal floor;
+
+    /**
+     * Maximum credit limit, null if there is no maximum.
+     */
+    private final BigDecimal cap;
+
+    /**
+     * Minimum salary to get credit.
+     */
+    private final BigDecimal minimumSalary;
+
+    /**
+     * Build a rule.
+     * @param multiplier Salary multiplier, null if the risk type gets no credit.
+     * @param floor Minimum credit limit.
+     * @param cap Maximum credit limit, null if there is no maximum.
+     * @param minimumSalary Minimum salary to get credit.
+     */
+    public CreditPolicyRule(final BigDecimal multiplier, final BigDecimal floor,
+            final BigDecimal cap, final BigDecimal minimumSalary) {
+        if (floor == null || minimumSalary == null) {
+            throw new IllegalArgumentException("Floor and minimum salary are required.");
+        }
+        if (isNegative(multiplier) || isNegative(floor) || isNegative(cap)
+                || isNegative(minimumSalary)) {
+            throw new IllegalArgumentException("Credit policy values should not be "
+                    + "negative.");
+        }
+        if (cap != null && floor.compareTo(cap) > 0) {
+            throw new IllegalArgumentException("Credit policy floor should not be "
+                    + "greater than its cap.");
+        }
+        this.multiplier = multiplier;
+        this.floor = floor;
+        this.cap = cap;
+        this.minimumSalary = minimumSalary;
+    }
+
+    /**
+     * Build a rule with a multiplier only.
+     * @param multiplier Salary multiplier, null if the risk type gets no credit.
+     * @return the rule.
+     */
+    public static CreditPolicyRule of(final BigDecimal multiplier) {
+        return new CreditPolicyRule(multiplier, BigDecimal.ZERO, null, BigDecimal.ZERO);
+    }
+
+    /**
+     * @return the salary multiplier, null if the risk type gets no credit.
+     */
+    public BigDecimal getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * @return the minimum credit limit.
+     */
+    public BigDecimal getFloor() {
+        return floor;
+    }
+
+    /**
+     * @return the maximum credit limit, null if there is no maximum.
+     */
+    public BigDecimal getCap() {
+        return cap;
+    }
+
+    /**
+     * @return the minimum salary to get credit.
+     */
+    public BigDecimal getMinimumSalary() {
+        return minimumSalary;
+    }
+
+    /**
+     * @param value Value, it may be null.
+     * @return true if the value is negative.
+     */
+    private static boolean isNegative(final BigDecimal value) {
+        return value != null && value.signum() < 0;
+    }
+}
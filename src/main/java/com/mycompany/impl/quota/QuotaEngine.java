@@ -0,0 +1,275 @@
+package com.mycompany.impl.quota;
+
+import com.mycompany.api.dto.RiskTypeEnum;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+
+/**
+ * Credit quota calculator working on money amounts in minor units, i.e. longs
+ * scaled by 10^scale (cents with the default scale of 2). The credit limit of a
+ * client is the maximum between its salary times the multiplier of its risk
+ * type and its maximum past credit, kept between the floor and the cap of its
+ * risk type, and its quota is that limit minus its current loans. Clients with
+ * a risk type without multiplier, or with a salary under the minimum salary of
+ * their risk type, get no credit.
+ *
+ * <p>The rules come from a {@link CreditPolicy} snapshot that can be replaced
+ * at any time. Each evaluation reads the current snapshot once, with no lock,
+ * so it never sees a half-applied policy.</p>
+ *
+ * <p>Rounding policy: amounts with more decimals than the scale, and salaries
+ * times fractional multipliers, are rounded to minor units with a single
+ * rounding mode (HALF_EVEN by default). Nothing else is rounded.</p>
+ */
+public class QuotaEngine {
+
+    /**
+     * Default number of decimals of the minor units.
+     */
+    public static final int DEFAULT_SCALE = 2;
+
+    /**
+     * Multipliers are stored in units of 1 / MULTIPLIER_SCALE.
+     */
+    public static final long MULTIPLIER_SCALE = 10000L;
+
+    /**
+     * Multiplier of the risk types that get no credit.
+     */
+    public static final long NO_CREDIT = -1L;
+
+    /**
+     * Risk types by ordinal.
+     */
+    private static final RiskTypeEnum[] RISKS = RiskTypeEnum.values();
+
+    /**
+     * Number of decimals of the minor units.
+     */
+    private final int scale;
+
+    /**
+     * 10^scale.
+     */
+    private final long unit;
+
+    /**
+     * Rounding mode of the amounts that do not fit in minor units.
+     */
+    private final RoundingMode roundingMode;
+
+    /**
+     * Current credit policy.
+     */
+    private volatile CreditPolicy policy;
+
+    /**
+     * Build an engine with cents as minor units and HALF_EVEN rounding.
+     */
+    public QuotaEngine() {
+        this(DEFAULT_SCALE, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Build an engine.
+     * @param scale Number of decimals of the minor units, from 0 to 6.
+     * @param roundingMode Rounding mode of the amounts that do not fit in minor units.
+     */
+    public QuotaEngine(final int scale, final RoundingMode roundingMode) {
+        if (scale < 0 || scale > 6) {
+            throw new IllegalArgumentException("Scale should be between 0 and 6.");
+        }
+        this.scale = scale;
+        this.unit = pow10(scale);
+        this.roundingMode = roundingMode;
+        this.policy = new CreditPolicy(0L, CreditPolicy.defaultRules(), scale,
+                roundingMode);
+    }
+
+    /**
+     * Compile rules and make them the current policy. Evaluations in progress
+     * finish with the former policy.
+     * @param rules Rules by risk type, a missing risk type gets no credit.
+     * @return the new policy.
+     * @throws ArithmeticException if a rule does not fit in minor units.
+     */
+    public synchronized CreditPolicy setRules(Map<RiskTypeEnum, CreditPolicyRule> rules) {
+        CreditPolicy newPolicy = new CreditPolicy(policy.getVersion() + 1, rules, scale,
+                roundingMode);
+        policy = newPolicy;
+        return newPolicy;
+    }
+
+    /**
+     * @return the current credit policy.
+     */
+    public CreditPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Return the credit quota of a client in minor units.
+     * @param maxPastCredit Maximum past credit, in minor units.
+     * @param totalCurrentCredit Total current loans, in minor units.
+     * @param currentSalary Current salary, in minor units.
+     * @param riskTypeEnum Risk type, null gets no credit.
+     * @return the quota in minor units, it may be negative.
+     * @throws ArithmeticException if the quota does not fit in a long.
+     */
+    public long evaluate(long maxPastCredit, long totalCurrentCredit, long currentSalary,
+            RiskTypeEnum riskTypeEnum) {
+        return evaluate(policy, maxPastCredit, totalCurrentCredit, currentSalary,
+                riskTypeEnum);
+    }
+
+    /**
+     * Return the credit quota of a client in minor units with a given policy,
+     * e.g. to evaluate a whole batch with the same policy.
+     * @param creditPolicy Credit policy compiled by this engine.
+     * @param maxPastCredit Maximum past credit, in minor units.
+     * @param totalCurrentCredit Total current loans, in minor units.
+     * @param currentSalary Current salary, in minor units.
+     * @param riskTypeEnum Risk type, null gets no credit.
+     * @return the quota in minor units, it may be negative.
+     * @throws ArithmeticException if the quota does not fit in a long.
+     */
+    public long evaluate(CreditPolicy creditPolicy, long maxPastCredit,
+            long totalCurrentCredit, long currentSalary, RiskTypeEnum riskTypeEnum) {
+        if (riskTypeEnum == null) {
+            return 0L;
+        }
+        int i = riskTypeEnum.ordinal();
+        long multiplier = creditPolicy.multipliers[i];
+        if (multiplier == NO_CREDIT || currentSalary < creditPolicy.minimumSalaries[i]) {
+            return 0L;
+        }
+        long salaryQuota = divide(Math.multiplyExact(currentSalary, multiplier),
+                MULTIPLIER_SCALE, roundingMode);
+        long limit = Math.min(Math.max(Math.max(salaryQuota, maxPastCredit),
+                creditPolicy.floors[i]), creditPolicy.caps[i]);
+        return Math.subtractExact(limit, totalCurrentCredit);
+    }
+
+    /**
+     * BigDecimal facade of the engine.
+     * @param maxPastCredit Maximum past credit.
+     * @param totalCurrentCredit Total current loans.
+     * @param currentSalary Current salary.
+     * @param riskTypeEnum Risk type, null gets no credit.
+     * @return the quota, with no decimals if it is a whole amount.
+     * @throws IllegalArgumentException if an amount is out of the range of the engine.
+     */
+    public BigDecimal evaluate(BigDecimal maxPastCredit, BigDecimal totalCurrentCredit,
+            BigDecimal currentSalary, RiskTypeEnum riskTypeEnum) {
+        try {
+            return fromMinorUnits(evaluate(toMinorUnits(maxPastCredit),
+                    toMinorUnits(totalCurrentCredit), toMinorUnits(currentSalary),
+                    riskTypeEnum));
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Credit amounts are out of range.", e);
+        }
+    }
+
+    /**
+     * @param amount Money amount.
+     * @return the amount in minor units, rounded with the rounding mode.
+     * @throws ArithmeticException if the amount does not fit in a long.
+     */
+    public long toMinorUnits(BigDecimal amount) {
+        return amount.setScale(scale, roundingMode).unscaledValue().longValueExact();
+    }
+
+    /**
+     * @param minorUnits Money amount in minor units.
+     * @return the amount, with no decimals if it is a whole amount.
+     */
+    public BigDecimal fromMinorUnits(long minorUnits) {
+        if (minorUnits % unit == 0) {
+            return BigDecimal.valueOf(minorUnits / unit);
+        }
+        return BigDecimal.valueOf(minorUnits, scale);
+    }
+
+    /**
+     * @return the number of decimals of the minor units.
+     */
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * @return the rounding mode of the amounts that do not fit in minor units.
+     */
+    public RoundingMode getRoundingMode() {
+        return roundingMode;
+    }
+
+    /**
+     * @param ordinal Risk type ordinal.
+     * @return the risk type.
+     */
+    static RiskTypeEnum riskOf(int ordinal) {
+        return RISKS[ordinal];
+    }
+
+    /**
+     * Divide two longs with a rounding mode, without going through BigDecimal.
+     * @param dividend Dividend.
+     * @param divisor Positive divisor.
+     * @param roundingMode Rounding mode.
+     * @return the rounded quotient.
+     * @throws ArithmeticException if the mode is UNNECESSARY and the division is
+     * not exact.
+     */
+    static long divide(long dividend, long divisor, RoundingMode roundingMode) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        int signum = dividend < 0 ? -1 : 1;
+        long twiceRemainder = Math.abs(remainder) * 2;
+        boolean increment;
+        switch (roundingMode) {
+            case UP:
+                increment = true;
+                break;
+            case DOWN:
+                increment = false;
+                break;
+            case CEILING:
+                increment = signum > 0;
+                break;
+            case FLOOR:
+                increment = signum < 0;
+                break;
+            case HALF_UP:
+                increment = twiceRemainder >= divisor;
+                break;
+            case HALF_DOWN:
+                increment = twiceRemainder > divisor;
+                break;
+            case HALF_EVEN:
+                increment = twiceRemainder > divisor
+                        || (twiceRemainder == divisor && (quotient & 1) != 0);
+                break;
+            default:
+                throw new ArithmeticException("Rounding necessary.");
+        }
+        return increment ? quotient + signum : quotient;
+    }
+
+    /**
+     * @param exponent Exponent.
+     * @return 10^exponent.
+     */
+    private static long pow10(int exponent) {
+        long value = 1L;
+        for (int i = 0; i < exponent; i++) {
+            value *= 10L;
+        }
+        return value;
+    }
+}
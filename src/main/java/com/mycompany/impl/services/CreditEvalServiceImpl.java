@@ -2,61 +2,267 @@ package com.mycompany.impl.services;
 
 import com.mycompany.api.client.ICreditFirmABC;
 import com.mycompany.api.dto.ClientDTO;
+import com.mycompany.api.dto.ClientKeyDTO;
 import com.mycompany.api.dto.CreditRequestDTO;
 import com.mycompany.api.dto.EvaluateQuotaInDTO;
+import com.mycompany.api.dto.EvaluationStageEnum;
+import com.mycompany.api.dto.EvaluationResultDTO;
+import com.mycompany.api.dto.EvaluationStatusEnum;
+import com.mycompany.api.dto.ExposureDTO;
 import com.mycompany.api.dto.IDTypeEnum;
+import com.mycompany.api.dto.PeopleDTO;
 import com.mycompany.api.dto.RiskTypeEnum;
+import com.mycompany.api.services.IAsyncCreditEvalService;
 import com.mycompany.api.services.ICreditEvalService;
+import com.mycompany.api.services.IEvaluationStageListener;
 import com.mycompany.api.services.IPeopleService;
 import com.mycompany.exception.AccountBlockedException;
 import com.mycompany.exception.AccountDoesNotExistsException;
 import com.mycompany.exception.NotEnoughMoneyException;
+import com.mycompany.exception.RiskAnalysisException;
+import com.mycompany.impl.cache.ExpiringLruCache;
+import com.mycompany.impl.concurrent.AsyncExecution;
+import com.mycompany.impl.concurrent.GroupCommitWriter;
+import com.mycompany.impl.concurrent.SingleFlight;
+import com.mycompany.impl.datasource.DatabaseProducts;
+import com.mycompany.impl.datasource.ReadWriteRoutingDataSource;
+import com.mycompany.impl.datasource.ShardRoutingDataSource;
+import com.mycompany.impl.metrics.ServiceMetrics;
+import com.mycompany.impl.metrics.TimedOperationEnum;
+import com.mycompany.impl.quota.QuotaEngine;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.TransactionException;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.TransactionSystemException;
 import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.sql.DataSource;
 import java.math.BigDecimal;
+import java.sql.Date;
 import java.sql.Types;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 /**
  * Implementation for the credit evaluation service.
  * Created by jcortes on 12/9/15.
  */
-public class CreditEvalServiceImpl implements ICreditEvalService {
+public class CreditEvalServiceImpl implements ICreditEvalService,
+        IAsyncCreditEvalService {
 
     /**
      * SQL query to create a credit.
      */
     private static final String CREATE_CREDIT =
-            "INSERT INTO CREDIT (clientId, creditValue, approvalDate) VALUES (?, ?, ?)";
+            "INSERT INTO CREDIT (clientId, creditValue, approvalDate, idempotencyKey) "
+                    + "VALUES (?, ?, ?, ?)";
 
     /**
-     * SQL query to recover the maximum past loan given to a client.
+     * SQL query to recover the credit granted to a request given its idempotency
+     * key.
      */
-    private static final String RECOVER_MAX_PAST_LOAN =
-            "SELECT COALESCE (MAX(creditValue), 0) FROM CREDIT " +
-                    "WHERE paidDate IS NOT NULL AND clientId = ?";
+    private static final String RECOVER_CREDIT_BY_KEY =
+            "SELECT clientId, creditValue FROM CREDIT WHERE idempotencyKey = ?";
 
     /**
-     * SQL query to recover the total amount of loans given to a client currently.
+     * SQL query to recover the exposure of a client from its summary row.
      */
-    private static final String RECOVER_TOTAL_CURRENT_LOANS =
-            "SELECT COALESCE (SUM(creditValue), 0) FROM CREDIT " +
-                    "WHERE paidDate IS NULL AND clientId = ?";
+    private static final String RECOVER_EXPOSURE_SUMMARY =
+            "SELECT maxPaidCredit AS maxPastCredit, openCreditTotal AS totalCurrentLoans "
+                    + "FROM CLIENT_EXPOSURE WHERE clientId = ?";
+
+    /**
+     * SQL query to recover the exposure of several clients from their summary rows.
+     */
+    private static final String RECOVER_EXPOSURE_SUMMARIES =
+            "SELECT clientId, maxPaidCredit AS maxPastCredit, "
+                    + "openCreditTotal AS totalCurrentLoans "
+                    + "FROM CLIENT_EXPOSURE WHERE clientId IN (:clientIds)";
+
+    /**
+     * SQL query to add new credits to the exposure summary of a client and to
+     * record the salary declared with them. When the client has no summary row
+     * yet, it is initialized from all its credits, which already include the new
+     * ones.
+     */
+    private static final String ADD_EXPOSURE_SUMMARY =
+            "INSERT INTO CLIENT_EXPOSURE (clientId, maxPaidCredit, openCreditTotal, "
+                    + "openCreditCount, version, lastSalary) "
+                    + "SELECT ?, "
+                    + "COALESCE (MAX(CASE WHEN paidDate IS NOT NULL THEN creditValue END), 0), "
+                    + "COALESCE (SUM(CASE WHEN paidDate IS NULL THEN creditValue END), 0), "
+                    + "COUNT(CASE WHEN paidDate IS NULL THEN 1 END), 1, ? "
+                    + "FROM CREDIT WHERE clientId = ? "
+                    + "ON DUPLICATE KEY UPDATE openCreditTotal = openCreditTotal + ?, "
+                    + "openCreditCount = openCreditCount + ?, version = version + 1, "
+                    + "lastSalary = VALUES(lastSalary)";
+
+    /**
+     * Column types of ADD_EXPOSURE_SUMMARY.
+     */
+    private static final int[] ADD_EXPOSURE_SUMMARY_TYPES =
+            new int[]{Types.NUMERIC, Types.DECIMAL, Types.NUMERIC, Types.DECIMAL,
+                    Types.INTEGER};
+
+    /**
+     * SQL query to add new credits to an existing exposure summary, used with
+     * CREATE_EXPOSURE_SUMMARY instead of ADD_EXPOSURE_SUMMARY on databases other
+     * than MySQL, e.g. the embedded H2 database.
+     */
+    private static final String INCREMENT_EXPOSURE_SUMMARY =
+            "UPDATE CLIENT_EXPOSURE SET openCreditTotal = openCreditTotal + ?, "
+                    + "openCreditCount = openCreditCount + ?, version = version + 1, "
+                    + "lastSalary = ? WHERE clientId = ?";
+
+    /**
+     * Column types of INCREMENT_EXPOSURE_SUMMARY.
+     */
+    private static final int[] INCREMENT_EXPOSURE_SUMMARY_TYPES =
+            new int[]{Types.DECIMAL, Types.INTEGER, Types.DECIMAL, Types.NUMERIC};
+
+    /**
+     * SQL query to initialize the exposure summary of a client from all its
+     * credits.
+     */
+    private static final String CREATE_EXPOSURE_SUMMARY =
+            "INSERT INTO CLIENT_EXPOSURE (clientId, maxPaidCredit, openCreditTotal, "
+                    + "openCreditCount, version, lastSalary) "
+                    + "SELECT ?, "
+                    + "COALESCE (MAX(CASE WHEN paidDate IS NOT NULL THEN creditValue END), 0), "
+                    + "COALESCE (SUM(CASE WHEN paidDate IS NULL THEN creditValue END), 0), "
+                    + "COUNT(CASE WHEN paidDate IS NULL THEN 1 END), 1, ? "
+                    + "FROM CREDIT WHERE clientId = ?";
+
+    /**
+     * Column types of CREATE_EXPOSURE_SUMMARY.
+     */
+    private static final int[] CREATE_EXPOSURE_SUMMARY_TYPES =
+            new int[]{Types.NUMERIC, Types.DECIMAL, Types.NUMERIC};
+
+    /**
+     * SQL query to recover a credit before paying it.
+     */
+    private static final String RECOVER_CREDIT =
+            "SELECT clientId, creditValue FROM CREDIT WHERE id = ? AND paidDate IS NULL";
+
+    /**
+     * SQL query to mark a credit as paid.
+     */
+    private static final String PAY_CREDIT =
+            "UPDATE CREDIT SET paidDate = ? WHERE id = ? AND paidDate IS NULL";
+
+    /**
+     * SQL query to move a paid credit in the exposure summary of a client.
+     */
+    private static final String PAY_EXPOSURE_SUMMARY =
+            "UPDATE CLIENT_EXPOSURE SET maxPaidCredit = GREATEST(maxPaidCredit, ?), "
+                    + "openCreditTotal = openCreditTotal - ?, "
+                    + "openCreditCount = openCreditCount - 1, version = version + 1 "
+                    + "WHERE clientId = ?";
+
+    /**
+     * SQL query to recover the maximum past loan and the total current loans of
+     * a client in a single pass over its credits. It is served by the index
+     * IND_CREDIT_1 (clientId, paidDate, creditValue) without reading the table,
+     * and it is only used for clients without exposure summary.
+     */
+    private static final String RECOVER_EXPOSURE =
+            "SELECT "
+                    + "COALESCE (MAX(CASE WHEN paidDate IS NOT NULL THEN creditValue END), 0) "
+                    + "AS maxPastCredit, "
+                    + "COALESCE (SUM(CASE WHEN paidDate IS NULL THEN creditValue END), 0) "
+                    + "AS totalCurrentLoans "
+                    + "FROM CREDIT WHERE clientId = ?";
+
+    /**
+     * SQL query to recover the maximum past loan and the total current loans of
+     * several clients in a single pass over their credits.
+     */
+    private static final String RECOVER_EXPOSURES =
+            "SELECT clientId, "
+                    + "COALESCE (MAX(CASE WHEN paidDate IS NOT NULL THEN creditValue END), 0) "
+                    + "AS maxPastCredit, "
+                    + "COALESCE (SUM(CASE WHEN paidDate IS NULL THEN creditValue END), 0) "
+                    + "AS totalCurrentLoans "
+                    + "FROM CREDIT WHERE clientId IN (:clientIds) GROUP BY clientId";
+
+    /**
+     * Column types of CREATE_CREDIT.
+     */
+    private static final int[] CREATE_CREDIT_TYPES =
+            new int[]{Types.NUMERIC, Types.DECIMAL, Types.DATE, Types.VARCHAR};
+
+    /**
+     * Maximum length of an idempotency key, the size of CREDIT.idempotencyKey.
+     */
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 64;
+
+    /**
+     * Default maximum number of remembered decisions.
+     */
+    private static final int DEFAULT_DECISION_CACHE_SIZE = 100000;
+
+    /**
+     * Default time a decision is remembered, in milliseconds.
+     */
+    private static final long DEFAULT_DECISION_TTL_MILLIS = 86400000L;
+
+    /**
+     * Default number of requests evaluated together by evaluateCreditRequests.
+     */
+    private static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * Maps the exposure queries.
+     */
+    private static final RowMapper<ExposureDTO> EXPOSURE_ROW_MAPPER = (rs, rowNum) ->
+            new ExposureDTO(rs.getBigDecimal("maxPastCredit"),
+                    rs.getBigDecimal("totalCurrentLoans"));
+
+    /**
+     * Default deadline of a concurrent risk analysis, in milliseconds.
+     */
+    private static final long DEFAULT_RISK_ANALYSIS_TIMEOUT_MILLIS = 2000L;
+
+    /**
+     * Default time an approved credit waits for others to be committed with.
+     */
+    private static final long DEFAULT_GROUP_COMMIT_MAX_DELAY_MILLIS = 2L;
 
     /**
      * People service implementation.
@@ -75,6 +281,114 @@ public class CreditEvalServiceImpl implements ICreditEvalService {
      */
     private JdbcTemplate jdbcTemplate;
 
+    /**
+     * JDBC client with named parameters, used for IN lists.
+     */
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    /**
+     * Runs credit writes and their exposure summary updates atomically.
+     */
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Number of requests evaluated together by evaluateCreditRequests.
+     */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Executor to run risk analysis sub-queries concurrently, when it is null
+     * they run one after another in the caller thread.
+     */
+    private ExecutorService riskAnalysisExecutor;
+
+    /**
+     * Deadline of a concurrent risk analysis, in milliseconds.
+     */
+    private long riskAnalysisTimeoutMillis = DEFAULT_RISK_ANALYSIS_TIMEOUT_MILLIS;
+
+    /**
+     * Runs the stages of the asynchronous evaluations, when it is null they run
+     * in the caller thread.
+     */
+    private Executor asyncExecutor;
+
+    /**
+     * Maximum number of approved credits committed together, 0 to commit each
+     * credit in its own transaction.
+     */
+    private int groupCommitMaxBatchSize;
+
+    /**
+     * Time an approved credit waits for others to be committed with, in
+     * milliseconds.
+     */
+    private long groupCommitMaxDelayMillis = DEFAULT_GROUP_COMMIT_MAX_DELAY_MILLIS;
+
+    /**
+     * Group commit writers of the approved credits by shard, created on first
+     * use. The database that is not sharded has one writer.
+     */
+    private final Map<Integer, GroupCommitWriter<NewCreditDTO>> creditWriters =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Credit quota calculator.
+     */
+    private QuotaEngine quotaEngine = new QuotaEngine();
+
+    /**
+     * Receives the duration of the evaluation stages, stages are not timed when
+     * it is null.
+     */
+    private IEvaluationStageListener stageListener;
+
+    /**
+     * Timers of the operations and evaluation outcomes, published when it is the
+     * metrics bean.
+     */
+    private ServiceMetrics serviceMetrics = new ServiceMetrics();
+
+    /**
+     * Sends exposure lookups to the replicas, null when there are no replicas.
+     */
+    private ReadWriteRoutingDataSource routingDataSource;
+
+    /**
+     * Sends each client to its shard, null when the database is not sharded.
+     */
+    private ShardRoutingDataSource shardRoutingDataSource;
+
+    /**
+     * Coalesces concurrent client resolutions of the same person.
+     */
+    private final SingleFlight<ClientKeyDTO, Optional<ClientDTO>> clientFlights =
+            new SingleFlight<>();
+
+    /**
+     * Coalesces concurrent credit firm lookups of the same client. Only the risk
+     * is shared, each evaluation reads the exposure of the client itself.
+     */
+    private final SingleFlight<Long, RiskTypeEnum> riskFlights = new SingleFlight<>();
+
+    /**
+     * Coalesces concurrent evaluations of the same idempotency key.
+     */
+    private final SingleFlight<String, EvaluationResultDTO> decisionFlights =
+            new SingleFlight<>();
+
+    /**
+     * Decisions of the requests with an idempotency key, by key. Failed
+     * evaluations are not remembered, so they can be retried.
+     */
+    private ExpiringLruCache<String, EvaluationResultDTO> decisions =
+            new ExpiringLruCache<>(DEFAULT_DECISION_CACHE_SIZE);
+
+    /**
+     * Time a decision is remembered, in milliseconds.
+     */
+    private long decisionTtlMillis = DEFAULT_DECISION_TTL_MILLIS;
+
     /**
      * Sets data source.
      *
@@ -83,57 +397,863 @@ public class CreditEvalServiceImpl implements ICreditEvalService {
     @Autowired
     public void setDataSource(final DataSource dataSource) {
         jdbcTemplate = new JdbcTemplate(dataSource);
+        namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        transactionTemplate = new TransactionTemplate(
+                new DataSourceTransactionManager(dataSource));
+        routingDataSource = dataSource instanceof ReadWriteRoutingDataSource
+                ? (ReadWriteRoutingDataSource) dataSource : null;
+        shardRoutingDataSource = dataSource instanceof ShardRoutingDataSource
+                ? (ShardRoutingDataSource) dataSource : null;
+    }
+
+    /**
+     * Sets the number of requests evaluated together by evaluateCreditRequests.
+     *
+     * @param batchSize the chunk size, it should be positive.
+     */
+    public void setBatchSize(final int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size should be positive.");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the executor used to run risk analysis sub-queries concurrently.
+     *
+     * @param riskAnalysisExecutor the executor, null to run them sequentially.
+     */
+    @Autowired(required = false)
+    @Qualifier("riskAnalysisExecutor")
+    public void setRiskAnalysisExecutor(final ExecutorService riskAnalysisExecutor) {
+        this.riskAnalysisExecutor = riskAnalysisExecutor;
+    }
+
+    /**
+     * Sets the executor of the asynchronous evaluations.
+     *
+     * @param asyncExecutor the executor, null to run them in the caller thread.
+     */
+    @Autowired(required = false)
+    @Qualifier("serviceAsyncExecutor")
+    public void setAsyncExecutor(final Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * Sets the maximum number of approved credits committed together. Credits
+     * of concurrent evaluations are then written in groups, in one transaction
+     * each, and every evaluation returns once its group is committed.
+     *
+     * @param groupCommitMaxBatchSize the group size, 0 to commit each credit in
+     * its own transaction.
+     */
+    @Value("${credit.group.commit.max.batch.size:0}")
+    public void setGroupCommitMaxBatchSize(final int groupCommitMaxBatchSize) {
+        if (groupCommitMaxBatchSize < 0) {
+            throw new IllegalArgumentException(
+                    "Group commit batch size should not be negative.");
+        }
+        shutdown();
+        this.groupCommitMaxBatchSize = groupCommitMaxBatchSize;
+    }
+
+    /**
+     * Sets the time an approved credit waits for others to be committed with.
+     * Longer waits give larger groups, at the cost of the latency of the
+     * evaluations.
+     *
+     * @param groupCommitMaxDelayMillis the delay in milliseconds, 0 to group only
+     * the credits approved while the previous group is committed.
+     */
+    @Value("${credit.group.commit.max.delay.millis:2}")
+    public void setGroupCommitMaxDelayMillis(final long groupCommitMaxDelayMillis) {
+        if (groupCommitMaxDelayMillis < 0) {
+            throw new IllegalArgumentException(
+                    "Group commit delay should not be negative.");
+        }
+        shutdown();
+        this.groupCommitMaxDelayMillis = groupCommitMaxDelayMillis;
+    }
+
+    /**
+     * Sets the maximum number of remembered decisions, the remembered decisions
+     * are dropped. The approved ones are still found by their credit.
+     * @param maximumSize Maximum number of decisions.
+     */
+    @Value("${credit.idempotency.cache.maximum.size:100000}")
+    public void setDecisionCacheMaximumSize(final int maximumSize) {
+        decisions = new ExpiringLruCache<>(maximumSize);
+    }
+
+    /**
+     * Sets the time a decision is remembered, zero only finds the approved ones
+     * by their credit.
+     * @param decisionTtlMillis Time to live in milliseconds.
+     */
+    @Value("${credit.idempotency.ttl.millis:86400000}")
+    public void setDecisionTtlMillis(final long decisionTtlMillis) {
+        this.decisionTtlMillis = decisionTtlMillis;
+    }
+
+    /**
+     * Stop the group commit writers, the credits waiting for their group fail.
+     */
+    public void shutdown() {
+        for (GroupCommitWriter<NewCreditDTO> creditWriter : creditWriters.values()) {
+            creditWriter.shutdown();
+        }
+        creditWriters.clear();
+    }
+
+    /**
+     * Sets the deadline of a concurrent risk analysis.
+     *
+     * @param riskAnalysisTimeoutMillis the deadline in milliseconds.
+     */
+    @Value("${risk.analysis.timeout.millis:2000}")
+    public void setRiskAnalysisTimeoutMillis(final long riskAnalysisTimeoutMillis) {
+        this.riskAnalysisTimeoutMillis = riskAnalysisTimeoutMillis;
+    }
+
+    /**
+     * Sets the quota engine, e.g. the one whose credit policy is reloaded.
+     * @param quotaEngine Quota engine.
+     */
+    @Autowired(required = false)
+    public void setQuotaEngine(final QuotaEngine quotaEngine) {
+        this.quotaEngine = quotaEngine;
+    }
+
+    /**
+     * Sets the metrics the operations and evaluation outcomes are recorded in.
+     * @param serviceMetrics Service metrics.
+     */
+    @Autowired(required = false)
+    public void setServiceMetrics(final ServiceMetrics serviceMetrics) {
+        this.serviceMetrics = serviceMetrics;
+    }
+
+    /**
+     * Sets the listener of the evaluation stages.
+     * @param stageListener Stage listener, null to not time the stages.
+     */
+    @Autowired(required = false)
+    public void setStageListener(final IEvaluationStageListener stageListener) {
+        this.stageListener = stageListener;
+    }
+
+    /**
+     * Evaluate a credit loan request. A request with an idempotency key that was
+     * already decided gets the original decision without any new work, and the
+     * retries that arrive while it is evaluated wait for its decision.
+     * @param requestDTO DTO with request data.
+     * @return the evaluation outcome.
+     */
+    @Override
+    public EvaluationResultDTO evaluateCreditRequest(CreditRequestDTO requestDTO) {
+        String key = idempotencyKeyOf(requestDTO);
+        if (key == null) {
+            return evaluate(requestDTO);
+        }
+        EvaluationResultDTO decided = decisions.getIfPresent(key);
+        if (decided != null) {
+            return decided;
+        }
+        return decisionFlights.execute(key, () -> decideOnce(key, requestDTO));
+    }
+
+    /**
+     * Evaluate a request with an idempotency key unless it was already decided,
+     * and remember its decision. The CREDIT unique key on the idempotency key
+     * keeps a request from getting two credits when the decision was forgotten
+     * or another instance evaluates it at the same time.
+     * @param key Idempotency key.
+     * @param requestDTO DTO with request data.
+     * @return the evaluation outcome.
+     */
+    private EvaluationResultDTO decideOnce(String key, CreditRequestDTO requestDTO) {
+        EvaluationResultDTO decided = decisions.getIfPresent(key);
+        if (decided == null) {
+            decided = findDecision(key, requestDTO);
+        }
+        if (decided == null) {
+            try {
+                decided = evaluate(requestDTO);
+            } catch (DuplicateKeyException e) {
+                decided = findDecision(key, requestDTO);
+                if (decided == null) {
+                    throw e;
+                }
+            }
+        }
+        if (decided.getStatus() != EvaluationStatusEnum.FAILED) {
+            decisions.put(key, decided, decisionTtlMillis);
+        }
+        return decided;
+    }
+
+    /**
+     * Find the credit granted to a request given its idempotency key, on the
+     * shard of its client.
+     * @param key Idempotency key.
+     * @param requestDTO DTO with request data.
+     * @return the original approval, without risk type, or null if no credit
+     * was granted with the key.
+     */
+    private EvaluationResultDTO findDecision(String key, CreditRequestDTO requestDTO) {
+        Supplier<List<EvaluationResultDTO>> query = () -> jdbcTemplate.query(
+                RECOVER_CREDIT_BY_KEY, (rs, rowNum) -> new EvaluationResultDTO(requestDTO,
+                        EvaluationStatusEnum.APPROVED, rs.getLong("clientId"), null,
+                        rs.getBigDecimal("creditValue"), null), key);
+        List<EvaluationResultDTO> found;
+        if (shardRoutingDataSource != null && isIdentified(requestDTO)) {
+            PeopleDTO peopleDTO = requestDTO.getPeopleDTO();
+            found = shardRoutingDataSource.onShard(shardRoutingDataSource.shardOf(
+                    peopleDTO.getIdType().toValue(), peopleDTO.getId()), query);
+        } else {
+            found = query.get();
+        }
+        return found.isEmpty() ? null : found.get(0);
     }
 
     /**
-     * Evaluate a credit loan request
      * @param requestDTO DTO with request data.
+     * @return the idempotency key of the request, null if it has none.
      */
-    public void evaluateCreditRequest(CreditRequestDTO requestDTO) {
-        if (!peopleService.isClient(requestDTO.getPeopleDTO().getIdType(),
-                requestDTO.getPeopleDTO().getId())) {
-            peopleService.createClient(requestDTO.getPeopleDTO());
-        }
-        Optional<ClientDTO> opt = peopleService.getClient(requestDTO.getPeopleDTO()
-                        .getIdType(), requestDTO.getPeopleDTO().getId());
-        opt.ifPresent((ClientDTO clientDTO) -> {
-            RiskAnalysisDTO riskAnalysisDTO = performRiskAnalysis(clientDTO);
-            EvaluateQuotaInDTO evaluateQuotaInDTO =
-                    new EvaluateQuotaInDTO(riskAnalysisDTO.maxPastCredit,
-                            riskAnalysisDTO.totalCurrentLoans,
-                            requestDTO.getCurrentSalary(),
-                            riskAnalysisDTO.riskTypeEnum);
-            BigDecimal quota = evaluateCreditAmount(evaluateQuotaInDTO);
-            if (quota.compareTo(BigDecimal.ZERO) > 0) {
-            	assignCredit(clientDTO, quota);
+    private static String idempotencyKeyOf(CreditRequestDTO requestDTO) {
+        String key = requestDTO.getIdempotencyKey();
+        if (key != null && key.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency key should have at most "
+                    + MAX_IDEMPOTENCY_KEY_LENGTH + " characters.");
+        }
+        return key;
+    }
+
+    /**
+     * Evaluate a credit loan request without looking at its idempotency key.
+     * @param requestDTO DTO with request data.
+     * @return the evaluation outcome.
+     */
+    private EvaluationResultDTO evaluate(CreditRequestDTO requestDTO) {
+        long start = stageListener == null ? 0L : System.nanoTime();
+        Optional<ClientDTO> opt = resolveClient(requestDTO.getPeopleDTO());
+        start = stageCompleted(EvaluationStageEnum.RESOLVE_CLIENT, start);
+        if (!opt.isPresent()) {
+            return counted(failed(requestDTO, "Client could not be resolved."));
+        }
+        ClientDTO clientDTO = opt.get();
+        RiskAnalysisDTO riskAnalysisDTO = performRiskAnalysis(clientDTO);
+        start = stageCompleted(EvaluationStageEnum.RISK_ANALYSIS, start);
+        return decideAndAssign(requestDTO, clientDTO, riskAnalysisDTO, start);
+    }
+
+    /**
+     * Evaluate a credit loan request on the asynchronous executor. The client
+     * is resolved first, then the exposure lookup and the credit firm call run
+     * at the same time, and the credit is assigned by the thread that completes
+     * the last of them, so no thread waits for another one. The credit firm
+     * call is shared with the concurrent lookups of the same client. A request
+     * with an idempotency key is evaluated by evaluateCreditRequest on the
+     * executor.
+     * @param requestDTO DTO with request data.
+     * @return a stage completed with the evaluation outcome.
+     */
+    @Override
+    public CompletionStage<EvaluationResultDTO> evaluateCreditRequestAsync(
+            CreditRequestDTO requestDTO) {
+        if (idempotencyKeyOf(requestDTO) != null) {
+            return AsyncExecution.supply(() -> evaluateCreditRequest(requestDTO),
+                    asyncExecutor);
+        }
+        long start = stageListener == null ? 0L : System.nanoTime();
+        return AsyncExecution.supply(() -> resolveClient(requestDTO.getPeopleDTO()),
+                asyncExecutor).thenCompose(opt -> {
+                    long riskStart = stageCompleted(EvaluationStageEnum.RESOLVE_CLIENT,
+                            start);
+                    if (!opt.isPresent()) {
+                        return CompletableFuture.completedFuture(counted(failed(
+                                requestDTO, "Client could not be resolved.")));
+                    }
+                    ClientDTO clientDTO = opt.get();
+                    CompletableFuture<ExposureDTO> exposure = AsyncExecution.supply(
+                            () -> getExposure(clientDTO.getId()), asyncExecutor);
+                    return AsyncExecution.supply(
+                            () -> getCoalescedRiskByClient(clientDTO), asyncExecutor)
+                            .thenCombine(exposure, (risk, exposureDTO) ->
+                            new RiskAnalysisDTO(risk, exposureDTO.getMaxPastCredit(),
+                                    exposureDTO.getTotalCurrentLoans()))
+                            .thenApply(riskAnalysisDTO -> decideAndAssign(requestDTO,
+                                    clientDTO, riskAnalysisDTO, stageCompleted(
+                                            EvaluationStageEnum.RISK_ANALYSIS,
+                                            riskStart)));
+                });
+    }
+
+    /**
+     * Evaluate several credit loan requests on the asynchronous executor, in
+     * chunks of batchSize requests.
+     * @param requestDTOs DTOs with requests data.
+     * @return a stage completed with the evaluation outcome of each request, in
+     * the same order.
+     */
+    @Override
+    public CompletionStage<List<EvaluationResultDTO>> evaluateCreditRequestsAsync(
+            List<CreditRequestDTO> requestDTOs) {
+        return AsyncExecution.supply(() -> evaluateCreditRequests(requestDTOs),
+                asyncExecutor);
+    }
+
+    /**
+     * Decide a credit request given its risk analysis and assign the credit
+     * when it is approved.
+     * @param requestDTO DTO with request data.
+     * @param clientDTO DTO with client data.
+     * @param riskAnalysisDTO Risk analysis of the client.
+     * @param start Start of the decision, as given by System.nanoTime().
+     * @return the evaluation outcome.
+     */
+    private EvaluationResultDTO decideAndAssign(CreditRequestDTO requestDTO,
+            ClientDTO clientDTO, RiskAnalysisDTO riskAnalysisDTO, long start) {
+        EvaluationResultDTO resultDTO = decide(requestDTO, clientDTO, riskAnalysisDTO);
+        start = stageCompleted(EvaluationStageEnum.DECIDE, start);
+        if (resultDTO.getStatus() == EvaluationStatusEnum.APPROVED) {
+            assignCredit(clientDTO, resultDTO.getQuota(), requestDTO.getCurrentSalary(),
+                    requestDTO.getIdempotencyKey());
+            stageCompleted(EvaluationStageEnum.ASSIGN_CREDIT, start);
+        }
+        return counted(resultDTO);
+    }
+
+    /**
+     * Count an evaluation outcome in the metrics.
+     * @param resultDTO Evaluation outcome.
+     * @return the evaluation outcome.
+     */
+    private EvaluationResultDTO counted(EvaluationResultDTO resultDTO) {
+        serviceMetrics.recordOutcome(resultDTO.getStatus(), resultDTO.getRiskTypeEnum());
+        return resultDTO;
+    }
+
+    /**
+     * Report a completed stage to the stage listener.
+     * @param stage Evaluation stage.
+     * @param start Start of the stage, as given by System.nanoTime().
+     * @return the start of the next stage, 0 when there is no listener.
+     */
+    private long stageCompleted(EvaluationStageEnum stage, long start) {
+        if (stageListener == null) {
+            return 0L;
+        }
+        long now = System.nanoTime();
+        stageListener.stageCompleted(stage, now - start);
+        return now;
+    }
+
+    /**
+     * Return the client of a person, creating it if needed. Concurrent
+     * resolutions of the same person share a single get or create statement.
+     * @param peopleDTO DTO with client data.
+     * @return an optional DTO with the client data.
+     */
+    private Optional<ClientDTO> resolveClient(PeopleDTO peopleDTO) {
+        return clientFlights.execute(ClientKeyDTO.of(peopleDTO),
+                () -> Optional.ofNullable(peopleService.getOrCreateClient(peopleDTO)));
+    }
+
+    /**
+     * Evaluate several credit loan requests in chunks of batchSize requests.
+     * Each chunk costs a fixed number of statements: up to two client lookups,
+     * one client batch insert plus its lookups, up to two exposure queries and one
+     * transaction with the credit and exposure summary batches. The bureau gets
+     * one bulk request per chunk. Requests with an idempotency key go one by one
+     * through evaluateCreditRequest, in their place among the others.
+     * @param requestDTOs DTOs with requests data.
+     * @return the evaluation outcome of each request, in the same order.
+     */
+    @Override
+    public List<EvaluationResultDTO> evaluateCreditRequests(
+            List<CreditRequestDTO> requestDTOs) {
+        List<EvaluationResultDTO> results = new ArrayList<>(requestDTOs.size());
+        List<CreditRequestDTO> chunk = new ArrayList<>();
+        for (CreditRequestDTO requestDTO : requestDTOs) {
+            if (idempotencyKeyOf(requestDTO) == null) {
+                chunk.add(requestDTO);
+                if (chunk.size() < batchSize) {
+                    continue;
+                }
+            }
+            if (!chunk.isEmpty()) {
+                results.addAll(evaluateChunk(chunk));
+                chunk = new ArrayList<>();
             }
+            if (requestDTO.getIdempotencyKey() != null) {
+                results.add(evaluateCreditRequest(requestDTO));
+            }
+        }
+        if (!chunk.isEmpty()) {
+            results.addAll(evaluateChunk(chunk));
+        }
+        return results;
+    }
+
+    /**
+     * Evaluate a chunk of credit loan requests with set based statements.
+     * Requests of the same client are evaluated in order, and credits approved
+     * earlier in the chunk count as current loans for the following ones.
+     * @param chunk DTOs with requests data.
+     * @return the evaluation outcome of each request, in the same order.
+     */
+    private List<EvaluationResultDTO> evaluateChunk(List<CreditRequestDTO> chunk) {
+        Map<ClientKeyDTO, PeopleDTO> people = new LinkedHashMap<>();
+        for (CreditRequestDTO requestDTO : chunk) {
+            if (isIdentified(requestDTO)) {
+                people.putIfAbsent(ClientKeyDTO.of(requestDTO.getPeopleDTO()),
+                        requestDTO.getPeopleDTO());
+            }
+        }
+
+        Map<ClientKeyDTO, ClientDTO> clients = peopleService.getClients(people.keySet());
+        Map<ClientKeyDTO, PeopleDTO> newPeople = new LinkedHashMap<>(people);
+        newPeople.keySet().removeAll(clients.keySet());
+        if (!newPeople.isEmpty()) {
+            peopleService.createClients(newPeople.values());
+            clients.putAll(peopleService.getClients(newPeople.keySet()));
+        }
+
+        Map<Long, RiskAnalysisDTO> riskAnalyses = getExposures(clients.values());
+        long start = System.nanoTime();
+        Map<ClientKeyDTO, RiskTypeEnum> risks =
+                creditFirmABC.getRiskByClients(clients.keySet());
+        serviceMetrics.record(TimedOperationEnum.GET_RISK_BY_CLIENTS, start);
+        clients.forEach((key, clientDTO) ->
+                riskAnalyses.get(clientDTO.getId()).riskTypeEnum = risks.get(key));
+
+        List<EvaluationResultDTO> results = new ArrayList<>(chunk.size());
+        List<NewCreditDTO> credits = new ArrayList<>();
+        for (CreditRequestDTO requestDTO : chunk) {
+            ClientDTO clientDTO = isIdentified(requestDTO)
+                    ? clients.get(ClientKeyDTO.of(requestDTO.getPeopleDTO())) : null;
+            if (clientDTO == null) {
+                results.add(counted(failed(requestDTO, "Client could not be resolved.")));
+                continue;
+            }
+            RiskAnalysisDTO riskAnalysisDTO = riskAnalyses.get(clientDTO.getId());
+            EvaluationResultDTO resultDTO = decide(requestDTO, clientDTO, riskAnalysisDTO);
+            if (resultDTO.getStatus() == EvaluationStatusEnum.APPROVED) {
+                credits.add(new NewCreditDTO(clientDTO.getId(), resultDTO.getQuota(),
+                        requestDTO.getCurrentSalary(), requestDTO.getIdempotencyKey()));
+                riskAnalysisDTO.totalCurrentLoans =
+                        riskAnalysisDTO.totalCurrentLoans.add(resultDTO.getQuota());
+            }
+            results.add(counted(resultDTO));
+        }
+        if (!credits.isEmpty()) {
+            saveNewCredits(credits);
+        }
+        return results;
+    }
+
+    /**
+     * Create approved credits and add them to the exposure summaries of their
+     * clients, with one set of batch statements per shard. The credits of a
+     * client are added to its summary at once.
+     * @param newCredits Approved credits, in order.
+     */
+    private void saveNewCredits(List<NewCreditDTO> newCredits) {
+        List<Object[]> credits = new ArrayList<>(newCredits.size());
+        Map<Long, BigDecimal> addedTotals = new LinkedHashMap<>();
+        Map<Long, Integer> addedCounts = new HashMap<>();
+        Map<Long, BigDecimal> salaries = new HashMap<>();
+        Date approvalDate = Date.valueOf(LocalDate.now());
+        for (NewCreditDTO credit : newCredits) {
+            credits.add(new Object[]{credit.clientId, credit.amount, approvalDate,
+                    credit.idempotencyKey});
+            addedTotals.merge(credit.clientId, credit.amount, BigDecimal::add);
+            addedCounts.merge(credit.clientId, 1, Integer::sum);
+            salaries.put(credit.clientId, credit.salary);
+        }
+        List<Object[]> summaries = new ArrayList<>(addedTotals.size());
+        addedTotals.forEach((clientId, total) -> summaries.add(new Object[]{clientId,
+                salaries.get(clientId), clientId, total, addedCounts.get(clientId)}));
+        if (shardRoutingDataSource == null) {
+            saveCredits(credits, summaries);
+        } else {
+            Map<Integer, List<Object[]>> creditsByShard = byShard(credits);
+            Map<Integer, List<Object[]>> summariesByShard = byShard(summaries);
+            shardRoutingDataSource.onShards(creditsByShard.keySet(),
+                    shard -> saveCredits(creditsByShard.get(shard),
+                            summariesByShard.get(shard)));
+        }
+        addedTotals.keySet().forEach(this::written);
+    }
+
+    /**
+     * Commit a group of credits approved by concurrent evaluations.
+     * @param newCredits Approved credits, all of them on the same shard.
+     */
+    private void commitCredits(List<NewCreditDTO> newCredits) {
+        long start = System.nanoTime();
+        saveNewCredits(newCredits);
+        serviceMetrics.recordGroupCommit(start, newCredits.size());
+    }
+
+    /**
+     * @param clientId Client internal identifier.
+     * @return the group commit writer of the shard of the client.
+     */
+    private GroupCommitWriter<NewCreditDTO> creditWriter(Long clientId) {
+        int shard = shardRoutingDataSource == null ? 0
+                : ShardRoutingDataSource.shardOfId(clientId);
+        return creditWriters.computeIfAbsent(shard, key -> new GroupCommitWriter<>(
+                "credit-writer-" + key, this::commitCredits, groupCommitMaxBatchSize,
+                groupCommitMaxDelayMillis));
+    }
+
+    /**
+     * Create credits and add them to the exposure summaries in one transaction.
+     * On a sharded database every credit belongs to the shard of the
+     * transaction.
+     * @param credits Parameters of CREATE_CREDIT.
+     * @param summaries Parameters of ADD_EXPOSURE_SUMMARY.
+     * @return null.
+     */
+    private Void saveCredits(List<Object[]> credits, List<Object[]> summaries) {
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.batchUpdate(CREATE_CREDIT, credits, CREATE_CREDIT_TYPES);
+            addExposureSummaries(summaries);
+            return null;
         });
     }
 
     /**
-     * Perform a risk analysis given a client.
+     * @param rows Statement parameters whose first one is a client internal
+     * identifier.
+     * @return the rows grouped by the shard of their client.
+     */
+    private static Map<Integer, List<Object[]>> byShard(List<Object[]> rows) {
+        Map<Integer, List<Object[]>> rowsByShard = new HashMap<>();
+        for (Object[] row : rows) {
+            rowsByShard.computeIfAbsent(ShardRoutingDataSource.shardOfId((Long) row[0]),
+                    shard -> new ArrayList<>()).add(row);
+        }
+        return rowsByShard;
+    }
+
+    /**
+     * Evaluate the quota of a request given the client risk analysis.
+     * @param requestDTO DTO with request data.
+     * @param clientDTO DTO with client data.
+     * @param riskAnalysisDTO DTO with risk analysis results.
+     * @return the evaluation outcome, the credit is not assigned here.
+     */
+    private EvaluationResultDTO decide(CreditRequestDTO requestDTO, ClientDTO clientDTO,
+            RiskAnalysisDTO riskAnalysisDTO) {
+        EvaluateQuotaInDTO evaluateQuotaInDTO =
+                new EvaluateQuotaInDTO(riskAnalysisDTO.maxPastCredit,
+                        riskAnalysisDTO.totalCurrentLoans,
+                        requestDTO.getCurrentSalary(),
+                        riskAnalysisDTO.riskTypeEnum);
+        BigDecimal quota;
+        try {
+            quota = evaluateCreditAmount(evaluateQuotaInDTO);
+        } catch (IllegalArgumentException e) {
+            EvaluationResultDTO resultDTO = failed(requestDTO, e.getMessage());
+            resultDTO.setClientId(clientDTO.getId());
+            resultDTO.setRiskTypeEnum(riskAnalysisDTO.riskTypeEnum);
+            return resultDTO;
+        }
+        if (quota.compareTo(BigDecimal.ZERO) > 0) {
+            return new EvaluationResultDTO(requestDTO, EvaluationStatusEnum.APPROVED,
+                    clientDTO.getId(), riskAnalysisDTO.riskTypeEnum, quota, null);
+        }
+        return new EvaluationResultDTO(requestDTO, EvaluationStatusEnum.DECLINED,
+                clientDTO.getId(), riskAnalysisDTO.riskTypeEnum, BigDecimal.ZERO, null);
+    }
+
+    /**
+     * Build a failed evaluation outcome.
+     * @param requestDTO DTO with request data.
+     * @param message Failure description.
+     * @return the evaluation outcome.
+     */
+    private static EvaluationResultDTO failed(CreditRequestDTO requestDTO, String message) {
+        return new EvaluationResultDTO(requestDTO, EvaluationStatusEnum.FAILED, null, null,
+                BigDecimal.ZERO, message);
+    }
+
+    /**
+     * Check that a request carries a person identifier.
+     * @param requestDTO DTO with request data.
+     * @return true if the person can be identified.
+     */
+    private static boolean isIdentified(CreditRequestDTO requestDTO) {
+        return requestDTO.getPeopleDTO() != null
+                && requestDTO.getPeopleDTO().getIdType() != null
+                && requestDTO.getPeopleDTO().getId() != null;
+    }
+
+    /**
+     * Return the maximum past credit and the total current loans of several
+     * clients from their exposure summaries, clients without summary are
+     * aggregated from their credits with a second query. On a sharded database
+     * the shards are queried in parallel.
+     * @param clientDTOs DTOs with clients data.
+     * @return a map by client internal identifier with a partial risk analysis,
+     * clients without credits get zero amounts.
+     */
+    private Map<Long, RiskAnalysisDTO> getExposures(Collection<ClientDTO> clientDTOs) {
+        long start = System.nanoTime();
+        try {
+            Map<Long, RiskAnalysisDTO> exposures = new HashMap<>();
+            for (ClientDTO clientDTO : clientDTOs) {
+                exposures.put(clientDTO.getId(),
+                        new RiskAnalysisDTO(null, BigDecimal.ZERO, BigDecimal.ZERO));
+            }
+            if (exposures.isEmpty()) {
+                return exposures;
+            }
+            if (shardRoutingDataSource == null) {
+                return onReplicas(exposures.keySet(),
+                        () -> loadExposures(exposures, exposures.keySet()));
+            }
+            Map<Integer, List<Long>> idsByShard = new HashMap<>();
+            for (Long clientId : exposures.keySet()) {
+                idsByShard.computeIfAbsent(ShardRoutingDataSource.shardOfId(clientId),
+                        shard -> new ArrayList<>()).add(clientId);
+            }
+            shardRoutingDataSource.onShards(idsByShard.keySet(),
+                    shard -> loadExposures(exposures, idsByShard.get(shard)));
+            return exposures;
+        } finally {
+            serviceMetrics.record(TimedOperationEnum.GET_EXPOSURES, start);
+        }
+    }
+
+    /**
+     * Fill the exposures of some clients from a single database.
+     * @param exposures Partial risk analyses by client internal identifier.
+     * @param clientIds Client internal identifiers to fill.
+     * @return the exposures.
+     */
+    private Map<Long, RiskAnalysisDTO> loadExposures(Map<Long, RiskAnalysisDTO> exposures,
+            Collection<Long> clientIds) {
+        Set<Long> missing = new HashSet<>(clientIds);
+        RowMapper<Long> exposureMapper = (rs, rowNum) -> {
+            ExposureDTO exposureDTO = EXPOSURE_ROW_MAPPER.mapRow(rs, rowNum);
+            Long clientId = rs.getLong("clientId");
+            RiskAnalysisDTO riskAnalysisDTO = exposures.get(clientId);
+            riskAnalysisDTO.maxPastCredit = exposureDTO.getMaxPastCredit();
+            riskAnalysisDTO.totalCurrentLoans = exposureDTO.getTotalCurrentLoans();
+            missing.remove(clientId);
+            return clientId;
+        };
+        namedJdbcTemplate.query(RECOVER_EXPOSURE_SUMMARIES,
+                new MapSqlParameterSource("clientIds", clientIds), exposureMapper);
+        if (!missing.isEmpty()) {
+            namedJdbcTemplate.query(RECOVER_EXPOSURES,
+                    new MapSqlParameterSource("clientIds", missing), exposureMapper);
+        }
+        return exposures;
+    }
+
+    /**
+     * Perform a risk analysis given a client. Concurrent analyses of the same
+     * client share the credit firm lookup, but each one reads the exposure
+     * itself, after the lookup when they run sequentially, so the credits
+     * committed while the credit firm answers are taken into account.
      * @param clientDTO DTO with client data.
      * @return a DTO with risk analysis results.
      */
     private RiskAnalysisDTO performRiskAnalysis(ClientDTO clientDTO) {
+        if (riskAnalysisExecutor != null) {
+            return performConcurrentRiskAnalysis(clientDTO);
+        }
         RiskAnalysisDTO riskAnalysisDTO = new RiskAnalysisDTO();
-        riskAnalysisDTO.maxPastCredit = getMaxPastCredit(clientDTO.getId());
-        riskAnalysisDTO.totalCurrentLoans = getTotalCurrentLoans(clientDTO.getId());
-        RiskTypeEnum risk = creditFirmABC.getRiskByClient(IDTypeEnum.forValue(clientDTO
-                        .getTypeId()), clientDTO.getClientId());
-        riskAnalysisDTO.riskTypeEnum = risk;
+        riskAnalysisDTO.riskTypeEnum = getCoalescedRiskByClient(clientDTO);
+        ExposureDTO exposureDTO = getExposure(clientDTO.getId());
+        riskAnalysisDTO.maxPastCredit = exposureDTO.getMaxPastCredit();
+        riskAnalysisDTO.totalCurrentLoans = exposureDTO.getTotalCurrentLoans();
         return riskAnalysisDTO;
     }
 
     /**
-     * Assign a credit to a client.
+     * Ask the credit firm for the risk of a client, sharing the answer with the
+     * concurrent lookups of the same client.
+     * @param clientDTO DTO with client data.
+     * @return the risk status.
+     */
+    private RiskTypeEnum getCoalescedRiskByClient(ClientDTO clientDTO) {
+        return riskFlights.execute(clientDTO.getId(), () -> getRiskByClient(clientDTO));
+    }
+
+    /**
+     * Ask the credit firm for the risk of a client.
+     * @param clientDTO DTO with client data.
+     * @return the risk status.
+     */
+    private RiskTypeEnum getRiskByClient(ClientDTO clientDTO) {
+        long start = System.nanoTime();
+        try {
+            return creditFirmABC.getRiskByClient(IDTypeEnum.forValue(clientDTO
+                    .getTypeId()), clientDTO.getClientId());
+        } finally {
+            serviceMetrics.record(TimedOperationEnum.GET_RISK_BY_CLIENT, start);
+        }
+    }
+
+    /**
+     * Perform a risk analysis running the exposure lookup and the credit firm
+     * call at the same time, so its latency is bounded by the slowest of them
+     * and by the risk analysis deadline. When the executor rejects a sub-query
+     * the risk analysis fails at once.
+     * @param clientDTO DTO with client data.
+     * @return a DTO with risk analysis results.
+     * @throws RiskAnalysisException if a sub-query fails or is rejected, or the
+     * deadline expires.
+     */
+    private RiskAnalysisDTO performConcurrentRiskAnalysis(ClientDTO clientDTO) {
+        long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(riskAnalysisTimeoutMillis);
+        Future<RiskTypeEnum> risk = null;
+        Future<ExposureDTO> exposure = null;
+        try {
+            risk = riskAnalysisExecutor.submit(() -> getCoalescedRiskByClient(clientDTO));
+            exposure = riskAnalysisExecutor.submit(() -> getExposure(clientDTO.getId()));
+            ExposureDTO exposureDTO = awaitRiskAnalysis(exposure, deadline);
+            return new RiskAnalysisDTO(awaitRiskAnalysis(risk, deadline),
+                    exposureDTO.getMaxPastCredit(), exposureDTO.getTotalCurrentLoans());
+        } catch (RejectedExecutionException e) {
+            throw new RiskAnalysisException("Risk analysis executor is saturated.", e);
+        } finally {
+            if (risk != null) {
+                risk.cancel(true);
+            }
+            if (exposure != null) {
+                exposure.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Wait for a risk analysis sub-query until the deadline.
+     * @param future Sub-query result.
+     * @param deadline Deadline, as given by System.nanoTime().
+     * @param <T> Type of result.
+     * @return the sub-query result.
+     * @throws RiskAnalysisException if the sub-query fails or the deadline expires.
+     */
+    private static <T> T awaitRiskAnalysis(Future<T> future, long deadline) {
+        try {
+            return future.get(Math.max(0L, deadline - System.nanoTime()),
+                    TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new RiskAnalysisException("Risk analysis deadline expired.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RiskAnalysisException("Risk analysis was interrupted.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RiskAnalysisException("Risk analysis failed.", e.getCause());
+        }
+    }
+
+    /**
+     * Assign a credit to a client, in its own transaction or, when group commit
+     * is enabled, in the next group of its shard.
      * @param clientDTO DTO with client data.
      * @param amount Credit amount given.
+     * @param salary Salary declared with the request.
+     * @param idempotencyKey Idempotency key of the request, it may be null.
+     */
+    private void assignCredit(ClientDTO clientDTO, BigDecimal amount, BigDecimal salary,
+            String idempotencyKey) {
+        long start = System.nanoTime();
+        try {
+            if (groupCommitMaxBatchSize > 0) {
+                creditWriter(clientDTO.getId()).write(new NewCreditDTO(clientDTO.getId(),
+                        amount, salary, idempotencyKey));
+                return;
+            }
+            Object[] params = new Object[]{clientDTO.getId(), amount,
+                    Date.valueOf(LocalDate.now()), idempotencyKey};
+            Object[] summaryParams = new Object[]{clientDTO.getId(), salary,
+                    clientDTO.getId(), amount, 1};
+            onShard(clientDTO.getId(), () -> transactionTemplate.execute(status -> {
+                jdbcTemplate.update(CREATE_CREDIT, params, CREATE_CREDIT_TYPES);
+                addExposureSummaries(Collections.singletonList(summaryParams));
+                return null;
+            }));
+            written(clientDTO.getId());
+        } finally {
+            serviceMetrics.record(TimedOperationEnum.ASSIGN_CREDIT, start);
+        }
+    }
+
+    /**
+     * Add new credits to the exposure summaries, with ADD_EXPOSURE_SUMMARY on
+     * MySQL. Other databases do not support its INSERT ... SELECT ... ON DUPLICATE
+     * KEY UPDATE, so each summary is updated and created when it is missing.
+     * @param summaries Parameters of ADD_EXPOSURE_SUMMARY.
+     */
+    private void addExposureSummaries(List<Object[]> summaries) {
+        if (DatabaseProducts.isMySQL(jdbcTemplate.getDataSource())) {
+            jdbcTemplate.batchUpdate(ADD_EXPOSURE_SUMMARY, summaries,
+                    ADD_EXPOSURE_SUMMARY_TYPES);
+            return;
+        }
+        for (Object[] summary : summaries) {
+            Object[] increment = new Object[]{summary[3], summary[4], summary[1],
+                    summary[0]};
+            if (jdbcTemplate.update(INCREMENT_EXPOSURE_SUMMARY, increment,
+                    INCREMENT_EXPOSURE_SUMMARY_TYPES) > 0) {
+                continue;
+            }
+            try {
+                jdbcTemplate.update(CREATE_EXPOSURE_SUMMARY, new Object[]{summary[0],
+                        summary[1], summary[2]}, CREATE_EXPOSURE_SUMMARY_TYPES);
+            } catch (DuplicateKeyException e) {
+                jdbcTemplate.update(INCREMENT_EXPOSURE_SUMMARY, increment,
+                        INCREMENT_EXPOSURE_SUMMARY_TYPES);
+            }
+        }
+    }
+
+    /**
+     * Mark a credit as paid and move it from the open credits to the paid ones
+     * in the client exposure summary. The summary is only updated when this
+     * call is the one that marked the credit as paid, so concurrent payments of
+     * a credit move it once. It joins the caller transaction, if any, so it can
+     * be part of the payment flow. On a sharded database it runs on the shard of
+     * the credit.
+     * @param creditId Credit identifier.
+     * @return true if the credit was open and it is paid now.
      */
-    private void assignCredit(ClientDTO clientDTO, BigDecimal amount) {
-        Object[] params = new Object[]{clientDTO.getId(), amount, LocalDate.now()};
-        int[] types = new int[]{Types.NUMERIC, Types.DECIMAL, Types.DATE};
-        jdbcTemplate.update(CREATE_CREDIT, params, types);
+    @Override
+    public boolean markCreditPaid(Long creditId) {
+        return onShard(creditId, () -> transactionTemplate.execute(status -> {
+            Object[] params = new Object[]{creditId};
+            int[] types = new int[]{Types.NUMERIC};
+            SqlRowSet credit = jdbcTemplate.queryForRowSet(RECOVER_CREDIT, params, types);
+            if (!credit.next()) {
+                return false;
+            }
+            long clientId = credit.getLong("clientId");
+            written(clientId);
+            BigDecimal creditValue = credit.getBigDecimal("creditValue");
+            int paid = jdbcTemplate.update(PAY_CREDIT,
+                    new Object[]{Date.valueOf(LocalDate.now()), creditId},
+                    new int[]{Types.DATE, Types.NUMERIC});
+            if (paid != 1) {
+                return false;
+            }
+            jdbcTemplate.update(PAY_EXPOSURE_SUMMARY,
+                    new Object[]{creditValue, creditValue, clientId},
+                    new int[]{Types.DECIMAL, Types.DECIMAL, Types.NUMERIC});
+            return true;
+        }));
     }
 
     /**
@@ -142,65 +1262,120 @@ public class CreditEvalServiceImpl implements ICreditEvalService {
      * @return the credit amount.
      */
     public BigDecimal evaluateCreditAmount(EvaluateQuotaInDTO inDTO) {
-        BigDecimal amount = BigDecimal.ZERO;
-        BigDecimal maxPastCredit = inDTO.getMaxPastCredit();
-        BigDecimal totalCurrentCredit = inDTO.getTotalCurrentCredit();
-        BigDecimal currentSalary = inDTO.getCurrentSalary();
+        long start = System.nanoTime();
+        try {
+            BigDecimal maxPastCredit = inDTO.getMaxPastCredit();
+            BigDecimal totalCurrentCredit = inDTO.getTotalCurrentCredit();
+            BigDecimal currentSalary = inDTO.getCurrentSalary();
 
-        if (maxPastCredit == null || maxPastCredit.compareTo(BigDecimal.ZERO) < 0) {
-            throw new IllegalArgumentException("Past credit amount should not be "
-                    + "negative.");
-        }
-        if (totalCurrentCredit == null
-                || totalCurrentCredit.compareTo(BigDecimal.ZERO) < 0) {
-            throw new IllegalArgumentException("Current credit loan should not be "
-                    + "negative.");
-        }
-        if (currentSalary == null || currentSalary.compareTo(BigDecimal.ZERO) < 0) {
-            throw new IllegalArgumentException("Current salary should not be "
-                    + "negative.");
+            if (maxPastCredit == null || maxPastCredit.compareTo(BigDecimal.ZERO) < 0) {
+                throw new IllegalArgumentException("Past credit amount should not be "
+                        + "negative.");
+            }
+            if (totalCurrentCredit == null
+                    || totalCurrentCredit.compareTo(BigDecimal.ZERO) < 0) {
+                throw new IllegalArgumentException("Current credit loan should not be "
+                        + "negative.");
+            }
+            if (currentSalary == null || currentSalary.compareTo(BigDecimal.ZERO) < 0) {
+                throw new IllegalArgumentException("Current salary should not be "
+                        + "negative.");
+            }
+
+            return quotaEngine.evaluate(maxPastCredit, totalCurrentCredit, currentSalary,
+                    inDTO.getRiskTypeEnum());
+        } finally {
+            serviceMetrics.record(TimedOperationEnum.EVALUATE_CREDIT_AMOUNT, start);
         }
+    }
 
-        if (inDTO.getRiskTypeEnum() == RiskTypeEnum.NONE) {
-            amount = new BigDecimal(Math.max(currentSalary.doubleValue() * 3,
-                    maxPastCredit.doubleValue())).subtract(totalCurrentCredit);
-        } else if (inDTO.getRiskTypeEnum() == RiskTypeEnum.IN_ARREARS_3_MONTHS) {
-            amount = new BigDecimal(Math.max(currentSalary.doubleValue() * 3.5,
-                    maxPastCredit.doubleValue())).subtract(totalCurrentCredit);
-        } else if (inDTO.getRiskTypeEnum() == RiskTypeEnum.IN_ARREARS_6_MONTHS) {
-            amount = new BigDecimal(Math.max(currentSalary.doubleValue() * 4,
-                    maxPastCredit.doubleValue())).subtract(totalCurrentCredit);
-        } else if (inDTO.getRiskTypeEnum() == RiskTypeEnum.PLEDGE) {
-            amount = new BigDecimal(Math.max(currentSalary.doubleValue(),
-                    maxPastCredit.doubleValue())).subtract(totalCurrentCredit);
+    /**
+     * Return the maximum past credit and the total current loans given a client,
+     * with a primary key lookup on its exposure summary.
+     * @param clientId Client internal identifier.
+     * @return the client exposure.
+     */
+    private ExposureDTO getExposure(Long clientId) {
+        long start = System.nanoTime();
+        try {
+            Object[] params = new Object[]{clientId};
+            int[] types = new int[]{Types.NUMERIC};
+            return onShard(clientId, () -> onReplica(clientId, () -> {
+                List<ExposureDTO> summary = jdbcTemplate.query(RECOVER_EXPOSURE_SUMMARY,
+                        params, types, EXPOSURE_ROW_MAPPER);
+                if (!summary.isEmpty()) {
+                    return summary.get(0);
+                }
+                return aggregateExposure(clientId);
+            }));
+        } finally {
+            serviceMetrics.record(TimedOperationEnum.GET_EXPOSURE, start);
         }
-        return amount;
     }
 
     /**
-     * Return the maximum past credit amount given a client.
+     * Return the maximum past credit and the total current loans given a client,
+     * aggregating its credits.
      * @param clientId Client internal identifier.
-     * @return the maximum credit amount.
+     * @return the client exposure.
      */
-    private BigDecimal getMaxPastCredit(Long clientId) {
+    private ExposureDTO aggregateExposure(Long clientId) {
         Object[] params = new Object[]{clientId};
         int[] types = new int[]{Types.NUMERIC};
-        BigDecimal maxPastCredit = jdbcTemplate.queryForObject(RECOVER_MAX_PAST_LOAN,
-                params, types, BigDecimal.class);
-        return maxPastCredit;
+        return jdbcTemplate.queryForObject(RECOVER_EXPOSURE, params, types,
+                EXPOSURE_ROW_MAPPER);
     }
 
     /**
-     * Return the total amount of loans given a client.
+     * Run an exposure lookup on a replica, or on the primary when the client
+     * credits were written within the stickiness window or there are no replicas.
      * @param clientId Client internal identifier.
-     * @return the total current loans.
+     * @param lookup Exposure lookup.
+     * @param <T> Type of result.
+     * @return the result of the lookup.
      */
-    private BigDecimal getTotalCurrentLoans(Long clientId) {
-        Object[] params = new Object[]{clientId};
-        int[] types = new int[]{Types.NUMERIC};
-        BigDecimal total = jdbcTemplate.queryForObject(RECOVER_TOTAL_CURRENT_LOANS,
-                params, types, BigDecimal.class);
-        return total;
+    private <T> T onReplica(Long clientId, Supplier<T> lookup) {
+        return routingDataSource == null ? lookup.get()
+                : routingDataSource.read(clientId, lookup);
+    }
+
+    /**
+     * Run an exposure lookup of several clients on a replica, or on the primary
+     * when the credits of any of them were written within the stickiness window
+     * or there are no replicas.
+     * @param clientIds Client internal identifiers.
+     * @param lookup Exposures lookup.
+     * @param <T> Type of result.
+     * @return the result of the lookup.
+     */
+    private <T> T onReplicas(Collection<Long> clientIds, Supplier<T> lookup) {
+        return routingDataSource == null ? lookup.get()
+                : routingDataSource.readAll(clientIds, lookup);
+    }
+
+    /**
+     * Run an operation on the shard of a client or credit, or directly when the
+     * database is not sharded.
+     * @param id Client or credit internal identifier, it carries its shard.
+     * @param operation Operation.
+     * @param <T> Type of result.
+     * @return the result of the operation.
+     */
+    private <T> T onShard(Long id, Supplier<T> operation) {
+        return shardRoutingDataSource == null ? operation.get()
+                : shardRoutingDataSource.onShard(ShardRoutingDataSource.shardOfId(id),
+                        operation);
+    }
+
+    /**
+     * Read the exposure of a client from the primary during the stickiness
+     * window, so the evaluations that follow a credit see it.
+     * @param clientId Client internal identifier.
+     */
+    private void written(Long clientId) {
+        if (routingDataSource != null) {
+            routingDataSource.written(clientId);
+        }
     }
     
 //    @Override
@@ -288,6 +1463,7 @@ public class CreditEvalServiceImpl implements ICreditEvalService {
 //			params = new Object[] { creditValue, accountTarget };
 //			types = new int[] { Types.DECIMAL, Types.VARCHAR };
 //			jdbcTemplate.update("UPDATE ACCOUNT SET total = (total + ?) WHERE number = ?", params, types);
+//			markCreditPaid(creditId);
 //			transactionManager.commit(txStatus);
 //		} catch (Exception e) {
 //			transactionManager.rollback(txStatus);
@@ -343,4 +1519,15 @@ public class CreditEvalServiceImpl implements ICreditEvalService {
         BigDecimal maxPastCredit;
         BigDecimal totalCurrentLoans;
     }
+
+    /**
+     * Approved credit to be created.
+     */
+    @AllArgsConstructor
+    static class NewCreditDTO {
+        Long clientId;
+        BigDecimal amount;
+        BigDecimal salary;
+        String idempotencyKey;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,362 @@
+package com.mycompany.impl.services;
+
+import com.mycompany.api.dto.ExposureDriftDTO;
+import com.mycompany.impl.datasource.DatabaseProducts;
+import com.mycompany.impl.datasource.ShardRoutingDataSource;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Recompute the client exposure summaries from the credits and report, or
+ * repair, the summaries that drifted. Clients are split in ranges of ids that
+ * are processed in parallel. On a sharded database the shards are processed in
+ * parallel, each one with its own ranges.
+ */
+public class ExposureSummaryJob {
+
+    /**
+     * SQL query to recover the range of client ids.
+     */
+    private static final String RECOVER_CLIENT_ID_RANGE =
+            "SELECT COALESCE (MIN(id), 0), COALESCE (MAX(id), 0) FROM CLIENT";
+
+    /**
+     * SQL query to aggregate the credits of a range of clients.
+     */
+    private static final String AGGREGATE_CREDITS =
+            "SELECT clientId, "
+                    + "COALESCE (MAX(CASE WHEN paidDate IS NOT NULL THEN creditValue END), 0) "
+                    + "AS maxPaidCredit, "
+                    + "COALESCE (SUM(CASE WHEN paidDate IS NULL THEN creditValue END), 0) "
+                    + "AS openCreditTotal, "
+                    + "COUNT(CASE WHEN paidDate IS NULL THEN 1 END) AS openCreditCount, "
+                    + "0 AS version "
+                    + "FROM CREDIT WHERE clientId BETWEEN ? AND ? GROUP BY clientId";
+
+    /**
+     * SQL query to recover the exposure summaries of a range of clients.
+     */
+    private static final String RECOVER_SUMMARIES =
+            "SELECT clientId, maxPaidCredit, openCreditTotal, openCreditCount, version "
+                    + "FROM CLIENT_EXPOSURE WHERE clientId BETWEEN ? AND ?";
+
+    /**
+     * SQL query to create a missing exposure summary unless it was created
+     * meanwhile, on MySQL.
+     */
+    private static final String CREATE_SUMMARY_IGNORE =
+            "INSERT IGNORE INTO CLIENT_EXPOSURE (clientId, maxPaidCredit, openCreditTotal, "
+                    + "openCreditCount, version) VALUES (?, ?, ?, ?, 1)";
+
+    /**
+     * SQL query to create a missing exposure summary, used instead of
+     * CREATE_SUMMARY_IGNORE on databases other than MySQL, e.g. the embedded H2
+     * database.
+     */
+    private static final String CREATE_SUMMARY =
+            "INSERT INTO CLIENT_EXPOSURE (clientId, maxPaidCredit, openCreditTotal, "
+                    + "openCreditCount, version) VALUES (?, ?, ?, ?, 1)";
+
+    /**
+     * SQL query to overwrite an exposure summary unless it changed since it was read.
+     */
+    private static final String UPDATE_SUMMARY =
+            "UPDATE CLIENT_EXPOSURE SET maxPaidCredit = ?, openCreditTotal = ?, "
+                    + "openCreditCount = ?, version = version + 1 "
+                    + "WHERE clientId = ? AND version = ?";
+
+    /**
+     * Maximum number of drifted client ids kept in the report.
+     */
+    private static final int MAX_REPORTED_IDS = 100;
+
+    /**
+     * JDBC client.
+     */
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Shards of the database, null when the database is not sharded.
+     */
+    private ShardRoutingDataSource shardRoutingDataSource;
+
+    /**
+     * Number of ranges processed at the same time.
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Number of client ids in a range.
+     */
+    private long rangeSize = 10000L;
+
+    /**
+     * Sets data source.
+     *
+     * @param dataSource the data source.
+     */
+    @Autowired
+    public void setDataSource(final DataSource dataSource) {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        shardRoutingDataSource = dataSource instanceof ShardRoutingDataSource
+                ? (ShardRoutingDataSource) dataSource : null;
+    }
+
+    /**
+     * Sets the number of ranges processed at the same time.
+     *
+     * @param parallelism the number of threads, it should be positive.
+     */
+    public void setParallelism(final int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism should be positive.");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets the number of client ids in a range.
+     *
+     * @param rangeSize the range size, it should be positive.
+     */
+    public void setRangeSize(final long rangeSize) {
+        if (rangeSize <= 0) {
+            throw new IllegalArgumentException("Range size should be positive.");
+        }
+        this.rangeSize = rangeSize;
+    }
+
+    /**
+     * Compare every exposure summary with the credits of its client.
+     * @return the drift report.
+     */
+    public ExposureDriftDTO verify() {
+        return run(false);
+    }
+
+    /**
+     * Compare every exposure summary with the credits of its client and recompute
+     * the drifted ones. A summary updated by a credit write while it is being
+     * checked is left untouched, it is reported as drifted but not repaired.
+     * @return the drift report.
+     */
+    public ExposureDriftDTO rebuild() {
+        return run(true);
+    }
+
+    /**
+     * Process all shards in parallel.
+     * @param repair true to recompute drifted summaries.
+     * @return the merged drift report.
+     */
+    private ExposureDriftDTO run(boolean repair) {
+        if (shardRoutingDataSource == null) {
+            return runShard(0, repair);
+        }
+        ExposureDriftDTO report = new ExposureDriftDTO();
+        shardRoutingDataSource.onAllShards(shard -> runShard(shard, repair))
+                .values().forEach(shardReport -> merge(report, shardReport));
+        return report;
+    }
+
+    /**
+     * Process all ranges of clients of a shard in parallel.
+     * @param shard Shard number, 0 when the database is not sharded.
+     * @param repair true to recompute drifted summaries.
+     * @return the merged drift report of the shard.
+     */
+    private ExposureDriftDTO runShard(int shard, boolean repair) {
+        long[] idRange = jdbcTemplate.queryForObject(RECOVER_CLIENT_ID_RANGE,
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                new CustomizableThreadFactory("exposure-summary-"));
+        try {
+            List<Future<ExposureDriftDTO>> partitions = new ArrayList<>();
+            for (long from = idRange[0]; from <= idRange[1]; from += rangeSize) {
+                long first = from;
+                long last = Math.min(from + rangeSize - 1, idRange[1]);
+                partitions.add(executor.submit(() -> onShard(shard,
+                        () -> processRange(first, last, repair))));
+            }
+            ExposureDriftDTO report = new ExposureDriftDTO();
+            for (Future<ExposureDriftDTO> partition : partitions) {
+                merge(report, partition.get());
+            }
+            return report;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Exposure summary job was interrupted.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Exposure summary job failed.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Run an operation on a shard, or directly when the database is not sharded.
+     * @param shard Shard number.
+     * @param operation Operation.
+     * @param <T> Type of result.
+     * @return the result of the operation.
+     */
+    private <T> T onShard(int shard, Supplier<T> operation) {
+        return shardRoutingDataSource == null ? operation.get()
+                : shardRoutingDataSource.onShard(shard, operation);
+    }
+
+    /**
+     * Compare, and optionally repair, the summaries of a range of clients. The
+     * summaries are read before the credits: a credit written in between bumps
+     * the version of its summary, so the repair of that summary is skipped
+     * instead of overwriting it with an aggregate that misses the credit.
+     * @param first First client id of the range.
+     * @param last Last client id of the range.
+     * @param repair true to recompute drifted summaries.
+     * @return the drift report of the range.
+     */
+    private ExposureDriftDTO processRange(long first, long last, boolean repair) {
+        Object[] params = new Object[]{first, last};
+        int[] types = new int[]{Types.NUMERIC, Types.NUMERIC};
+        Map<Long, Summary> actual = new HashMap<>();
+        jdbcTemplate.query(RECOVER_SUMMARIES, params, types, rs -> {
+            actual.put(rs.getLong("clientId"), mapSummary(rs));
+        });
+        Map<Long, Summary> expected = new HashMap<>();
+        jdbcTemplate.query(AGGREGATE_CREDITS, params, types, rs -> {
+            expected.put(rs.getLong("clientId"), mapSummary(rs));
+        });
+
+        Set<Long> clientIds = new HashSet<>(expected.keySet());
+        clientIds.addAll(actual.keySet());
+        ExposureDriftDTO report = new ExposureDriftDTO();
+        report.setCheckedClients(clientIds.size());
+        for (Long clientId : clientIds) {
+            Summary computed = expected.getOrDefault(clientId, Summary.EMPTY);
+            Summary stored = actual.get(clientId);
+            if (stored == null ? computed.isEmpty() : computed.sameAmounts(stored)) {
+                continue;
+            }
+            report.setDriftedClients(report.getDriftedClients() + 1);
+            if (report.getDriftedClientIds().size() < MAX_REPORTED_IDS) {
+                report.getDriftedClientIds().add(clientId);
+            }
+            if (repair && repair(clientId, computed, stored)) {
+                report.setRepairedClients(report.getRepairedClients() + 1);
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Overwrite a drifted summary with the amounts computed from the credits.
+     * @param clientId Client internal identifier.
+     * @param computed Summary computed from the credits.
+     * @param stored Stored summary, null if there is none.
+     * @return true if the summary was written.
+     */
+    private boolean repair(Long clientId, Summary computed, Summary stored) {
+        if (stored == null) {
+            String create = DatabaseProducts.isMySQL(jdbcTemplate.getDataSource())
+                    ? CREATE_SUMMARY_IGNORE : CREATE_SUMMARY;
+            try {
+                return jdbcTemplate.update(create, clientId, computed.maxPaidCredit,
+                        computed.openCreditTotal, computed.openCreditCount) == 1;
+            } catch (DuplicateKeyException e) {
+                return false;
+            }
+        }
+        return jdbcTemplate.update(UPDATE_SUMMARY, computed.maxPaidCredit,
+                computed.openCreditTotal, computed.openCreditCount, clientId,
+                stored.version) == 1;
+    }
+
+    /**
+     * Map the current row to a summary.
+     * @param rs Result set positioned on a row.
+     * @return the summary.
+     * @throws SQLException if a column cannot be read.
+     */
+    private static Summary mapSummary(ResultSet rs) throws SQLException {
+        return new Summary(rs.getBigDecimal("maxPaidCredit"),
+                rs.getBigDecimal("openCreditTotal"), rs.getLong("openCreditCount"),
+                rs.getLong("version"));
+    }
+
+    /**
+     * Add a range report to the job report.
+     * @param report Job report.
+     * @param range Range report.
+     */
+    private static void merge(ExposureDriftDTO report, ExposureDriftDTO range) {
+        report.setCheckedClients(report.getCheckedClients() + range.getCheckedClients());
+        report.setDriftedClients(report.getDriftedClients() + range.getDriftedClients());
+        report.setRepairedClients(report.getRepairedClients() + range.getRepairedClients());
+        for (Long clientId : range.getDriftedClientIds()) {
+            if (report.getDriftedClientIds().size() < MAX_REPORTED_IDS) {
+                report.getDriftedClientIds().add(clientId);
+            }
+        }
+    }
+
+    /**
+     * Exposure summary of a client.
+     */
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @Data
+    static class Summary {
+
+        /**
+         * Summary of a client without credits.
+         */
+        static final Summary EMPTY = new Summary(BigDecimal.ZERO, BigDecimal.ZERO, 0L, 0L);
+
+        BigDecimal maxPaidCredit;
+        BigDecimal openCreditTotal;
+        long openCreditCount;
+        long version;
+
+        /**
+         * @return true if the summary has no credits.
+         */
+        boolean isEmpty() {
+            return sameAmounts(EMPTY);
+        }
+
+        /**
+         * @param other Other summary.
+         * @return true if both summaries have the same amounts, whatever their version.
+         */
+        boolean sameAmounts(Summary other) {
+            return maxPaidCredit.compareTo(other.maxPaidCredit) == 0
+                    && openCreditTotal.compareTo(other.openCreditTotal) == 0
+                    && openCreditCount == other.openCreditCount;
+        }
+    }
+}
@@ -1,31 +1,58 @@
 package com.mycompany.impl.services;
 
 import com.mycompany.api.dto.ClientDTO;
+import com.mycompany.api.dto.ClientKeyDTO;
 import com.mycompany.api.dto.IDTypeEnum;
 import com.mycompany.api.dto.PeopleDTO;
+import com.mycompany.api.services.IAsyncPeopleService;
 import com.mycompany.api.services.IPeopleService;
 
 import com.mycompany.exception.EntityExistsException;
+import com.mycompany.impl.cache.ExpiringLruCache;
+import com.mycompany.impl.concurrent.AsyncExecution;
+import com.mycompany.impl.datasource.DatabaseProducts;
+import com.mycompany.impl.datasource.ReadWriteRoutingDataSource;
+import com.mycompany.impl.datasource.ShardRoutingDataSource;
+import com.mycompany.impl.metrics.ServiceMetrics;
+import com.mycompany.impl.metrics.TimedOperationEnum;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 
 import javax.sql.DataSource;
+import java.sql.ResultSet;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Implementation for people service.
  * Created by jcortes on 12/9/15.
  */
-public class PeopleServiceImpl implements IPeopleService {
+public class PeopleServiceImpl implements IPeopleService, IAsyncPeopleService {
 
     /**
-     * SQL query to check if a client exists or not.
+     * SQL query to check if a client exists or not, it returns at most one row.
      */
     private static final String IS_CLIENT =
-            "SELECT clientId FROM CLIENT WHERE typeId = ? AND clientId = ?";
+            "SELECT 1 FROM CLIENT WHERE typeId = ? AND clientId = ? LIMIT 1";
 
     /**
      * SQL query to create a client.
@@ -34,18 +61,94 @@ public class PeopleServiceImpl implements IPeopleService {
             "INSERT INTO CLIENT (typeId, clientId, firstName, lastName, email) "
                     + "VALUES (?, ?, ?, ?, ?)";
 
+    /**
+     * SQL query to create a client unless it already exists. Duplicates are
+     * detected by the unique index IND_CLIENT_1.
+     */
+    private static final String CREATE_MISSING_CLIENT =
+            "INSERT INTO CLIENT (typeId, clientId, firstName, lastName, email) "
+                    + "VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE id = id";
+
     /**
      * SQL query to select a client.
      */
     private static final String SELECT_CLIENT =
-            "SELECT id, typeid, clientId, firstName, lastName, email FROM CLIENT "
+            "SELECT id, typeId, clientId, firstName, lastName, email FROM CLIENT "
                 + "WHERE typeId = ? AND clientId = ?";
 
+    /**
+     * SQL query to select several clients with the same type of id.
+     */
+    private static final String SELECT_CLIENTS =
+            "SELECT id, typeId, clientId, firstName, lastName, email FROM CLIENT "
+                + "WHERE typeId = :typeId AND clientId IN (:clientIds)";
+
+    /**
+     * Column types of CREATE_CLIENT.
+     */
+    private static final int[] CREATE_CLIENT_TYPES = new int[]{Types.VARCHAR,
+            Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR};
+
+    /**
+     * Maps a row of SELECT_CLIENT or SELECT_CLIENTS by column index.
+     */
+    static final RowMapper<ClientDTO> CLIENT_ROW_MAPPER = (rs, rowNum) -> new ClientDTO(
+            rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4),
+            rs.getString(5), rs.getString(6));
+
+    /**
+     * Default maximum number of cached clients.
+     */
+    private static final int DEFAULT_CLIENT_CACHE_SIZE = 100000;
+
+    /**
+     * Default time to live of a cached client, in milliseconds.
+     */
+    private static final long DEFAULT_CLIENT_CACHE_TTL_MILLIS = 3600000L;
+
     /**
      * JDBC client.
      */
     private JdbcTemplate jdbcTemplate;
 
+    /**
+     * JDBC client with named parameters, used for IN lists.
+     */
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    /**
+     * Near-cache of existing clients. CLIENT rows do not change once created;
+     * the absence of a client is never cached.
+     */
+    private ExpiringLruCache<ClientCacheKey, ClientDTO> clientCache =
+            new ExpiringLruCache<>(DEFAULT_CLIENT_CACHE_SIZE);
+
+    /**
+     * Time to live of a cached client, in milliseconds.
+     */
+    private long clientCacheTtlMillis = DEFAULT_CLIENT_CACHE_TTL_MILLIS;
+
+    /**
+     * Timers of the operations, published when it is the metrics bean.
+     */
+    private ServiceMetrics serviceMetrics = new ServiceMetrics();
+
+    /**
+     * Sends client lookups to the replicas, null when there are no replicas.
+     */
+    private ReadWriteRoutingDataSource routingDataSource;
+
+    /**
+     * Sends each client to its shard, null when the database is not sharded.
+     */
+    private ShardRoutingDataSource shardRoutingDataSource;
+
+    /**
+     * Runs the asynchronous operations, when it is null they run in the caller
+     * thread.
+     */
+    private Executor asyncExecutor;
+
     /**
      * Sets data source.
      *
@@ -54,6 +157,78 @@ public class PeopleServiceImpl implements IPeopleService {
     @Autowired
     public void setDataSource(final DataSource dataSource) {
         jdbcTemplate = new JdbcTemplate(dataSource);
+        namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        routingDataSource = dataSource instanceof ReadWriteRoutingDataSource
+                ? (ReadWriteRoutingDataSource) dataSource : null;
+        shardRoutingDataSource = dataSource instanceof ShardRoutingDataSource
+                ? (ShardRoutingDataSource) dataSource : null;
+    }
+
+    /**
+     * Sets the executor of the asynchronous operations.
+     * @param asyncExecutor Executor, null to run them in the caller thread.
+     */
+    @Autowired(required = false)
+    @Qualifier("serviceAsyncExecutor")
+    public void setAsyncExecutor(final Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * Sets the metrics the operations are recorded in.
+     * @param serviceMetrics Service metrics.
+     */
+    @Autowired(required = false)
+    public void setServiceMetrics(final ServiceMetrics serviceMetrics) {
+        this.serviceMetrics = serviceMetrics;
+    }
+
+    /**
+     * Sets the maximum number of cached clients, the cached clients are dropped.
+     * @param maximumSize Maximum number of cached clients.
+     */
+    @Value("${client.cache.maximum.size:100000}")
+    public void setClientCacheMaximumSize(final int maximumSize) {
+        clientCache = new ExpiringLruCache<>(maximumSize);
+    }
+
+    /**
+     * Sets the time to live of a cached client, zero disables the cache.
+     * @param clientCacheTtlMillis Time to live in milliseconds.
+     */
+    @Value("${client.cache.ttl.millis:3600000}")
+    public void setClientCacheTtlMillis(final long clientCacheTtlMillis) {
+        this.clientCacheTtlMillis = clientCacheTtlMillis;
+    }
+
+    /**
+     * Forget a cached client, e.g. after it is changed or removed by someone else.
+     * @param idType Type of id.
+     * @param id Client identifier.
+     */
+    public void invalidateClient(IDTypeEnum idType, String id) {
+        clientCache.invalidate(new ClientCacheKey(idType, id));
+    }
+
+    /**
+     * Forget all cached clients.
+     */
+    public void invalidateClients() {
+        clientCache.invalidateAll();
+    }
+
+    /**
+     * @return the number of client lookups answered by the cache.
+     */
+    public long getClientCacheHitCount() {
+        return clientCache.getHitCount();
+    }
+
+    /**
+     * @return the number of client lookups sent to the database.
+     */
+    public long getClientCacheMissCount() {
+        return clientCache.getMissCount();
     }
 
     /**
@@ -64,13 +239,17 @@ public class PeopleServiceImpl implements IPeopleService {
      */
     @Override
     public Boolean isClient(IDTypeEnum idType, String id) {
-        boolean exists = false;
-        List<Map<String, Object>> rows =
-            jdbcTemplate.queryForList(IS_CLIENT, idType.toValue(), id);
-        if (rows.size() == 1) {
-            exists = true;
+        long start = System.nanoTime();
+        try {
+            ClientCacheKey key = new ClientCacheKey(idType, id);
+            if (clientCache.getIfPresent(key) != null) {
+                return true;
+            }
+            return onShard(key, () -> onReplica(key, () -> jdbcTemplate.query(
+                    IS_CLIENT, clientKeySetter(idType, id), ResultSet::next)));
+        } finally {
+            serviceMetrics.record(TimedOperationEnum.IS_CLIENT, start);
         }
-        return exists;
     }
 
     /**
@@ -80,39 +259,429 @@ public class PeopleServiceImpl implements IPeopleService {
      */
     @Override
     public void createClient(PeopleDTO peopleDTO) throws EntityExistsException {
-        if (!isClient(peopleDTO.getIdType(), peopleDTO.getId())) {
-            Object[] params = new Object[]{peopleDTO.getIdType(), peopleDTO.getId(),
-                    peopleDTO.getFirstName(), peopleDTO.getLastName(), peopleDTO.getEmail()};
-
-            int[] types = new int[]{Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
-                    Types.VARCHAR, Types.VARCHAR};
-            jdbcTemplate.update(CREATE_CLIENT, params, types);
-        } else {
-            throw new EntityExistsException(
-                    "Client [" + peopleDTO.getIdType().toValue() + ", "
-                            + peopleDTO.getId() + "] " + "already exists.", null);
+        long start = System.nanoTime();
+        try {
+            if (!isClient(peopleDTO.getIdType(), peopleDTO.getId())) {
+                Object[] params = new Object[]{peopleDTO.getIdType().toValue(),
+                        peopleDTO.getId(), peopleDTO.getFirstName(),
+                        peopleDTO.getLastName(), peopleDTO.getEmail()};
+
+                int[] types = new int[]{Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+                        Types.VARCHAR, Types.VARCHAR};
+                ClientCacheKey key = new ClientCacheKey(peopleDTO.getIdType(),
+                        peopleDTO.getId());
+                try {
+                    onShard(key, () -> jdbcTemplate.update(CREATE_CLIENT, params, types));
+                } catch (DuplicateKeyException e) {
+                    written(key);
+                    throw new EntityExistsException(
+                            "Client [" + peopleDTO.getIdType().toValue() + ", "
+                                    + peopleDTO.getId() + "] " + "already exists.", e);
+                }
+                written(key);
+            } else {
+                throw new EntityExistsException(
+                        "Client [" + peopleDTO.getIdType().toValue() + ", "
+                                + peopleDTO.getId() + "] " + "already exists.", null);
+            }
+        } finally {
+            serviceMetrics.record(TimedOperationEnum.CREATE_CLIENT, start);
+        }
+    }
+
+    /**
+     * Return the client of a person, creating it if needed. The client is looked
+     * up in the cache and then with the indexed SELECT, so an existing client
+     * costs no write. A missing one costs that SELECT, an insert and a second
+     * SELECT on the primary: the insert is ignored on MySQL when the client
+     * already exists, other databases, e.g. the embedded one, fail it with a
+     * duplicate key. Concurrent calls for the same person are resolved by the
+     * unique index on (typeId, clientId), and all of them read back the stored
+     * row, which is the one that is cached.
+     * @param peopleDTO DTO with client data.
+     * @return a DTO with the stored client data.
+     */
+    @Override
+    public ClientDTO getOrCreateClient(PeopleDTO peopleDTO) {
+        long start = System.nanoTime();
+        try {
+            Optional<ClientDTO> existing = getClient(peopleDTO.getIdType(),
+                    peopleDTO.getId());
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+            Object[] params = upsertParams(peopleDTO);
+            ClientCacheKey key = new ClientCacheKey(peopleDTO.getIdType(),
+                    peopleDTO.getId());
+            try {
+                onShard(key, () -> jdbcTemplate.update(
+                        DatabaseProducts.isMySQL(jdbcTemplate.getDataSource())
+                                ? CREATE_MISSING_CLIENT : CREATE_CLIENT,
+                        params, CREATE_CLIENT_TYPES));
+            } catch (DuplicateKeyException e) {
+                // Created meanwhile, it is looked up below.
+            }
+            written(key);
+            return getClient(peopleDTO.getIdType(), peopleDTO.getId())
+                    .orElseThrow(() -> new IllegalStateException("Client ["
+                            + peopleDTO.getIdType().toValue() + ", "
+                            + peopleDTO.getId() + "] could not be created."));
+        } finally {
+            serviceMetrics.record(TimedOperationEnum.GET_OR_CREATE_CLIENT, start);
         }
     }
 
     /**
-     * Return a client given its id.
+     * Return a client given its id, from the cache when possible. Cached DTOs
+     * are shared and should not be modified.
      * @param idType Type of id.
      * @param id National identifier, e.g. passport.
      * @return an optional DTO with all data.
      */
     @Override
     public Optional<ClientDTO> getClient(IDTypeEnum idType, String id) {
-        List<Map<String, Object>> rows =
-                jdbcTemplate.queryForList(SELECT_CLIENT, idType.toValue(), id);
-        if (rows.size() == 1) {
-            Map<String, Object> map = rows.get(0);
-            ClientDTO clientDTO = new ClientDTO(
-                    (Long) map.get("id"),
-                    (String) map.get("typeId"),
-                    (String) map.get("clientId"),(String) map.get("firstName"),
-                    (String) map.get("lastName"), (String) map.get("email"));
-            return Optional.ofNullable(clientDTO);
+        long start = System.nanoTime();
+        try {
+            return Optional.ofNullable(clientCache.get(new ClientCacheKey(idType, id),
+                    key -> loadClient(idType, id).orElse(null), this::ttlOf));
+        } finally {
+            serviceMetrics.record(TimedOperationEnum.GET_CLIENT, start);
+        }
+    }
+
+    /**
+     * Return a client given its id from the database.
+     * @param idType Type of id.
+     * @param id National identifier, e.g. passport.
+     * @return an optional DTO with all data.
+     */
+    private Optional<ClientDTO> loadClient(IDTypeEnum idType, String id) {
+        ClientCacheKey key = new ClientCacheKey(idType, id);
+        return Optional.ofNullable(onShard(key, () -> onReplica(key,
+                () -> jdbcTemplate.query(SELECT_CLIENT, clientKeySetter(idType, id),
+                        rs -> rs.next() ? CLIENT_ROW_MAPPER.mapRow(rs, 0) : null))));
+    }
+
+    /**
+     * Return the existing clients among the given keys. Clients that are not
+     * cached are grouped by type of id so the lookup costs one indexed query per
+     * type of id.
+     * @param keys Keys of the people to look for.
+     * @return a map with the found clients.
+     */
+    @Override
+    public Map<ClientKeyDTO, ClientDTO> getClients(Collection<ClientKeyDTO> keys) {
+        long start = System.nanoTime();
+        try {
+            List<ClientCacheKey> cacheKeys = new ArrayList<>(keys.size());
+            for (ClientKeyDTO key : keys) {
+                cacheKeys.add(new ClientCacheKey(key.getIdType(), key.getId()));
+            }
+            Map<ClientKeyDTO, ClientDTO> clients = new HashMap<>();
+            clientCache.getAll(cacheKeys, this::loadClients, this::ttlOf)
+                    .forEach((key, clientDTO) -> {
+                        if (clientDTO != null) {
+                            clients.put(new ClientKeyDTO(key.idType, key.id), clientDTO);
+                        }
+                    });
+            return clients;
+        } finally {
+            serviceMetrics.record(TimedOperationEnum.GET_CLIENTS, start);
+        }
+    }
+
+    /**
+     * Return the existing clients among the given keys from the database. On a
+     * sharded database the shards are queried in parallel.
+     * @param keys Keys of the people to look for.
+     * @return a map with the found clients.
+     */
+    private Map<ClientCacheKey, ClientDTO> loadClients(List<ClientCacheKey> keys) {
+        if (shardRoutingDataSource == null) {
+            return loadShardClients(keys);
+        }
+        Map<Integer, List<ClientCacheKey>> keysByShard = byShard(keys, key -> key);
+        Map<ClientCacheKey, ClientDTO> clients = new HashMap<>();
+        shardRoutingDataSource.onShards(keysByShard.keySet(),
+                shard -> loadShardClients(keysByShard.get(shard)))
+                .values().forEach(clients::putAll);
+        return clients;
+    }
+
+    /**
+     * Return the existing clients among the given keys from a single database.
+     * The collation of CLIENT.clientId is case insensitive on MySQL, so a row
+     * may be stored with another case than the requested id. Each row is
+     * returned under every requested key that matches it ignoring case.
+     * @param keys Keys of the people to look for.
+     * @return a map with the found clients.
+     */
+    private Map<ClientCacheKey, ClientDTO> loadShardClients(List<ClientCacheKey> keys) {
+        Map<IDTypeEnum, Map<String, List<String>>> idsByType =
+                new EnumMap<>(IDTypeEnum.class);
+        for (ClientCacheKey key : keys) {
+            idsByType.computeIfAbsent(key.idType,
+                    type -> new TreeMap<>(String.CASE_INSENSITIVE_ORDER))
+                    .computeIfAbsent(key.id, id -> new ArrayList<>()).add(key.id);
+        }
+        Map<ClientCacheKey, ClientDTO> clients = new HashMap<>();
+        onReplicas(keys, () -> {
+            idsByType.forEach((idType, ids) -> {
+                MapSqlParameterSource params = new MapSqlParameterSource()
+                        .addValue("typeId", idType.toValue())
+                        .addValue("clientIds", new ArrayList<>(ids.keySet()));
+                namedJdbcTemplate.query(SELECT_CLIENTS, params, rs -> {
+                    ClientDTO clientDTO = CLIENT_ROW_MAPPER.mapRow(rs, 0);
+                    for (String id : ids.getOrDefault(clientDTO.getClientId(),
+                            Collections.emptyList())) {
+                        clients.put(new ClientCacheKey(idType, id), clientDTO);
+                    }
+                });
+            });
+            return null;
+        });
+        return clients;
+    }
+
+    /**
+     * Run a client lookup on a replica, or on the primary when the client was
+     * written within the stickiness window or there are no replicas.
+     * @param key Client key.
+     * @param lookup Client lookup.
+     * @param <T> Type of result.
+     * @return the result of the lookup.
+     */
+    private <T> T onReplica(ClientCacheKey key, Supplier<T> lookup) {
+        return routingDataSource == null ? lookup.get()
+                : routingDataSource.read(key, lookup);
+    }
+
+    /**
+     * Run a lookup of several clients on a replica, or on the primary when any of
+     * them was written within the stickiness window or there are no replicas.
+     * @param keys Client keys.
+     * @param lookup Clients lookup.
+     * @param <T> Type of result.
+     * @return the result of the lookup.
+     */
+    private <T> T onReplicas(Collection<ClientCacheKey> keys, Supplier<T> lookup) {
+        return routingDataSource == null ? lookup.get()
+                : routingDataSource.readAll(keys, lookup);
+    }
+
+    /**
+     * Run a client operation on the shard of the client, or directly when the
+     * database is not sharded.
+     * @param key Client key.
+     * @param operation Client operation.
+     * @param <T> Type of result.
+     * @return the result of the operation.
+     */
+    private <T> T onShard(ClientCacheKey key, Supplier<T> operation) {
+        return shardRoutingDataSource == null ? operation.get()
+                : shardRoutingDataSource.onShard(shardRoutingDataSource.shardOf(
+                        key.idType.toValue(), key.id), operation);
+    }
+
+    /**
+     * @param items Items of several clients.
+     * @param keyOf Client key of an item.
+     * @param <T> Type of item.
+     * @return the items grouped by the shard of their client.
+     */
+    private <T> Map<Integer, List<T>> byShard(Collection<T> items,
+            Function<T, ClientCacheKey> keyOf) {
+        Map<Integer, List<T>> itemsByShard = new HashMap<>();
+        for (T item : items) {
+            ClientCacheKey key = keyOf.apply(item);
+            itemsByShard.computeIfAbsent(shardRoutingDataSource.shardOf(
+                    key.idType.toValue(), key.id), shard -> new ArrayList<>()).add(item);
+        }
+        return itemsByShard;
+    }
+
+    /**
+     * Read a client from the primary during the stickiness window, so the
+     * lookups that follow its creation find it.
+     * @param key Client key.
+     */
+    private void written(ClientCacheKey key) {
+        if (routingDataSource != null) {
+            routingDataSource.written(key);
+        }
+    }
+
+    /**
+     * Check if a client exists, on the asynchronous executor.
+     * @param idType Type of id.
+     * @param id Client National id.
+     * @return a stage completed with true if the client exists.
+     */
+    @Override
+    public CompletionStage<Boolean> isClientAsync(IDTypeEnum idType, String id) {
+        return AsyncExecution.supply(() -> isClient(idType, id), asyncExecutor);
+    }
+
+    /**
+     * Return a client given its id, on the asynchronous executor.
+     * @param idType Type of id.
+     * @param id National identifier, e.g. passport.
+     * @return a stage completed with an optional DTO with all data.
+     */
+    @Override
+    public CompletionStage<Optional<ClientDTO>> getClientAsync(IDTypeEnum idType,
+            String id) {
+        return AsyncExecution.supply(() -> getClient(idType, id), asyncExecutor);
+    }
+
+    /**
+     * Return the client of a person, creating it if needed, on the asynchronous
+     * executor.
+     * @param peopleDTO DTO with client data.
+     * @return a stage completed with a DTO with the client data.
+     */
+    @Override
+    public CompletionStage<ClientDTO> getOrCreateClientAsync(PeopleDTO peopleDTO) {
+        return AsyncExecution.supply(() -> getOrCreateClient(peopleDTO), asyncExecutor);
+    }
+
+    /**
+     * Return the existing clients among the given keys, on the asynchronous
+     * executor.
+     * @param keys Keys of the people to look for.
+     * @return a stage completed with a map with the found clients.
+     */
+    @Override
+    public CompletionStage<Map<ClientKeyDTO, ClientDTO>> getClientsAsync(
+            Collection<ClientKeyDTO> keys) {
+        return AsyncExecution.supply(() -> getClients(keys), asyncExecutor);
+    }
+
+    /**
+     * Create several clients with a single JDBC batch, one batch per shard on a
+     * sharded database. People that became clients in the meantime are left as
+     * they are.
+     * @param peopleDTOs DTOs with new clients data.
+     */
+    @Override
+    public void createClients(Collection<PeopleDTO> peopleDTOs) {
+        long start = System.nanoTime();
+        try {
+            if (shardRoutingDataSource == null) {
+                createShardClients(peopleDTOs);
+            } else {
+                Map<Integer, List<PeopleDTO>> peopleByShard = byShard(peopleDTOs,
+                        peopleDTO -> new ClientCacheKey(peopleDTO.getIdType(),
+                                peopleDTO.getId()));
+                shardRoutingDataSource.onShards(peopleByShard.keySet(),
+                        shard -> createShardClients(peopleByShard.get(shard)));
+            }
+            for (PeopleDTO peopleDTO : peopleDTOs) {
+                written(new ClientCacheKey(peopleDTO.getIdType(), peopleDTO.getId()));
+            }
+        } finally {
+            serviceMetrics.record(TimedOperationEnum.CREATE_CLIENTS, start);
+        }
+    }
+
+    /**
+     * Create several clients of a single database with a JDBC batch.
+     * @param peopleDTOs DTOs with new clients data.
+     * @return the number of rows affected by each statement.
+     */
+    private int[] createShardClients(Collection<PeopleDTO> peopleDTOs) {
+        List<Object[]> batchArgs = new ArrayList<>(peopleDTOs.size());
+        for (PeopleDTO peopleDTO : peopleDTOs) {
+            batchArgs.add(upsertParams(peopleDTO));
+        }
+        return jdbcTemplate.batchUpdate(CREATE_MISSING_CLIENT, batchArgs,
+                CREATE_CLIENT_TYPES);
+    }
+
+    /**
+     * @param peopleDTO DTO with client data.
+     * @return the parameters of CREATE_CLIENT and CREATE_MISSING_CLIENT.
+     */
+    private static Object[] upsertParams(PeopleDTO peopleDTO) {
+        return new Object[]{peopleDTO.getIdType().toValue(), peopleDTO.getId(),
+                peopleDTO.getFirstName(), peopleDTO.getLastName(), peopleDTO.getEmail()};
+    }
+
+    /**
+     * @param idType Type of id.
+     * @param id Client identifier.
+     * @return a setter of the parameters of IS_CLIENT and SELECT_CLIENT.
+     */
+    private static PreparedStatementSetter clientKeySetter(IDTypeEnum idType, String id) {
+        return ps -> {
+            ps.setString(1, idType.toValue());
+            ps.setString(2, id);
+        };
+    }
+
+    /**
+     * @param clientDTO Loaded client, null if it does not exist.
+     * @return the time to live of a loaded client.
+     */
+    private long ttlOf(ClientDTO clientDTO) {
+        return clientDTO == null ? 0L : clientCacheTtlMillis;
+    }
+
+    /**
+     * Immutable key of a cached client. It keeps a reference to the type of id
+     * and to the identifier, with no concatenated string, and its hash is
+     * computed once.
+     */
+    private static final class ClientCacheKey {
+
+        /**
+         * Type of identifier.
+         */
+        private final IDTypeEnum idType;
+
+        /**
+         * Client identifier.
+         */
+        private final String id;
+
+        /**
+         * Hash of the key.
+         */
+        private final int hash;
+
+        /**
+         * Build a key.
+         * @param idType Type of identifier.
+         * @param id Client identifier.
+         */
+        private ClientCacheKey(final IDTypeEnum idType, final String id) {
+            this.idType = idType;
+            this.id = id;
+            this.hash = 31 * idType.ordinal() + id.hashCode();
+        }
+
+        /**
+         * @param other Another object.
+         * @return true if the other object is a key of the same client.
+         */
+        @Override
+        public boolean equals(final Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof ClientCacheKey)) {
+                return false;
+            }
+            ClientCacheKey key = (ClientCacheKey) other;
+            return hash == key.hash && idType == key.idType && id.equals(key.id);
+        }
+
+        /**
+         * @return the hash of the key.
+         */
+        @Override
+        public int hashCode() {
+            return hash;
         }
-        return Optional.empty();
     }
 }
@@ -0,0 +1,682 @@
+package com.mycompany.impl.services;
+
+import com.mycompany.api.client.ICreditFirmABC;
+import com.mycompany.api.dto.ClientKeyDTO;
+import com.mycompany.api.dto.IDTypeEnum;
+import com.mycompany.api.dto.ReevaluationReportDTO;
+import com.mycompany.api.dto.RiskTypeEnum;
+import com.mycompany.impl.datasource.ShardRoutingDataSource;
+import com.mycompany.impl.quota.BatchQuotaCalculator;
+import com.mycompany.impl.quota.CreditPolicy;
+import com.mycompany.impl.quota.QuotaEngine;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Re-evaluate the available credit quota of every client and store it in
+ * CLIENT_QUOTA. Clients are split in ranges of ids that are processed in
+ * parallel; each range streams its clients and their credit totals through two
+ * forward-only cursors merged by client id, and writes the quotas in JDBC
+ * batches. The last client id written in each range is checkpointed in the same
+ * transaction as the quotas, so a run that fails resumes from the checkpoints
+ * instead of starting over.
+ *
+ * <p>Each range being processed holds three connections: one per cursor, since
+ * a MySQL connection cannot run other statements while it streams a result,
+ * and one for the writes.</p>
+ *
+ * <p>On a sharded database every shard has its own ranges and checkpoints, and
+ * the shards are processed in parallel.</p>
+ */
+public class PortfolioReevaluationJob {
+
+    /**
+     * SQL query to recover the range of client ids.
+     */
+    private static final String RECOVER_CLIENT_ID_RANGE =
+            "SELECT COALESCE (MIN(id), 0), COALESCE (MAX(id), 0) FROM CLIENT";
+
+    /**
+     * SQL query to recover the ranges an interrupted run did not finish.
+     */
+    private static final String RECOVER_UNFINISHED_CHECKPOINTS =
+            "SELECT rangeStart, rangeEnd, lastClientId FROM QUOTA_JOB_CHECKPOINT "
+                    + "WHERE finished = FALSE ORDER BY rangeStart";
+
+    /**
+     * SQL query to remove the checkpoints of the previous run.
+     */
+    private static final String DELETE_CHECKPOINTS = "DELETE FROM QUOTA_JOB_CHECKPOINT";
+
+    /**
+     * SQL query to create the checkpoint of a range.
+     */
+    private static final String CREATE_CHECKPOINT =
+            "INSERT INTO QUOTA_JOB_CHECKPOINT (rangeStart, rangeEnd, lastClientId, "
+                    + "finished) VALUES (?, ?, ?, FALSE)";
+
+    /**
+     * SQL query to move the checkpoint of a range.
+     */
+    private static final String UPDATE_CHECKPOINT =
+            "UPDATE QUOTA_JOB_CHECKPOINT SET lastClientId = ?, finished = ? "
+                    + "WHERE rangeStart = ?";
+
+    /**
+     * SQL query to stream the clients of a range, after a client id, with their
+     * last declared salary.
+     */
+    private static final String STREAM_CLIENTS =
+            "SELECT c.id, c.typeId, c.clientId, e.lastSalary FROM CLIENT c "
+                    + "LEFT JOIN CLIENT_EXPOSURE e ON e.clientId = c.id "
+                    + "WHERE c.id > ? AND c.id <= ? ORDER BY c.id";
+
+    /**
+     * SQL query to stream the credit totals of the clients of a range, after a
+     * client id. It only reads the IND_CREDIT_1 index.
+     */
+    private static final String STREAM_CREDIT_TOTALS =
+            "SELECT clientId, "
+                    + "COALESCE (MAX(CASE WHEN paidDate IS NOT NULL "
+                    + "THEN creditValue END), 0), "
+                    + "COALESCE (SUM(CASE WHEN paidDate IS NULL "
+                    + "THEN creditValue END), 0) "
+                    + "FROM CREDIT WHERE clientId > ? AND clientId <= ? "
+                    + "GROUP BY clientId ORDER BY clientId";
+
+    /**
+     * SQL query to store the quota of a client.
+     */
+    private static final String UPSERT_QUOTA =
+            "INSERT INTO CLIENT_QUOTA (clientId, riskType, availableQuota, "
+                    + "policyVersion, evaluationDate) VALUES (?, ?, ?, ?, ?) "
+                    + "ON DUPLICATE KEY UPDATE riskType = VALUES(riskType), "
+                    + "availableQuota = VALUES(availableQuota), "
+                    + "policyVersion = VALUES(policyVersion), "
+                    + "evaluationDate = VALUES(evaluationDate)";
+
+    /**
+     * Types of the parameters of the SQL query to store the quota of a client.
+     */
+    private static final int[] UPSERT_QUOTA_TYPES =
+            new int[]{Types.NUMERIC, Types.VARCHAR, Types.DECIMAL, Types.NUMERIC,
+                    Types.DATE};
+
+    /**
+     * Types of the parameters of the SQL query to move the checkpoint of a range.
+     */
+    private static final int[] UPDATE_CHECKPOINT_TYPES =
+            new int[]{Types.NUMERIC, Types.BOOLEAN, Types.NUMERIC};
+
+    /**
+     * JDBC client.
+     */
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Transactions of the quota writes.
+     */
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Shards of the database, null when the database is not sharded.
+     */
+    private ShardRoutingDataSource shardRoutingDataSource;
+
+    /**
+     * Credit Analysis Firm ABC client.
+     */
+    private ICreditFirmABC creditFirmABC;
+
+    /**
+     * Quota engine.
+     */
+    private QuotaEngine quotaEngine = new QuotaEngine();
+
+    /**
+     * Quota calculator of the batches.
+     */
+    private BatchQuotaCalculator batchQuotaCalculator =
+            new BatchQuotaCalculator(quotaEngine);
+
+    /**
+     * Number of ranges processed at the same time.
+     */
+    private int parallelism = 2;
+
+    /**
+     * Number of client ids in a range.
+     */
+    private long rangeSize = 100000L;
+
+    /**
+     * Number of quotas written by each batch.
+     */
+    private int batchSize = 1000;
+
+    /**
+     * Fetch size of the cursors, Integer.MIN_VALUE streams rows one by one with
+     * MySQL.
+     */
+    private int fetchSize = Integer.MIN_VALUE;
+
+    /**
+     * True while a run is in progress.
+     */
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Sets data source.
+     *
+     * @param dataSource the data source.
+     */
+    @Autowired
+    public void setDataSource(final DataSource dataSource) {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(
+                new DataSourceTransactionManager(dataSource));
+        shardRoutingDataSource = dataSource instanceof ShardRoutingDataSource
+                ? (ShardRoutingDataSource) dataSource : null;
+    }
+
+    /**
+     * Sets the credit firm client.
+     *
+     * @param creditFirmABC the credit firm client.
+     */
+    @Autowired
+    public void setCreditFirmABC(final ICreditFirmABC creditFirmABC) {
+        this.creditFirmABC = creditFirmABC;
+    }
+
+    /**
+     * Sets the quota engine, with the credit policy of the application.
+     *
+     * @param quotaEngine the quota engine.
+     */
+    @Autowired(required = false)
+    public void setQuotaEngine(final QuotaEngine quotaEngine) {
+        this.quotaEngine = quotaEngine;
+        this.batchQuotaCalculator = new BatchQuotaCalculator(quotaEngine);
+    }
+
+    /**
+     * Sets the number of ranges processed at the same time. Each of them holds
+     * three connections of the data source.
+     *
+     * @param parallelism the number of threads, it should be positive.
+     */
+    public void setParallelism(final int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism should be positive.");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets the number of client ids in a range.
+     *
+     * @param rangeSize the range size, it should be positive.
+     */
+    public void setRangeSize(final long rangeSize) {
+        if (rangeSize <= 0) {
+            throw new IllegalArgumentException("Range size should be positive.");
+        }
+        this.rangeSize = rangeSize;
+    }
+
+    /**
+     * Sets the number of quotas written by each batch, which is also the
+     * distance between two checkpoints.
+     *
+     * @param batchSize the batch size, it should be positive.
+     */
+    public void setBatchSize(final int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size should be positive.");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the fetch size of the cursors.
+     *
+     * @param fetchSize the fetch size, it should be positive or Integer.MIN_VALUE
+     *                  to stream rows one by one with MySQL.
+     */
+    public void setFetchSize(final int fetchSize) {
+        if (fetchSize <= 0 && fetchSize != Integer.MIN_VALUE) {
+            throw new IllegalArgumentException(
+                    "Fetch size should be positive or Integer.MIN_VALUE.");
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Re-evaluate the quota of every client. If the previous run did not finish,
+     * only its unfinished ranges are processed, from their last checkpoint.
+     * @return the run report.
+     */
+    public ReevaluationReportDTO run() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException(
+                    "Portfolio re-evaluation is already running.");
+        }
+        try {
+            long startNanos = System.nanoTime();
+            CreditPolicy policy = quotaEngine.getPolicy();
+            ReevaluationReportDTO report;
+            if (shardRoutingDataSource == null) {
+                report = runShard(0, policy);
+            } else {
+                report = new ReevaluationReportDTO();
+                report.setPolicyVersion(policy.getVersion());
+                for (ReevaluationReportDTO shardReport : shardRoutingDataSource
+                        .onAllShards(shard -> runShard(shard, policy)).values()) {
+                    report.setResumed(report.isResumed() || shardReport.isResumed());
+                    report.setRanges(report.getRanges() + shardReport.getRanges());
+                    report.setEvaluatedClients(report.getEvaluatedClients()
+                            + shardReport.getEvaluatedClients());
+                }
+            }
+            report.setElapsedMillis((System.nanoTime() - startNanos) / 1000000L);
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Re-evaluate the quota of every client of a shard.
+     * @param shard Shard number, 0 when the database is not sharded.
+     * @param policy Credit policy of the run.
+     * @return the report of the shard, without elapsed time.
+     */
+    private ReevaluationReportDTO runShard(int shard, CreditPolicy policy) {
+        List<Checkpoint> checkpoints = jdbcTemplate.query(
+                RECOVER_UNFINISHED_CHECKPOINTS, (rs, rowNum) -> new Checkpoint(
+                        rs.getLong(1), rs.getLong(2), rs.getLong(3)));
+        boolean resumed = !checkpoints.isEmpty();
+        if (!resumed) {
+            checkpoints = createCheckpoints();
+        }
+        ReevaluationReportDTO report = new ReevaluationReportDTO();
+        report.setResumed(resumed);
+        report.setRanges(checkpoints.size());
+        report.setPolicyVersion(policy.getVersion());
+        report.setEvaluatedClients(processRanges(shard, policy, checkpoints));
+        return report;
+    }
+
+    /**
+     * Replace the checkpoints of the previous run with one per range of ids.
+     * @return the new checkpoints.
+     */
+    private List<Checkpoint> createCheckpoints() {
+        long[] idRange = jdbcTemplate.queryForObject(RECOVER_CLIENT_ID_RANGE,
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+        List<Checkpoint> checkpoints = new ArrayList<>();
+        if (idRange[1] == 0) {
+            jdbcTemplate.update(DELETE_CHECKPOINTS);
+            return checkpoints;
+        }
+        List<Object[]> rows = new ArrayList<>();
+        for (long from = idRange[0]; from <= idRange[1]; from += rangeSize) {
+            Checkpoint checkpoint = new Checkpoint(from,
+                    Math.min(from + rangeSize - 1, idRange[1]), from - 1);
+            checkpoints.add(checkpoint);
+            rows.add(new Object[]{checkpoint.rangeStart, checkpoint.rangeEnd,
+                    checkpoint.lastClientId});
+        }
+        transactionTemplate.execute(status -> {
+            jdbcTemplate.update(DELETE_CHECKPOINTS);
+            jdbcTemplate.batchUpdate(CREATE_CHECKPOINT, rows);
+            return null;
+        });
+        return checkpoints;
+    }
+
+    /**
+     * Process the ranges of a shard in parallel.
+     * @param shard Shard number.
+     * @param policy Credit policy of the run.
+     * @param checkpoints Checkpoints of the ranges.
+     * @return the number of clients evaluated.
+     */
+    private long processRanges(int shard, CreditPolicy policy,
+            List<Checkpoint> checkpoints) {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                new CustomizableThreadFactory("portfolio-reevaluation-"));
+        try {
+            List<Future<Long>> partitions = new ArrayList<>();
+            for (Checkpoint checkpoint : checkpoints) {
+                partitions.add(executor.submit(() -> onShard(shard,
+                        () -> processRange(policy, checkpoint))));
+            }
+            long evaluated = 0L;
+            for (Future<Long> partition : partitions) {
+                evaluated += partition.get();
+            }
+            return evaluated;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Portfolio re-evaluation was interrupted.",
+                    e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Portfolio re-evaluation failed.",
+                    e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Run an operation on a shard, or directly when the database is not sharded.
+     * @param shard Shard number.
+     * @param operation Operation.
+     * @param <T> Type of result.
+     * @return the result of the operation.
+     */
+    private <T> T onShard(int shard, Supplier<T> operation) {
+        return shardRoutingDataSource == null ? operation.get()
+                : shardRoutingDataSource.onShard(shard, operation);
+    }
+
+    /**
+     * Evaluate the clients of a range after its checkpoint, merging the client
+     * cursor with the credit totals cursor.
+     * @param policy Credit policy of the run.
+     * @param checkpoint Checkpoint of the range.
+     * @return the number of clients evaluated.
+     */
+    private long processRange(CreditPolicy policy, Checkpoint checkpoint) {
+        return jdbcTemplate.query(cursor(STREAM_CLIENTS, checkpoint),
+                (ResultSetExtractor<Long>) clients -> jdbcTemplate.query(
+                        cursor(STREAM_CREDIT_TOTALS, checkpoint),
+                        (ResultSetExtractor<Long>) credits ->
+                                mergeRange(policy, checkpoint, clients, credits)));
+    }
+
+    /**
+     * Walk both cursors of a range in client id order and evaluate the clients
+     * by chunks.
+     * @param policy Credit policy of the run.
+     * @param checkpoint Checkpoint of the range.
+     * @param clients Client cursor.
+     * @param credits Credit totals cursor.
+     * @return the number of clients evaluated.
+     * @throws SQLException if a row cannot be read.
+     */
+    private long mergeRange(CreditPolicy policy, Checkpoint checkpoint, ResultSet clients,
+            ResultSet credits) throws SQLException {
+        Chunk chunk = new Chunk(batchSize);
+        long evaluated = 0L;
+        boolean hasCredits = credits.next();
+        while (clients.next()) {
+            long clientId = clients.getLong(1);
+            while (hasCredits && credits.getLong(1) < clientId) {
+                hasCredits = credits.next();
+            }
+            BigDecimal maxPaidCredit = BigDecimal.ZERO;
+            BigDecimal openCreditTotal = BigDecimal.ZERO;
+            if (hasCredits && credits.getLong(1) == clientId) {
+                maxPaidCredit = credits.getBigDecimal(2);
+                openCreditTotal = credits.getBigDecimal(3);
+                hasCredits = credits.next();
+            }
+            chunk.add(clientId, idTypeOf(clients.getString(2)), clients.getString(3),
+                    toMinorUnits(clients.getBigDecimal(4)), toMinorUnits(maxPaidCredit),
+                    toMinorUnits(openCreditTotal));
+            if (chunk.size == batchSize) {
+                evaluated += writeChunk(policy, checkpoint, chunk, false);
+            }
+        }
+        return evaluated + writeChunk(policy, checkpoint, chunk, true);
+    }
+
+    /**
+     * Evaluate the clients of a chunk and write their quotas together with the
+     * checkpoint of the range.
+     * @param policy Credit policy of the run.
+     * @param checkpoint Checkpoint of the range.
+     * @param chunk Clients read since the last write, it is emptied.
+     * @param last true if the range has no more clients.
+     * @return the number of clients evaluated.
+     */
+    private int writeChunk(CreditPolicy policy, Checkpoint checkpoint, Chunk chunk,
+            boolean last) {
+        int size = chunk.size;
+        RiskTypeEnum[] risks = recoverRisks(chunk);
+        byte[] riskOrdinals = new byte[size];
+        for (int i = 0; i < size; i++) {
+            riskOrdinals[i] = risks[i] == null ? 0 : (byte) risks[i].ordinal();
+        }
+        long[] quotas = new long[size];
+        batchQuotaCalculator.evaluate(policy, column(chunk.salaries, size),
+                column(chunk.maxPaidCredits, size), column(chunk.openCreditTotals, size),
+                riskOrdinals, quotas);
+
+        Date evaluationDate = Date.valueOf(LocalDate.now());
+        List<Object[]> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            rows.add(new Object[]{chunk.clientIds[i],
+                    risks[i] == null ? null : risks[i].name(),
+                    quotaEngine.fromMinorUnits(risks[i] == null ? 0L : quotas[i]),
+                    policy.getVersion(), evaluationDate});
+        }
+        long lastClientId = last ? checkpoint.rangeEnd
+                : size == 0 ? checkpoint.lastClientId : chunk.clientIds[size - 1];
+        transactionTemplate.execute(status -> {
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPSERT_QUOTA, rows, UPSERT_QUOTA_TYPES);
+            }
+            jdbcTemplate.update(UPDATE_CHECKPOINT,
+                    new Object[]{lastClientId, last, checkpoint.rangeStart},
+                    UPDATE_CHECKPOINT_TYPES);
+            return null;
+        });
+        checkpoint.lastClientId = lastClientId;
+        chunk.size = 0;
+        return size;
+    }
+
+    /**
+     * Recover the risk types of the clients of a chunk with a single request.
+     * @param chunk Clients of the chunk.
+     * @return the risk types, null for the clients without one.
+     */
+    private RiskTypeEnum[] recoverRisks(Chunk chunk) {
+        List<ClientKeyDTO> keys = new ArrayList<>(chunk.size);
+        for (int i = 0; i < chunk.size; i++) {
+            if (chunk.idTypes[i] != null) {
+                keys.add(new ClientKeyDTO(chunk.idTypes[i], chunk.ids[i]));
+            }
+        }
+        Map<ClientKeyDTO, RiskTypeEnum> risks = keys.isEmpty() ? null
+                : creditFirmABC.getRiskByClients(keys);
+        if (risks == null) {
+            risks = Collections.emptyMap();
+        }
+        RiskTypeEnum[] result = new RiskTypeEnum[chunk.size];
+        for (int i = 0; i < chunk.size; i++) {
+            if (chunk.idTypes[i] != null) {
+                result[i] = risks.get(new ClientKeyDTO(chunk.idTypes[i], chunk.ids[i]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Build a forward-only, read-only cursor on the clients of a range after its
+     * checkpoint.
+     * @param sql SQL query with the first excluded and last included client ids.
+     * @param checkpoint Checkpoint of the range.
+     * @return the statement creator.
+     */
+    private PreparedStatementCreator cursor(String sql, Checkpoint checkpoint) {
+        long after = checkpoint.lastClientId;
+        long last = checkpoint.rangeEnd;
+        return connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setLong(1, after);
+            ps.setLong(2, last);
+            return ps;
+        };
+    }
+
+    /**
+     * @param values Column of a chunk.
+     * @param size Number of clients in the chunk.
+     * @return the column, truncated to the clients of a partial chunk.
+     */
+    private static long[] column(long[] values, int size) {
+        return values.length == size ? values : Arrays.copyOf(values, size);
+    }
+
+    /**
+     * @param amount Money amount, null for zero.
+     * @return the amount in minor units.
+     */
+    private long toMinorUnits(BigDecimal amount) {
+        return amount == null ? 0L : quotaEngine.toMinorUnits(amount);
+    }
+
+    /**
+     * Recover the id type of a client, stored either as its text or as its name.
+     * @param typeId Stored id type.
+     * @return the id type, null if it is unknown.
+     */
+    static IDTypeEnum idTypeOf(String typeId) {
+        IDTypeEnum idType = IDTypeEnum.forValue(typeId);
+        if (idType != null) {
+            return idType;
+        }
+        for (IDTypeEnum candidate : IDTypeEnum.values()) {
+            if (candidate.name().equalsIgnoreCase(StringUtils.trim(typeId))) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checkpoint of a range of client ids.
+     */
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @Data
+    static class Checkpoint {
+
+        long rangeStart;
+        long rangeEnd;
+        long lastClientId;
+    }
+
+    /**
+     * Clients read since the last write, in columns.
+     */
+    private static final class Chunk {
+
+        /**
+         * Clients internal identifiers.
+         */
+        private final long[] clientIds;
+
+        /**
+         * Clients id types, null if unknown.
+         */
+        private final IDTypeEnum[] idTypes;
+
+        /**
+         * Clients identifiers.
+         */
+        private final String[] ids;
+
+        /**
+         * Last declared salaries, in minor units.
+         */
+        private final long[] salaries;
+
+        /**
+         * Maximum paid credits, in minor units.
+         */
+        private final long[] maxPaidCredits;
+
+        /**
+         * Total open credits, in minor units.
+         */
+        private final long[] openCreditTotals;
+
+        /**
+         * Number of clients in the chunk.
+         */
+        private int size;
+
+        /**
+         * Build an empty chunk.
+         * @param capacity Maximum number of clients.
+         */
+        private Chunk(final int capacity) {
+            clientIds = new long[capacity];
+            idTypes = new IDTypeEnum[capacity];
+            ids = new String[capacity];
+            salaries = new long[capacity];
+            maxPaidCredits = new long[capacity];
+            openCreditTotals = new long[capacity];
+        }
+
+        /**
+         * Add a client to the chunk.
+         * @param clientId Client internal identifier.
+         * @param idType Id type, null if unknown.
+         * @param id Client identifier.
+         * @param salary Last declared salary.
+         * @param maxPaidCredit Maximum paid credit.
+         * @param openCreditTotal Total open credits.
+         */
+        private void add(long clientId, IDTypeEnum idType, String id, long salary,
+                long maxPaidCredit, long openCreditTotal) {
+            clientIds[size] = clientId;
+            idTypes[size] = idType;
+            ids[size] = id;
+            salaries[size] = salary;
+            maxPaidCredits[size] = maxPaidCredit;
+            openCreditTotals[size] = openCreditTotal;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.mycompany.impl.services;
+
+import com.mycompany.api.dto.IDTypeEnum;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Insert a synthetic population of clients, with their credits and exposure
+ * summaries, in batches. The number of credits of a client is
+ * maxCredits * u^skew for a uniform u, so most clients have a short credit
+ * history and a few have a long one. The population only depends on the
+ * random seed.
+ */
+public class SyntheticPopulationSeeder {
+
+    /**
+     * SQL query to recover the greatest client id.
+     */
+    private static final String RECOVER_MAX_CLIENT_ID =
+            "SELECT COALESCE (MAX(id), 0) FROM CLIENT";
+
+    /**
+     * SQL query to create a client with its id.
+     */
+    private static final String CREATE_CLIENT =
+            "INSERT INTO CLIENT (id, typeId, clientId, firstName, lastName, email) "
+                    + "VALUES (?, ?, ?, ?, ?, ?)";
+
+    /**
+     * SQL query to create a credit.
+     */
+    private static final String CREATE_CREDIT =
+            "INSERT INTO CREDIT (clientId, creditValue, approvalDate, paidDate) "
+                    + "VALUES (?, ?, ?, ?)";
+
+    /**
+     * SQL query to create an exposure summary.
+     */
+    private static final String CREATE_SUMMARY =
+            "INSERT INTO CLIENT_EXPOSURE (clientId, maxPaidCredit, openCreditTotal, "
+                    + "openCreditCount, version, lastSalary) VALUES (?, ?, ?, ?, 1, ?)";
+
+    /**
+     * Parameter types of CREATE_CLIENT.
+     */
+    private static final int[] CLIENT_TYPES = {Types.NUMERIC, Types.VARCHAR,
+            Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR};
+
+    /**
+     * Parameter types of CREATE_CREDIT.
+     */
+    private static final int[] CREDIT_TYPES = {Types.NUMERIC, Types.DECIMAL,
+            Types.DATE, Types.DATE};
+
+    /**
+     * Parameter types of CREATE_SUMMARY.
+     */
+    private static final int[] SUMMARY_TYPES = {Types.NUMERIC, Types.DECIMAL,
+            Types.DECIMAL, Types.INTEGER, Types.DECIMAL};
+
+    /**
+     * Number of days of credit history.
+     */
+    private static final int HISTORY_DAYS = 5 * 365;
+
+    /**
+     * Id types of the clients.
+     */
+    private static final IDTypeEnum[] ID_TYPES = IDTypeEnum.values();
+
+    /**
+     * JDBC client.
+     */
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Transactions of the batches.
+     */
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Number of clients to create.
+     */
+    private long clients = 100000L;
+
+    /**
+     * Maximum number of credits of a client.
+     */
+    private int maxCredits = 40;
+
+    /**
+     * Skew of the credit history lengths, 1 is uniform.
+     */
+    private double skew = 3.0;
+
+    /**
+     * Probability that a credit is paid.
+     */
+    private double paidRatio = 0.8;
+
+    /**
+     * Number of clients inserted by each transaction.
+     */
+    private int batchSize = 1000;
+
+    /**
+     * Seed of the population.
+     */
+    private long randomSeed = 42L;
+
+    /**
+     * Sets data source.
+     *
+     * @param dataSource the data source.
+     */
+    @Autowired
+    public void setDataSource(final DataSource dataSource) {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(
+                new DataSourceTransactionManager(dataSource));
+    }
+
+    /**
+     * Sets the number of clients to create.
+     *
+     * @param clients the number of clients, it should not be negative.
+     */
+    public void setClients(final long clients) {
+        if (clients < 0) {
+            throw new IllegalArgumentException("Clients should not be negative.");
+        }
+        this.clients = clients;
+    }
+
+    /**
+     * Sets the maximum number of credits of a client.
+     *
+     * @param maxCredits the maximum, it should not be negative.
+     */
+    public void setMaxCredits(final int maxCredits) {
+        if (maxCredits < 0) {
+            throw new IllegalArgumentException("Max credits should not be negative.");
+        }
+        this.maxCredits = maxCredits;
+    }
+
+    /**
+     * Sets the skew of the credit history lengths.
+     *
+     * @param skew the skew, it should be positive.
+     */
+    public void setSkew(final double skew) {
+        if (skew <= 0) {
+            throw new IllegalArgumentException("Skew should be positive.");
+        }
+        this.skew = skew;
+    }
+
+    /**
+     * Sets the probability that a credit is paid.
+     *
+     * @param paidRatio the probability, between 0 and 1.
+     */
+    public void setPaidRatio(final double paidRatio) {
+        if (paidRatio < 0 || paidRatio > 1) {
+            throw new IllegalArgumentException("Paid ratio should be between 0 and 1.");
+        }
+        this.paidRatio = paidRatio;
+    }
+
+    /**
+     * Sets the number of clients inserted by each transaction.
+     *
+     * @param batchSize the batch size, it should be positive.
+     */
+    public void setBatchSize(final int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size should be positive.");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the seed of the population.
+     *
+     * @param randomSeed the seed.
+     */
+    public void setRandomSeed(final long randomSeed) {
+        this.randomSeed = randomSeed;
+    }
+
+    /**
+     * Create the clients after the greatest existing client id.
+     * @return the number of credits created.
+     */
+    public long seed() {
+        Random random = new Random(randomSeed);
+        LocalDate today = LocalDate.now();
+        long firstId = jdbcTemplate.queryForObject(RECOVER_MAX_CLIENT_ID, Long.class) + 1;
+        long lastId = firstId + clients - 1;
+        long credits = 0;
+        for (long start = firstId; start <= lastId; start += batchSize) {
+            List<Object[]> clientRows = new ArrayList<>(batchSize);
+            List<Object[]> creditRows = new ArrayList<>();
+            List<Object[]> summaryRows = new ArrayList<>(batchSize);
+            long end = Math.min(lastId, start + batchSize - 1);
+            for (long id = start; id <= end; id++) {
+                addClient(id, random, today, clientRows, creditRows, summaryRows);
+            }
+            transactionTemplate.execute(status -> {
+                jdbcTemplate.batchUpdate(CREATE_CLIENT, clientRows, CLIENT_TYPES);
+                jdbcTemplate.batchUpdate(CREATE_CREDIT, creditRows, CREDIT_TYPES);
+                jdbcTemplate.batchUpdate(CREATE_SUMMARY, summaryRows, SUMMARY_TYPES);
+                return null;
+            });
+            credits += creditRows.size();
+        }
+        return credits;
+    }
+
+    /**
+     * Generate a client, its credits and its exposure summary.
+     * @param id Client id.
+     * @param random Generator of the population.
+     * @param today Current date.
+     * @param clientRows Rows of CREATE_CLIENT.
+     * @param creditRows Rows of CREATE_CREDIT.
+     * @param summaryRows Rows of CREATE_SUMMARY.
+     */
+    private void addClient(long id, Random random, LocalDate today,
+            List<Object[]> clientRows, List<Object[]> creditRows,
+            List<Object[]> summaryRows) {
+        IDTypeEnum idType = ID_TYPES[random.nextInt(ID_TYPES.length)];
+        clientRows.add(new Object[]{id, idType.toValue(), "S" + id, "First" + id,
+                "Last" + id, "client" + id + "@example.com"});
+
+        BigDecimal maxPaidCredit = BigDecimal.ZERO;
+        BigDecimal openCreditTotal = BigDecimal.ZERO;
+        int openCreditCount = 0;
+        int count = (int) (maxCredits * Math.pow(random.nextDouble(), skew));
+        for (int i = 0; i < count; i++) {
+            BigDecimal value = BigDecimal.valueOf(500 + random.nextInt(49501));
+            LocalDate approvalDate = today.minusDays(random.nextInt(HISTORY_DAYS));
+            Date paidDate = null;
+            if (random.nextDouble() < paidRatio) {
+                LocalDate paid = approvalDate.plusDays(random.nextInt(720));
+                paidDate = Date.valueOf(paid.isAfter(today) ? today : paid);
+                maxPaidCredit = maxPaidCredit.max(value);
+            } else {
+                openCreditTotal = openCreditTotal.add(value);
+                openCreditCount++;
+            }
+            creditRows.add(new Object[]{id, value, Date.valueOf(approvalDate), paidDate});
+        }
+        BigDecimal salary = BigDecimal.valueOf(1000 + random.nextInt(19001));
+        summaryRows.add(new Object[]{id, maxPaidCredit, openCreditTotal,
+                openCreditCount, salary});
+    }
+}
@@ -0,0 +1,153 @@
+package com.mycompany.web;
+
+import com.mycompany.api.dto.CreditRequestDTO;
+import com.mycompany.api.dto.EvaluationResultDTO;
+import com.mycompany.api.services.ICreditEvalService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * HTTP API of the credit evaluation. Requests are processed asynchronously:
+ * the evaluation runs on the credit evaluation executor and the servlet thread
+ * is released until its result is written. The evaluations in flight are
+ * bounded; when the bound is reached new requests are answered with 503 at
+ * once instead of queueing.
+ */
+@RestController
+@RequestMapping("/credit-evaluations")
+public class CreditEvaluationController {
+
+    /**
+     * Credit evaluation service.
+     */
+    private ICreditEvalService creditEvalService;
+
+    /**
+     * Runs the evaluations.
+     */
+    private ExecutorService evaluationExecutor;
+
+    /**
+     * Maximum number of evaluations in flight.
+     */
+    private int maxInFlight;
+
+    /**
+     * Permits of the evaluations in flight, one per credit request.
+     */
+    private Semaphore inFlight;
+
+    /**
+     * Sets the credit evaluation service.
+     * @param creditEvalService Credit evaluation service.
+     */
+    @Autowired
+    public void setCreditEvalService(final ICreditEvalService creditEvalService) {
+        this.creditEvalService = creditEvalService;
+    }
+
+    /**
+     * Sets the executor of the evaluations.
+     * @param evaluationExecutor Executor.
+     */
+    @Autowired
+    @Qualifier("creditEvaluationExecutor")
+    public void setEvaluationExecutor(final ExecutorService evaluationExecutor) {
+        this.evaluationExecutor = evaluationExecutor;
+    }
+
+    /**
+     * Sets the maximum number of credit requests evaluated at the same time,
+     * running or waiting for a thread. A batch counts as its number of requests.
+     * @param maxInFlight Maximum number of requests, it should be positive.
+     */
+    @Value("${credit.evaluation.max.in.flight:256}")
+    public void setMaxInFlight(final int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Max in flight should be positive.");
+        }
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * @return the number of credit requests in flight.
+     */
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * Evaluate a credit request.
+     * @param requestDTO DTO with request data.
+     * @return the evaluation outcome with the granted quota, or 503 when too
+     * many requests are in flight.
+     */
+    @RequestMapping(method = RequestMethod.POST)
+    public CompletableFuture<ResponseEntity<EvaluationResultDTO>> evaluate(
+            @RequestBody CreditRequestDTO requestDTO) {
+        return submit(1, () -> creditEvalService.evaluateCreditRequest(requestDTO));
+    }
+
+    /**
+     * Evaluate several credit requests together.
+     * @param requestDTOs DTOs with requests data.
+     * @return the evaluation outcome of each request, in the same order, 503 when
+     * too many requests are in flight or 413 when the batch is larger than the
+     * maximum in flight.
+     */
+    @RequestMapping(value = "/batch", method = RequestMethod.POST)
+    public CompletableFuture<ResponseEntity<List<EvaluationResultDTO>>> evaluateAll(
+            @RequestBody List<CreditRequestDTO> requestDTOs) {
+        if (requestDTOs.size() > maxInFlight) {
+            return refused(HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+        return submit(requestDTOs.size(),
+                () -> creditEvalService.evaluateCreditRequests(requestDTOs));
+    }
+
+    /**
+     * Run an evaluation on the executor if there is room for its requests.
+     * @param requests Number of credit requests.
+     * @param evaluation Evaluation.
+     * @param <T> Type of result.
+     * @return the future response.
+     */
+    private <T> CompletableFuture<ResponseEntity<T>> submit(int requests,
+            Supplier<T> evaluation) {
+        if (!inFlight.tryAcquire(requests)) {
+            return refused(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        try {
+            return CompletableFuture.supplyAsync(evaluation, evaluationExecutor)
+                    .whenComplete((result, failure) -> inFlight.release(requests))
+                    .thenApply(ResponseEntity::ok);
+        } catch (RejectedExecutionException e) {
+            inFlight.release(requests);
+            return refused(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    /**
+     * @param status Status of the response.
+     * @param <T> Type of body.
+     * @return a response without body, already completed.
+     */
+    private static <T> CompletableFuture<ResponseEntity<T>> refused(HttpStatus status) {
+        return CompletableFuture.completedFuture(new ResponseEntity<>(status));
+    }
+}
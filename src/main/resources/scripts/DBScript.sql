@@ -1,4 +1,7 @@
 DROP TABLE ACCOUNT;
+DROP TABLE QUOTA_JOB_CHECKPOINT;
+DROP TABLE CLIENT_QUOTA;
+DROP TABLE CLIENT_EXPOSURE;
 DROP TABLE CREDIT;
 DROP TABLE CLIENT;
 
@@ -10,7 +13,7 @@ CREATE TABLE IF NOT EXISTS CLIENT (
     lastName VARCHAR(50),
     email VARCHAR(50),
     PRIMARY KEY (id),
-    INDEX IND_CLIENT_1 (typeId , clientId)
+    UNIQUE INDEX IND_CLIENT_1 (typeId, clientId)
 )  AUTO_INCREMENT=1
 ;
 
@@ -20,12 +23,49 @@ CREATE TABLE IF NOT EXISTS CREDIT (
     creditValue DECIMAL NOT NULL,
     approvalDate DATE NOT NULL,
     paidDate DATE,
+    idempotencyKey VARCHAR(64),
     FOREIGN KEY (clientId)
         references CLIENT (id),
-    PRIMARY KEY (id)
+    PRIMARY KEY (id),
+    INDEX IND_CREDIT_1 (clientId, paidDate, creditValue),
+    UNIQUE INDEX IND_CREDIT_2 (idempotencyKey)
 )  AUTO_INCREMENT=1
 ;
   
+CREATE TABLE IF NOT EXISTS CLIENT_EXPOSURE (
+    clientId BIGINT NOT NULL,
+    maxPaidCredit DECIMAL NOT NULL DEFAULT 0,
+    openCreditTotal DECIMAL NOT NULL DEFAULT 0,
+    openCreditCount INT NOT NULL DEFAULT 0,
+    version BIGINT NOT NULL DEFAULT 0,
+    lastSalary DECIMAL,
+    PRIMARY KEY (clientId),
+    FOREIGN KEY (clientId)
+        references CLIENT (id) ON DELETE CASCADE
+)
+;
+
+CREATE TABLE IF NOT EXISTS CLIENT_QUOTA (
+    clientId BIGINT NOT NULL,
+    riskType VARCHAR(50),
+    availableQuota DECIMAL NOT NULL,
+    policyVersion BIGINT NOT NULL,
+    evaluationDate DATE NOT NULL,
+    PRIMARY KEY (clientId),
+    FOREIGN KEY (clientId)
+        references CLIENT (id) ON DELETE CASCADE
+)
+;
+
+CREATE TABLE IF NOT EXISTS QUOTA_JOB_CHECKPOINT (
+    rangeStart BIGINT NOT NULL,
+    rangeEnd BIGINT NOT NULL,
+    lastClientId BIGINT NOT NULL,
+    finished BOOLEAN NOT NULL DEFAULT FALSE,
+    PRIMARY KEY (rangeStart)
+)
+;
+
 CREATE TABLE IF NOT EXISTS ACCOUNT (
     id BIGINT NOT NULL AUTO_INCREMENT,
     number VARCHAR(50) NOT NULL,
@@ -0,0 +1,75 @@
+package com.mycompany.api.dto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure the id type translations done for every client lookup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IDTypeEnumBenchmark {
+
+    /**
+     * Texts translated by forValue, as sent by the clients.
+     */
+    private final String[] values = {"passport", "national id", "PASSPORT", "unknown"};
+
+    /**
+     * Id types translated by toValue.
+     */
+    private final IDTypeEnum[] idTypes = IDTypeEnum.values();
+
+    /**
+     * Translate each text to its id type.
+     * @param blackhole Result sink.
+     */
+    @Benchmark
+    @OperationsPerInvocation(4)
+    public void forValue(Blackhole blackhole) {
+        for (String value : values) {
+            blackhole.consume(IDTypeEnum.forValue(value));
+        }
+    }
+
+    /**
+     * Translate each id type to its text.
+     * @param blackhole Result sink.
+     */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public void toValue(Blackhole blackhole) {
+        for (IDTypeEnum idType : idTypes) {
+            blackhole.consume(idType.toValue());
+        }
+    }
+
+    /**
+     * Run the benchmark.
+     * @param args Unused.
+     * @throws RunnerException if the benchmark fails.
+     */
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(IDTypeEnumBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
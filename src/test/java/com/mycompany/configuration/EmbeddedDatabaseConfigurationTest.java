@@ -0,0 +1,81 @@
+package com.mycompany.configuration;
+
+import com.mycompany.api.dto.CreditRequestDTO;
+import com.mycompany.api.dto.IDTypeEnum;
+import com.mycompany.api.dto.PeopleDTO;
+import com.mycompany.api.services.ICreditEvalService;
+import common.TestContextConfiguration;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.MetricsEndpoint;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test that the embedded profile provides a seeded in-memory database to the
+ * services.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestContextConfiguration.class)
+@WebAppConfiguration
+@ActiveProfiles("embedded")
+@TestPropertySource(properties = {"database.name=embeddedProfile",
+        "embedded.seed.clients=500"})
+public class EmbeddedDatabaseConfigurationTest {
+
+    /**
+     * Data source of the context.
+     */
+    @Autowired
+    private DataSource dataSource;
+
+    /**
+     * Credit evaluation service of the context.
+     */
+    @Autowired
+    private ICreditEvalService creditEvalService;
+
+    /**
+     * Actuator metrics endpoint.
+     */
+    @Autowired
+    private MetricsEndpoint metricsEndpoint;
+
+    /**
+     * Test that the population is seeded at startup.
+     */
+    @Test
+    public void getDataSourceTest() {
+        assertEquals(Long.valueOf(500), new JdbcTemplate(dataSource).queryForObject(
+                "SELECT COUNT(*) FROM CLIENT WHERE clientId LIKE 'S%'", Long.class));
+    }
+
+    /**
+     * Test that the operations of the services and the connection pool gauges
+     * are published by the actuator metrics endpoint.
+     */
+    @Test
+    public void metricsTest() {
+        creditEvalService.evaluateCreditRequest(new CreditRequestDTO(new PeopleDTO(
+                IDTypeEnum.PASSPORT, "ABC123", "Homer", "Simpson",
+                "homer@springfield.com"), new BigDecimal(2000000)));
+
+        Map<String, Object> metrics = metricsEndpoint.invoke();
+        assertEquals(1L, metrics.get("credit.getOrCreateClient.count"));
+        assertEquals(1L, metrics.get("credit.stage.decide.count"));
+        assertEquals(1L, metrics.get("credit.evaluateCreditAmount.count"));
+        assertEquals(32, metrics.get("datasource.pool.maxTotal"));
+        assertEquals(0, metrics.get("datasource.pool.active"));
+    }
+}
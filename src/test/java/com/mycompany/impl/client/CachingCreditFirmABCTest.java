@@ -0,0 +1,117 @@
+package com.mycompany.impl.client;
+
+import com.mycompany.api.client.ICreditFirmABC;
+import com.mycompany.api.dto.ClientKeyDTO;
+import com.mycompany.api.dto.IDTypeEnum;
+import com.mycompany.api.dto.RiskTypeEnum;
+import com.mycompany.impl.cache.ExpiringLruCache;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test the risk rating cache of the credit firm client.
+ */
+public class CachingCreditFirmABCTest {
+
+    /**
+     * Fake time in nanoseconds.
+     */
+    private AtomicLong now;
+
+    /**
+     * Decorated client.
+     */
+    private ICreditFirmABC delegate;
+
+    /**
+     * Client to be tested.
+     */
+    private CachingCreditFirmABC creditFirmABC;
+
+    /**
+     * Setup a cache of two ratings, SEIZED lives 10 minutes, NONE and null 1 minute.
+     */
+    @Before
+    public void setupTests() {
+        now = new AtomicLong();
+        delegate = Mockito.mock(ICreditFirmABC.class);
+        Map<RiskTypeEnum, Long> ttlMillis = new EnumMap<>(RiskTypeEnum.class);
+        ttlMillis.put(RiskTypeEnum.NONE, TimeUnit.MINUTES.toMillis(1));
+        ttlMillis.put(RiskTypeEnum.SEIZED, TimeUnit.MINUTES.toMillis(10));
+        creditFirmABC = new CachingCreditFirmABC(delegate,
+                new ExpiringLruCache<ClientKeyDTO, RiskTypeEnum>(2, 1, now::get),
+                ttlMillis, TimeUnit.MINUTES.toMillis(1));
+    }
+
+    /**
+     * Test that a rating is served from the cache until its time to live expires.
+     */
+    @Test
+    public void getRiskByClientTest1() {
+        Mockito.doReturn(RiskTypeEnum.NONE).when(delegate)
+                .getRiskByClient(IDTypeEnum.PASSPORT, "ABC123");
+        creditFirmABC.getRiskByClient(IDTypeEnum.PASSPORT, "ABC123");
+        now.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        assertThat(creditFirmABC.getRiskByClient(IDTypeEnum.PASSPORT, "ABC123"),
+                is(RiskTypeEnum.NONE));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        creditFirmABC.getRiskByClient(IDTypeEnum.PASSPORT, "ABC123");
+
+        Mockito.verify(delegate, Mockito.times(2)).getRiskByClient(IDTypeEnum.PASSPORT,
+                "ABC123");
+        assertEquals(1, creditFirmABC.getHitCount());
+        assertEquals(2, creditFirmABC.getMissCount());
+    }
+
+    /**
+     * Test that each risk type has its own time to live and null ratings are cached.
+     */
+    @Test
+    public void getRiskByClientTest2() {
+        Mockito.doReturn(RiskTypeEnum.SEIZED).when(delegate)
+                .getRiskByClient(IDTypeEnum.PASSPORT, "ABC123");
+        creditFirmABC.getRiskByClient(IDTypeEnum.PASSPORT, "ABC123");
+        assertThat(creditFirmABC.getRiskByClient(IDTypeEnum.NATIONAL_ID, "7890"),
+                is(nullValue()));
+        now.addAndGet(TimeUnit.MINUTES.toNanos(5));
+        creditFirmABC.getRiskByClient(IDTypeEnum.PASSPORT, "ABC123");
+        creditFirmABC.getRiskByClient(IDTypeEnum.NATIONAL_ID, "7890");
+        creditFirmABC.getRiskByClient(IDTypeEnum.NATIONAL_ID, "7890");
+
+        Mockito.verify(delegate, Mockito.times(1)).getRiskByClient(IDTypeEnum.PASSPORT,
+                "ABC123");
+        Mockito.verify(delegate, Mockito.times(2)).getRiskByClient(IDTypeEnum.NATIONAL_ID,
+                "7890");
+    }
+
+    /**
+     * Test that the least recently used rating is evicted when the cache is full.
+     */
+    @Test
+    public void getRiskByClientTest3() {
+        Mockito.doReturn(RiskTypeEnum.NONE).when(delegate)
+                .getRiskByClient(Mockito.any(IDTypeEnum.class), Mockito.anyString());
+        creditFirmABC.getRiskByClient(IDTypeEnum.PASSPORT, "1");
+        creditFirmABC.getRiskByClient(IDTypeEnum.PASSPORT, "2");
+        creditFirmABC.getRiskByClient(IDTypeEnum.PASSPORT, "1");
+        creditFirmABC.getRiskByClient(IDTypeEnum.PASSPORT, "3");
+        creditFirmABC.getRiskByClient(IDTypeEnum.PASSPORT, "1");
+        creditFirmABC.getRiskByClient(IDTypeEnum.PASSPORT, "2");
+
+        Mockito.verify(delegate, Mockito.times(1)).getRiskByClient(IDTypeEnum.PASSPORT, "1");
+        Mockito.verify(delegate, Mockito.times(2)).getRiskByClient(IDTypeEnum.PASSPORT, "2");
+        assertEquals(2, creditFirmABC.getEvictionCount());
+        assertEquals(2, creditFirmABC.getSize());
+    }
+}
@@ -0,0 +1,105 @@
+package com.mycompany.impl.client;
+
+import com.mycompany.api.dto.IDTypeEnum;
+import com.mycompany.api.dto.RiskTypeEnum;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test the grouping of single risk requests into bulk requests.
+ */
+public class MicroBatchingCreditFirmABCTest {
+
+    /**
+     * Local stand-in of the credit firm.
+     */
+    private LocalCreditFirmABC localCreditFirmABC;
+
+    /**
+     * Client to be tested.
+     */
+    private MicroBatchingCreditFirmABC creditFirmABC;
+
+    /**
+     * Setup batches of up to 10 requests collected for up to 50 milliseconds.
+     */
+    @Before
+    public void setupTests() {
+        localCreditFirmABC = new LocalCreditFirmABC(0, 0);
+        creditFirmABC = new MicroBatchingCreditFirmABC(localCreditFirmABC, 10, 50,
+                Executors.newSingleThreadExecutor());
+    }
+
+    /**
+     * Stop the batcher.
+     */
+    @After
+    public void tearDown() {
+        creditFirmABC.shutdown();
+    }
+
+    /**
+     * Test that concurrent requests are sent in few bulk calls and each caller
+     * gets the risk of its own person.
+     */
+    @Test
+    public void getRiskByClientAsyncTest1() {
+        List<CompletableFuture<RiskTypeEnum>> futures = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            futures.add(creditFirmABC.getRiskByClientAsync(IDTypeEnum.PASSPORT, "ID" + i));
+        }
+        for (int i = 0; i < 25; i++) {
+            assertThat(futures.get(i).join(), is(new LocalCreditFirmABC(0, 0)
+                    .getRiskByClient(IDTypeEnum.PASSPORT, "ID" + i)));
+        }
+        assertEquals(25, localCreditFirmABC.getPeopleCount());
+        assertThat(localCreditFirmABC.getCallCount(), is(lessThan(25L)));
+        assertEquals(localCreditFirmABC.getCallCount(), creditFirmABC.getBatchCount());
+    }
+
+    /**
+     * Test that a lone request is sent once its window expires.
+     */
+    @Test
+    public void getRiskByClientTest1() {
+        RiskTypeEnum risk = creditFirmABC.getRiskByClient(IDTypeEnum.NATIONAL_ID, "7890");
+        assertThat(risk, is(new LocalCreditFirmABC(0, 0)
+                .getRiskByClient(IDTypeEnum.NATIONAL_ID, "7890")));
+        assertEquals(1, creditFirmABC.getBatchCount());
+    }
+
+    /**
+     * Test that the requests of a batch rejected by the bulk executor fail.
+     */
+    @Test
+    public void getRiskByClientAsyncTest2() {
+        MicroBatchingCreditFirmABC rejecting = new MicroBatchingCreditFirmABC(
+                localCreditFirmABC, 10, 50, command -> {
+                    throw new RejectedExecutionException("Saturated.");
+                });
+        try {
+            rejecting.getRiskByClientAsync(IDTypeEnum.PASSPORT, "ID1").join();
+            fail("The rejected batch should fail.");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        } finally {
+            rejecting.shutdown();
+        }
+        assertEquals(0, localCreditFirmABC.getCallCount());
+    }
+}
@@ -0,0 +1,85 @@
+package com.mycompany.impl.concurrent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test the completion of the items of a batch collector.
+ */
+public class BatchCollectorTest {
+
+    /**
+     * Collector to be tested.
+     */
+    private BatchCollector<Integer, Integer> collector;
+
+    /**
+     * Setup batches of up to 10 items collected for up to 50 milliseconds. Each
+     * item is answered with its double, a batch with a negative item throws an
+     * error.
+     */
+    @Before
+    public void setupTests() {
+        collector = new BatchCollector<>("test-collector", this::dispatch, 10, 50);
+    }
+
+    /**
+     * Stop the collector.
+     */
+    @After
+    public void tearDown() {
+        collector.shutdown();
+    }
+
+    /**
+     * Test that an error thrown by the dispatcher fails the items of its batch,
+     * and that the next batches are still dispatched.
+     */
+    @Test
+    public void submitTest1() {
+        CompletableFuture<Integer> failed = collector.submit(-1);
+        try {
+            failed.join();
+            fail("The batch should fail.");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof AssertionError);
+        }
+        assertEquals(Integer.valueOf(4), collector.submit(2).join());
+    }
+
+    /**
+     * Test that the items submitted after shutdown fail.
+     */
+    @Test
+    public void submitTest2() {
+        collector.shutdown();
+        try {
+            collector.submit(1).join();
+            fail("The item should fail.");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    /**
+     * Answer each item of a batch with its double.
+     * @param batch Items of the batch.
+     */
+    private void dispatch(List<BatchCollector.Pending<Integer, Integer>> batch) {
+        for (BatchCollector.Pending<Integer, Integer> pending : batch) {
+            if (pending.getItem() < 0) {
+                throw new AssertionError("Negative item.");
+            }
+            pending.complete(pending.getItem() * 2);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.mycompany.impl.concurrent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test the grouping of concurrent writes into committed batches.
+ */
+public class GroupCommitWriterTest {
+
+    /**
+     * Committed batches.
+     */
+    private List<List<Integer>> committed;
+
+    /**
+     * Writer to be tested.
+     */
+    private GroupCommitWriter<Integer> writer;
+
+    /**
+     * Setup batches of up to 10 writes collected for up to 50 milliseconds. The
+     * writes are unique keys, a batch with a key already committed is rolled
+     * back.
+     */
+    @Before
+    public void setupTests() {
+        committed = Collections.synchronizedList(new ArrayList<>());
+        writer = new GroupCommitWriter<>("test-writer", batch -> {
+            for (List<Integer> committedBatch : committed) {
+                if (!Collections.disjoint(committedBatch, batch)) {
+                    throw new IllegalStateException("Duplicate key, rolled back.");
+                }
+            }
+            committed.add(batch);
+        }, 10, 50);
+    }
+
+    /**
+     * Stop the writer.
+     */
+    @After
+    public void tearDown() {
+        writer.shutdown();
+    }
+
+    /**
+     * Test that concurrent writes are committed in few batches, in order, and
+     * that each caller is released once its batch is committed.
+     */
+    @Test
+    public void writeAsyncTest1() {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            futures.add(writer.writeAsync(i));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        List<Integer> writes = new ArrayList<>();
+        for (List<Integer> batch : committed) {
+            assertTrue(batch.size() <= 10);
+            writes.addAll(batch);
+        }
+        assertEquals(25, writes.size());
+        for (int i = 0; i < 25; i++) {
+            assertEquals(Integer.valueOf(i), writes.get(i));
+        }
+        assertThat(writer.getBatchCount(), is(lessThan(25L)));
+        assertEquals(committed.size(), writer.getBatchCount());
+        assertEquals(25, writer.getWriteCount());
+    }
+
+    /**
+     * Test that a duplicate key in a batch only fails its own caller: the
+     * batch is rolled back and its other writes are committed one by one.
+     */
+    @Test
+    public void writeTest1() {
+        writer.write(7);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int write : new int[]{1, 2, 7, 3}) {
+            futures.add(writer.writeAsync(write));
+        }
+        try {
+            futures.get(2).join();
+            fail("The duplicate key should fail.");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        futures.get(0).join();
+        futures.get(1).join();
+        futures.get(3).join();
+
+        List<Integer> writes = new ArrayList<>();
+        for (List<Integer> batch : committed) {
+            writes.addAll(batch);
+        }
+        assertEquals(Arrays.asList(7, 1, 2, 3), writes);
+        assertEquals(4, writer.getWriteCount());
+
+        writer.write(4);
+        assertEquals(5, writer.getWriteCount());
+    }
+}
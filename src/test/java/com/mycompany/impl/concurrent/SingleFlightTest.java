@@ -0,0 +1,85 @@
+package com.mycompany.impl.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Test the coalescing of concurrent calls.
+ */
+public class SingleFlightTest {
+
+    /**
+     * Test that concurrent calls with the same key run once and share the result,
+     * while a call with another key is not blocked by them.
+     * @throws Exception if a call fails.
+     */
+    @Test
+    public void executeTest1() throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> singleFlight.execute("ABC123", () -> {
+                    calls.incrementAndGet();
+                    await(release);
+                    return 42;
+                })));
+            }
+            while (singleFlight.inFlight() == 0) {
+                Thread.yield();
+            }
+            assertEquals(7, (int) singleFlight.execute("XYZ789", () -> 7));
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<Integer> result : results) {
+                assertEquals(42, (int) result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, calls.get());
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    /**
+     * Test that a failure is rethrown and the key can be called again.
+     */
+    @Test
+    public void executeTest2() {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        try {
+            singleFlight.execute("ABC123", () -> {
+                throw new IllegalStateException("Bureau down.");
+            });
+            fail("The failure should be rethrown.");
+        } catch (IllegalStateException e) {
+            assertEquals("Bureau down.", e.getMessage());
+        }
+        assertEquals(1, (int) singleFlight.execute("ABC123", () -> 1));
+    }
+
+    /**
+     * @param latch Latch to wait for.
+     */
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.mycompany.impl.datasource;
+
+import com.mycompany.api.dto.IDTypeEnum;
+import com.mycompany.api.dto.PeopleDTO;
+import com.mycompany.exception.EntityExistsException;
+import com.mycompany.impl.services.PeopleServiceImpl;
+import common.ObjectBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the routing of reads to replicas, with embedded databases standing in for
+ * the primary and two replicas. Replication is not simulated: each database has
+ * a client named after it, so a lookup tells which database answered.
+ */
+public class ReadWriteRoutingDataSourceTest {
+
+    /**
+     * SQL query to recover the name of the database.
+     */
+    private static final String RECOVER_NAME = "SELECT clientId FROM CLIENT";
+
+    /**
+     * Primary database.
+     */
+    private MonitoredDataSource primary;
+
+    /**
+     * First replica.
+     */
+    private MonitoredDataSource replica1;
+
+    /**
+     * Second replica.
+     */
+    private MonitoredDataSource replica2;
+
+    /**
+     * Routing data source to be tested.
+     */
+    private ReadWriteRoutingDataSource dataSource;
+
+    /**
+     * JDBC client of the routing data source.
+     */
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Create the databases.
+     */
+    @Before
+    public void setupDB() {
+        primary = named("primary");
+        replica1 = named("replica1");
+        replica2 = named("replica2");
+        dataSource = new ReadWriteRoutingDataSource(primary,
+                Arrays.asList(replica1, replica2));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Drop the databases.
+     * @throws Exception if a pool cannot be closed.
+     */
+    @After
+    public void tearDownDB() throws Exception {
+        ObjectBuilder.shutdownEmbeddedDataSource(replica1);
+        ObjectBuilder.shutdownEmbeddedDataSource(replica2);
+        ObjectBuilder.shutdownEmbeddedDataSource(primary);
+        dataSource.close();
+    }
+
+    /**
+     * Test that replicas take turns on the reads and that other statements go
+     * to the primary.
+     */
+    @Test
+    public void readTest1() {
+        dataSource.setSelection(ReplicaSelectionEnum.ROUND_ROBIN);
+        assertEquals("replica1", readName("a"));
+        assertEquals("replica2", readName("a"));
+        assertEquals("replica1", readName("b"));
+        assertEquals("primary", jdbcTemplate.queryForObject(RECOVER_NAME, String.class));
+    }
+
+    /**
+     * Test that a read goes to the replica with the fewest connections in use.
+     * @throws SQLException if a connection cannot be opened.
+     */
+    @Test
+    public void readTest2() throws SQLException {
+        Connection held = dataSource.read("a", () -> {
+            try {
+                return dataSource.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertEquals(1, dataSource.getInUse(0));
+        assertEquals("replica2", readName("a"));
+        assertEquals("replica2", readName("a"));
+        held.close();
+        held.close();
+        assertEquals(0, dataSource.getInUse(0));
+        assertEquals(0, dataSource.getInUse(1));
+    }
+
+    /**
+     * Test that the reads of a written key go to the primary during the
+     * stickiness window, and to a replica after it.
+     * @throws InterruptedException if the test is interrupted.
+     */
+    @Test
+    public void readTest3() throws InterruptedException {
+        dataSource.setStickyMillis(200);
+        dataSource.written("a");
+        assertEquals("primary", readName("a"));
+        assertEquals("primary", dataSource.readAll(Arrays.asList("b", "a"),
+                () -> jdbcTemplate.queryForObject(RECOVER_NAME, String.class)));
+        assertTrue(readName("b").startsWith("replica"));
+        Thread.sleep(300);
+        assertTrue(readName("a").startsWith("replica"));
+    }
+
+    /**
+     * Test that the reads fall back to the primary when a replica is down.
+     * @throws SQLException if a pool cannot be closed.
+     */
+    @Test
+    public void readTest4() throws SQLException {
+        MonitoredDataSource down = new MonitoredDataSource();
+        down.close();
+        dataSource = new ReadWriteRoutingDataSource(primary, Arrays.asList(down,
+                replica2));
+        dataSource.setSelection(ReplicaSelectionEnum.ROUND_ROBIN);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        assertEquals("primary", readName("a"));
+        assertEquals("replica2", readName("a"));
+        assertEquals(0, dataSource.getInUse(0));
+    }
+
+    /**
+     * Test that the people service reads a client it just created from the
+     * primary, and other clients from the replicas.
+     * @throws EntityExistsException if the client exists.
+     */
+    @Test
+    public void peopleServiceTest1() throws EntityExistsException {
+        dataSource.setSelection(ReplicaSelectionEnum.ROUND_ROBIN);
+        PeopleServiceImpl peopleService =
+                ObjectBuilder.buildPeopleServiceImpl(dataSource);
+        peopleService.setClientCacheTtlMillis(0);
+        peopleService.createClient(new PeopleDTO(IDTypeEnum.PASSPORT, "ABC123", "Homer",
+                "Simpson", "homer@springfield.com"));
+
+        assertTrue(peopleService.isClient(IDTypeEnum.PASSPORT, "ABC123"));
+        assertTrue(peopleService.getClient(IDTypeEnum.PASSPORT, "ABC123").isPresent());
+        assertFalse(peopleService.isClient(IDTypeEnum.PASSPORT, "primary"));
+        // Two lookups in a row reach both replicas, one of them has the client.
+        int found = 0;
+        for (int i = 0; i < 2; i++) {
+            if (peopleService.getClient(IDTypeEnum.PASSPORT, "replica1").isPresent()) {
+                found++;
+            }
+        }
+        assertEquals(1, found);
+    }
+
+    /**
+     * @param key Key of the read.
+     * @return the name of the database that answered a read.
+     */
+    private String readName(String key) {
+        return dataSource.read(key,
+                () -> jdbcTemplate.queryForObject(RECOVER_NAME, String.class));
+    }
+
+    /**
+     * @param name Database name.
+     * @return an embedded database with a client named after it.
+     */
+    private static MonitoredDataSource named(String name) {
+        MonitoredDataSource database = ObjectBuilder.getEmbeddedDataSource(
+                "routing-" + name);
+        new JdbcTemplate(database).update("INSERT INTO CLIENT (typeId, clientId, "
+                + "firstName, lastName, email) VALUES ('passport', ?, 'First', "
+                + "'Last', 'email')", name);
+        return database;
+    }
+}
@@ -0,0 +1,133 @@
+package com.mycompany.impl.datasource;
+
+import com.mycompany.api.dto.IDTypeEnum;
+import com.mycompany.api.dto.PeopleDTO;
+import com.mycompany.impl.services.PeopleServiceImpl;
+import common.ObjectBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the move of clients to a new shard, with embedded databases standing in
+ * for the shards.
+ */
+public class ShardRebalancerTest {
+
+    /**
+     * Number of clients.
+     */
+    private static final int CLIENTS = 200;
+
+    /**
+     * Shards, the last one is added by the tests.
+     */
+    private List<MonitoredDataSource> shards;
+
+    /**
+     * Create two shards with clients and credits, and an empty third one.
+     */
+    @Before
+    public void setupDB() {
+        shards = new ArrayList<>();
+        for (int shard = 0; shard < 3; shard++) {
+            shards.add(ObjectBuilder.getEmbeddedDataSource("rebalance-" + shard));
+        }
+        ShardRoutingDataSource dataSource =
+                new ShardRoutingDataSource(shards.subList(0, 2));
+        dataSource.initializeIds();
+        PeopleServiceImpl peopleService = ObjectBuilder.buildPeopleServiceImpl(dataSource);
+        List<PeopleDTO> people = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            people.add(new PeopleDTO(IDTypeEnum.PASSPORT, "C" + i, "First", "Last",
+                    "email"));
+        }
+        peopleService.createClients(people);
+        Date approvalDate = Date.valueOf(LocalDate.of(2015, 1, 1));
+        for (int shard = 0; shard < 2; shard++) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(shards.get(shard));
+            jdbcTemplate.update("INSERT INTO CREDIT (clientId, creditValue, approvalDate) "
+                    + "SELECT id, 1000, ? FROM CLIENT", approvalDate);
+            jdbcTemplate.update("INSERT INTO CLIENT_EXPOSURE (clientId, openCreditTotal, "
+                    + "openCreditCount) SELECT id, 1000, 1 FROM CLIENT");
+        }
+    }
+
+    /**
+     * Drop the shards.
+     * @throws Exception if a pool cannot be closed.
+     */
+    @After
+    public void tearDownDB() throws Exception {
+        for (MonitoredDataSource shard : shards) {
+            ObjectBuilder.shutdownEmbeddedDataSource(shard);
+        }
+    }
+
+    /**
+     * Test that the clients of the new shard are moved with their rows, and
+     * that a second run moves nothing.
+     */
+    @Test
+    public void rebalanceTest1() {
+        ShardRoutingDataSource dataSource = new ShardRoutingDataSource(shards);
+        ShardRebalancer rebalancer = new ShardRebalancer(dataSource);
+        rebalancer.setBatchSize(7);
+        int expected = 0;
+        for (int i = 0; i < CLIENTS; i++) {
+            if (dataSource.shardOf("passport", "C" + i) == 2) {
+                expected++;
+            }
+        }
+        assertTrue(expected > 0);
+
+        assertEquals(expected, rebalancer.rebalance());
+        assertEquals(0L, rebalancer.rebalance());
+
+        int total = 0;
+        for (int shard = 0; shard < 3; shard++) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(shards.get(shard));
+            for (Map<String, Object> client : jdbcTemplate.queryForList(
+                    "SELECT c.id, c.clientId, COUNT(r.id) AS credits, "
+                            + "MAX(e.openCreditTotal) AS exposure FROM CLIENT c "
+                            + "LEFT JOIN CREDIT r ON r.clientId = c.id "
+                            + "LEFT JOIN CLIENT_EXPOSURE e ON e.clientId = c.id "
+                            + "GROUP BY c.id, c.clientId")) {
+                String clientId = (String) client.get("CLIENTID");
+                assertEquals(clientId, shard, dataSource.shardOf("passport", clientId));
+                assertEquals(clientId, shard, ShardRoutingDataSource.shardOfId(
+                        (Long) client.get("ID")));
+                assertEquals(clientId, 1L, client.get("CREDITS"));
+                assertEquals(clientId, 1000, ((Number) client.get("EXPOSURE")).intValue());
+                total++;
+            }
+        }
+        assertEquals(CLIENTS, total);
+        assertEquals(Arrays.asList(0, 0), Arrays.asList(
+                countOf(shards.get(2), "CLIENT WHERE id < " + ShardRoutingDataSource
+                        .firstId(2)),
+                countOf(shards.get(2), "CREDIT WHERE id < " + ShardRoutingDataSource
+                        .firstId(2))));
+    }
+
+    /**
+     * @param dataSource Shard.
+     * @param from Table and condition.
+     * @return the number of rows.
+     */
+    private static int countOf(MonitoredDataSource dataSource, String from) {
+        return new JdbcTemplate(dataSource).queryForObject("SELECT COUNT(*) FROM " + from,
+                Integer.class);
+    }
+}
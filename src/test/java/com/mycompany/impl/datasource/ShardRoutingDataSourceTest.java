@@ -0,0 +1,201 @@
+package com.mycompany.impl.datasource;
+
+import com.mycompany.api.client.ICreditFirmABC;
+import com.mycompany.api.dto.ClientDTO;
+import com.mycompany.api.dto.ClientKeyDTO;
+import com.mycompany.api.dto.CreditRequestDTO;
+import com.mycompany.api.dto.EvaluationResultDTO;
+import com.mycompany.api.dto.EvaluationStatusEnum;
+import com.mycompany.api.dto.ExposureDriftDTO;
+import com.mycompany.api.dto.IDTypeEnum;
+import com.mycompany.api.dto.PeopleDTO;
+import com.mycompany.api.dto.RiskTypeEnum;
+import com.mycompany.impl.services.CreditEvalServiceImpl;
+import com.mycompany.impl.services.ExposureSummaryJob;
+import com.mycompany.impl.services.PeopleServiceImpl;
+import common.ObjectBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.internal.util.reflection.Whitebox.setInternalState;
+
+/**
+ * Test the placement of the clients on shards, with embedded databases standing
+ * in for three shards.
+ */
+public class ShardRoutingDataSourceTest {
+
+    /**
+     * SQL query to count the clients of a shard.
+     */
+    private static final String COUNT_CLIENTS = "SELECT COUNT(*) FROM CLIENT";
+
+    /**
+     * Number of clients created by the tests.
+     */
+    private static final int CLIENTS = 60;
+
+    /**
+     * Shards.
+     */
+    private List<MonitoredDataSource> shards;
+
+    /**
+     * Routing data source to be tested.
+     */
+    private ShardRoutingDataSource dataSource;
+
+    /**
+     * Create the shards.
+     */
+    @Before
+    public void setupDB() {
+        shards = new ArrayList<>();
+        for (int shard = 0; shard < 3; shard++) {
+            shards.add(ObjectBuilder.getEmbeddedDataSource("shard-" + shard));
+        }
+        dataSource = new ShardRoutingDataSource(shards);
+        dataSource.initializeIds();
+    }
+
+    /**
+     * Drop the shards.
+     * @throws Exception if a pool cannot be closed.
+     */
+    @After
+    public void tearDownDB() throws Exception {
+        for (MonitoredDataSource shard : shards) {
+            ObjectBuilder.shutdownEmbeddedDataSource(shard);
+        }
+        dataSource.close();
+    }
+
+    /**
+     * Test that the clients are spread over the shards whatever the case of
+     * their ids, and that a new shard only takes clients from the others.
+     */
+    @Test
+    public void shardOfTest() {
+        int[] counts = new int[3];
+        for (int i = 0; i < 3000; i++) {
+            int shard = ShardRoutingDataSource.shardOf("passport", "C" + i, 3);
+            assertEquals(shard, dataSource.shardOf("PASSPORT", "C" + i));
+            assertEquals(shard, dataSource.shardOf("passport", "c" + i));
+            counts[shard]++;
+            int newShard = ShardRoutingDataSource.shardOf("passport", "C" + i, 4);
+            assertTrue(newShard == shard || newShard == 3);
+        }
+        for (int count : counts) {
+            assertTrue(count > 800 && count < 1200);
+        }
+    }
+
+    /**
+     * Test that the clients are created on their shard, with ids that tell the
+     * shard, and that they are found again with lookups on several shards.
+     */
+    @Test
+    public void peopleServiceTest1() {
+        PeopleServiceImpl peopleService = ObjectBuilder.buildPeopleServiceImpl(dataSource);
+        peopleService.setClientCacheTtlMillis(0);
+        List<PeopleDTO> people = new ArrayList<>();
+        List<ClientKeyDTO> keys = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            PeopleDTO peopleDTO = new PeopleDTO(IDTypeEnum.PASSPORT, "C" + i, "First",
+                    "Last", "email");
+            people.add(peopleDTO);
+            keys.add(ClientKeyDTO.of(peopleDTO));
+        }
+        peopleService.createClients(people);
+        peopleService.getOrCreateClient(new PeopleDTO(IDTypeEnum.NATIONAL_ID, "N1",
+                "First", "Last", "email"));
+
+        int total = 0;
+        for (int shard = 0; shard < 3; shard++) {
+            total += new JdbcTemplate(shards.get(shard)).queryForObject(COUNT_CLIENTS,
+                    Integer.class);
+        }
+        assertEquals(CLIENTS + 1, total);
+        Map<ClientKeyDTO, ClientDTO> clients = peopleService.getClients(keys);
+        assertEquals(CLIENTS, clients.size());
+        for (ClientDTO clientDTO : clients.values()) {
+            int shard = dataSource.shardOf("passport", clientDTO.getClientId());
+            assertEquals(shard, ShardRoutingDataSource.shardOfId(clientDTO.getId()));
+            assertEquals(Integer.valueOf(1), new JdbcTemplate(shards.get(shard))
+                    .queryForObject("SELECT COUNT(*) FROM CLIENT WHERE id = ?",
+                            Integer.class, clientDTO.getId()));
+        }
+        assertTrue(peopleService.isClient(IDTypeEnum.NATIONAL_ID, "N1"));
+        assertTrue(peopleService.getClient(IDTypeEnum.PASSPORT, "C7").isPresent());
+    }
+
+    /**
+     * Test that the credits are written on the shard of their client, and that
+     * the exposure summaries of every shard are verified.
+     */
+    @Test
+    public void creditEvalServiceTest1() {
+        CreditEvalServiceImpl creditEvalService =
+                ObjectBuilder.buildCreditEvalServiceImpl(dataSource);
+        setInternalState(creditEvalService, "creditFirmABC",
+                (ICreditFirmABC) (idType, clientId) -> RiskTypeEnum.NONE);
+        List<CreditRequestDTO> requests = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            requests.add(new CreditRequestDTO(new PeopleDTO(IDTypeEnum.PASSPORT, "C" + i,
+                    "First", "Last", "email"), new BigDecimal(1000000)));
+        }
+        List<EvaluationResultDTO> results = new ArrayList<>(
+                creditEvalService.evaluateCreditRequests(requests));
+        results.add(creditEvalService.evaluateCreditRequest(new CreditRequestDTO(
+                requests.get(0).getPeopleDTO(), new BigDecimal(3000000))));
+
+        for (EvaluationResultDTO resultDTO : results) {
+            assertEquals(EvaluationStatusEnum.APPROVED, resultDTO.getStatus());
+        }
+        Long clientId = results.get(0).getClientId();
+        assertEquals(Integer.valueOf(2), new JdbcTemplate(shards.get(
+                ShardRoutingDataSource.shardOfId(clientId))).queryForObject(
+                "SELECT openCreditCount FROM CLIENT_EXPOSURE WHERE clientId = ?",
+                Integer.class, clientId));
+        int credits = 0;
+        for (int shard = 0; shard < 3; shard++) {
+            credits += new JdbcTemplate(shards.get(shard)).queryForObject(
+                    "SELECT COUNT(*) FROM CREDIT", Integer.class);
+        }
+        assertEquals(CLIENTS + 1, credits);
+        ExposureSummaryJob job = new ExposureSummaryJob();
+        job.setDataSource(dataSource);
+        ExposureDriftDTO drift = job.verify();
+        assertEquals(CLIENTS, drift.getCheckedClients());
+        assertEquals(0, drift.getDriftedClients());
+    }
+
+    /**
+     * Test that an operation on several shards runs on each of them, and that
+     * the ids of a shard carry its number.
+     */
+    @Test
+    public void onShardsTest() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        dataSource.onShard(2, () -> jdbcTemplate.update("INSERT INTO CLIENT (typeId, "
+                + "clientId) VALUES ('passport', 'C1')"));
+        Map<Integer, Integer> counts = dataSource.onShards(Arrays.asList(2, 0, 1),
+                shard -> jdbcTemplate.queryForObject(COUNT_CLIENTS, Integer.class));
+        assertEquals(Arrays.asList(2, 0, 1), new ArrayList<>(counts.keySet()));
+        assertEquals(Arrays.asList(1, 0, 0), new ArrayList<>(counts.values()));
+        long id = dataSource.onShard(2, () -> jdbcTemplate.queryForObject(
+                "SELECT MAX(id) FROM CLIENT", Long.class));
+        assertEquals(ShardRoutingDataSource.firstId(2), id);
+        assertEquals(2, ShardRoutingDataSource.shardOfId(id));
+    }
+}
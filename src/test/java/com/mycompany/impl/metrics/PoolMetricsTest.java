@@ -0,0 +1,123 @@
+package com.mycompany.impl.metrics;
+
+import com.mycompany.impl.datasource.MonitoredDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the connection pool gauges.
+ */
+public class PoolMetricsTest {
+
+    /**
+     * Pool of an in-memory database.
+     */
+    private MonitoredDataSource dataSource;
+
+    /**
+     * Pool metrics.
+     */
+    private PoolMetrics poolMetrics;
+
+    /**
+     * Create a pool of two connections to an in-memory database.
+     */
+    @Before
+    public void setupPool() {
+        dataSource = new MonitoredDataSource();
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setUrl("jdbc:h2:mem:pool-metrics");
+        dataSource.setUsername("sa");
+        dataSource.setInitialSize(2);
+        dataSource.setMaxTotal(2);
+        dataSource.setMaxWaitMillis(10000);
+        poolMetrics = new PoolMetrics(dataSource);
+    }
+
+    /**
+     * Close the pool, the database is dropped with its last connection.
+     * @throws SQLException if the pool cannot be closed.
+     */
+    @After
+    public void tearDownPool() throws SQLException {
+        dataSource.close();
+    }
+
+    /**
+     * Test that prewarming opens the initial connections and that borrowed
+     * connections are active.
+     * @throws SQLException if a connection cannot be opened.
+     */
+    @Test
+    public void metricsTest1() throws SQLException {
+        dataSource.prewarm();
+        Map<String, Number> metrics = read();
+        assertEquals(2, metrics.get("datasource.pool.idle"));
+        assertEquals(0, metrics.get("datasource.pool.active"));
+        assertEquals(2L, metrics.get("datasource.pool.created"));
+
+        try (Connection connection = dataSource.getConnection()) {
+            metrics = read();
+            assertEquals(1, metrics.get("datasource.pool.active"));
+            assertEquals(1, metrics.get("datasource.pool.idle"));
+            assertEquals(2, metrics.get("datasource.pool.maxTotal"));
+        }
+        assertEquals(2L, read().get("datasource.pool.borrowed"));
+    }
+
+    /**
+     * Test that the threads waiting for a connection of an exhausted pool are
+     * counted.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void metricsTest2() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> waiter;
+        try (Connection first = dataSource.getConnection();
+             Connection second = dataSource.getConnection()) {
+            waiter = executor.submit(() -> {
+                dataSource.getConnection().close();
+                return null;
+            });
+            long deadline = System.currentTimeMillis() + 5000;
+            while (dataSource.getNumWaiters() == 0
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, read().get("datasource.pool.waiters"));
+            Thread.sleep(50);
+        }
+        waiter.get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        Map<String, Number> metrics = read();
+        assertEquals(0, metrics.get("datasource.pool.waiters"));
+        assertTrue(metrics.get("datasource.pool.maxBorrowWaitMillis").longValue() >= 50);
+    }
+
+    /**
+     * @return the pool metrics by name.
+     */
+    private Map<String, Number> read() {
+        Map<String, Number> metrics = new HashMap<>();
+        for (Metric<?> metric : poolMetrics.metrics()) {
+            metrics.put(metric.getName(), metric.getValue());
+        }
+        return metrics;
+    }
+}
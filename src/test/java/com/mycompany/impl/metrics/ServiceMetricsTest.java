@@ -0,0 +1,93 @@
+package com.mycompany.impl.metrics;
+
+import com.mycompany.api.dto.EvaluationStageEnum;
+import com.mycompany.api.dto.EvaluationStatusEnum;
+import com.mycompany.api.dto.RiskTypeEnum;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the service metrics.
+ */
+public class ServiceMetricsTest {
+
+    /**
+     * Service metrics.
+     */
+    private final ServiceMetrics serviceMetrics = new ServiceMetrics();
+
+    /**
+     * Test that the timers count, add up and publish their maximum until it is
+     * read.
+     */
+    @Test
+    public void metricsTest1() {
+        long now = System.nanoTime();
+        serviceMetrics.record(TimedOperationEnum.GET_CLIENT, now - 2000000L);
+        serviceMetrics.record(TimedOperationEnum.GET_CLIENT, now - 5000000L);
+        serviceMetrics.stageCompleted(EvaluationStageEnum.RISK_ANALYSIS, 3000000L);
+
+        Map<String, Number> metrics = read();
+        assertEquals(2L, metrics.get("credit.getClient.count"));
+        assertTrue(metrics.get("credit.getClient.totalMillis").doubleValue() >= 7);
+        assertTrue(metrics.get("credit.getClient.maxMillis").doubleValue() >= 5);
+        assertEquals(0L, metrics.get("credit.isClient.count"));
+        assertEquals(1L, metrics.get("credit.stage.risk_analysis.count"));
+        assertEquals(3.0, metrics.get("credit.stage.risk_analysis.maxMillis"));
+
+        metrics = read();
+        assertEquals(2L, metrics.get("credit.getClient.count"));
+        assertEquals(0.0, metrics.get("credit.getClient.maxMillis"));
+    }
+
+    /**
+     * Test that the outcomes are counted by status and risk type from several
+     * threads.
+     * @throws InterruptedException if the test is interrupted.
+     */
+    @Test
+    public void recordOutcomeTest1() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 4; i++) {
+            executor.execute(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    serviceMetrics.recordOutcome(EvaluationStatusEnum.APPROVED,
+                            RiskTypeEnum.NONE);
+                    serviceMetrics.record(TimedOperationEnum.ASSIGN_CREDIT,
+                            System.nanoTime());
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        serviceMetrics.recordOutcome(EvaluationStatusEnum.FAILED, null);
+
+        Map<String, Number> metrics = read();
+        assertEquals(40000L, metrics.get("credit.evaluation.approved.NONE"));
+        assertEquals(0L, metrics.get("credit.evaluation.declined.NONE"));
+        assertEquals(1L, metrics.get("credit.evaluation.failed.UNKNOWN"));
+        assertEquals(40000L, metrics.get("credit.assignCredit.count"));
+        assertEquals(40000L, serviceMetrics.getCount(TimedOperationEnum.ASSIGN_CREDIT));
+        assertEquals(1L, serviceMetrics.getOutcomeCount(EvaluationStatusEnum.FAILED, null));
+    }
+
+    /**
+     * @return the published metrics by name.
+     */
+    private Map<String, Number> read() {
+        Map<String, Number> metrics = new HashMap<>();
+        for (Metric<?> metric : serviceMetrics.metrics()) {
+            metrics.put(metric.getName(), metric.getValue());
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,89 @@
+package com.mycompany.impl.quota;
+
+import com.mycompany.api.dto.RiskTypeEnum;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Test that the batch quota calculator gives the results of the scalar engine.
+ */
+public class BatchQuotaCalculatorTest {
+
+    /**
+     * Number of accounts of each batch.
+     */
+    private static final int ACCOUNTS = 100000;
+
+    /**
+     * Test random batches with every rounding mode and the default policy.
+     */
+    @Test
+    public void evaluateTest1() {
+        for (RoundingMode mode : RoundingMode.values()) {
+            if (mode != RoundingMode.UNNECESSARY) {
+                assertEquivalent(new QuotaEngine(QuotaEngine.DEFAULT_SCALE, mode), 42L);
+            }
+        }
+    }
+
+    /**
+     * Test random batches with a policy that has floors, caps, minimum salaries
+     * and fractional multipliers.
+     */
+    @Test
+    public void evaluateTest2() {
+        QuotaEngine quotaEngine = new QuotaEngine();
+        Map<RiskTypeEnum, CreditPolicyRule> rules = CreditPolicy.defaultRules();
+        rules.put(RiskTypeEnum.NONE, new CreditPolicyRule(new BigDecimal("2.7183"),
+                new BigDecimal("1000"), new BigDecimal("50000000"), new BigDecimal("800")));
+        rules.put(RiskTypeEnum.PLEDGE, new CreditPolicyRule(new BigDecimal("0.3333"),
+                BigDecimal.ZERO, new BigDecimal("2000000"), BigDecimal.ZERO));
+        quotaEngine.setRules(rules);
+        assertEquivalent(quotaEngine, 7L);
+    }
+
+    /**
+     * Evaluate a random batch with the calculator, split in small parts, and with
+     * the scalar engine, and compare the results.
+     * @param quotaEngine Quota engine.
+     * @param seed Random seed.
+     */
+    private static void assertEquivalent(QuotaEngine quotaEngine, long seed) {
+        Random random = new Random(seed);
+        long[] salary = new long[ACCOUNTS];
+        long[] maxPast = new long[ACCOUNTS];
+        long[] openTotal = new long[ACCOUNTS];
+        byte[] riskOrdinal = new byte[ACCOUNTS];
+        int risks = RiskTypeEnum.values().length;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            salary[i] = (long) (random.nextDouble() * 10000000000L);
+            maxPast[i] = (long) (random.nextDouble() * 50000000000L);
+            openTotal[i] = (long) (random.nextDouble() * 20000000000L);
+            riskOrdinal[i] = (byte) random.nextInt(risks);
+        }
+        // A few parts have negative or large amounts and go through the exact
+        // arithmetic.
+        for (int i = 0; i < ACCOUNTS; i += 20011) {
+            maxPast[i] = -maxPast[i];
+            salary[i + 1] = Long.MAX_VALUE;
+            riskOrdinal[i + 1] = (byte) RiskTypeEnum.SEIZED.ordinal();
+        }
+        long[] expected = new long[ACCOUNTS];
+        CreditPolicy policy = quotaEngine.getPolicy();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            expected[i] = quotaEngine.evaluate(policy, maxPast[i], openTotal[i], salary[i],
+                    RiskTypeEnum.values()[riskOrdinal[i]]);
+        }
+        long[] quota = new long[ACCOUNTS];
+        new BatchQuotaCalculator(quotaEngine, ForkJoinPool.commonPool(), 4096)
+                .evaluate(salary, maxPast, openTotal, riskOrdinal, quota);
+        assertArrayEquals(expected, quota);
+    }
+}
@@ -0,0 +1,78 @@
+package com.mycompany.impl.quota;
+
+import com.mycompany.api.dto.RiskTypeEnum;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the credit policy loader.
+ */
+public class CreditPolicyLoaderTest {
+
+    /**
+     * Folder of the policy files.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test that a changed file replaces the policy and an invalid file keeps it.
+     * @throws IOException if a file cannot be written.
+     */
+    @Test
+    public void reloadIfModifiedTest() throws IOException {
+        File file = folder.newFile("credit-policy.properties");
+        write(file, "credit.policy.NONE.multiplier=3\n", 1000L);
+        QuotaEngine quotaEngine = new QuotaEngine();
+        CreditPolicyLoader loader = new CreditPolicyLoader(new FileSystemResource(file),
+                quotaEngine);
+        assertTrue(loader.reloadIfModified());
+        assertFalse(loader.reloadIfModified());
+        assertEquals(new BigDecimal(300), evaluate(quotaEngine, RiskTypeEnum.NONE));
+        assertEquals(BigDecimal.ZERO, evaluate(quotaEngine, RiskTypeEnum.PLEDGE));
+
+        write(file, "credit.policy.NONE.multiplier=2\ncredit.policy.NONE.cap=150\n", 2000L);
+        assertTrue(loader.reloadIfModified());
+        assertEquals(new BigDecimal(150), evaluate(quotaEngine, RiskTypeEnum.NONE));
+
+        long version = quotaEngine.getPolicy().getVersion();
+        write(file, "credit.policy.NONE.multiplier=2\ncredit.policy.NONE.floor=x\n", 3000L);
+        assertFalse(loader.reloadIfModified());
+        assertEquals(version, quotaEngine.getPolicy().getVersion());
+        assertEquals(new BigDecimal(150), evaluate(quotaEngine, RiskTypeEnum.NONE));
+    }
+
+    /**
+     * @param quotaEngine Quota engine.
+     * @param risk Risk type.
+     * @return the quota of a client with a salary of 100 and no credits.
+     */
+    private static BigDecimal evaluate(QuotaEngine quotaEngine, RiskTypeEnum risk) {
+        return quotaEngine.evaluate(BigDecimal.ZERO, BigDecimal.ZERO, new BigDecimal(100),
+                risk);
+    }
+
+    /**
+     * @param file File.
+     * @param content Content.
+     * @param lastModified Modification time to set.
+     * @throws IOException if the file cannot be written.
+     */
+    private static void write(File file, String content, long lastModified)
+            throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.ISO_8859_1));
+        assertTrue(file.setLastModified(lastModified));
+    }
+}
@@ -0,0 +1,210 @@
+package com.mycompany.impl.quota;
+
+import com.mycompany.api.dto.RiskTypeEnum;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the former double based quota evaluation with the quota engine,
+ * through its BigDecimal facade, in minor units and in columns. Run it with the
+ * main method from the test classpath, with -prof gc to see the allocation rate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QuotaEngineBenchmark {
+
+    /**
+     * Number of accounts evaluated by each benchmark call.
+     */
+    private static final int ACCOUNTS = 1024;
+
+    /**
+     * Quota engine.
+     */
+    private final QuotaEngine quotaEngine = new QuotaEngine();
+
+    /**
+     * Salaries.
+     */
+    private BigDecimal[] salaries;
+
+    /**
+     * Maximum past credits.
+     */
+    private BigDecimal[] maxPastCredits;
+
+    /**
+     * Current loans.
+     */
+    private BigDecimal[] currentCredits;
+
+    /**
+     * Salaries in minor units.
+     */
+    private long[] salaryUnits;
+
+    /**
+     * Maximum past credits in minor units.
+     */
+    private long[] maxPastCreditUnits;
+
+    /**
+     * Current loans in minor units.
+     */
+    private long[] currentCreditUnits;
+
+    /**
+     * Risk types.
+     */
+    private RiskTypeEnum[] risks;
+
+    /**
+     * Risk type ordinals.
+     */
+    private byte[] riskOrdinals;
+
+    /**
+     * Quotas of the batch calculator.
+     */
+    private long[] quotas;
+
+    /**
+     * Batch calculator.
+     */
+    private BatchQuotaCalculator batchQuotaCalculator;
+
+    /**
+     * Build random accounts.
+     */
+    @Setup
+    public void setup() {
+        Random random = new Random(42L);
+        RiskTypeEnum[] riskTypes = RiskTypeEnum.values();
+        salaries = new BigDecimal[ACCOUNTS];
+        maxPastCredits = new BigDecimal[ACCOUNTS];
+        currentCredits = new BigDecimal[ACCOUNTS];
+        salaryUnits = new long[ACCOUNTS];
+        maxPastCreditUnits = new long[ACCOUNTS];
+        currentCreditUnits = new long[ACCOUNTS];
+        risks = new RiskTypeEnum[ACCOUNTS];
+        riskOrdinals = new byte[ACCOUNTS];
+        quotas = new long[ACCOUNTS];
+        batchQuotaCalculator = new BatchQuotaCalculator(quotaEngine);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            salaries[i] = BigDecimal.valueOf(random.nextInt(1000000000), 2);
+            maxPastCredits[i] = BigDecimal.valueOf(random.nextInt(1000000000), 2);
+            currentCredits[i] = BigDecimal.valueOf(random.nextInt(100000000), 2);
+            salaryUnits[i] = quotaEngine.toMinorUnits(salaries[i]);
+            maxPastCreditUnits[i] = quotaEngine.toMinorUnits(maxPastCredits[i]);
+            currentCreditUnits[i] = quotaEngine.toMinorUnits(currentCredits[i]);
+            risks[i] = riskTypes[random.nextInt(riskTypes.length)];
+            riskOrdinals[i] = (byte) risks[i].ordinal();
+        }
+    }
+
+    /**
+     * Former evaluation, with doubles and an if/else chain.
+     * @param blackhole Result sink.
+     */
+    @Benchmark
+    public void legacyDouble(Blackhole blackhole) {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            blackhole.consume(legacyEvaluate(maxPastCredits[i], currentCredits[i],
+                    salaries[i], risks[i]));
+        }
+    }
+
+    /**
+     * Quota engine through its BigDecimal facade.
+     * @param blackhole Result sink.
+     */
+    @Benchmark
+    public void engineBigDecimal(Blackhole blackhole) {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            blackhole.consume(quotaEngine.evaluate(maxPastCredits[i], currentCredits[i],
+                    salaries[i], risks[i]));
+        }
+    }
+
+    /**
+     * Quota engine in minor units.
+     * @param blackhole Result sink.
+     */
+    @Benchmark
+    public void engineMinorUnits(Blackhole blackhole) {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            blackhole.consume(quotaEngine.evaluate(maxPastCreditUnits[i],
+                    currentCreditUnits[i], salaryUnits[i], risks[i]));
+        }
+    }
+
+    /**
+     * Batch calculator on columns of minor units.
+     * @return the quotas.
+     */
+    @Benchmark
+    public long[] batchColumns() {
+        batchQuotaCalculator.evaluate(salaryUnits, maxPastCreditUnits, currentCreditUnits,
+                riskOrdinals, quotas);
+        return quotas;
+    }
+
+    /**
+     * Copy of the former CreditEvalServiceImpl.evaluateCreditAmount arithmetic.
+     * @param maxPastCredit Maximum past credit.
+     * @param totalCurrentCredit Total current loans.
+     * @param currentSalary Current salary.
+     * @param riskTypeEnum Risk type.
+     * @return the quota.
+     */
+    private static BigDecimal legacyEvaluate(BigDecimal maxPastCredit,
+            BigDecimal totalCurrentCredit, BigDecimal currentSalary,
+            RiskTypeEnum riskTypeEnum) {
+        BigDecimal amount = BigDecimal.ZERO;
+        if (riskTypeEnum == RiskTypeEnum.NONE) {
+            amount = new BigDecimal(Math.max(currentSalary.doubleValue() * 3,
+                    maxPastCredit.doubleValue())).subtract(totalCurrentCredit);
+        } else if (riskTypeEnum == RiskTypeEnum.IN_ARREARS_3_MONTHS) {
+            amount = new BigDecimal(Math.max(currentSalary.doubleValue() * 3.5,
+                    maxPastCredit.doubleValue())).subtract(totalCurrentCredit);
+        } else if (riskTypeEnum == RiskTypeEnum.IN_ARREARS_6_MONTHS) {
+            amount = new BigDecimal(Math.max(currentSalary.doubleValue() * 4,
+                    maxPastCredit.doubleValue())).subtract(totalCurrentCredit);
+        } else if (riskTypeEnum == RiskTypeEnum.PLEDGE) {
+            amount = new BigDecimal(Math.max(currentSalary.doubleValue(),
+                    maxPastCredit.doubleValue())).subtract(totalCurrentCredit);
+        }
+        return amount;
+    }
+
+    /**
+     * Run the benchmark.
+     * @param args Unused.
+     * @throws RunnerException if the benchmark fails.
+     */
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(QuotaEngineBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,114 @@
+package com.mycompany.impl.quota;
+
+import com.mycompany.api.dto.RiskTypeEnum;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test the fixed-point quota engine.
+ */
+public class QuotaEngineTest {
+
+    /**
+     * Engine with cents and HALF_EVEN rounding.
+     */
+    private final QuotaEngine quotaEngine = new QuotaEngine();
+
+    /**
+     * Test that whole amounts give the same quotas as the former double based
+     * evaluation, with no decimals.
+     */
+    @Test
+    public void evaluateTest1() {
+        assertEquals(new BigDecimal(6300000), quotaEngine.evaluate(new BigDecimal(6500000),
+                new BigDecimal(200000), new BigDecimal(2000000), RiskTypeEnum.NONE));
+        assertEquals(new BigDecimal(6800000), quotaEngine.evaluate(new BigDecimal(5000000),
+                new BigDecimal(200000), new BigDecimal(2000000),
+                RiskTypeEnum.IN_ARREARS_3_MONTHS));
+        assertEquals(new BigDecimal(7800000), quotaEngine.evaluate(new BigDecimal(5000000),
+                new BigDecimal(200000), new BigDecimal(2000000),
+                RiskTypeEnum.IN_ARREARS_6_MONTHS));
+        assertEquals(new BigDecimal(4800000), quotaEngine.evaluate(new BigDecimal(5000000),
+                new BigDecimal(200000), new BigDecimal(2000000), RiskTypeEnum.PLEDGE));
+        assertEquals(BigDecimal.ZERO, quotaEngine.evaluate(new BigDecimal(6500000),
+                new BigDecimal(200000), new BigDecimal(2000000), RiskTypeEnum.SEIZED));
+    }
+
+    /**
+     * Test that amounts with cents give exact decimal quotas and that the salary
+     * times a fractional multiplier is rounded half even.
+     */
+    @Test
+    public void evaluateTest2() {
+        assertEquals(new BigDecimal("0.10"), quotaEngine.evaluate(new BigDecimal("0.30"),
+                new BigDecimal("0.20"), BigDecimal.ZERO, RiskTypeEnum.NONE));
+        // 0.01 * 3.5 = 0.035 -> 0.04, 0.03 * 3.5 = 0.105 -> 0.10
+        assertEquals(4L, quotaEngine.evaluate(0L, 0L, 1L, RiskTypeEnum.IN_ARREARS_3_MONTHS));
+        assertEquals(10L, quotaEngine.evaluate(0L, 0L, 3L, RiskTypeEnum.IN_ARREARS_3_MONTHS));
+        assertEquals(0L, quotaEngine.toMinorUnits(new BigDecimal("0.005")));
+        assertEquals(2L, quotaEngine.toMinorUnits(new BigDecimal("0.015")));
+    }
+
+    /**
+     * Test the rounding modes of the long division.
+     */
+    @Test
+    public void divideTest() {
+        assertEquals(2L, QuotaEngine.divide(25L, 10L, RoundingMode.HALF_EVEN));
+        assertEquals(3L, QuotaEngine.divide(25L, 10L, RoundingMode.HALF_UP));
+        assertEquals(2L, QuotaEngine.divide(25L, 10L, RoundingMode.HALF_DOWN));
+        assertEquals(-3L, QuotaEngine.divide(-25L, 10L, RoundingMode.HALF_UP));
+        assertEquals(-3L, QuotaEngine.divide(-21L, 10L, RoundingMode.FLOOR));
+        assertEquals(-2L, QuotaEngine.divide(-21L, 10L, RoundingMode.CEILING));
+        assertEquals(3L, QuotaEngine.divide(21L, 10L, RoundingMode.UP));
+        assertEquals(2L, QuotaEngine.divide(29L, 10L, RoundingMode.DOWN));
+    }
+
+    /**
+     * Test that amounts out of the range of a long are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void evaluateTest3() {
+        quotaEngine.evaluate(BigDecimal.ZERO, BigDecimal.ZERO,
+                new BigDecimal(Long.MAX_VALUE / 100), RiskTypeEnum.NONE);
+    }
+
+    /**
+     * Test the floor, the cap and the minimum salary of a policy, and that the
+     * former policy keeps working for evaluations that already read it.
+     */
+    @Test
+    public void setRulesTest() {
+        CreditPolicy former = quotaEngine.getPolicy();
+        Map<RiskTypeEnum, CreditPolicyRule> rules = CreditPolicy.defaultRules();
+        rules.put(RiskTypeEnum.NONE, new CreditPolicyRule(new BigDecimal("3"),
+                new BigDecimal("1000"), new BigDecimal("5000"), new BigDecimal("100")));
+        CreditPolicy policy = quotaEngine.setRules(rules);
+        assertEquals(former.getVersion() + 1, policy.getVersion());
+        // Floor: 3 * 200 = 600 -> 1000
+        assertEquals(new BigDecimal(900), quotaEngine.evaluate(BigDecimal.ZERO,
+                new BigDecimal(100), new BigDecimal(200), RiskTypeEnum.NONE));
+        // Cap: 3 * 2000 = 6000 -> 5000
+        assertEquals(new BigDecimal(4900), quotaEngine.evaluate(BigDecimal.ZERO,
+                new BigDecimal(100), new BigDecimal(2000), RiskTypeEnum.NONE));
+        // Minimum salary
+        assertEquals(BigDecimal.ZERO, quotaEngine.evaluate(BigDecimal.ZERO,
+                new BigDecimal(100), new BigDecimal(99), RiskTypeEnum.NONE));
+        assertEquals(590000L, quotaEngine.evaluate(former, 0L, 10000L, 200000L,
+                RiskTypeEnum.NONE));
+    }
+
+    /**
+     * Test that a floor greater than the cap is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidRuleTest() {
+        new CreditPolicyRule(BigDecimal.ONE, new BigDecimal(10), BigDecimal.ONE,
+                BigDecimal.ZERO);
+    }
+}
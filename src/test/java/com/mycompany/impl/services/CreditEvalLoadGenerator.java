@@ -0,0 +1,394 @@
+package com.mycompany.impl.services;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.mycompany.api.client.ICreditFirmABC;
+import com.mycompany.api.dto.CreditRequestDTO;
+import com.mycompany.api.dto.EvaluationResultDTO;
+import com.mycompany.api.dto.EvaluationStageEnum;
+import com.mycompany.api.dto.EvaluationStatusEnum;
+import com.mycompany.api.dto.IDTypeEnum;
+import com.mycompany.api.dto.PeopleDTO;
+import com.mycompany.api.dto.RiskTypeEnum;
+import com.mycompany.impl.client.LocalCreditFirmABC;
+import common.ObjectBuilder;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockito.internal.util.reflection.Whitebox.setInternalState;
+
+/**
+ * Load generator for evaluateCreditRequest on an embedded database seeded with a
+ * synthetic population, with a credit firm stand-in of fixed latency.
+ *
+ * In closed loop, threads send a new request as soon as the previous one
+ * returns. In open loop, requests arrive at a fixed rate whatever the response
+ * times, and the end to end latency is measured from the intended arrival time,
+ * so the time a request waits behind slow ones is not omitted. Stage latencies
+ * are service times, reported by the stage listener of the service.
+ *
+ * Options are name=value arguments, see DEFAULTS. The percentile table is
+ * printed and saved to the output directory, with an HdrHistogram percentile
+ * distribution file (.hgrm) for each histogram.
+ */
+public class CreditEvalLoadGenerator {
+
+    /**
+     * Default options.
+     */
+    private static final String[][] DEFAULTS = {
+            {"mode", "closed"},
+            {"threads", "8"},
+            {"rate", "500"},
+            {"warmup", "10"},
+            {"duration", "30"},
+            {"clients", "10000"},
+            {"newClientRatio", "0.1"},
+            {"riskMix", "NONE:70,IN_ARREARS_3_MONTHS:10,IN_ARREARS_6_MONTHS:10,"
+                    + "PLEDGE:5,SEIZED:5"},
+            {"firmLatencyMicros", "2000"},
+            {"output", "target/load"}};
+
+    /**
+     * Percentiles of the table.
+     */
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    /**
+     * Nanoseconds per millisecond, the unit of the reports.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Options of the run.
+     */
+    private final Properties options;
+
+    /**
+     * Evaluated service.
+     */
+    private final CreditEvalServiceImpl creditEvalService;
+
+    /**
+     * Existing clients the requests are drawn from.
+     */
+    private final List<PeopleDTO> existingPeople;
+
+    /**
+     * Counter of the new clients.
+     */
+    private final AtomicLong newClients = new AtomicLong();
+
+    /**
+     * End to end latencies.
+     */
+    private final Histogram endToEnd = new ConcurrentHistogram(3);
+
+    /**
+     * Service times, that is end to end latencies without the time requests wait
+     * to be sent. Only open loop runs have it.
+     */
+    private final Histogram serviceTime = new ConcurrentHistogram(3);
+
+    /**
+     * Latencies of each evaluation stage.
+     */
+    private final Map<EvaluationStageEnum, Histogram> stages =
+            new EnumMap<>(EvaluationStageEnum.class);
+
+    /**
+     * Outcomes of the requests.
+     */
+    private final Map<EvaluationStatusEnum, LongAdder> outcomes =
+            new EnumMap<>(EvaluationStatusEnum.class);
+
+    /**
+     * Requests that threw an exception.
+     */
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Build a generator.
+     * @param options Options of the run.
+     * @param creditEvalService Evaluated service.
+     * @param existingPeople Existing clients the requests are drawn from.
+     */
+    CreditEvalLoadGenerator(Properties options, CreditEvalServiceImpl creditEvalService,
+            List<PeopleDTO> existingPeople) {
+        this.options = options;
+        this.creditEvalService = creditEvalService;
+        this.existingPeople = existingPeople;
+        for (EvaluationStageEnum stage : EvaluationStageEnum.values()) {
+            stages.put(stage, new ConcurrentHistogram(3));
+        }
+        for (EvaluationStatusEnum status : EvaluationStatusEnum.values()) {
+            outcomes.put(status, new LongAdder());
+        }
+        creditEvalService.setStageListener((stage, nanos) ->
+                stages.get(stage).recordValue(nanos));
+    }
+
+    /**
+     * Run the warmup, reset the histograms and run the measurement.
+     * @throws InterruptedException if the run is interrupted.
+     */
+    void run() throws InterruptedException {
+        runPhase(getLong("warmup"));
+        endToEnd.reset();
+        serviceTime.reset();
+        stages.values().forEach(Histogram::reset);
+        outcomes.values().forEach(LongAdder::reset);
+        errors.reset();
+        runPhase(getLong("duration"));
+    }
+
+    /**
+     * Send requests for some time, in the mode of the options.
+     * @param seconds Duration of the phase.
+     * @throws InterruptedException if the phase is interrupted.
+     */
+    private void runPhase(long seconds) throws InterruptedException {
+        int threads = Integer.parseInt(options.getProperty("threads"));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        if ("open".equals(options.getProperty("mode"))) {
+            long interval = (long) (TimeUnit.SECONDS.toNanos(1)
+                    / Double.parseDouble(options.getProperty("rate")));
+            long start = System.nanoTime();
+            for (long i = 0; start + i * interval < end; i++) {
+                long intended = start + i * interval;
+                long delay;
+                while ((delay = intended - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+                executor.execute(() -> {
+                    long sent = System.nanoTime();
+                    evaluate();
+                    long done = System.nanoTime();
+                    endToEnd.recordValue(done - intended);
+                    serviceTime.recordValue(done - sent);
+                });
+            }
+        } else {
+            for (int i = 0; i < threads; i++) {
+                executor.execute(() -> {
+                    while (System.nanoTime() < end) {
+                        long sent = System.nanoTime();
+                        evaluate();
+                        endToEnd.recordValue(System.nanoTime() - sent);
+                    }
+                });
+            }
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Evaluate a request of an existing or a new client.
+     */
+    private void evaluate() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        PeopleDTO peopleDTO;
+        if (existingPeople.isEmpty() || random.nextDouble()
+                < Double.parseDouble(options.getProperty("newClientRatio"))) {
+            long id = newClients.incrementAndGet();
+            peopleDTO = new PeopleDTO(IDTypeEnum.PASSPORT, "L" + id, "Load", "Client",
+                    "load" + id + "@example.com");
+        } else {
+            peopleDTO = existingPeople.get(random.nextInt(existingPeople.size()));
+        }
+        BigDecimal salary = BigDecimal.valueOf(1000 + random.nextInt(19001));
+        try {
+            EvaluationResultDTO resultDTO = creditEvalService.evaluateCreditRequest(
+                    new CreditRequestDTO(peopleDTO, salary));
+            outcomes.get(resultDTO.getStatus()).increment();
+        } catch (RuntimeException e) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * Print the percentile table and save it, with the distribution files, to
+     * the output directory.
+     * @throws IOException if the files cannot be written.
+     */
+    void report() throws IOException {
+        Map<String, Histogram> histograms = new LinkedHashMap<>();
+        histograms.put("end-to-end", endToEnd);
+        if (serviceTime.getTotalCount() > 0) {
+            histograms.put("service-time", serviceTime);
+        }
+        stages.forEach((stage, histogram) -> histograms.put(
+                stage.name().toLowerCase().replace('_', '-'), histogram));
+
+        File output = new File(options.getProperty("output"));
+        if (!output.isDirectory() && !output.mkdirs()) {
+            throw new IOException("Cannot create " + output);
+        }
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%s%n%.0f req/s, outcomes %s, errors %d%n",
+                options, endToEnd.getTotalCount()
+                        / (double) getLong("duration"), outcomes, errors.sum()));
+        table.append(String.format("%-16s %10s %10s", "latency (ms)", "count", "mean"));
+        for (double percentile : PERCENTILES) {
+            table.append(String.format(" %10s", "p" + percentile));
+        }
+        table.append(String.format(" %10s%n", "max"));
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            Histogram histogram = entry.getValue();
+            table.append(String.format("%-16s %10d %10.3f", entry.getKey(),
+                    histogram.getTotalCount(), histogram.getMean() / NANOS_PER_MILLI));
+            for (double percentile : PERCENTILES) {
+                table.append(String.format(" %10.3f",
+                        histogram.getValueAtPercentile(percentile) / NANOS_PER_MILLI));
+            }
+            table.append(String.format(" %10.3f%n",
+                    histogram.getMaxValue() / NANOS_PER_MILLI));
+            try (PrintStream out = new PrintStream(new FileOutputStream(
+                    new File(output, entry.getKey() + ".hgrm")), false, "UTF-8")) {
+                histogram.outputPercentileDistribution(out, NANOS_PER_MILLI);
+            }
+        }
+        System.out.print(table);
+        try (PrintStream out = new PrintStream(new FileOutputStream(
+                new File(output, "summary.txt")), false, "UTF-8")) {
+            out.print(table);
+        }
+    }
+
+    /**
+     * @param name Option name.
+     * @return the option as a long.
+     */
+    private long getLong(String name) {
+        return Long.parseLong(options.getProperty(name));
+    }
+
+    /**
+     * Parse the options, defaults first and then name=value arguments.
+     * @param args Arguments.
+     * @return the options.
+     */
+    static Properties parseOptions(String[] args) {
+        Properties options = new Properties();
+        for (String[] option : DEFAULTS) {
+            options.setProperty(option[0], option[1]);
+        }
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0 || !options.containsKey(arg.substring(0, separator))) {
+                throw new IllegalArgumentException("Unknown option " + arg + ".");
+            }
+            options.setProperty(arg.substring(0, separator),
+                    arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    /**
+     * Seed the embedded database, run the load and report the latencies.
+     * @param args name=value options.
+     * @throws Exception if the run fails.
+     */
+    public static void main(String[] args) throws Exception {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME))
+                .setLevel(Level.INFO);
+        Properties options = parseOptions(args);
+        int threads = Integer.parseInt(options.getProperty("threads"));
+        BasicDataSource database = ObjectBuilder.getEmbeddedDataSource("load");
+        database.setMaxTotal(Math.max(threads, database.getMaxTotal()));
+        try {
+            SyntheticPopulationSeeder seeder = new SyntheticPopulationSeeder();
+            seeder.setDataSource(database);
+            seeder.setClients(Long.parseLong(options.getProperty("clients")));
+            seeder.seed();
+            List<PeopleDTO> existingPeople = new JdbcTemplate(database).query(
+                    "SELECT typeId, clientId FROM CLIENT", (rs, rowNum) -> new PeopleDTO(
+                            IDTypeEnum.forValue(rs.getString(1)), rs.getString(2),
+                            null, null, null));
+
+            CreditEvalServiceImpl creditEvalService =
+                    ObjectBuilder.buildCreditEvalServiceImpl(database);
+            setInternalState(creditEvalService, "creditFirmABC", new MixCreditFirmABC(
+                            options.getProperty("riskMix"),
+                            Long.parseLong(options.getProperty("firmLatencyMicros"))));
+
+            CreditEvalLoadGenerator generator = new CreditEvalLoadGenerator(options,
+                    creditEvalService, existingPeople);
+            generator.run();
+            generator.report();
+        } finally {
+            ObjectBuilder.shutdownEmbeddedDataSource(database);
+        }
+    }
+
+    /**
+     * Credit firm stand-in with a fixed latency whose risk types follow a
+     * weighted mix, e.g. NONE:70,PLEDGE:30. The risk of a person is derived from
+     * its identifier so it is stable between calls.
+     */
+    static class MixCreditFirmABC implements ICreditFirmABC {
+
+        /**
+         * Stand-in that waits the latency of the calls.
+         */
+        private final LocalCreditFirmABC latency;
+
+        /**
+         * Risk type of each percent bucket.
+         */
+        private final RiskTypeEnum[] buckets = new RiskTypeEnum[100];
+
+        /**
+         * Build the stand-in.
+         * @param riskMix Weights of the risk types, they should add up to 100.
+         * @param latencyMicros Latency of a call, in microseconds.
+         */
+        MixCreditFirmABC(String riskMix, long latencyMicros) {
+            latency = new LocalCreditFirmABC(latencyMicros, 0L);
+            int bucket = 0;
+            for (String weight : riskMix.split(",")) {
+                String[] parts = weight.trim().split(":");
+                RiskTypeEnum risk = RiskTypeEnum.valueOf(parts[0]);
+                for (int i = Integer.parseInt(parts[1]); i > 0; i--) {
+                    if (bucket == buckets.length) {
+                        throw new IllegalArgumentException(
+                                "Risk weights should add up to 100.");
+                    }
+                    buckets[bucket++] = risk;
+                }
+            }
+            if (bucket != buckets.length) {
+                throw new IllegalArgumentException("Risk weights should add up to 100.");
+            }
+        }
+
+        @Override
+        public RiskTypeEnum getRiskByClient(IDTypeEnum idType, String clientId) {
+            latency.getRiskByClient(idType, clientId);
+            return buckets[(clientId.hashCode() & Integer.MAX_VALUE) % buckets.length];
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.mycompany.impl.services;
+
+import com.mycompany.api.dto.CreditRequestDTO;
+import com.mycompany.api.dto.EvaluateQuotaInDTO;
+import com.mycompany.api.dto.EvaluationResultDTO;
+import com.mycompany.api.dto.IDTypeEnum;
+import com.mycompany.api.dto.PeopleDTO;
+import com.mycompany.api.dto.RiskTypeEnum;
+import com.mycompany.impl.client.LocalCreditFirmABC;
+import ch.qos.logback.classic.Logger;
+import common.ObjectBuilder;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.internal.util.reflection.Whitebox.setInternalState;
+
+/**
+ * Measure the credit evaluation service: the quota of each risk type, and the
+ * whole evaluation of a request on an embedded database with a credit firm
+ * stand-in that answers at once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CreditEvalServiceBenchmark {
+
+    /**
+     * Quota inputs of a risk type.
+     */
+    @State(Scope.Thread)
+    public static class QuotaState {
+
+        /**
+         * Risk type of the evaluated quota.
+         */
+        @Param({"NONE", "IN_ARREARS_3_MONTHS", "IN_ARREARS_6_MONTHS", "PLEDGE", "SEIZED"})
+        private RiskTypeEnum riskTypeEnum;
+
+        /**
+         * Credit evaluation service, it needs no database to evaluate a quota.
+         */
+        private final CreditEvalServiceImpl creditEvalService =
+                new CreditEvalServiceImpl();
+
+        /**
+         * Quota inputs.
+         */
+        private EvaluateQuotaInDTO inDTO;
+
+        /**
+         * Build the quota inputs.
+         */
+        @Setup
+        public void setup() {
+            inDTO = new EvaluateQuotaInDTO(new BigDecimal("4500000"),
+                    new BigDecimal("1250000.50"), new BigDecimal("2300000"),
+                    riskTypeEnum);
+        }
+    }
+
+    /**
+     * Credit evaluation service on an embedded database.
+     */
+    @State(Scope.Benchmark)
+    public static class DatabaseState {
+
+        /**
+         * Number of people requesting credits.
+         */
+        private static final int PEOPLE = 1000;
+
+        /**
+         * Embedded database.
+         */
+        private BasicDataSource database;
+
+        /**
+         * Credit evaluation service.
+         */
+        private CreditEvalServiceImpl creditEvalService;
+
+        /**
+         * Credit requests, the first evaluation of a person creates its client.
+         */
+        private CreditRequestDTO[] requests;
+
+        /**
+         * Next request evaluated.
+         */
+        private int next;
+
+        /**
+         * Build the service and the requests.
+         */
+        @Setup(Level.Trial)
+        public void setup() {
+            // The debug messages of each statement would be measured too.
+            ((Logger) LoggerFactory.getLogger("org.springframework.jdbc"))
+                    .setLevel(ch.qos.logback.classic.Level.INFO);
+            database = ObjectBuilder.getEmbeddedDataSource("credit-eval-benchmark");
+            creditEvalService = ObjectBuilder.buildCreditEvalServiceImpl(database);
+            setInternalState(creditEvalService, "creditFirmABC",
+                    new LocalCreditFirmABC(0L, 0L));
+            Random random = new Random(42L);
+            requests = new CreditRequestDTO[PEOPLE];
+            for (int i = 0; i < PEOPLE; i++) {
+                requests[i] = new CreditRequestDTO(new PeopleDTO(IDTypeEnum.PASSPORT,
+                        "BENCH" + i, "Homer", "Simpson", "homer@springfield.com"),
+                        BigDecimal.valueOf(1000 + random.nextInt(9000)));
+            }
+        }
+
+        /**
+         * Drop the embedded database.
+         * @throws SQLException if the pool cannot be closed.
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() throws SQLException {
+            ObjectBuilder.shutdownEmbeddedDataSource(database);
+        }
+
+        /**
+         * @return the next request, round robin.
+         */
+        private CreditRequestDTO nextRequest() {
+            CreditRequestDTO request = requests[next];
+            next = (next + 1) % PEOPLE;
+            return request;
+        }
+    }
+
+    /**
+     * @param state Quota inputs.
+     * @return the quota.
+     */
+    @Benchmark
+    public BigDecimal evaluateCreditAmount(QuotaState state) {
+        return state.creditEvalService.evaluateCreditAmount(state.inDTO);
+    }
+
+    /**
+     * @param state Credit evaluation service on an embedded database.
+     * @return the evaluation outcome.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public EvaluationResultDTO evaluateCreditRequest(DatabaseState state) {
+        return state.creditEvalService.evaluateCreditRequest(state.nextRequest());
+    }
+
+    /**
+     * Run the benchmark.
+     * @param args Unused.
+     * @throws RunnerException if the benchmark fails.
+     */
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CreditEvalServiceBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
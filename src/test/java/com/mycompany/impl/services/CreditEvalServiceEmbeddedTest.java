@@ -0,0 +1,584 @@
+package com.mycompany.impl.services;
+
+import com.mycompany.api.client.ICreditFirmABC;
+import com.mycompany.api.dto.ClientKeyDTO;
+import com.mycompany.api.dto.CreditRequestDTO;
+import com.mycompany.api.dto.EvaluationResultDTO;
+import com.mycompany.api.dto.EvaluationStageEnum;
+import com.mycompany.api.dto.EvaluationStatusEnum;
+import com.mycompany.api.dto.ExposureDriftDTO;
+import com.mycompany.api.dto.IDTypeEnum;
+import com.mycompany.api.dto.PeopleDTO;
+import com.mycompany.api.dto.RiskTypeEnum;
+import com.mycompany.exception.RiskAnalysisException;
+import com.mycompany.impl.metrics.ServiceMetrics;
+import com.mycompany.impl.metrics.TimedOperationEnum;
+import common.ObjectBuilder;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.internal.util.reflection.Whitebox.setInternalState;
+
+/**
+ * Test the credit evaluation on the embedded database, which has no
+ * INSERT ... SELECT ... ON DUPLICATE KEY UPDATE.
+ */
+public class CreditEvalServiceEmbeddedTest {
+
+    /**
+     * Embedded data source.
+     */
+    private BasicDataSource dataSource;
+
+    /**
+     * CreditEvalService implementation to be tested.
+     */
+    private CreditEvalServiceImpl creditEvalService;
+
+    /**
+     * Create the embedded database.
+     */
+    @Before
+    public void setupDB() {
+        dataSource = ObjectBuilder.getEmbeddedDataSource("credit-eval");
+        creditEvalService = ObjectBuilder.buildCreditEvalServiceImpl(dataSource);
+        setInternalState(creditEvalService, "creditFirmABC",
+                (ICreditFirmABC) (idType, clientId) -> RiskTypeEnum.NONE);
+    }
+
+    /**
+     * Drop the embedded database.
+     * @throws SQLException if the pool cannot be closed.
+     */
+    @After
+    public void tearDownDB() throws SQLException {
+        ObjectBuilder.shutdownEmbeddedDataSource(dataSource);
+    }
+
+    /**
+     * Test that the exposure summary is created by the first credit of a client
+     * and incremented by the next ones, one by one and in batches.
+     */
+    @Test
+    public void evaluateCreditRequestTest1() {
+        PeopleDTO homer = new PeopleDTO(IDTypeEnum.PASSPORT, "ABC123", "Homer",
+                "Simpson", "homer@springfield.com");
+        PeopleDTO marge = new PeopleDTO(IDTypeEnum.PASSPORT, "XYZ789", "Marge",
+                "Simpson", "marge@springfield.com");
+
+        EvaluationResultDTO first = creditEvalService.evaluateCreditRequest(
+                new CreditRequestDTO(homer, new BigDecimal(2000000)));
+        EvaluationResultDTO second = creditEvalService.evaluateCreditRequest(
+                new CreditRequestDTO(homer, new BigDecimal(3000000)));
+        List<EvaluationResultDTO> batch = creditEvalService.evaluateCreditRequests(
+                Arrays.asList(new CreditRequestDTO(homer, new BigDecimal(4000000)),
+                        new CreditRequestDTO(marge, new BigDecimal(1000000))));
+
+        assertEquals(EvaluationStatusEnum.APPROVED, first.getStatus());
+        assertEquals(EvaluationStatusEnum.APPROVED, second.getStatus());
+        assertEquals(EvaluationStatusEnum.APPROVED, batch.get(0).getStatus());
+        assertEquals(EvaluationStatusEnum.APPROVED, batch.get(1).getStatus());
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        assertEquals(Integer.valueOf(3), jdbcTemplate.queryForObject(
+                "SELECT openCreditCount FROM CLIENT_EXPOSURE WHERE clientId = ?",
+                Integer.class, first.getClientId()));
+        ExposureSummaryJob job = new ExposureSummaryJob();
+        job.setDataSource(dataSource);
+        ExposureDriftDTO drift = job.verify();
+        assertEquals(2, drift.getCheckedClients());
+        assertEquals(0, drift.getDriftedClients());
+    }
+
+    /**
+     * Test that every stage of an approved evaluation is reported to the stage
+     * listener.
+     */
+    @Test
+    public void evaluateCreditRequestTest2() {
+        setupClientWithCredit();
+        Map<EvaluationStageEnum, Long> stages = new EnumMap<>(EvaluationStageEnum.class);
+        creditEvalService.setStageListener(stages::put);
+
+        PeopleDTO peopleDTO = new PeopleDTO(IDTypeEnum.PASSPORT, "ABC123", "Homer",
+                "Simpson", "homer@springfield.com");
+        EvaluationResultDTO resultDTO = creditEvalService.evaluateCreditRequest(
+                new CreditRequestDTO(peopleDTO, new BigDecimal(2000000)));
+
+        assertEquals(EvaluationStatusEnum.APPROVED, resultDTO.getStatus());
+        assertEquals(EnumSet.allOf(EvaluationStageEnum.class), stages.keySet());
+        stages.values().forEach(nanos -> assertTrue(nanos >= 0));
+    }
+
+    /**
+     * Test batch evaluation with an existing client, a new client and an invalid
+     * request, asking the credit firm for all the risks with one bulk lookup.
+     */
+    @Test
+    public void evaluateCreditRequestsTest1() {
+        setupClientWithCredit();
+        ICreditFirmABC creditFirmABC = Mockito.mock(ICreditFirmABC.class);
+        Mockito.doAnswer(invocation -> {
+            Map<ClientKeyDTO, RiskTypeEnum> risks = new HashMap<>();
+            for (Object key : (Collection<?>) invocation.getArguments()[0]) {
+                risks.put((ClientKeyDTO) key, RiskTypeEnum.NONE);
+            }
+            return risks;
+        }).when(creditFirmABC).getRiskByClients(Matchers.anyCollectionOf(ClientKeyDTO.class));
+        setInternalState(creditEvalService, "creditFirmABC", creditFirmABC);
+
+        CreditRequestDTO existing = new CreditRequestDTO(new PeopleDTO(IDTypeEnum.PASSPORT,
+                "ABC123", "Homer", "Simpson", "homer@springfield.com"),
+                new BigDecimal(2000000));
+        CreditRequestDTO newClient = new CreditRequestDTO(new PeopleDTO(IDTypeEnum.PASSPORT,
+                "XYZ789", "Marge", "Simpson", "marge@springfield.com"),
+                new BigDecimal(1000000));
+        CreditRequestDTO invalid = new CreditRequestDTO(new PeopleDTO(IDTypeEnum.PASSPORT,
+                "XYZ789", "Marge", "Simpson", "marge@springfield.com"),
+                new BigDecimal(-1));
+        List<EvaluationResultDTO> results = creditEvalService.evaluateCreditRequests(
+                Arrays.asList(existing, newClient, invalid));
+
+        assertEquals(3, results.size());
+        assertThat(results.get(0).getStatus(), is(EvaluationStatusEnum.APPROVED));
+        assertThat(results.get(0).getQuota(), is(new BigDecimal(5800000)));
+        assertThat(results.get(1).getStatus(), is(EvaluationStatusEnum.APPROVED));
+        assertThat(results.get(1).getQuota(), is(new BigDecimal(3000000)));
+        assertThat(results.get(2).getStatus(), is(EvaluationStatusEnum.FAILED));
+        assertEquals(Integer.valueOf(2), new JdbcTemplate(dataSource).queryForObject(
+                "SELECT COUNT(*) FROM CREDIT WHERE approvalDate = CURRENT_DATE",
+                Integer.class));
+        Mockito.verify(creditFirmABC).getRiskByClients(
+                Matchers.anyCollectionOf(ClientKeyDTO.class));
+        Mockito.verify(creditFirmABC, Mockito.never()).getRiskByClient(
+                any(IDTypeEnum.class), Matchers.anyString());
+    }
+
+    /**
+     * Test that asynchronous evaluations of several clients run together on
+     * the executor and assign their credits.
+     */
+    @Test
+    public void evaluateCreditRequestAsyncTest1() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        creditEvalService.setAsyncExecutor(executor);
+        try {
+            List<CompletableFuture<EvaluationResultDTO>> results = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                results.add(creditEvalService.evaluateCreditRequestAsync(
+                        new CreditRequestDTO(new PeopleDTO(IDTypeEnum.PASSPORT, "C" + i,
+                                "First", "Last", "email"), new BigDecimal(1000000)))
+                        .toCompletableFuture());
+            }
+            for (CompletableFuture<EvaluationResultDTO> result : results) {
+                assertEquals(EvaluationStatusEnum.APPROVED, result.join().getStatus());
+            }
+            // The batch runs after the first credit of C0, so it sees it.
+            List<EvaluationResultDTO> batch = creditEvalService
+                    .evaluateCreditRequestsAsync(Arrays.asList(new CreditRequestDTO(
+                            new PeopleDTO(IDTypeEnum.PASSPORT, "C0", "First", "Last",
+                                    "email"), new BigDecimal(2000000))))
+                    .toCompletableFuture().join();
+
+            assertEquals(EvaluationStatusEnum.APPROVED, batch.get(0).getStatus());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(Integer.valueOf(11), new JdbcTemplate(dataSource).queryForObject(
+                "SELECT COUNT(*) FROM CREDIT", Integer.class));
+        ExposureSummaryJob job = new ExposureSummaryJob();
+        job.setDataSource(dataSource);
+        ExposureDriftDTO drift = job.verify();
+        assertEquals(10, drift.getCheckedClients());
+        assertEquals(0, drift.getDriftedClients());
+    }
+
+    /**
+     * Test that an asynchronous evaluation rejected by a saturated executor
+     * returns a stage that completed exceptionally instead of throwing.
+     */
+    @Test
+    public void evaluateCreditRequestAsyncTest2() {
+        CountDownLatch release = new CountDownLatch(1);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L,
+                TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.execute(() -> awaitQuietly(release));
+        executor.execute(() -> awaitQuietly(release));
+        creditEvalService.setAsyncExecutor(executor);
+        try {
+            CompletableFuture<EvaluationResultDTO> result = creditEvalService
+                    .evaluateCreditRequestAsync(new CreditRequestDTO(new PeopleDTO(
+                            IDTypeEnum.PASSPORT, "BUSY1", "First", "Last", "email"),
+                            new BigDecimal(1000000)))
+                    .toCompletableFuture();
+            result.join();
+            fail("The saturated executor should reject the evaluation.");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Test that credits approved by concurrent evaluations are committed in
+     * groups, and that the exposure summaries add up.
+     */
+    @Test
+    public void groupCommitTest1() {
+        ServiceMetrics serviceMetrics = new ServiceMetrics();
+        creditEvalService.setServiceMetrics(serviceMetrics);
+        creditEvalService.setGroupCommitMaxBatchSize(8);
+        creditEvalService.setGroupCommitMaxDelayMillis(20);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<CompletableFuture<EvaluationResultDTO>> results = new ArrayList<>();
+            for (int i = 0; i < 24; i++) {
+                CreditRequestDTO requestDTO = new CreditRequestDTO(new PeopleDTO(
+                        IDTypeEnum.PASSPORT, "C" + i, "First", "Last", "email"),
+                        new BigDecimal(3000000));
+                results.add(CompletableFuture.supplyAsync(
+                        () -> creditEvalService.evaluateCreditRequest(requestDTO),
+                        executor));
+            }
+            for (CompletableFuture<EvaluationResultDTO> result : results) {
+                assertEquals(EvaluationStatusEnum.APPROVED, result.join().getStatus());
+            }
+        } finally {
+            executor.shutdownNow();
+            creditEvalService.shutdown();
+        }
+
+        assertEquals(Integer.valueOf(24), new JdbcTemplate(dataSource).queryForObject(
+                "SELECT COUNT(*) FROM CREDIT", Integer.class));
+        assertEquals(24L, serviceMetrics.getGroupCommittedCredits());
+        assertTrue(serviceMetrics.getCount(TimedOperationEnum.GROUP_COMMIT) < 24L);
+        ExposureSummaryJob job = new ExposureSummaryJob();
+        job.setDataSource(dataSource);
+        ExposureDriftDTO drift = job.verify();
+        assertEquals(24, drift.getCheckedClients());
+        assertEquals(0, drift.getDriftedClients());
+    }
+
+    /**
+     * Test that the retries of a request with an idempotency key get the
+     * original decision without new credits nor credit firm calls, also when
+     * they are concurrent and when the decision is only found in CREDIT.
+     */
+    @Test
+    public void idempotencyTest1() {
+        AtomicInteger firmCalls = new AtomicInteger();
+        setInternalState(creditEvalService, "creditFirmABC",
+                (ICreditFirmABC) (idType, clientId) -> {
+                    firmCalls.incrementAndGet();
+                    return RiskTypeEnum.NONE;
+                });
+        CreditRequestDTO requestDTO = new CreditRequestDTO(new PeopleDTO(
+                IDTypeEnum.PASSPORT, "ABC123", "Homer", "Simpson",
+                "homer@springfield.com"), new BigDecimal(2000000), "request-1");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<CompletableFuture<EvaluationResultDTO>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < 8; i++) {
+                results.add(CompletableFuture.supplyAsync(
+                        () -> creditEvalService.evaluateCreditRequest(requestDTO),
+                        executor));
+            }
+            for (CompletableFuture<EvaluationResultDTO> result : results) {
+                assertEquals(results.get(0).join(), result.join());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        EvaluationResultDTO original = results.get(0).join();
+        assertEquals(EvaluationStatusEnum.APPROVED, original.getStatus());
+        assertEquals(1, firmCalls.get());
+
+        creditEvalService.setDecisionCacheMaximumSize(10);
+        List<EvaluationResultDTO> batch = creditEvalService.evaluateCreditRequests(
+                Arrays.asList(requestDTO, new CreditRequestDTO(new PeopleDTO(
+                        IDTypeEnum.PASSPORT, "XYZ789", "Marge", "Simpson",
+                        "marge@springfield.com"), new BigDecimal(1000000)), requestDTO));
+
+        assertEquals(3, batch.size());
+        assertEquals(EvaluationStatusEnum.APPROVED, batch.get(0).getStatus());
+        assertEquals(original.getClientId(), batch.get(0).getClientId());
+        assertEquals(0, original.getQuota().compareTo(batch.get(0).getQuota()));
+        assertEquals("XYZ789", batch.get(1).getRequestDTO().getPeopleDTO().getId());
+        assertEquals(batch.get(0), batch.get(2));
+        assertEquals(2, firmCalls.get());
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM CREDIT WHERE clientId = ?", Integer.class,
+                original.getClientId()));
+        assertEquals("request-1", jdbcTemplate.queryForObject(
+                "SELECT idempotencyKey FROM CREDIT WHERE clientId = ?", String.class,
+                original.getClientId()));
+    }
+
+    /**
+     * Test that a credit whose idempotency key was committed meanwhile by
+     * another instance does not fail the other credits of its group, and gets
+     * the decision of the other instance.
+     */
+    @Test
+    public void groupCommitTest2() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        setInternalState(creditEvalService, "creditFirmABC",
+                (ICreditFirmABC) (idType, clientId) -> {
+                    if ("DUP".equals(clientId)) {
+                        jdbcTemplate.update("INSERT INTO CREDIT (clientId, creditValue, "
+                                + "approvalDate, idempotencyKey) SELECT id, 1234, "
+                                + "CURRENT_DATE, 'dup-key' FROM CLIENT WHERE clientId = ?",
+                                clientId);
+                    }
+                    return RiskTypeEnum.NONE;
+                });
+        creditEvalService.setGroupCommitMaxBatchSize(8);
+        creditEvalService.setGroupCommitMaxDelayMillis(200);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<CompletableFuture<EvaluationResultDTO>> results = new ArrayList<>();
+        try {
+            for (String id : Arrays.asList("G1", "G2", "DUP", "G3")) {
+                CreditRequestDTO requestDTO = new CreditRequestDTO(new PeopleDTO(
+                        IDTypeEnum.PASSPORT, id, "First", "Last", "email"),
+                        new BigDecimal(1000000), "DUP".equals(id) ? "dup-key" : null);
+                results.add(CompletableFuture.supplyAsync(
+                        () -> creditEvalService.evaluateCreditRequest(requestDTO),
+                        executor));
+            }
+            for (CompletableFuture<EvaluationResultDTO> result : results) {
+                assertEquals(EvaluationStatusEnum.APPROVED, result.join().getStatus());
+            }
+        } finally {
+            executor.shutdownNow();
+            creditEvalService.shutdown();
+        }
+
+        assertEquals(0, new BigDecimal(1234).compareTo(results.get(2).join().getQuota()));
+        assertEquals(Integer.valueOf(4), jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM CREDIT", Integer.class));
+        assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM CREDIT WHERE idempotencyKey = 'dup-key'",
+                Integer.class));
+    }
+
+    /**
+     * Test that a credit paid by concurrent calls is moved once from the open
+     * credits to the paid ones in the exposure summary.
+     * @throws Exception if a payment fails.
+     */
+    @Test
+    public void markCreditPaidTest1() throws Exception {
+        EvaluationResultDTO resultDTO = creditEvalService.evaluateCreditRequest(
+                new CreditRequestDTO(new PeopleDTO(IDTypeEnum.PASSPORT, "PAY1", "First",
+                        "Last", "email"), new BigDecimal(2000000)));
+        assertEquals(EvaluationStatusEnum.APPROVED, resultDTO.getStatus());
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        Map<String, Object> credit = jdbcTemplate.queryForMap(
+                "SELECT id, creditValue FROM CREDIT WHERE clientId = ?",
+                resultDTO.getClientId());
+        Long creditId = ((Number) credit.get("id")).longValue();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<CompletableFuture<Boolean>> payments = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            payments.add(CompletableFuture.supplyAsync(
+                    () -> creditEvalService.markCreditPaid(creditId), executor));
+        }
+        int paid = 0;
+        for (CompletableFuture<Boolean> payment : payments) {
+            paid += payment.get() ? 1 : 0;
+        }
+        executor.shutdown();
+
+        assertEquals(1, paid);
+        assertFalse(creditEvalService.markCreditPaid(creditId));
+        Map<String, Object> summary = jdbcTemplate.queryForMap(
+                "SELECT maxPaidCredit, openCreditTotal, openCreditCount "
+                        + "FROM CLIENT_EXPOSURE WHERE clientId = ?",
+                resultDTO.getClientId());
+        assertEquals(0, ((BigDecimal) credit.get("creditValue")).compareTo(
+                (BigDecimal) summary.get("maxPaidCredit")));
+        assertEquals(0, BigDecimal.ZERO.compareTo(
+                (BigDecimal) summary.get("openCreditTotal")));
+        assertEquals(0, ((Number) summary.get("openCreditCount")).intValue());
+        ExposureSummaryJob job = new ExposureSummaryJob();
+        job.setDataSource(dataSource);
+        assertEquals(0, job.verify().getDriftedClients());
+    }
+
+    /**
+     * Test that a credit firm call slower than the deadline fails the risk
+     * analysis when the deadline expires, with the expired wait as its cause.
+     * @throws InterruptedException if the test is interrupted.
+     */
+    @Test
+    public void riskAnalysisTest1() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        setInternalState(creditEvalService, "creditFirmABC", (ICreditFirmABC)
+                (idType, clientId) -> {
+                    awaitQuietly(release);
+                    return RiskTypeEnum.NONE;
+                });
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        creditEvalService.setRiskAnalysisExecutor(executor);
+        creditEvalService.setRiskAnalysisTimeoutMillis(200);
+        long start = System.nanoTime();
+        try {
+            creditEvalService.evaluateCreditRequest(new CreditRequestDTO(new PeopleDTO(
+                    IDTypeEnum.PASSPORT, "SLOW1", "First", "Last", "email"),
+                    new BigDecimal(1000000)));
+            fail("The risk analysis deadline should expire.");
+        } catch (RiskAnalysisException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                is(lessThan(5000L)));
+    }
+
+    /**
+     * Test that a saturated risk analysis executor fails the risk analysis at
+     * once instead of running the credit firm call in the caller thread.
+     * @throws InterruptedException if the test is interrupted.
+     */
+    @Test
+    public void riskAnalysisTest2() throws InterruptedException {
+        AtomicInteger firmCalls = new AtomicInteger();
+        setInternalState(creditEvalService, "creditFirmABC", (ICreditFirmABC)
+                (idType, clientId) -> {
+                    firmCalls.incrementAndGet();
+                    return RiskTypeEnum.NONE;
+                });
+        CountDownLatch release = new CountDownLatch(1);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L,
+                TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.execute(() -> awaitQuietly(release));
+        executor.execute(() -> awaitQuietly(release));
+        creditEvalService.setRiskAnalysisExecutor(executor);
+        try {
+            creditEvalService.evaluateCreditRequest(new CreditRequestDTO(new PeopleDTO(
+                    IDTypeEnum.PASSPORT, "BUSY1", "First", "Last", "email"),
+                    new BigDecimal(1000000)));
+            fail("The saturated executor should reject the risk analysis.");
+        } catch (RiskAnalysisException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+        assertEquals(0, firmCalls.get());
+    }
+
+    /**
+     * Test that evaluations of a client that share its credit firm lookup each
+     * read the exposure of the client, so a credit committed while the credit
+     * firm answers is taken into account by all of them.
+     * @throws Exception if an evaluation fails.
+     */
+    @Test
+    public void riskAnalysisTest3() throws Exception {
+        CountDownLatch called = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        setInternalState(creditEvalService, "creditFirmABC", (ICreditFirmABC)
+                (idType, clientId) -> {
+                    called.countDown();
+                    awaitQuietly(release);
+                    return RiskTypeEnum.NONE;
+                });
+        CreditRequestDTO requestDTO = new CreditRequestDTO(new PeopleDTO(
+                IDTypeEnum.PASSPORT, "SHARED1", "First", "Last", "email"),
+                new BigDecimal(2000000));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<EvaluationResultDTO> first = executor.submit(
+                    () -> creditEvalService.evaluateCreditRequest(requestDTO));
+            called.await();
+            Future<EvaluationResultDTO> second = executor.submit(
+                    () -> creditEvalService.evaluateCreditRequest(requestDTO));
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            Long clientId = jdbcTemplate.queryForObject(
+                    "SELECT id FROM CLIENT WHERE clientId = 'SHARED1'", Long.class);
+            jdbcTemplate.update("INSERT INTO CREDIT (clientId, creditValue, "
+                    + "approvalDate) VALUES (?, 10000000, CURRENT_DATE)", clientId);
+            jdbcTemplate.update("INSERT INTO CLIENT_EXPOSURE (clientId, "
+                    + "openCreditTotal, openCreditCount, lastSalary) "
+                    + "VALUES (?, 10000000, 1, 2000000)", clientId);
+            release.countDown();
+
+            assertEquals(EvaluationStatusEnum.DECLINED, first.get().getStatus());
+            assertEquals(EvaluationStatusEnum.DECLINED, second.get().getStatus());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Create a client with an open credit.
+     */
+    private void setupClientWithCredit() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute(
+                "INSERT INTO CLIENT (typeId, clientId, firstName, lastName, email) "
+                        + "VALUES ('passport', 'ABC123', 'Homer', 'Simpson', "
+                        + "'homer@springfield.com')");
+        jdbcTemplate.execute(
+                "INSERT INTO CREDIT (clientId, creditValue, approvalDate, paidDate) "
+                        + "SELECT id, 200000, DATE '2015-01-01', NULL FROM CLIENT "
+                        + "WHERE clientId = 'ABC123'");
+    }
+
+    /**
+     * Wait for a latch, returning early when interrupted.
+     * @param latch Latch.
+     */
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
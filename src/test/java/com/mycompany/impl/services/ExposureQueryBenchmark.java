@@ -0,0 +1,262 @@
+package com.mycompany.impl.services;
+
+import com.mycompany.api.dto.ExposureDTO;
+import common.ObjectBuilder;
+import common.TestContextConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNoException;
+import static org.junit.Assume.assumeTrue;
+import static org.powermock.reflect.Whitebox.invokeMethod;
+
+/**
+ * Compare the two aggregate queries that used to recover a client exposure with
+ * the single pass query and with the exposure summary lookup, on clients with
+ * long credit histories. It reports the round trips and the rows examined by
+ * MySQL (Handler_read_* session counters), and logs them.
+ * It is not part of the default test run, execute it with
+ * mvn test -Dtest=ExposureQueryBenchmark
+ * It is skipped when the test database is not a reachable MySQL server.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = TestContextConfiguration.class)
+@WebAppConfiguration
+public class ExposureQueryBenchmark {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(ExposureQueryBenchmark.class);
+
+    /**
+     * Previous SQL query to recover the maximum past loan given to a client.
+     */
+    private static final String RECOVER_MAX_PAST_LOAN =
+            "SELECT COALESCE (MAX(creditValue), 0) FROM CREDIT "
+                    + "WHERE paidDate IS NOT NULL AND clientId = ?";
+
+    /**
+     * Previous SQL query to recover the total amount of loans given to a client.
+     */
+    private static final String RECOVER_TOTAL_CURRENT_LOANS =
+            "SELECT COALESCE (SUM(creditValue), 0) FROM CREDIT "
+                    + "WHERE paidDate IS NULL AND clientId = ?";
+
+    /**
+     * SQL query to read the session counters.
+     */
+    private static final String SESSION_STATUS =
+            "SHOW SESSION STATUS WHERE Variable_name IN ('Com_select', "
+                    + "'Handler_read_first', 'Handler_read_key', 'Handler_read_next', "
+                    + "'Handler_read_rnd_next')";
+
+    /**
+     * Number of clients.
+     */
+    private static final int CLIENTS = 20;
+
+    /**
+     * Number of credits of each client.
+     */
+    private static final int CREDITS_PER_CLIENT = 2000;
+
+    /**
+     * Number of times each client exposure is recovered.
+     */
+    private static final int ITERATIONS = 50;
+
+    /**
+     * Object builder.
+     */
+    @Autowired
+    private ObjectBuilder objectBuilder;
+
+    /**
+     * Single connection so session counters see every statement.
+     */
+    private SingleConnectionDataSource dataSource;
+
+    /**
+     * JDBC client.
+     */
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * CreditEvalService implementation to be measured.
+     */
+    private CreditEvalServiceImpl creditEvalService;
+
+    /**
+     * Create clients with long credit histories, half of the credits are paid.
+     * @throws SQLException if a connection cannot be opened.
+     */
+    @Before
+    public void setupScenario() throws SQLException {
+        try (Connection connection = objectBuilder.getTestDataSource().getConnection()) {
+            assumeTrue("Session counters are read from MySQL", "MySQL".equals(
+                    connection.getMetaData().getDatabaseProductName()));
+        } catch (SQLException e) {
+            assumeNoException("MySQL cannot be reached", e);
+        }
+        dataSource = new SingleConnectionDataSource(
+                objectBuilder.getTestDataSource().getConnection(), true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        creditEvalService = objectBuilder.buildCreditEvalServiceImpl();
+        creditEvalService.setDataSource(dataSource);
+
+        List<Object[]> clients = new ArrayList<>();
+        List<Object[]> credits = new ArrayList<>();
+        Date approvalDate = Date.valueOf(LocalDate.of(2015, 1, 1));
+        Date paidDate = Date.valueOf(LocalDate.of(2015, 6, 1));
+        for (long clientId = 1; clientId <= CLIENTS; clientId++) {
+            clients.add(new Object[]{clientId, "passport", "BENCH" + clientId});
+            for (int credit = 0; credit < CREDITS_PER_CLIENT; credit++) {
+                credits.add(new Object[]{clientId, 1000 + credit, approvalDate,
+                        credit % 2 == 0 ? paidDate : null});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO CLIENT (id, typeId, clientId) "
+                + "VALUES (?, ?, ?)", clients);
+        jdbcTemplate.batchUpdate("INSERT INTO CREDIT (clientId, creditValue, "
+                + "approvalDate, paidDate) VALUES (?, ?, ?, ?)", credits);
+    }
+
+    /**
+     * Clean database data.
+     */
+    @After
+    public void tearDownDB() {
+        if (dataSource == null) {
+            return;
+        }
+        jdbcTemplate.execute("DELETE FROM CLIENT_EXPOSURE");
+        jdbcTemplate.execute("DELETE FROM CREDIT");
+        jdbcTemplate.execute("DELETE FROM CLIENT");
+
+        jdbcTemplate.execute("ALTER TABLE CREDIT AUTO_INCREMENT=1");
+        jdbcTemplate.execute("ALTER TABLE CLIENT AUTO_INCREMENT=1");
+        dataSource.destroy();
+    }
+
+    /**
+     * Measure both strategies and check the single pass query needs fewer
+     * round trips and examines no more rows, that the summary examines less rows,
+     * and that all of them return the same amounts.
+     * @throws Exception if the exposure lookup fails.
+     */
+    @Test
+    public void compareExposureQueries() throws Exception {
+        ExposureSummaryJob exposureSummaryJob = new ExposureSummaryJob();
+        exposureSummaryJob.setDataSource(objectBuilder.getTestDataSource());
+        exposureSummaryJob.rebuild();
+        for (long clientId = 1; clientId <= CLIENTS; clientId++) {
+            ExposureDTO exposureDTO = invokeMethod(creditEvalService, "getExposure",
+                    clientId);
+            assertEquals(0, jdbcTemplate.queryForObject(RECOVER_MAX_PAST_LOAN,
+                    BigDecimal.class, clientId).compareTo(exposureDTO.getMaxPastCredit()));
+            assertEquals(0, jdbcTemplate.queryForObject(RECOVER_TOTAL_CURRENT_LOANS,
+                    BigDecimal.class, clientId).compareTo(exposureDTO.getTotalCurrentLoans()));
+        }
+
+        Map<String, Long> before = measure(clientId -> {
+            jdbcTemplate.queryForObject(RECOVER_MAX_PAST_LOAN, BigDecimal.class, clientId);
+            jdbcTemplate.queryForObject(RECOVER_TOTAL_CURRENT_LOANS, BigDecimal.class,
+                    clientId);
+        });
+        Map<String, Long> singlePass = measure(clientId ->
+                invokeMethod(creditEvalService, "aggregateExposure", clientId));
+        Map<String, Long> summary = measure(clientId ->
+                invokeMethod(creditEvalService, "getExposure", clientId));
+
+        StringBuilder report = new StringBuilder(String.format("%-22s %15s %15s %15s",
+                "Exposure lookups x" + (CLIENTS * ITERATIONS), "two queries",
+                "single pass", "summary"));
+        for (String counter : before.keySet()) {
+            report.append(String.format("%n%-22s %15d %15d %15d", counter,
+                    before.get(counter), singlePass.get(counter), summary.get(counter)));
+        }
+        LOGGER.info("Exposure query counters:{}{}", System.lineSeparator(), report);
+
+        assertTrue(singlePass.get("Com_select") < before.get("Com_select"));
+        assertTrue(rowsExamined(singlePass) <= rowsExamined(before));
+        assertTrue(rowsExamined(summary) < rowsExamined(singlePass));
+    }
+
+    /**
+     * Run the lookup for every client and return the counters increment.
+     * @param lookup Exposure lookup strategy.
+     * @return the counters increment plus the elapsed milliseconds.
+     * @throws Exception if the lookup fails.
+     */
+    private Map<String, Long> measure(ExposureLookup lookup) throws Exception {
+        Map<String, Long> start = readSessionStatus();
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (long clientId = 1; clientId <= CLIENTS; clientId++) {
+                lookup.lookup(clientId);
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1000000L;
+        Map<String, Long> end = readSessionStatus();
+        end.replaceAll((counter, value) -> value - start.get(counter));
+        end.put("Elapsed millis", elapsedMillis);
+        return end;
+    }
+
+    /**
+     * @return the current session counters.
+     */
+    private Map<String, Long> readSessionStatus() {
+        Map<String, Long> status = new TreeMap<>();
+        jdbcTemplate.query(SESSION_STATUS, rs -> {
+            status.put(rs.getString(1), rs.getLong(2));
+        });
+        return status;
+    }
+
+    /**
+     * @param counters Counters increment.
+     * @return the rows examined by the storage engine.
+     */
+    private static long rowsExamined(Map<String, Long> counters) {
+        return counters.get("Handler_read_first") + counters.get("Handler_read_key")
+                + counters.get("Handler_read_next") + counters.get("Handler_read_rnd_next");
+    }
+
+    /**
+     * Exposure lookup strategy.
+     */
+    private interface ExposureLookup {
+
+        /**
+         * Recover the exposure of a client.
+         * @param clientId Client internal identifier.
+         * @throws Exception if the lookup fails.
+         */
+        void lookup(long clientId) throws Exception;
+    }
+}
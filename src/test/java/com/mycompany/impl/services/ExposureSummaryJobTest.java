@@ -0,0 +1,108 @@
+package com.mycompany.impl.services;
+
+import com.mycompany.api.client.ICreditFirmABC;
+import com.mycompany.api.dto.CreditRequestDTO;
+import com.mycompany.api.dto.EvaluationResultDTO;
+import com.mycompany.api.dto.ExposureDriftDTO;
+import com.mycompany.api.dto.IDTypeEnum;
+import com.mycompany.api.dto.PeopleDTO;
+import com.mycompany.api.dto.RiskTypeEnum;
+import common.ObjectBuilder;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.internal.util.reflection.Whitebox.setInternalState;
+
+/**
+ * Test the verification and repair of the exposure summaries on the embedded
+ * database.
+ */
+public class ExposureSummaryJobTest {
+
+    /**
+     * SQL query to recover the open credit total of a client summary.
+     */
+    private static final String RECOVER_OPEN_TOTAL =
+            "SELECT openCreditTotal FROM CLIENT_EXPOSURE WHERE clientId = ?";
+
+    /**
+     * Embedded data source.
+     */
+    private BasicDataSource dataSource;
+
+    /**
+     * Job to be tested.
+     */
+    private ExposureSummaryJob job;
+
+    /**
+     * Create the embedded database.
+     */
+    @Before
+    public void setupDB() {
+        dataSource = ObjectBuilder.getEmbeddedDataSource("exposure-summary");
+        job = new ExposureSummaryJob();
+        job.setDataSource(dataSource);
+        job.setParallelism(2);
+        job.setRangeSize(2);
+    }
+
+    /**
+     * Drop the embedded database.
+     * @throws SQLException if the pool cannot be closed.
+     */
+    @After
+    public void tearDownDB() throws SQLException {
+        ObjectBuilder.shutdownEmbeddedDataSource(dataSource);
+    }
+
+    /**
+     * Test that a summary with wrong amounts and a missing summary are
+     * reported and recomputed from the credits, and that a second run finds
+     * no drift.
+     */
+    @Test
+    public void rebuildTest1() {
+        CreditEvalServiceImpl creditEvalService =
+                ObjectBuilder.buildCreditEvalServiceImpl(dataSource);
+        setInternalState(creditEvalService, "creditFirmABC",
+                (ICreditFirmABC) (idType, clientId) -> RiskTypeEnum.NONE);
+        List<Long> clientIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            EvaluationResultDTO resultDTO = creditEvalService.evaluateCreditRequest(
+                    new CreditRequestDTO(new PeopleDTO(IDTypeEnum.PASSPORT, "C" + i,
+                            "First", "Last", "email"), new BigDecimal(1000000)));
+            clientIds.add(resultDTO.getClientId());
+        }
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        BigDecimal openTotal = jdbcTemplate.queryForObject(RECOVER_OPEN_TOTAL,
+                BigDecimal.class, clientIds.get(1));
+        jdbcTemplate.update("UPDATE CLIENT_EXPOSURE SET openCreditTotal = 1 "
+                + "WHERE clientId = ?", clientIds.get(1));
+        jdbcTemplate.update("DELETE FROM CLIENT_EXPOSURE WHERE clientId = ?",
+                clientIds.get(3));
+
+        ExposureDriftDTO drift = job.rebuild();
+
+        assertEquals(5, drift.getCheckedClients());
+        assertEquals(2, drift.getDriftedClients());
+        assertEquals(2, drift.getRepairedClients());
+        assertTrue(drift.getDriftedClientIds().contains(clientIds.get(1)));
+        assertTrue(drift.getDriftedClientIds().contains(clientIds.get(3)));
+        assertEquals(0, openTotal.compareTo(jdbcTemplate.queryForObject(
+                RECOVER_OPEN_TOTAL, BigDecimal.class, clientIds.get(1))));
+        assertEquals(0, openTotal.compareTo(jdbcTemplate.queryForObject(
+                RECOVER_OPEN_TOTAL, BigDecimal.class, clientIds.get(3))));
+        assertEquals(0, job.verify().getDriftedClients());
+    }
+}
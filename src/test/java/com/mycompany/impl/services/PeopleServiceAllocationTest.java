@@ -0,0 +1,163 @@
+package com.mycompany.impl.services;
+
+import com.mycompany.api.dto.ClientDTO;
+import com.mycompany.api.dto.IDTypeEnum;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measure the bytes allocated by the client read paths of the people service
+ * against the former queryForList based ones, on an embedded database and with
+ * the client cache disabled.
+ */
+public class PeopleServiceAllocationTest {
+
+    /**
+     * Former query of 'isClient'.
+     */
+    private static final String LIST_IS_CLIENT =
+            "SELECT clientId FROM CLIENT WHERE typeId = ? AND clientId = ?";
+
+    /**
+     * Former query of 'getClient'.
+     */
+    private static final String LIST_SELECT_CLIENT =
+            "SELECT id, typeid, clientId, firstName, lastName, email FROM CLIENT "
+                    + "WHERE typeId = ? AND clientId = ?";
+
+    /**
+     * Calls made before measuring, so the code under test is compiled.
+     */
+    private static final int WARMUP_CALLS = 20000;
+
+    /**
+     * Measured calls.
+     */
+    private static final int MEASURED_CALLS = 10000;
+
+    /**
+     * Logger of the JDBC client, its debug messages would hide the difference.
+     */
+    private final Logger jdbcLogger =
+            (Logger) LoggerFactory.getLogger("org.springframework.jdbc");
+
+    /**
+     * Level of the JDBC client logger before the test.
+     */
+    private Level jdbcLoggerLevel;
+
+    /**
+     * Embedded data source.
+     */
+    private SingleConnectionDataSource dataSource;
+
+    /**
+     * JDBC client.
+     */
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * People service implementation.
+     */
+    private PeopleServiceImpl peopleService;
+
+    /**
+     * Create the CLIENT table with a client.
+     */
+    @Before
+    public void setupDB() {
+        jdbcLoggerLevel = jdbcLogger.getLevel();
+        jdbcLogger.setLevel(Level.INFO);
+        dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:mem:allocation;MODE=MySQL", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE CLIENT (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "typeId VARCHAR(20) NOT NULL, clientId VARCHAR(100) NOT NULL, "
+                + "firstName VARCHAR(50), lastName VARCHAR(50), email VARCHAR(100), "
+                + "UNIQUE (typeId, clientId))");
+        jdbcTemplate.execute(
+                "INSERT INTO CLIENT (typeId, clientId, firstName, lastName, email) "
+                        + "VALUES ('passport', 'ABC123', 'Homer', 'Simpson', "
+                        + "'homer@springfield.com')");
+        peopleService = new PeopleServiceImpl();
+        peopleService.setDataSource(dataSource);
+        peopleService.setClientCacheTtlMillis(0L);
+    }
+
+    /**
+     * Drop the embedded database.
+     */
+    @After
+    public void tearDownDB() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        dataSource.destroy();
+        jdbcLogger.setLevel(jdbcLoggerLevel);
+    }
+
+    /**
+     * Test that the existence probe allocates less than a list of row maps.
+     */
+    @Test
+    public void isClientAllocationTest() {
+        long listBytes = bytesPerCall(() -> jdbcTemplate.queryForList(LIST_IS_CLIENT,
+                IDTypeEnum.PASSPORT.toValue(), "ABC123").size() == 1);
+        long probeBytes = bytesPerCall(
+                () -> peopleService.isClient(IDTypeEnum.PASSPORT, "ABC123"));
+        assertTrue(peopleService.isClient(IDTypeEnum.PASSPORT, "ABC123"));
+        assertTrue("isClient bytes per call: queryForList=" + listBytes + ", probe="
+                + probeBytes, probeBytes < listBytes);
+    }
+
+    /**
+     * Test that the row mapper allocates less than a list of row maps.
+     */
+    @Test
+    public void getClientAllocationTest() {
+        long listBytes = bytesPerCall(() -> {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    LIST_SELECT_CLIENT, IDTypeEnum.PASSPORT.toValue(), "ABC123");
+            Map<String, Object> map = rows.get(0);
+            return new ClientDTO((Long) map.get("id"), (String) map.get("typeId"),
+                    (String) map.get("clientId"), (String) map.get("firstName"),
+                    (String) map.get("lastName"), (String) map.get("email"));
+        });
+        long mapperBytes = bytesPerCall(
+                () -> peopleService.getClient(IDTypeEnum.PASSPORT, "ABC123"));
+        assertEquals("Simpson",
+                peopleService.getClient(IDTypeEnum.PASSPORT, "ABC123").get().getLastName());
+        assertTrue("getClient bytes per call: queryForList=" + listBytes
+                + ", row mapper=" + mapperBytes, mapperBytes < listBytes);
+    }
+
+    /**
+     * @param call Call to measure.
+     * @return the average number of bytes allocated by the current thread in a call.
+     */
+    private static long bytesPerCall(Supplier<?> call) {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            call.get();
+        }
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_CALLS; i++) {
+            call.get();
+        }
+        return (threadMXBean.getThreadAllocatedBytes(threadId) - before) / MEASURED_CALLS;
+    }
+}
@@ -0,0 +1,185 @@
+package com.mycompany.impl.services;
+
+import com.mycompany.api.dto.ClientDTO;
+import com.mycompany.api.dto.ClientKeyDTO;
+import com.mycompany.api.dto.IDTypeEnum;
+import com.mycompany.api.dto.PeopleDTO;
+import ch.qos.logback.classic.Logger;
+import common.ObjectBuilder;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure the client lookups of the people service on an embedded database,
+ * with and without the client cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PeopleServiceBenchmark {
+
+    /**
+     * Number of existing clients.
+     */
+    private static final int CLIENTS = 10000;
+
+    /**
+     * Number of clients of a bulk lookup.
+     */
+    private static final int BULK_SIZE = 100;
+
+    /**
+     * Time to live of a cached client, zero disables the cache.
+     */
+    @Param({"0", "3600000"})
+    private long clientCacheTtlMillis;
+
+    /**
+     * Embedded database.
+     */
+    private BasicDataSource database;
+
+    /**
+     * People service implementation.
+     */
+    private PeopleServiceImpl peopleService;
+
+    /**
+     * Existing people.
+     */
+    private PeopleDTO[] people;
+
+    /**
+     * Keys of the existing people, in bulk lookups.
+     */
+    private List<List<ClientKeyDTO>> bulks;
+
+    /**
+     * Next person looked up.
+     */
+    private int next;
+
+    /**
+     * Next bulk lookup.
+     */
+    private int nextBulk;
+
+    /**
+     * Create the clients.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        // The debug messages of each statement would be measured too.
+        ((Logger) LoggerFactory.getLogger("org.springframework.jdbc"))
+                .setLevel(ch.qos.logback.classic.Level.INFO);
+        database = ObjectBuilder.getEmbeddedDataSource("people-benchmark");
+        peopleService = ObjectBuilder.buildPeopleServiceImpl(database);
+        peopleService.setClientCacheTtlMillis(clientCacheTtlMillis);
+        people = new PeopleDTO[CLIENTS];
+        bulks = new ArrayList<>();
+        List<PeopleDTO> created = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            IDTypeEnum idType = i % 2 == 0 ? IDTypeEnum.PASSPORT : IDTypeEnum.NATIONAL_ID;
+            people[i] = new PeopleDTO(idType, "BENCH" + i, "Homer", "Simpson",
+                    "homer@springfield.com");
+            created.add(people[i]);
+            if (i % BULK_SIZE == 0) {
+                bulks.add(new ArrayList<>(BULK_SIZE));
+            }
+            bulks.get(bulks.size() - 1).add(ClientKeyDTO.of(people[i]));
+        }
+        peopleService.createClients(created);
+    }
+
+    /**
+     * Drop the embedded database.
+     * @throws SQLException if the pool cannot be closed.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        ObjectBuilder.shutdownEmbeddedDataSource(database);
+    }
+
+    /**
+     * @return the existence of a client.
+     */
+    @Benchmark
+    public Boolean isClient() {
+        PeopleDTO person = nextPerson();
+        return peopleService.isClient(person.getIdType(), person.getId());
+    }
+
+    /**
+     * @return a client.
+     */
+    @Benchmark
+    public Optional<ClientDTO> getClient() {
+        PeopleDTO person = nextPerson();
+        return peopleService.getClient(person.getIdType(), person.getId());
+    }
+
+    /**
+     * @return an existing client, through the get or create path of the credit
+     * requests.
+     */
+    @Benchmark
+    public ClientDTO getOrCreateClient() {
+        return peopleService.getOrCreateClient(nextPerson());
+    }
+
+    /**
+     * @return several clients with a single lookup.
+     */
+    @Benchmark
+    public Map<ClientKeyDTO, ClientDTO> getClients() {
+        List<ClientKeyDTO> keys = bulks.get(nextBulk);
+        nextBulk = (nextBulk + 1) % bulks.size();
+        return peopleService.getClients(keys);
+    }
+
+    /**
+     * @return the next existing person, round robin.
+     */
+    private PeopleDTO nextPerson() {
+        PeopleDTO person = people[next];
+        next = (next + 1) % CLIENTS;
+        return person;
+    }
+
+    /**
+     * Run the benchmark.
+     * @param args Unused.
+     * @throws RunnerException if the benchmark fails.
+     */
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PeopleServiceBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
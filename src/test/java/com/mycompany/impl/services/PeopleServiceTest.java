@@ -1,6 +1,7 @@
 package com.mycompany.impl.services;
 
 import com.mycompany.api.dto.ClientDTO;
+import com.mycompany.api.dto.ClientKeyDTO;
 import com.mycompany.api.dto.IDTypeEnum;
 import com.mycompany.api.dto.PeopleDTO;
 import com.mycompany.exception.EntityExistsException;
@@ -20,6 +21,7 @@ import org.springframework.test.context.web.WebAppConfiguration;
 
 import java.sql.Types;
 import java.time.LocalDate;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -165,4 +167,101 @@ public class PeopleServiceTest {
         Optional<ClientDTO> opt = peopleService.getClient(IDTypeEnum.PASSPORT, "000");
         assertFalse(opt.isPresent());
     }
+
+    /**
+     * Test 'getOrCreateClient' method when the client doesn't exist.
+     */
+    @Test
+    public void getOrCreateClientTest1() {
+        PeopleDTO peopleDTO = new PeopleDTO(IDTypeEnum.PASSPORT, "7890", "Luke",
+                "Skywalker", "luke@tatooine.com");
+        ClientDTO clientDTO = peopleService.getOrCreateClient(peopleDTO);
+        Optional<ClientDTO> opt = peopleService.getClient(IDTypeEnum.PASSPORT, "7890");
+        assertTrue(opt.isPresent());
+        assertThat(clientDTO, is(equalTo(opt.get())));
+    }
+
+    /**
+     * Test 'getOrCreateClient' method when the client already exists.
+     */
+    @Test
+    public void getOrCreateClientTest2() {
+        setupScenario1();
+        PeopleDTO peopleDTO = new PeopleDTO(IDTypeEnum.PASSPORT, "ABC123", "Homer",
+                "Simpson", "homer@springfield.com");
+        ClientDTO clientDTO = peopleService.getOrCreateClient(peopleDTO);
+        assertEquals(Long.valueOf(1L), clientDTO.getId());
+        assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM CLIENT", Integer.class));
+    }
+
+    /**
+     * Test that 'getOrCreateClient' answers an existing client from the cache or
+     * the SELECT, without writing it again.
+     */
+    @Test
+    public void getOrCreateClientTest3() {
+        setupScenario1();
+        PeopleDTO peopleDTO = new PeopleDTO(IDTypeEnum.PASSPORT, "ABC123", "Homer",
+                "Simpson", "homer@springfield.com");
+        ClientDTO loaded = peopleService.getOrCreateClient(peopleDTO);
+        long misses = peopleService.getClientCacheMissCount();
+        jdbcTemplate.execute("DELETE FROM CLIENT");
+
+        ClientDTO cached = peopleService.getOrCreateClient(peopleDTO);
+
+        assertThat(cached, is(equalTo(loaded)));
+        assertEquals(misses, peopleService.getClientCacheMissCount());
+        assertEquals(Integer.valueOf(0), jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM CLIENT", Integer.class));
+    }
+
+    /**
+     * Test that 'getClient' and 'isClient' answer from the cache until the client
+     * is invalidated.
+     */
+    @Test
+    public void getClientTest3() {
+        setupScenario1();
+        assertTrue(peopleService.getClient(IDTypeEnum.PASSPORT, "ABC123").isPresent());
+        jdbcTemplate.execute("DELETE FROM CLIENT");
+        assertTrue(peopleService.getClient(IDTypeEnum.PASSPORT, "ABC123").isPresent());
+        assertTrue(peopleService.isClient(IDTypeEnum.PASSPORT, "ABC123"));
+        peopleService.invalidateClient(IDTypeEnum.PASSPORT, "ABC123");
+        assertFalse(peopleService.getClient(IDTypeEnum.PASSPORT, "ABC123").isPresent());
+        assertFalse(peopleService.isClient(IDTypeEnum.PASSPORT, "ABC123"));
+    }
+
+    /**
+     * Test that a client cached by 'createClient' has the same id type as the
+     * one read from the database.
+     * @throws EntityExistsException if the client already exists.
+     */
+    @Test
+    public void getClientTest4() throws EntityExistsException {
+        peopleService.createClient(new PeopleDTO(IDTypeEnum.NATIONAL_ID, "N123", "Homer",
+                "Simpson", "homer@springfield.com"));
+        ClientDTO cached = peopleService.getClient(IDTypeEnum.NATIONAL_ID, "N123").get();
+        peopleService.invalidateClient(IDTypeEnum.NATIONAL_ID, "N123");
+        ClientDTO read = peopleService.getClient(IDTypeEnum.NATIONAL_ID, "N123").get();
+
+        assertEquals(IDTypeEnum.NATIONAL_ID.toValue(), cached.getTypeId());
+        assertEquals(IDTypeEnum.NATIONAL_ID, IDTypeEnum.forValue(cached.getTypeId()));
+        assertEquals(read, cached);
+    }
+
+    /**
+     * Test that 'getClients' returns a client under the requested key when it is
+     * stored with another case, as the collation of CLIENT.clientId ignores it.
+     */
+    @Test
+    public void getClientsTest1() {
+        setupScenario1();
+        ClientKeyDTO key = new ClientKeyDTO(IDTypeEnum.PASSPORT, "abc123");
+        Map<ClientKeyDTO, ClientDTO> clients =
+                peopleService.getClients(Collections.singletonList(key));
+
+        assertEquals(1, clients.size());
+        assertThat(clients.get(key).getClientId(), is("ABC123"));
+    }
 }
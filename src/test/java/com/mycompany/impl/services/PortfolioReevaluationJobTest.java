@@ -0,0 +1,246 @@
+package com.mycompany.impl.services;
+
+import com.mycompany.api.client.ICreditFirmABC;
+import com.mycompany.api.dto.IDTypeEnum;
+import com.mycompany.api.dto.ReevaluationReportDTO;
+import com.mycompany.api.dto.RiskTypeEnum;
+import com.mycompany.impl.quota.QuotaEngine;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test the portfolio re-evaluation job on an embedded database.
+ */
+public class PortfolioReevaluationJobTest {
+
+    /**
+     * Number of clients of the portfolio.
+     */
+    private static final int CLIENTS = 2500;
+
+    /**
+     * Risk types of the clients, by client id.
+     */
+    private static final RiskTypeEnum[] RISKS = RiskTypeEnum.values();
+
+    /**
+     * Embedded data source.
+     */
+    private DriverManagerDataSource dataSource;
+
+    /**
+     * JDBC client.
+     */
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Quota engine.
+     */
+    private final QuotaEngine quotaEngine = new QuotaEngine();
+
+    /**
+     * Create the tables of the job with a portfolio of clients.
+     */
+    @Before
+    public void setupDB() {
+        dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:reevaluation;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE CLIENT (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "typeId VARCHAR(50) NOT NULL, clientId VARCHAR(50) NOT NULL, "
+                + "firstName VARCHAR(50), lastName VARCHAR(50), email VARCHAR(50), "
+                + "UNIQUE (typeId, clientId))");
+        jdbcTemplate.execute("CREATE TABLE CREDIT (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "clientId BIGINT NOT NULL, creditValue DECIMAL NOT NULL, "
+                + "approvalDate DATE NOT NULL, paidDate DATE)");
+        jdbcTemplate.execute("CREATE INDEX IND_CREDIT_1 ON CREDIT "
+                + "(clientId, paidDate, creditValue)");
+        jdbcTemplate.execute("CREATE TABLE CLIENT_EXPOSURE (clientId BIGINT PRIMARY KEY, "
+                + "maxPaidCredit DECIMAL NOT NULL DEFAULT 0, "
+                + "openCreditTotal DECIMAL NOT NULL DEFAULT 0, "
+                + "openCreditCount INT NOT NULL DEFAULT 0, "
+                + "version BIGINT NOT NULL DEFAULT 0, lastSalary DECIMAL)");
+        jdbcTemplate.execute("CREATE TABLE CLIENT_QUOTA (clientId BIGINT PRIMARY KEY, "
+                + "riskType VARCHAR(50), availableQuota DECIMAL NOT NULL, "
+                + "policyVersion BIGINT NOT NULL, evaluationDate DATE NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE QUOTA_JOB_CHECKPOINT ("
+                + "rangeStart BIGINT PRIMARY KEY, rangeEnd BIGINT NOT NULL, "
+                + "lastClientId BIGINT NOT NULL, "
+                + "finished BOOLEAN NOT NULL DEFAULT FALSE)");
+
+        List<Object[]> clients = new ArrayList<>();
+        List<Object[]> credits = new ArrayList<>();
+        List<Object[]> exposures = new ArrayList<>();
+        Date approvalDate = Date.valueOf(LocalDate.of(2015, 1, 1));
+        Date paidDate = Date.valueOf(LocalDate.of(2015, 6, 1));
+        for (long id = 1; id <= CLIENTS; id++) {
+            String typeId = id % 2 == 0 ? IDTypeEnum.PASSPORT.toValue()
+                    : IDTypeEnum.NATIONAL_ID.name();
+            clients.add(new Object[]{id, typeId, "C" + id});
+            if (id % 3 != 0) {
+                credits.add(new Object[]{id, 1000 * (id % 7), approvalDate, paidDate});
+                credits.add(new Object[]{id, 100 * (id % 5), approvalDate, null});
+                credits.add(new Object[]{id, 200, approvalDate, null});
+            }
+            if (id % 4 != 0) {
+                exposures.add(new Object[]{id, 500 * (id % 11)});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO CLIENT (id, typeId, clientId) "
+                + "VALUES (?, ?, ?)", clients);
+        jdbcTemplate.batchUpdate("INSERT INTO CREDIT (clientId, creditValue, "
+                + "approvalDate, paidDate) VALUES (?, ?, ?, ?)", credits);
+        jdbcTemplate.batchUpdate("INSERT INTO CLIENT_EXPOSURE (clientId, lastSalary) "
+                + "VALUES (?, ?)", exposures);
+    }
+
+    /**
+     * Drop the embedded database.
+     */
+    @After
+    public void tearDownDB() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    /**
+     * Test that every client gets the quota of the engine.
+     */
+    @Test
+    public void runTest1() {
+        ReevaluationReportDTO report = buildJob(new RiskByClientId()).run();
+
+        assertFalse(report.isResumed());
+        assertEquals(3, report.getRanges());
+        assertEquals(CLIENTS, report.getEvaluatedClients());
+        assertQuotas();
+        assertEquals(Integer.valueOf(0), jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM QUOTA_JOB_CHECKPOINT WHERE finished = FALSE",
+                Integer.class));
+    }
+
+    /**
+     * Test that a run that fails is resumed from its checkpoints, and that the
+     * next run starts over.
+     */
+    @Test
+    public void runTest2() {
+        AtomicInteger calls = new AtomicInteger();
+        RiskByClientId risks = new RiskByClientId();
+        PortfolioReevaluationJob failingJob = buildJob((idType, clientId) -> {
+            if (calls.incrementAndGet() > 1500) {
+                throw new IllegalStateException("Credit firm is down.");
+            }
+            return risks.getRiskByClient(idType, clientId);
+        });
+        failingJob.setParallelism(1);
+        try {
+            failingJob.run();
+            fail("The credit firm failure should stop the job.");
+        } catch (IllegalStateException e) {
+            assertEquals("Credit firm is down.", e.getMessage());
+        }
+        Integer written = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM CLIENT_QUOTA",
+                Integer.class);
+        assertEquals(Integer.valueOf(1500), written);
+        jdbcTemplate.update("UPDATE CLIENT_QUOTA SET availableQuota = -1");
+
+        ReevaluationReportDTO resumed = buildJob(risks).run();
+
+        assertTrue(resumed.isResumed());
+        assertEquals(2, resumed.getRanges());
+        assertEquals(CLIENTS - written, resumed.getEvaluatedClients());
+        assertEquals(written, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM CLIENT_QUOTA WHERE availableQuota = -1",
+                Integer.class));
+
+        ReevaluationReportDTO restarted = buildJob(risks).run();
+
+        assertFalse(restarted.isResumed());
+        assertEquals(CLIENTS, restarted.getEvaluatedClients());
+        assertQuotas();
+    }
+
+    /**
+     * Test the id types stored as text and as name.
+     */
+    @Test
+    public void idTypeOfTest() {
+        assertEquals(IDTypeEnum.PASSPORT, PortfolioReevaluationJob.idTypeOf("passport"));
+        assertEquals(IDTypeEnum.NATIONAL_ID,
+                PortfolioReevaluationJob.idTypeOf("national id"));
+        assertEquals(IDTypeEnum.NATIONAL_ID,
+                PortfolioReevaluationJob.idTypeOf("NATIONAL_ID"));
+        assertNull(PortfolioReevaluationJob.idTypeOf("driving license"));
+    }
+
+    /**
+     * Build a job on the embedded database.
+     * @param creditFirmABC Credit firm client.
+     * @return the job.
+     */
+    private PortfolioReevaluationJob buildJob(ICreditFirmABC creditFirmABC) {
+        PortfolioReevaluationJob job = new PortfolioReevaluationJob();
+        job.setDataSource(dataSource);
+        job.setCreditFirmABC(creditFirmABC);
+        job.setQuotaEngine(quotaEngine);
+        job.setRangeSize(1000L);
+        job.setBatchSize(100);
+        job.setFetchSize(100);
+        return job;
+    }
+
+    /**
+     * Check the stored quotas against the quota engine.
+     */
+    private void assertQuotas() {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT c.id, e.lastSalary, q.riskType, q.availableQuota, "
+                        + "(SELECT COALESCE(MAX(creditValue), 0) FROM CREDIT "
+                        + "WHERE clientId = c.id AND paidDate IS NOT NULL) AS maxPaid, "
+                        + "(SELECT COALESCE(SUM(creditValue), 0) FROM CREDIT "
+                        + "WHERE clientId = c.id AND paidDate IS NULL) AS openTotal "
+                        + "FROM CLIENT c "
+                        + "LEFT JOIN CLIENT_EXPOSURE e ON e.clientId = c.id "
+                        + "LEFT JOIN CLIENT_QUOTA q ON q.clientId = c.id");
+        assertEquals(CLIENTS, rows.size());
+        for (Map<String, Object> row : rows) {
+            long id = ((Number) row.get("ID")).longValue();
+            BigDecimal salary = (BigDecimal) row.get("LASTSALARY");
+            RiskTypeEnum risk = RISKS[(int) (id % RISKS.length)];
+            BigDecimal expected = quotaEngine.evaluate((BigDecimal) row.get("MAXPAID"),
+                    (BigDecimal) row.get("OPENTOTAL"),
+                    salary == null ? BigDecimal.ZERO : salary, risk);
+            assertEquals("Client " + id, risk.name(), row.get("RISKTYPE"));
+            assertEquals("Client " + id, 0,
+                    expected.compareTo((BigDecimal) row.get("AVAILABLEQUOTA")));
+        }
+    }
+
+    /**
+     * Credit firm stand-in whose risk type depends on the client id.
+     */
+    private static class RiskByClientId implements ICreditFirmABC {
+
+        @Override
+        public RiskTypeEnum getRiskByClient(IDTypeEnum idType, String clientId) {
+            return RISKS[(int) (Long.parseLong(clientId.substring(1)) % RISKS.length)];
+        }
+    }
+}
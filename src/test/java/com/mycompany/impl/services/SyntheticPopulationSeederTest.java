@@ -0,0 +1,105 @@
+package com.mycompany.impl.services;
+
+import com.mycompany.api.dto.ExposureDriftDTO;
+import common.ObjectBuilder;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the synthetic population seeder on an embedded database.
+ */
+public class SyntheticPopulationSeederTest {
+
+    /**
+     * Embedded data source.
+     */
+    private BasicDataSource dataSource;
+
+    /**
+     * JDBC client.
+     */
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Create the embedded database.
+     */
+    @Before
+    public void setupDB() {
+        dataSource = ObjectBuilder.getEmbeddedDataSource("seeder");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Drop the embedded database.
+     * @throws SQLException if the pool cannot be closed.
+     */
+    @After
+    public void tearDownDB() throws SQLException {
+        ObjectBuilder.shutdownEmbeddedDataSource(dataSource);
+    }
+
+    /**
+     * Test that the population has the requested size, skewed credit histories
+     * and exposure summaries that match its credits.
+     */
+    @Test
+    public void seedTest1() {
+        long credits = buildSeeder(2000L).seed();
+
+        assertEquals(Long.valueOf(2000), jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM CLIENT", Long.class));
+        assertEquals(Long.valueOf(credits), jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM CREDIT", Long.class));
+        List<Integer> lengths = jdbcTemplate.queryForList(
+                "SELECT COUNT(r.id) FROM CLIENT c LEFT JOIN CREDIT r ON r.clientId = c.id "
+                        + "GROUP BY c.id ORDER BY 1", Integer.class);
+        int median = lengths.get(lengths.size() / 2);
+        int longest = lengths.get(lengths.size() - 1);
+        assertTrue("Median " + median + ", longest " + longest, median * 4 < longest);
+
+        ExposureSummaryJob job = new ExposureSummaryJob();
+        job.setDataSource(dataSource);
+        ExposureDriftDTO drift = job.verify();
+        assertEquals(2000, drift.getCheckedClients());
+        assertEquals(0, drift.getDriftedClients());
+    }
+
+    /**
+     * Test that a second population follows the existing clients, and that the
+     * service creates the next clients after it.
+     */
+    @Test
+    public void seedTest2() {
+        buildSeeder(100L).seed();
+        buildSeeder(100L).seed();
+
+        assertEquals(Long.valueOf(200), jdbcTemplate.queryForObject(
+                "SELECT MAX(id) FROM CLIENT", Long.class));
+        jdbcTemplate.update("INSERT INTO CLIENT (typeId, clientId) VALUES ('passport', 'N1')");
+        assertEquals(Long.valueOf(201), jdbcTemplate.queryForObject(
+                "SELECT id FROM CLIENT WHERE clientId = 'N1'", Long.class));
+    }
+
+    /**
+     * Build a seeder on the embedded database.
+     * @param clients Number of clients.
+     * @return the seeder.
+     */
+    private SyntheticPopulationSeeder buildSeeder(long clients) {
+        SyntheticPopulationSeeder seeder = new SyntheticPopulationSeeder();
+        seeder.setDataSource(dataSource);
+        seeder.setClients(clients);
+        seeder.setMaxCredits(30);
+        seeder.setBatchSize(300);
+        return seeder;
+    }
+}
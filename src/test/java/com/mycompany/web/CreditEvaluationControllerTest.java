@@ -0,0 +1,204 @@
+package com.mycompany.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mycompany.api.dto.CreditRequestDTO;
+import com.mycompany.api.dto.EvaluationResultDTO;
+import com.mycompany.api.dto.EvaluationStatusEnum;
+import com.mycompany.api.dto.IDTypeEnum;
+import com.mycompany.api.dto.PeopleDTO;
+import com.mycompany.api.dto.RiskTypeEnum;
+import com.mycompany.api.services.ICreditEvalService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test the credit evaluation HTTP API with a mocked credit evaluation service.
+ */
+public class CreditEvaluationControllerTest {
+
+    /**
+     * JSON mapper.
+     */
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Mocked credit evaluation service.
+     */
+    private ICreditEvalService creditEvalService;
+
+    /**
+     * Executor of the evaluations.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Controller to be tested.
+     */
+    private CreditEvaluationController controller;
+
+    /**
+     * HTTP client of the controller.
+     */
+    private MockMvc mockMvc;
+
+    /**
+     * Build the controller.
+     */
+    @Before
+    public void setupController() {
+        creditEvalService = mock(ICreditEvalService.class);
+        executor = Executors.newFixedThreadPool(2);
+        controller = new CreditEvaluationController();
+        controller.setCreditEvalService(creditEvalService);
+        controller.setEvaluationExecutor(executor);
+        controller.setMaxInFlight(2);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    /**
+     * Stop the executor.
+     */
+    @After
+    public void tearDownController() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Test that a request is evaluated asynchronously and answered with the
+     * granted quota.
+     * @throws Exception if the request fails.
+     */
+    @Test
+    public void evaluateTest1() throws Exception {
+        CreditRequestDTO requestDTO = creditRequest("ABC123");
+        when(creditEvalService.evaluateCreditRequest(any(CreditRequestDTO.class)))
+                .thenReturn(approved(requestDTO, 1500000));
+
+        MvcResult result = mockMvc.perform(post("/credit-evaluations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(requestDTO)))
+                .andExpect(request().asyncStarted()).andReturn();
+        String body = mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        EvaluationResultDTO resultDTO = objectMapper.readValue(body,
+                EvaluationResultDTO.class);
+        assertEquals(EvaluationStatusEnum.APPROVED, resultDTO.getStatus());
+        assertEquals(0, new BigDecimal(1500000).compareTo(resultDTO.getQuota()));
+        assertEquals("ABC123", resultDTO.getRequestDTO().getPeopleDTO().getId());
+        assertEquals(0, controller.getInFlight());
+    }
+
+    /**
+     * Test that a batch is evaluated with a single service call, and that a
+     * batch larger than the maximum in flight is refused.
+     * @throws Exception if the request fails.
+     */
+    @Test
+    public void evaluateAllTest1() throws Exception {
+        List<CreditRequestDTO> requestDTOs = Arrays.asList(creditRequest("A1"),
+                creditRequest("A2"));
+        List<EvaluationResultDTO> resultDTOs = new ArrayList<>();
+        for (CreditRequestDTO requestDTO : requestDTOs) {
+            resultDTOs.add(approved(requestDTO, 1000));
+        }
+        when(creditEvalService.evaluateCreditRequests(anyListOf(CreditRequestDTO.class)))
+                .thenReturn(resultDTOs);
+
+        MvcResult result = mockMvc.perform(post("/credit-evaluations/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(requestDTOs)))
+                .andExpect(request().asyncStarted()).andReturn();
+        String body = mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        EvaluationResultDTO[] results = objectMapper.readValue(body,
+                EvaluationResultDTO[].class);
+        assertEquals(2, results.length);
+        assertEquals("A2", results[1].getRequestDTO().getPeopleDTO().getId());
+
+        result = mockMvc.perform(post("/credit-evaluations/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Arrays.asList(
+                        creditRequest("A1"), creditRequest("A2"), creditRequest("A3")))))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().is(413));
+    }
+
+    /**
+     * Test that requests beyond the maximum in flight are answered with 503
+     * while the others are evaluated.
+     * @throws Exception if the request fails.
+     */
+    @Test
+    public void evaluateTest2() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(creditEvalService.evaluateCreditRequest(any(CreditRequestDTO.class)))
+                .thenAnswer(invocation -> {
+                    release.await();
+                    return approved((CreditRequestDTO) invocation.getArguments()[0], 1);
+                });
+        List<MvcResult> held = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            held.add(mockMvc.perform(post("/credit-evaluations")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(creditRequest("H" + i))))
+                    .andReturn());
+        }
+        assertEquals(2, controller.getInFlight());
+
+        MvcResult refused = mockMvc.perform(post("/credit-evaluations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(creditRequest("R1"))))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(refused))
+                .andExpect(status().isServiceUnavailable());
+
+        release.countDown();
+        for (MvcResult result : held) {
+            mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+        }
+        assertEquals(0, controller.getInFlight());
+    }
+
+    /**
+     * @param id Passport number.
+     * @return a credit request.
+     */
+    private static CreditRequestDTO creditRequest(String id) {
+        return new CreditRequestDTO(new PeopleDTO(IDTypeEnum.PASSPORT, id, "Homer",
+                "Simpson", "homer@springfield.com"), new BigDecimal(3000000));
+    }
+
+    /**
+     * @param requestDTO Evaluated request.
+     * @param quota Granted quota.
+     * @return an approved evaluation.
+     */
+    private static EvaluationResultDTO approved(CreditRequestDTO requestDTO, long quota) {
+        return new EvaluationResultDTO(requestDTO, EvaluationStatusEnum.APPROVED, 1L,
+                RiskTypeEnum.NONE, new BigDecimal(quota), null);
+    }
+}
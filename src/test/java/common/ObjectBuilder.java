@@ -1,12 +1,17 @@
 package common;
 
+import com.mycompany.configuration.EmbeddedDatabaseConfiguration;
+import com.mycompany.impl.datasource.MonitoredDataSource;
 import com.mycompany.impl.services.CreditEvalServiceImpl;
 import com.mycompany.impl.services.PeopleServiceImpl;
 import org.apache.commons.dbcp2.BasicDataSource;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
 
 import static org.mockito.internal.util.reflection.Whitebox.setInternalState;
 
@@ -17,17 +22,30 @@ import static org.mockito.internal.util.reflection.Whitebox.setInternalState;
 @Component
 public class ObjectBuilder {
 
-    @Value("${database.name}")
-    private String databaseName;
+    /**
+     * Pooled data source of the test context.
+     */
+    @Autowired
+    private DataSource dataSource;
 
     /**
      * Build default implementation for ICreditEvalService.
      * @return CreditEvalServiceImpl object.
      */
     public CreditEvalServiceImpl buildCreditEvalServiceImpl() {
+        return buildCreditEvalServiceImpl(getTestDataSource());
+    }
+
+    /**
+     * Build default implementation for ICreditEvalService on a data source.
+     * @param dataSource Data source.
+     * @return CreditEvalServiceImpl object.
+     */
+    public static CreditEvalServiceImpl buildCreditEvalServiceImpl(
+            DataSource dataSource) {
         CreditEvalServiceImpl creditEvalService = new CreditEvalServiceImpl();
-        setInternalState(creditEvalService, "peopleService", buildPeopleServiceImpl());
-        DataSource dataSource = getTestDataSource();
+        setInternalState(creditEvalService, "peopleService",
+                buildPeopleServiceImpl(dataSource));
         creditEvalService.setDataSource(dataSource);
         return creditEvalService;
     }
@@ -37,21 +55,48 @@ public class ObjectBuilder {
      * @return PeopleServiceImpl object.
      */
     public PeopleServiceImpl buildPeopleServiceImpl() {
+        return buildPeopleServiceImpl(getTestDataSource());
+    }
+
+    /**
+     * Build default implementation for IPeopleService on a data source.
+     * @param dataSource Data source.
+     * @return PeopleServiceImpl object.
+     */
+    public static PeopleServiceImpl buildPeopleServiceImpl(DataSource dataSource) {
         PeopleServiceImpl peopleService = new PeopleServiceImpl();
-        DataSource dataSource = getTestDataSource();
         peopleService.setDataSource(dataSource);
         return peopleService;
     }
 
     /**
-     * @return Data source to a local mysql database.
+     * @return Data source of the test context, a local mysql database by
+     * default. The pool is shared by every service built by the tests.
      */
     public DataSource getTestDataSource() {
-        BasicDataSource dataSource = new BasicDataSource();
-        dataSource.setDriverClassName("com.mysql.jdbc.Driver");
-        dataSource.setUrl("jdbc:mysql://localhost:3306/" + databaseName);
-        dataSource.setUsername("test");
-        dataSource.setPassword("test");
         return dataSource;
     }
+
+    /**
+     * @param name Database name.
+     * @return Pooled data source to an in-memory H2 database in MySQL mode,
+     * created with DBScript.sql, for the tests and benchmarks that run offline.
+     */
+    public static MonitoredDataSource getEmbeddedDataSource(String name) {
+        return EmbeddedDatabaseConfiguration.createDataSource(name);
+    }
+
+    /**
+     * Drop an in-memory database and close its pool.
+     * @param dataSource Data source of getEmbeddedDataSource.
+     * @throws SQLException if the pool cannot be closed.
+     */
+    public static void shutdownEmbeddedDataSource(BasicDataSource dataSource)
+            throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+        dataSource.close();
+    }
 }